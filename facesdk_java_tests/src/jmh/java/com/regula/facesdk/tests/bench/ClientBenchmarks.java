@@ -0,0 +1,209 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot-path client calls against the embedded stand-in server.
+ *
+ * Each client benchmark has a "transport only" twin that posts the exact body the client
+ * produced through a bare OkHttp client and drains the response without parsing it. The
+ * difference between the two is the client's own serialization cost. Run with -prof gc
+ * (the jmh Gradle task does) to get gc.alloc.rate.norm: the stand-in answers on its own
+ * threads, so the per-op allocation figure belongs to the client side only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientBenchmarks {
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private StandInServer standIn;
+    private FaceSdk faceSdk;
+    private OkHttpClient rawClient;
+
+    private DetectRequest detectRequest;
+    private DetectRequest cropAllFacesRequest;
+    private MatchRequest matchRequest;
+    private SearchRequest searchRequest;
+    private AddImageToPersonRequest addImageRequest;
+    private UUID enrollPersonId;
+
+    private byte[] detectBody;
+    private byte[] cropAllFacesBody;
+    private byte[] matchBody;
+    private byte[] searchBody;
+    private byte[] addImageBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = StandInServer.start();
+        faceSdk = new FaceSdk(standIn.baseUrl());
+        rawClient = new OkHttpClient();
+
+        byte[] face1 = read("face1.jpg");
+        byte[] face2 = read("face2.jpg");
+        byte[] face3 = read("face3.jpg");
+        byte[] severalFaces = read("severalFaces.jpg");
+
+        detectRequest = new DetectRequest();
+        detectRequest.setImage(face1);
+
+        ProcessParam cropAllFaces = new ProcessParam();
+        cropAllFaces.setScenario(FaceQualityScenarios.CROP_ALL_FACES);
+        cropAllFaces.setOnlyCentralFace(false);
+        cropAllFacesRequest = new DetectRequest();
+        cropAllFacesRequest.setImage(severalFaces);
+        cropAllFacesRequest.setProcessParam(cropAllFaces);
+
+        List<MatchImage> images = new ArrayList<>();
+        images.add(new MatchImage().index(1).type(ImageSource.LIVE).data(face1));
+        images.add(new MatchImage().index(2).type(ImageSource.DOCUMENT_RFID).data(face2));
+        matchRequest = new MatchRequest();
+        matchRequest.setImages(images);
+
+        GroupToCreate group = new GroupToCreate();
+        group.setName("bench");
+        UUID groupId = faceSdk.groupApi.createGroup(group).getId();
+        PersonFields personFields = new PersonFields();
+        personFields.setName("Person A");
+        personFields.setGroups(Collections.singletonList(groupId));
+        UUID searchPersonId = faceSdk.personApi.createPerson(personFields).getId();
+        faceSdk.personApi.addImageToPerson(searchPersonId, imageRequest(face3));
+
+        AddImageToPersonRequestImage probe = new AddImageToPersonRequestImage();
+        probe.setContentType("image/jpeg");
+        probe.setContent(face1);
+        searchRequest = new SearchRequest();
+        searchRequest.setGroupIds(Collections.singletonList(groupId));
+        searchRequest.setImage(probe);
+        searchRequest.setLimit(10);
+        searchRequest.setThreshold(0.8f);
+
+        addImageRequest = imageRequest(face1);
+        newEnrollPerson();
+
+        // One client call per endpoint captures the exact body the transport-only twins replay
+        standIn.captureRequestBodies(true);
+        faceSdk.matchingApi.detect(detectRequest);
+        detectBody = standIn.lastRequestBody("/api/detect");
+        faceSdk.matchingApi.detect(cropAllFacesRequest);
+        cropAllFacesBody = standIn.lastRequestBody("/api/detect");
+        faceSdk.matchingApi.match(matchRequest);
+        matchBody = standIn.lastRequestBody("/api/match");
+        faceSdk.searchApi.search(searchRequest);
+        searchBody = standIn.lastRequestBody("/api/search");
+        faceSdk.personApi.addImageToPerson(enrollPersonId, addImageRequest);
+        addImageBody = standIn.lastRequestBody("/api/persons/" + enrollPersonId + "/images");
+        standIn.captureRequestBodies(false);
+    }
+
+    @Setup(Level.Iteration)
+    public void newEnrollPerson() {
+        // Start every iteration with an empty person so enrolled images do not pile up in the stand-in
+        if (enrollPersonId != null) {
+            faceSdk.personApi.deletePerson(enrollPersonId);
+        }
+        PersonFields personFields = new PersonFields();
+        personFields.setName("Person B");
+        enrollPersonId = faceSdk.personApi.createPerson(personFields).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+        rawClient.dispatcher().executorService().shutdown();
+        rawClient.connectionPool().evictAll();
+    }
+
+    @Benchmark
+    public DetectResponse detect() {
+        return faceSdk.matchingApi.detect(detectRequest);
+    }
+
+    @Benchmark
+    public DetectResponse detectCropAllFaces() {
+        return faceSdk.matchingApi.detect(cropAllFacesRequest);
+    }
+
+    @Benchmark
+    public MatchResponse match() {
+        return faceSdk.matchingApi.match(matchRequest);
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return faceSdk.searchApi.search(searchRequest);
+    }
+
+    @Benchmark
+    public AddImageToPersonResponse addImageToPerson() {
+        return faceSdk.personApi.addImageToPerson(enrollPersonId, addImageRequest);
+    }
+
+    @Benchmark
+    public int detectTransportOnly() throws IOException {
+        return post("api/detect", detectBody);
+    }
+
+    @Benchmark
+    public int detectCropAllFacesTransportOnly() throws IOException {
+        return post("api/detect", cropAllFacesBody);
+    }
+
+    @Benchmark
+    public int matchTransportOnly() throws IOException {
+        return post("api/match", matchBody);
+    }
+
+    @Benchmark
+    public int searchTransportOnly() throws IOException {
+        return post("api/search", searchBody);
+    }
+
+    @Benchmark
+    public int addImageToPersonTransportOnly() throws IOException {
+        return post("api/persons/" + enrollPersonId + "/images", addImageBody);
+    }
+
+    private int post(String path, byte[] body) throws IOException {
+        Request request = new Request.Builder()
+                .url(standIn.baseUrl() + path)
+                .post(RequestBody.create(body, JSON))
+                .build();
+        try (Response response = rawClient.newCall(request).execute()) {
+            return response.body().bytes().length;
+        }
+    }
+
+    private static AddImageToPersonRequest imageRequest(byte[] content) {
+        AddImageToPersonRequestImage image = new AddImageToPersonRequestImage();
+        image.setContentType("image/jpeg");
+        image.setContent(content);
+        AddImageToPersonRequest request = new AddImageToPersonRequest();
+        request.setImage(image);
+        return request;
+    }
+
+    private static byte[] read(String name) {
+        return FixtureRegistry.shared().bytes(name);
+    }
+}
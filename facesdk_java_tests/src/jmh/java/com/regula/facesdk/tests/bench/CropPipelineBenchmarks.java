@@ -0,0 +1,116 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.crops.Crop;
+import com.regula.facesdk.tests.crops.CropContainer;
+import com.regula.facesdk.tests.crops.CropPipeline;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link CropPipeline} over the fixtures (misc/files: seven images, twelve
+ * faces) against the stand-in, with crops decoded on one thread and on a pool of four;
+ * the crops counter is crops per second. On a single core the pool has nothing to gain.
+ *
+ * lookup is a find() and read of a random crop in a container of 100000 (the fixture
+ * crops over and over), which should cost the same whatever the container's size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CropPipelineBenchmarks {
+    private static final int STORED = 100_000;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private StandInServer standIn;
+    private OkHttpClient httpClient;
+    private ForkJoinPool pool;
+    private CropPipeline pipeline;
+    private Path dir;
+    private CropContainer container;
+    private String[] sources;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Crops {
+        public long crops;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            crops = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+        final SplittableRandom random = new SplittableRandom(7);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        pool = new ForkJoinPool(parallelism);
+        pipeline = new CropPipeline(TransportSettings.newFaceSdk(standIn.baseUrl(), httpClient)).pool(pool);
+        dir = Files.createTempDirectory("crops");
+
+        List<Crop> crops = pipeline.crops("severalFaces.jpg", Files.readAllBytes(FixtureRegistry.FILES_PATH.resolve("severalFaces.jpg")));
+        Path file = dir.resolve("lookup.bin");
+        sources = new String[STORED / crops.size()];
+        try (CropContainer.Writer writer = CropContainer.create(file, CropContainer.DEFAULT_CHUNK_BYTES)) {
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = "group/" + i + ".jpg";
+                for (Crop crop : crops) {
+                    writer.add(new Crop(sources[i], crop.face, crop.roi, crop.width, crop.height, crop.score, crop.quality, crop.image, null));
+                }
+            }
+        }
+        container = CropContainer.open(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        container.close();
+        pool.shutdown();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+        standIn.close();
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public CropPipeline.Summary fixtures(Crops counter) throws IOException {
+        CropPipeline.Summary summary = pipeline.run(FixtureRegistry.FILES_PATH, dir.resolve("fixtures.bin"), CropContainer.DEFAULT_CHUNK_BYTES);
+        counter.crops += summary.detections;
+        return summary;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ByteBuffer lookup(Keys keys) {
+        int id = container.find(sources[keys.random.nextInt(sources.length)], keys.random.nextInt(5));
+        return container.crop(id);
+    }
+}
@@ -0,0 +1,119 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.index.FlatIndex;
+import com.regula.facesdk.tests.index.HnswIndex;
+import com.regula.facesdk.tests.index.SyntheticGallery;
+import com.regula.facesdk.tests.standin.Descriptors;
+import com.regula.facesdk.webclient.gen.model.SearchPerson;
+import com.regula.facesdk.webclient.gen.model.SearchResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recall@10 against latency for a SearchTests-style query (limit 10, threshold 0.8) over
+ * a {@link SyntheticGallery} of 128-component descriptors in clusters of 32 look-alikes.
+ * hnsw searches an {@link HnswIndex} with each efSearch; exact scans a {@link FlatIndex}
+ * of the same descriptors, whose answers are the ground truth (it ignores efSearch).
+ * Recall is the found counter divided by the relevant one: persons of the exact top-10
+ * returned, over the exact top-10.
+ *
+ * Building the graph takes minutes at 100k, so it is saved to java.io.tmpdir the first
+ * time and mapped back by later trials and runs; delete hnsw-bench-*.idx there to rebuild.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class HnswBenchmarks {
+    private static final int QUERIES = 512;
+    private static final int LIMIT = 10;
+    private static final float THRESHOLD = 0.8f;
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"16", "64", "256"})
+    public int efSearch;
+
+    private HnswIndex hnsw;
+    private FlatIndex flat;
+    private float[][] probes;
+    private List<Set<UUID>> truth;
+    private int next;
+
+    /** Recall counters, summed over the iteration. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Recall {
+        public long found;
+        public long relevant;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            found = 0;
+            relevant = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticGallery gallery = new SyntheticGallery(Descriptors.DIMENSION, 32, 1);
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"), "hnsw-bench-" + size + ".idx");
+        if (Files.exists(file)) {
+            hnsw = HnswIndex.open(file);
+        } else {
+            hnsw = HnswIndex.builder(Descriptors.DIMENSION).build();
+            for (int person = 0; person < size; person++) {
+                hnsw.add(SyntheticGallery.personId(person), null, person, gallery.descriptor(person));
+            }
+            hnsw.save(file);
+        }
+        hnsw.efSearch(efSearch);
+        FlatIndex.Builder builder = FlatIndex.builder(Descriptors.DIMENSION);
+        for (int person = 0; person < size; person++) {
+            builder.add(SyntheticGallery.personId(person), null, person, gallery.descriptor(person));
+        }
+        flat = builder.build();
+        probes = new float[QUERIES][];
+        truth = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            probes[i] = gallery.probe((int) ((long) i * 7919 % size), i);
+            truth.add(ids(flat.search(probes[i], LIMIT, THRESHOLD)));
+        }
+    }
+
+    @Benchmark
+    public SearchResult hnsw(Recall recall) {
+        int query = next++ % QUERIES;
+        SearchResult result = hnsw.search(probes[query], LIMIT, THRESHOLD);
+        Set<UUID> found = ids(result);
+        found.retainAll(truth.get(query));
+        recall.found += found.size();
+        recall.relevant += truth.get(query).size();
+        return result;
+    }
+
+    @Benchmark
+    public SearchResult exact() {
+        return flat.search(probes[next++ % QUERIES], LIMIT, THRESHOLD);
+    }
+
+    private static Set<UUID> ids(SearchResult result) {
+        Set<UUID> ids = new HashSet<>();
+        for (SearchPerson person : result.getPersons()) {
+            ids.add(person.getId());
+        }
+        return ids;
+    }
+}
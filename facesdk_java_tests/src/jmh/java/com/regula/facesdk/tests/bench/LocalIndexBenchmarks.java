@@ -0,0 +1,66 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.index.FlatIndex;
+import com.regula.facesdk.tests.standin.Descriptors;
+import com.regula.facesdk.webclient.gen.model.SearchResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-10 search with threshold 0.8 over a {@link FlatIndex} of random 128-component
+ * descriptors, one per person, mapped from a temporary file. The kernel parameter compares
+ * the Vector API dot product with the scalar loop; the scan is split over every core
+ * either way. At a million descriptors the rows take 512 MB of page cache, not heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class LocalIndexBenchmarks {
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"simd", "scalar"})
+    public String kernel;
+
+    private Path file;
+    private FlatIndex index;
+    private float[] probe;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("flat-index", ".bin");
+        FlatIndex.Builder builder = FlatIndex.builder(Descriptors.DIMENSION, file).vectorized("simd".equals(kernel));
+        SplittableRandom random = new SplittableRandom(42);
+        float[] descriptor = new float[Descriptors.DIMENSION];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < descriptor.length; j++) {
+                descriptor[j] = (float) random.nextDouble(-1, 1);
+            }
+            if (i == size / 2) {
+                probe = descriptor.clone();
+            }
+            builder.add(new UUID(0, i), null, i, descriptor);
+        }
+        index = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        // The mapping outlives the file on Linux and macOS; Windows keeps it until the JVM exits
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return index.search(probe, 10, 0.8f);
+    }
+}
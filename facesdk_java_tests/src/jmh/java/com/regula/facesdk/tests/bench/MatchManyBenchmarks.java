@@ -0,0 +1,98 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.async.AsyncFaceSdk;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.matching.MatchMany;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.ImageSource;
+import com.regula.facesdk.webclient.gen.model.MatchImage;
+import com.regula.facesdk.webclient.gen.model.MatchRequest;
+import com.regula.facesdk.webclient.gen.model.MatchResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One LIVE probe against N document references: {@link MatchMany} packing them into
+ * chunked requests, against N two-image match calls made one after another and all at
+ * once. The references cycle through face2.jpg and face3.jpg, so the body per reference
+ * is about 350 KB of base64.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchManyBenchmarks {
+    private static final int MAX_IN_FLIGHT = 8;
+
+    @Param({"8", "32"})
+    public int references;
+
+    private StandInServer standIn;
+    private FaceSdk faceSdk;
+    private AsyncFaceSdk asyncFaceSdk;
+    private MatchMany matchMany;
+    private List<MatchRequest> pairRequests;
+    private MatchImage probeImage;
+    private List<MatchImage> documentImages;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = StandInServer.start();
+        faceSdk = TransportSettings.fromSystemProperties().newFaceSdk(standIn.baseUrl());
+        asyncFaceSdk = new AsyncFaceSdk(faceSdk, MAX_IN_FLIGHT);
+        matchMany = new MatchMany(asyncFaceSdk);
+
+        Path probe = FixtureRegistry.FILES_PATH.resolve("face1.jpg");
+        Path[] documents = {FixtureRegistry.FILES_PATH.resolve("face2.jpg"), FixtureRegistry.FILES_PATH.resolve("face3.jpg")};
+        pairRequests = new ArrayList<>();
+        documentImages = new ArrayList<>();
+        probeImage = ScenarioRequests.matchImage(ImageSource.LIVE.getValue(), probe);
+        for (int i = 0; i < references; i++) {
+            Path document = documents[i % documents.length];
+            pairRequests.add(ScenarioRequests.match(ImageSource.LIVE.getValue(), probe,
+                    ImageSource.DOCUMENT_PRINTED.getValue(), document));
+            documentImages.add(ScenarioRequests.matchImage(ImageSource.DOCUMENT_PRINTED.getValue(), document));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        asyncFaceSdk.close();
+        standIn.close();
+    }
+
+    @Benchmark
+    public MatchMany.Result matchMany() {
+        return matchMany.match(probeImage, documentImages);
+    }
+
+    @Benchmark
+    public void separateCalls(Blackhole blackhole) {
+        for (MatchRequest request : pairRequests) {
+            blackhole.consume(faceSdk.matchingApi.match(request));
+        }
+    }
+
+    @Benchmark
+    public void separateCallsConcurrent(Blackhole blackhole) {
+        List<CompletableFuture<MatchResponse>> responses = new ArrayList<>(references);
+        for (MatchRequest request : pairRequests) {
+            responses.add(asyncFaceSdk.match(request));
+        }
+        for (CompletableFuture<MatchResponse> response : responses) {
+            blackhole.consume(response.join());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.metrics.FaceSdkMetrics;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.Group;
+import com.regula.facesdk.webclient.gen.model.GroupToCreate;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link FaceSdkMetrics} adds to a call: the same getGroup with and without the event
+ * listener and record(). Against the stand-in the difference drowns in loopback noise, so
+ * the canned transport answers from an application interceptor without any I/O; the
+ * remaining cost is the client's own (request building, JSON parsing) and the
+ * instrumented/plain difference there is the overhead per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmarks {
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    @Param({"canned", "standin"})
+    public String transport;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private StandInServer standIn;
+    private OkHttpClient httpClient;
+    private FaceSdkMetrics metrics;
+    private FaceSdk faceSdk;
+    private UUID groupId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = StandInServer.start();
+        GroupToCreate group = new GroupToCreate();
+        group.setName("Metrics");
+        groupId = new FaceSdk(standIn.baseUrl()).groupApi.createGroup(group).getId();
+        String body = "{\"id\":\"" + groupId + "\",\"name\":\"Metrics\",\"metadata\":{}}";
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        if (transport.equals("canned")) {
+            builder.addInterceptor(chain -> new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(body, JSON))
+                    .build());
+        }
+        httpClient = builder.build();
+        metrics = new FaceSdkMetrics();
+        faceSdk = TransportSettings.newFaceSdk(standIn.baseUrl(), instrumented ? metrics.instrument(httpClient) : httpClient);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+        standIn.close();
+    }
+
+    @Benchmark
+    public Group getGroup() {
+        return instrumented ? metrics.record(() -> faceSdk.groupApi.getGroup(groupId)) : faceSdk.groupApi.getGroup(groupId);
+    }
+}
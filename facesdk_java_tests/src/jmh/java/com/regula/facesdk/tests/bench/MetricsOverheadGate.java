@@ -0,0 +1,42 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.metrics.FaceSdkMetrics;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fails when {@link FaceSdkMetrics} adds more than metricsOverhead.maxMicros (5) to a call:
+ * runs {@link MetricsBenchmarks} on the canned transport with and without instrumentation
+ * and compares the two average times per call.
+ */
+public final class MetricsOverheadGate {
+
+    private MetricsOverheadGate() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        double maxMicros = Double.parseDouble(System.getProperty("metricsOverhead.maxMicros", "5"));
+        Options options = new OptionsBuilder()
+                .include(MetricsBenchmarks.class.getName() + ".getGroup")
+                .param("transport", "canned")
+                .build();
+        Map<Boolean, Double> micros = new HashMap<>();
+        for (RunResult result : new Runner(options).run()) {
+            boolean instrumented = Boolean.parseBoolean(result.getParams().getParam("instrumented"));
+            micros.put(instrumented, result.getPrimaryResult().getScore());
+        }
+        double overhead = micros.get(true) - micros.get(false);
+        System.out.printf("Instrumented %.2f us per call, plain %.2f us, overhead %.2f us (limit %.1f us)%n",
+                micros.get(true), micros.get(false), overhead, maxMicros);
+        if (overhead > maxMicros) {
+            System.err.println("Metrics overhead above the limit");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.preprocess.ImagePreprocessor;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.DetectRequest;
+import com.regula.facesdk.webclient.gen.model.DetectResponse;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side downscaling (see {@link ImagePreprocessor}) against uploading the fixture as
+ * it is, end to end: preprocessing, upload and the stand-in's answer. The requestBytes and
+ * requests counters give the bytes each detect puts on the wire; preprocess alone shows
+ * what the downscale and JPEG encode cost in client CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreprocessingBenchmarks {
+
+    @Param({"me_and_id.png", "face1.jpg"})
+    public String image;
+
+    @Param({"none", "1280", "640"})
+    public String maxDimension;
+
+    /** Request body bytes, summed per iteration; divide by requests for bytes per call. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Wire {
+        public long requestBytes;
+        public long requests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requestBytes = 0;
+            requests = 0;
+        }
+    }
+
+    private final AtomicLong bodyBytes = new AtomicLong();
+    private StandInServer standIn;
+    private OkHttpClient httpClient;
+    private FaceSdk faceSdk;
+    private ImagePreprocessor preprocessor;
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient().newBuilder()
+                .addNetworkInterceptor(chain -> {
+                    RequestBody body = chain.request().body();
+                    if (body != null) {
+                        bodyBytes.set(body.contentLength());
+                    }
+                    return chain.proceed(chain.request());
+                })
+                .build();
+        faceSdk = TransportSettings.newFaceSdk(standIn.baseUrl(), httpClient);
+        preprocessor = "none".equals(maxDimension) ? null : new ImagePreprocessor().maxDimension(Integer.parseInt(maxDimension));
+        path = FixtureRegistry.FILES_PATH.resolve(image);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private DetectRequest request() {
+        DetectRequest request = ScenarioRequests.detect(path, null, null);
+        return preprocessor == null ? request : preprocessor.apply(request);
+    }
+
+    @Benchmark
+    public DetectResponse detect(Wire wire) {
+        DetectResponse response = faceSdk.matchingApi.detect(request());
+        wire.requestBytes += bodyBytes.get();
+        wire.requests++;
+        return response;
+    }
+
+    @Benchmark
+    public DetectRequest preprocess() {
+        return request();
+    }
+}
@@ -0,0 +1,59 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.streaming.StreamingApiClient;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import com.regula.facesdk.webclient.gen.model.DetectRequest;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap allocated to put one detect request on the wire, with the generated client's body
+ * (JSON String with the base64 image in it, then its bytes) against
+ * {@link com.regula.facesdk.tests.streaming.StreamingRequestBody}. The body is written to
+ * a sink that discards it, so only the client's side is measured; read gc.alloc.rate.norm
+ * from the gc profiler (on by default in the jmh task) as bytes per request. For the
+ * generated body nearly all of it is reachable at once until the write finishes, so the
+ * figure is also the transient heap each in-flight request holds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBodyBenchmarks {
+    private static final String JSON = "application/json";
+
+    @Param({"face1.jpg", "printedDoc.png", "me_and_id.png"})
+    public String image;
+
+    @Param({"generated", "streaming"})
+    public String body;
+
+    private ApiClient apiClient;
+    private DetectRequest request;
+    private BufferedSink discard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        apiClient = "streaming".equals(body) ? new StreamingApiClient() : new ApiClient();
+        request = ScenarioRequests.detect(FixtureRegistry.FILES_PATH.resolve(image), null, null);
+        discard = Okio.buffer(Okio.blackhole());
+    }
+
+    @Benchmark
+    public long writeBody() throws Exception {
+        RequestBody requestBody = apiClient.serialize(request, JSON);
+        long length = requestBody.contentLength();
+        requestBody.writeTo(discard);
+        discard.flush();
+        return length;
+    }
+}
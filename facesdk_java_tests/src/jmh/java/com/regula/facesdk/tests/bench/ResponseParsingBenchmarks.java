@@ -0,0 +1,116 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.lazy.LazyDetectResponse;
+import com.regula.facesdk.tests.lazy.LazyDetection;
+import com.regula.facesdk.tests.lazy.LazyResponseClient;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.streaming.StreamingRequestBody;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import com.regula.facesdk.webclient.gen.model.DetectRequest;
+import com.regula.facesdk.webclient.gen.model.DetectResponse;
+import com.regula.facesdk.webclient.gen.model.FaceQualityScenarios;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the CROP_ALL_FACES response for severalFaces.jpg (five faces, five crops) into
+ * the generated DetectResponse against {@link LazyDetectResponse}, which leaves the crops
+ * base64 in the body. The parse* benchmarks read a response captured once, so they show
+ * the client's own cost; with the gc profiler, gc.alloc.rate.norm is the heap each
+ * response takes. The detect* benchmarks are whole calls against the stand-in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParsingBenchmarks {
+    private static final Request CAPTURED = new Request.Builder().url("http://localhost/api/detect").build();
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private StandInServer standIn;
+    private OkHttpClient httpClient;
+    private FaceSdk faceSdk;
+    private ApiClient apiClient;
+    private LazyResponseClient lazyClient;
+    private DetectRequest request;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        faceSdk = TransportSettings.newFaceSdk(standIn.baseUrl(), httpClient);
+        apiClient = faceSdk.matchingApi.getApiClient();
+        lazyClient = new LazyResponseClient(faceSdk);
+        request = ScenarioRequests.detect(FixtureRegistry.FILES_PATH.resolve("severalFaces.jpg"),
+                FaceQualityScenarios.CROP_ALL_FACES, false);
+        Request call = new Request.Builder()
+                .url(standIn.baseUrl().replaceAll("/+$", "") + "/api/detect")
+                .post(new StreamingRequestBody(StreamingRequestBody.gson(apiClient), request))
+                .build();
+        try (Response response = httpClient.newCall(call).execute()) {
+            body = response.body().bytes();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /** The generated client's own reading: the body as a String, then its Gson into the model. */
+    @Benchmark
+    public DetectResponse parseGenerated() throws ApiException {
+        Response response = new Response.Builder()
+                .request(CAPTURED)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, JSON))
+                .build();
+        return apiClient.deserialize(response, DetectResponse.class);
+    }
+
+    @Benchmark
+    public void parseLazyBoxesOnly(Blackhole blackhole) {
+        for (LazyDetection detection : LazyDetectResponse.parse(body).detections()) {
+            blackhole.consume(detection.roi());
+        }
+    }
+
+    @Benchmark
+    public void parseLazyAllCrops(Blackhole blackhole) {
+        for (LazyDetection detection : LazyDetectResponse.parse(body).detections()) {
+            blackhole.consume(detection.roi());
+            blackhole.consume(detection.crop().decode());
+        }
+    }
+
+    @Benchmark
+    public DetectResponse detectGenerated() {
+        return faceSdk.matchingApi.detect(request);
+    }
+
+    @Benchmark
+    public LazyDetectResponse detectLazy() {
+        return lazyClient.detect(request);
+    }
+}
@@ -0,0 +1,60 @@
+package com.regula.facesdk.tests.bench;
+
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.DetectRequest;
+import com.regula.facesdk.webclient.gen.model.DetectResponse;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What connection reuse is worth per call. poolSize 0 closes the connection after every
+ * call, so each detect pays for a new TCP connection; the payloads run from the smallest
+ * fixture (face1.jpg, 51 KB) to the largest (me_and_id.png, 2.8 MB) to show whether the
+ * saving still matters once the body dominates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmarks {
+
+    @Param({"5", "0"})
+    public int poolSize;
+
+    @Param({"face1.jpg", "me_and_id.png"})
+    public String image;
+
+    private StandInServer standIn;
+    private OkHttpClient httpClient;
+    private FaceSdk faceSdk;
+    private DetectRequest detectRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        standIn = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().poolSize(poolSize).newHttpClient();
+        faceSdk = TransportSettings.newFaceSdk(standIn.baseUrl(), httpClient);
+        detectRequest = ScenarioRequests.detect(FixtureRegistry.FILES_PATH.resolve(image), null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        standIn.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Benchmark
+    public DetectResponse detect() {
+        return faceSdk.matchingApi.detect(detectRequest);
+    }
+}
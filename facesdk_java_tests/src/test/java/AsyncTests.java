@@ -0,0 +1,164 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.async.AsyncFaceSdk;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+@ExtendWith(ReportPortalExtension.class)
+public class AsyncTests {
+    private static final int CALLS = 24;
+    private static final int MAX_IN_FLIGHT = 4;
+    private AsyncFaceSdk asyncFaceSdk;
+
+    @BeforeEach
+    void setUp() {
+        asyncFaceSdk = new AsyncFaceSdk(PathsConfig.faceSdk, MAX_IN_FLIGHT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncFaceSdk.close();
+    }
+
+    private static List<List<Integer>> rois(DetectResponse response) {
+        List<List<Integer>> rois = new ArrayList<>();
+        for (var detection : Objects.requireNonNull(response.getResults()).getDetections()) {
+            rois.add(detection.getRoi());
+        }
+        return rois;
+    }
+
+    @Test
+    void concurrentDetectsShouldMatchSynchronousResults() throws Exception {
+        DetectRequest request = ScenarioRequests.detect(PathsConfig.SEVERAL_FACES_IMAGE_PATH, FaceQualityScenarios.CROP_ALL_FACES, false);
+        DetectResponse expected = PathsConfig.faceSdk.matchingApi.detect(request);
+        assertEquals(5, Objects.requireNonNull(expected.getResults()).getDetections().size(), "Expected 5 detections");
+
+        List<CompletableFuture<DetectResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLS; i++) {
+            futures.add(asyncFaceSdk.detect(request));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(2, TimeUnit.MINUTES);
+
+        for (CompletableFuture<DetectResponse> future : futures) {
+            DetectResponse response = future.join();
+            assertEquals(FaceSDKResultCode.FACER_OK, response.getCode(), "Unexpected response code");
+            assertEquals(rois(expected), rois(response), "Async detections differ from the synchronous call");
+        }
+        assertEquals(0, asyncFaceSdk.inFlight(), "Calls still counted as in flight after completion");
+    }
+
+    /** Counts at a stand-in of its own, which holds every detect long enough for the calls to pile up. */
+    @Test
+    void shouldNotRunMoreThanMaxInFlightCalls() throws Exception {
+        StandInServer server = StandInServer.start();
+        OkHttpClient httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        try (AsyncFaceSdk limited = new AsyncFaceSdk(TransportSettings.newFaceSdk(server.baseUrl(), httpClient), MAX_IN_FLIGHT)) {
+            server.faults().latency("/api/detect", 200, 1.0);
+            DetectRequest request = ScenarioRequests.detect(PathsConfig.FACE1_PATH, FaceQualityScenarios.QUALITY_FULL, true);
+            List<CompletableFuture<DetectResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLS; i++) {
+                futures.add(limited.detect(request));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+            assertEquals(MAX_IN_FLIGHT, server.peakConcurrentRequests(), "The service should see exactly maxInFlight calls at once");
+        } finally {
+            server.close();
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
+    /** The cached platform-thread pool JDK 17 falls back to: submitting must not block, and no more threads than calls in flight. */
+    @Test
+    void shouldQueueWithoutBlockingOnPlatformThreads() throws Exception {
+        StandInServer server = StandInServer.start();
+        OkHttpClient httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        ThreadPoolExecutor platformThreads = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+        try {
+            AsyncFaceSdk limited = new AsyncFaceSdk(TransportSettings.newFaceSdk(server.baseUrl(), httpClient), MAX_IN_FLIGHT, platformThreads);
+            server.faults().latency("/api/detect", 200, 1.0);
+            DetectRequest request = ScenarioRequests.detect(PathsConfig.FACE1_PATH, FaceQualityScenarios.QUALITY_FULL, true);
+            List<CompletableFuture<DetectResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLS; i++) {
+                futures.add(limited.detect(request));
+            }
+            // Every call is still held by the stand-in here, so the submitting thread got back before any finished
+            assertEquals(MAX_IN_FLIGHT, limited.inFlight(), "Expected maxInFlight calls running right after submitting");
+            assertEquals(CALLS - MAX_IN_FLIGHT, limited.queued(), "Expected the rest of the calls queued, not blocking the caller");
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+            assertEquals(MAX_IN_FLIGHT, server.peakConcurrentRequests(), "The service should see exactly maxInFlight calls at once");
+            assertTrue(platformThreads.getLargestPoolSize() <= MAX_IN_FLIGHT,
+                    "Expected at most " + MAX_IN_FLIGHT + " platform threads, the pool grew to " + platformThreads.getLargestPoolSize());
+            assertEquals(0, limited.queued(), "Calls still queued after completion");
+        } finally {
+            platformThreads.shutdownNow();
+            server.close();
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
+    @Test
+    void concurrentMatchesShouldMatchSynchronousResults() throws Exception {
+        MatchRequest request = ScenarioRequests.match(3, PathsConfig.FACE1_PATH, 2, PathsConfig.FACE2_PATH);
+        MatchResponse expected = PathsConfig.faceSdk.matchingApi.match(request);
+
+        List<CompletableFuture<MatchResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLS; i++) {
+            futures.add(asyncFaceSdk.match(request));
+        }
+        for (CompletableFuture<MatchResponse> future : futures) {
+            MatchResponse response = future.get(2, TimeUnit.MINUTES);
+            assertEquals(expected.getResults().get(0).getSimilarity(), response.getResults().get(0).getSimilarity(),
+                    "Async similarity differs from the synchronous call");
+        }
+    }
+
+    @Test
+    void shouldEnrollAndSearchAsynchronously() throws Exception {
+        Tenant tenant = new Tenant();
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName(tenant.name("async"));
+        UUID groupId = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate).getId();
+        try {
+            PersonFields personFields = new PersonFields();
+            personFields.setName("Person A");
+            personFields.setGroups(Collections.singletonList(groupId));
+
+            UUID personId = asyncFaceSdk.createPerson(personFields)
+                    .thenCompose(person -> asyncFaceSdk.addImageToPerson(person.getId(), ScenarioRequests.addImage(PathsConfig.FACE3_PATH))
+                            .thenApply(added -> person.getId()))
+                    .get(1, TimeUnit.MINUTES);
+
+            SearchResult result = asyncFaceSdk.search(ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, 10, 0.8f))
+                    .get(1, TimeUnit.MINUTES);
+            assertTrue(Objects.requireNonNull(result.getPersons()).stream().anyMatch(p -> personId.equals(p.getId())),
+                    "Enrolled person not found by async search");
+
+            asyncFaceSdk.deletePerson(personId).get(1, TimeUnit.MINUTES);
+        } finally {
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        }
+    }
+}
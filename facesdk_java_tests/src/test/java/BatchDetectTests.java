@@ -0,0 +1,97 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.regula.facesdk.tests.batch.BatchDetector;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class BatchDetectTests {
+    private static final Path FILES_PATH = PathsConfig.FACE1_PATH.getParent();
+
+    @TempDir
+    Path outputDir;
+
+    private static List<JsonObject> readLines(Path file) throws IOException {
+        List<JsonObject> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            lines.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        return lines;
+    }
+
+    private static int detections(JsonObject line) {
+        assertFalse(line.has("error"), "Detect failed for " + line.get("file") + ": " + line.get("error"));
+        return line.getAsJsonObject("response").getAsJsonObject("results").getAsJsonArray("detections").size();
+    }
+
+    private static ProcessParam cropAllFaces() {
+        ProcessParam processParam = new ProcessParam();
+        processParam.setScenario(FaceQualityScenarios.CROP_ALL_FACES);
+        processParam.setOnlyCentralFace(false);
+        return processParam;
+    }
+
+    @Test
+    void shouldWriteResultsInDirectoryOrder() throws Exception {
+        Path output = outputDir.resolve("detect.ndjson");
+        BatchDetector.Summary summary = new BatchDetector(PathsConfig.faceSdk)
+                .parallelism(3)
+                .readAhead(2)
+                .processParam(cropAllFaces())
+                .run(FILES_PATH, output);
+
+        List<Path> images = BatchDetector.listImages(FILES_PATH);
+        List<JsonObject> lines = readLines(output);
+        assertEquals(images.size(), summary.images, "Unexpected number of images");
+        assertEquals(0, summary.failed, "Some detects failed");
+        assertEquals(images.size(), lines.size(), "Expected one line per image");
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(i, lines.get(i).get("seq").getAsInt(), "Lines are out of order");
+            assertEquals(images.get(i).getFileName().toString(), lines.get(i).get("file").getAsString(), "Unexpected file at line " + i);
+        }
+
+        int total = 0;
+        for (JsonObject line : lines) {
+            int count = detections(line);
+            total += count;
+            if (line.get("file").getAsString().equals("severalFaces.jpg")) {
+                assertEquals(5, count, "Expected 5 detections");
+            }
+        }
+        assertEquals(total, summary.detections, "Summary detections do not add up");
+    }
+
+    @Test
+    void shouldWriteEveryImageOnceWhenUnordered() throws Exception {
+        Path output = outputDir.resolve("detect-unordered.ndjson");
+        ProcessParam processParam = new ProcessParam();
+        processParam.setOnlyCentralFace(true);
+        new BatchDetector(PathsConfig.faceSdk)
+                .parallelism(4)
+                .readAhead(1)
+                .ordered(false)
+                .processParam(processParam)
+                .run(FILES_PATH, output);
+
+        Set<Integer> seen = new HashSet<>();
+        for (JsonObject line : readLines(output)) {
+            assertTrue(seen.add(line.get("seq").getAsInt()), "Image written twice: " + line.get("file"));
+            assertEquals(1, detections(line), "Expected 1 detection with onlyCentralFace for " + line.get("file"));
+        }
+        assertEquals(BatchDetector.listImages(FILES_PATH).size(), seen.size(), "Expected one line per image");
+    }
+}
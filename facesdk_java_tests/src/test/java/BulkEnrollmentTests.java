@@ -0,0 +1,273 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import okhttp3.OkHttpClient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.enroll.BulkEnroller;
+import com.regula.facesdk.tests.enroll.Checkpoint;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class BulkEnrollmentTests {
+    private final Tenant tenant = new Tenant();
+    private UUID groupId;
+
+    @TempDir
+    Path workDir;
+
+    @BeforeEach
+    void setUp() {
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName(tenant.name("enroll"));
+        groupId = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            for (Person person : groupPersons()) {
+                PathsConfig.faceSdk.personApi.deletePerson(person.getId());
+            }
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        } catch (ApiException e) {
+            System.out.println("Error during cleanup: " + e.getMessage());
+        }
+    }
+
+    private List<Person> groupPersons() {
+        List<Person> persons = new ArrayList<>();
+        for (int page = 1; ; page++) {
+            PersonsPage response = PathsConfig.faceSdk.groupApi.getAllPersonsByGroupId(page, 50, groupId);
+            if (response.getItems() != null) {
+                persons.addAll(response.getItems());
+            }
+            if (response.getTotalPages() == null || page >= response.getTotalPages()) {
+                return persons;
+            }
+        }
+    }
+
+    private static int imageCount(UUID personId) {
+        return PathsConfig.faceSdk.personApi.getAllImagesByPersonId(1, 1, personId).getTotalPages();
+    }
+
+    private Map<String, Person> personsByKey() {
+        Map<String, Person> byKey = new HashMap<>();
+        for (Person person : groupPersons()) {
+            Object key = person.getMetadata() == null ? null : person.getMetadata().get(BulkEnroller.KEY_METADATA);
+            assertNotNull(key, "Person " + person.getId() + " has no enrollment key");
+            assertNull(byKey.put(key.toString(), person), "Person enrolled twice: " + key);
+        }
+        return byKey;
+    }
+
+    @Test
+    void shouldEnrollCsvManifest() throws Exception {
+        int count = 12;
+        StringBuilder csv = new StringBuilder("name,groups,images,description\n");
+        for (int i = 0; i < count; i++) {
+            csv.append("Person ").append(i).append(',').append(groupId).append(',')
+                    .append(PathsConfig.FACE1_PATH).append(';').append(PathsConfig.FACE3_PATH)
+                    .append(",\"Enrolled, in bulk\"\n");
+        }
+        Path manifest = Files.writeString(workDir.resolve("gallery.csv"), csv);
+
+        BulkEnroller.Report report = new BulkEnroller(PathsConfig.faceSdk)
+                .concurrency(4)
+                .run(manifest, workDir.resolve("gallery.checkpoint"));
+
+        assertEquals(0, report.failed, "Failures: " + report.failures);
+        assertEquals(count, report.persons, "Unexpected number of enrolled persons");
+        assertEquals(2L * count, report.images, "Unexpected number of added images");
+        assertTrue(report.personsPerSecond() > 0, "persons/sec not reported");
+
+        Map<String, Person> enrolled = personsByKey();
+        assertEquals(count, enrolled.size(), "Unexpected number of persons in the group");
+        Person first = enrolled.get("gallery.csv:0");
+        assertNotNull(first, "First manifest entry not enrolled");
+        assertEquals("Person 0", first.getName(), "Unexpected name");
+        assertEquals("Enrolled, in bulk", first.getMetadata().get("description"), "Metadata column not applied");
+        assertEquals(2, imageCount(first.getId()), "Expected both images on the person");
+    }
+
+    @Test
+    void shouldResumeFromCheckpoint() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 6; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\": \"").append(tenant.name("p" + i)).append("\", \"name\": \"Person ").append(i)
+                    .append("\", \"groups\": [\"").append(groupId).append("\"], \"metadata\": {\"batch\": 1}, \"images\": [\"")
+                    .append(PathsConfig.FACE1_PATH).append("\", \"").append(PathsConfig.FACE2_PATH).append("\"]}");
+        }
+        Path manifest = Files.writeString(workDir.resolve("gallery.json"), json.append("]"));
+        Path checkpointFile = workDir.resolve("gallery.checkpoint");
+
+        // A previous run finished p0 and crashed after the first image of p1
+        try (Checkpoint checkpoint = Checkpoint.open(checkpointFile)) {
+            UUID done = enrollManually(tenant.name("p0"), 2);
+            checkpoint.created(tenant.name("p0"), done);
+            checkpoint.imagesAdded(tenant.name("p0"), 2);
+            checkpoint.done(tenant.name("p0"));
+            UUID halfDone = enrollManually(tenant.name("p1"), 1);
+            checkpoint.created(tenant.name("p1"), halfDone);
+            checkpoint.imagesAdded(tenant.name("p1"), 1);
+        }
+        Files.writeString(checkpointFile, "I\t2\t" + tenant.name("p1"), StandardOpenOption.APPEND);
+
+        BulkEnroller.Report report = new BulkEnroller(PathsConfig.faceSdk)
+                .concurrency(3)
+                .run(manifest, checkpointFile);
+
+        assertEquals(0, report.failed, "Failures: " + report.failures);
+        assertEquals(1, report.skipped, "Finished entry should be skipped");
+        assertEquals(5, report.persons, "Unexpected number of enrolled persons");
+        assertEquals(9, report.images, "Only the missing images should be added");
+
+        Map<String, Person> enrolled = personsByKey();
+        assertEquals(6, enrolled.size(), "Unexpected number of persons in the group");
+        for (Person person : enrolled.values()) {
+            assertEquals(2, imageCount(person.getId()), "Unexpected image count for " + person.getName());
+        }
+        try (Checkpoint checkpoint = Checkpoint.open(checkpointFile)) {
+            assertEquals(6, checkpoint.doneCount(), "Every entry should be checkpointed as done");
+        }
+    }
+
+    @Test
+    void shouldNotRepeatWritesCutOffByACrash() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 3; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\": \"").append(tenant.name("c" + i)).append("\", \"name\": \"Person ").append(i)
+                    .append("\", \"groups\": [\"").append(groupId).append("\"], \"images\": [\"")
+                    .append(PathsConfig.FACE1_PATH).append("\", \"").append(PathsConfig.FACE2_PATH).append("\"]}");
+        }
+        Path manifest = Files.writeString(workDir.resolve("crash.json"), json.append("]"));
+        Path checkpointFile = workDir.resolve("crash.checkpoint");
+
+        // The previous run crashed after c0 was created and after c1's second image was added,
+        // each time before the checkpoint heard of it; c2 was about to be created and was not
+        try (Checkpoint checkpoint = Checkpoint.open(checkpointFile)) {
+            checkpoint.creating(tenant.name("c0"));
+            enrollManually(tenant.name("c0"), 0);
+            UUID added = enrollManually(tenant.name("c1"), 2);
+            checkpoint.creating(tenant.name("c1"));
+            checkpoint.created(tenant.name("c1"), added);
+            checkpoint.imagesAdded(tenant.name("c1"), 1);
+            checkpoint.adding(tenant.name("c1"), 1);
+            checkpoint.creating(tenant.name("c2"));
+        }
+
+        BulkEnroller.Report report = new BulkEnroller(PathsConfig.faceSdk)
+                .concurrency(2)
+                .run(manifest, checkpointFile);
+
+        assertEquals(0, report.failed, "Failures: " + report.failures);
+        assertEquals(3, report.persons, "Unexpected number of enrolled persons");
+        Map<String, Person> enrolled = personsByKey();
+        assertEquals(3, enrolled.size(), "A person created before the crash is found, not created again");
+        for (Person person : enrolled.values()) {
+            assertEquals(2, imageCount(person.getId()), "An image added before the crash is not added again: " + person.getName());
+        }
+        try (Checkpoint checkpoint = Checkpoint.open(checkpointFile)) {
+            assertEquals(3, checkpoint.doneCount(), "Every entry should be checkpointed as done");
+        }
+    }
+
+    @Test
+    void shouldNotCreateTwiceWhenTheResponseIsLost() throws Exception {
+        StandInServer server = StandInServer.start();
+        OkHttpClient httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        try {
+            FaceSdk faceSdk = TransportSettings.newFaceSdk(server.baseUrl(), httpClient);
+            GroupToCreate groupToCreate = new GroupToCreate();
+            groupToCreate.setName("lost");
+            UUID group = faceSdk.groupApi.createGroup(groupToCreate).getId();
+            // Others in the group before the run, so that the lookup has to find the tail
+            server.seedPersons(group, 250, "Seeded ");
+            StringBuilder csv = new StringBuilder("name,groups,images\n");
+            for (int i = 0; i < 12; i++) {
+                csv.append("Person ").append(i).append(',').append(group).append(',').append(PathsConfig.FACE1_PATH).append('\n');
+            }
+            Path manifest = Files.writeString(workDir.resolve("lost.csv"), csv);
+            server.faults().seed(3).lostResponses("/api/persons", 503, 0.5);
+
+            BulkEnroller.Report report = new BulkEnroller(faceSdk)
+                    .concurrency(4)
+                    .maxAttempts(10)
+                    .backoff(1)
+                    .run(manifest, workDir.resolve("lost.checkpoint"));
+
+            assertEquals(0, report.failed, "Failures: " + report.failures);
+            assertEquals(12, report.persons);
+            assertTrue(report.retries > 0, "Some creates should have lost their response");
+            assertEquals(12, server.faults().requests("/api/persons"), "A lost create is found, not sent again");
+            Map<String, Integer> byKey = new HashMap<>();
+            for (int page = 1; page <= 3; page++) {
+                for (Person person : faceSdk.groupApi.getAllPersonsByGroupId(page, 100, group).getItems()) {
+                    if (person.getMetadata() != null && person.getMetadata().get(BulkEnroller.KEY_METADATA) != null) {
+                        byKey.merge(person.getMetadata().get(BulkEnroller.KEY_METADATA).toString(), 1, Integer::sum);
+                    }
+                }
+            }
+            assertEquals(12, byKey.size());
+            byKey.forEach((key, persons) -> assertEquals(1, persons, "Person enrolled twice: " + key));
+        } finally {
+            server.close();
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
+    @Test
+    void checkpointShouldHoldStartedPersonsWhenTheManifestFails() throws Exception {
+        StringBuilder csv = new StringBuilder("name,groups,images\n");
+        for (int i = 0; i < 4; i++) {
+            csv.append("Person ").append(i).append(',').append(groupId).append(',').append(PathsConfig.FACE1_PATH).append('\n');
+        }
+        csv.append("Broken,not-a-group,").append(PathsConfig.FACE1_PATH).append('\n');
+        Path manifest = Files.writeString(workDir.resolve("broken.csv"), csv);
+        Path checkpointFile = workDir.resolve("broken.checkpoint");
+
+        assertThrows(IllegalArgumentException.class, () -> new BulkEnroller(PathsConfig.faceSdk)
+                .concurrency(4)
+                .run(manifest, checkpointFile));
+
+        try (Checkpoint checkpoint = Checkpoint.open(checkpointFile)) {
+            assertEquals(4, checkpoint.doneCount(), "Persons started before the failure should be finished and checkpointed");
+        }
+        assertEquals(4, personsByKey().size());
+    }
+
+    private UUID enrollManually(String key, int images) {
+        PersonFields personFields = new PersonFields();
+        personFields.setName("Person " + key);
+        personFields.setGroups(Collections.singletonList(groupId));
+        personFields.setMetadata(new HashMap<>(Map.of(BulkEnroller.KEY_METADATA, key)));
+        UUID personId = PathsConfig.faceSdk.personApi.createPerson(personFields).getId();
+        List<Path> paths = List.of(PathsConfig.FACE1_PATH, PathsConfig.FACE2_PATH);
+        for (int i = 0; i < images; i++) {
+            PathsConfig.faceSdk.personApi.addImageToPerson(personId, ScenarioRequests.addImage(paths.get(i)));
+        }
+        return personId;
+    }
+}
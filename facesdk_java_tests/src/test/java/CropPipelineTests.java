@@ -0,0 +1,173 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.crops.Crop;
+import com.regula.facesdk.tests.crops.CropContainer;
+import com.regula.facesdk.tests.crops.CropPipeline;
+import com.regula.facesdk.tests.crops.QualityThresholds;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.gen.model.FaceQualityConfigName;
+import okhttp3.OkHttpClient;
+
+/** Runs against a stand-in of its own, whose quality values are fixed per image and face. */
+@ExtendWith(ReportPortalExtension.class)
+public class CropPipelineTests {
+    private static final String SEVERAL_FACES = PathsConfig.SEVERAL_FACES_IMAGE_PATH.getFileName().toString();
+    private static final Path FIXTURES = PathsConfig.SEVERAL_FACES_IMAGE_PATH.getParent();
+
+    private StandInServer server;
+    private OkHttpClient httpClient;
+    private ForkJoinPool pool;
+    private CropPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        pool = new ForkJoinPool(3);
+        pipeline = new CropPipeline(TransportSettings.newFaceSdk(server.baseUrl(), httpClient)).pool(pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        server.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Test
+    void everyFaceOfAGroupPhotoShouldBecomeACrop() throws IOException {
+        List<Crop> crops = pipeline.crops(SEVERAL_FACES, Files.readAllBytes(PathsConfig.SEVERAL_FACES_IMAGE_PATH));
+        assertEquals(5, crops.size());
+        for (int face = 0; face < crops.size(); face++) {
+            Crop crop = crops.get(face);
+            assertTrue(crop.accepted(), crop.toString());
+            assertEquals(face, crop.face);
+            assertEquals(4, crop.roi.length);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(crop.image));
+            assertEquals(crop.width, image.getWidth());
+            assertEquals(crop.height, image.getHeight());
+            assertTrue(Float.isNaN(crop.score), "No quality was asked for");
+        }
+    }
+
+    @Test
+    void cropsOutsideTheThresholdsShouldBeRejected() throws IOException {
+        QualityThresholds thresholds = QualityThresholds.parse("Yaw=-10:10,BlurLevel=0:0.5");
+        assertEquals("Yaw=-10.0:10.0,BlurLevel=0.0:0.5", thresholds.toString());
+        List<Crop> crops = pipeline.thresholds(thresholds)
+                .crops(SEVERAL_FACES, Files.readAllBytes(PathsConfig.SEVERAL_FACES_IMAGE_PATH));
+        assertEquals(5, crops.size());
+        for (Crop crop : crops) {
+            assertEquals(List.of("Yaw", "BlurLevel"), List.copyOf(crop.quality.keySet()), "The service checked the configured ranges");
+            float yaw = crop.quality.get("Yaw");
+            float blur = crop.quality.get("BlurLevel");
+            assertEquals(yaw >= -10 && yaw <= 10 && blur >= 0 && blur <= 0.5, crop.accepted(), crop.toString());
+        }
+
+        List<Crop> scored = pipeline.thresholds(QualityThresholds.none().minScore(0.75f).minSize(1))
+                .crops(SEVERAL_FACES, Files.readAllBytes(PathsConfig.SEVERAL_FACES_IMAGE_PATH));
+        assertTrue(scored.stream().noneMatch(crop -> Float.isNaN(crop.score)), "A minimum score asks for quality");
+        scored.forEach(crop -> assertEquals(crop.score >= 0.75f, crop.accepted(), crop.toString()));
+
+        assertTrue(pipeline.thresholds(QualityThresholds.none().minSize(10_000))
+                .crops(SEVERAL_FACES, Files.readAllBytes(PathsConfig.SEVERAL_FACES_IMAGE_PATH))
+                .stream().noneMatch(Crop::accepted));
+        assertThrows(IllegalArgumentException.class, () -> QualityThresholds.none().range(FaceQualityConfigName.YAW, 1, -1));
+        assertThrows(IllegalArgumentException.class, () -> QualityThresholds.parse("Yaw=10"));
+    }
+
+    @Test
+    void containerShouldFindEveryCropByImageAndFace(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("crops.bin");
+        // Small chunks, so that the fixtures' crops spread over several
+        CropPipeline.Summary summary = pipeline.window(2).run(FIXTURES, file, 64 * 1024);
+        assertEquals(0, summary.failed);
+        assertEquals(summary.detections, summary.accepted);
+        assertTrue(summary.detections >= 5 + 6, "severalFaces.jpg and one face in each other fixture: " + summary);
+
+        List<Crop> expected = pipeline.crops(SEVERAL_FACES, Files.readAllBytes(PathsConfig.SEVERAL_FACES_IMAGE_PATH));
+        try (CropContainer container = CropContainer.open(file)) {
+            assertEquals(summary.accepted, container.size());
+            for (Crop crop : expected) {
+                int id = container.find(SEVERAL_FACES, crop.face);
+                assertTrue(id >= 0, crop.toString());
+                CropContainer.Entry entry = container.entry(id);
+                assertEquals(SEVERAL_FACES, entry.source);
+                assertEquals(crop.face, entry.face);
+                assertArrayEquals(crop.roi, entry.roi);
+                assertEquals(crop.width, entry.width);
+                assertArrayEquals(crop.image, container.bytes(id), "Stored as the service encoded it");
+                assertEquals(entry.height, ImageIO.read(new ByteArrayInputStream(container.bytes(id))).getHeight());
+            }
+            assertEquals(-1, container.find(SEVERAL_FACES, 5));
+            assertEquals(-1, container.find("missing.jpg", 0));
+            for (int id = 0; id < container.size(); id++) {
+                CropContainer.Entry entry = container.entry(id);
+                assertEquals(id, container.find(entry.source, entry.face), entry.toString());
+                assertEquals(entry.length, container.crop(id).remaining());
+            }
+        }
+
+        CropPipeline.Summary strict = pipeline.thresholds(QualityThresholds.none().minScore(0.75f)).run(FIXTURES, file, 64 * 1024);
+        assertTrue(strict.rejected > 0 && strict.accepted > 0, strict.toString());
+        try (CropContainer container = CropContainer.open(file)) {
+            assertEquals(strict.accepted, container.size(), "A new run replaces the file");
+        }
+        assertFalse(Files.exists(dir.resolve("crops.bin.tmp")));
+
+        assertThrows(IOException.class, () -> pipeline.run(dir.resolve("missing"), file, 64 * 1024));
+        try (CropContainer container = CropContainer.open(file)) {
+            assertEquals(strict.accepted, container.size(), "A failed run leaves the file as it was");
+        }
+        assertFalse(Files.exists(dir.resolve("crops.bin.tmp")));
+    }
+
+    @Test
+    void writerShouldRefuseWhatTheContainerCannotHold(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("crops.bin");
+        Crop crop = pipeline.crops(SEVERAL_FACES, Files.readAllBytes(PathsConfig.SEVERAL_FACES_IMAGE_PATH)).get(0);
+        try (CropContainer.Writer writer = CropContainer.create(file, crop.image.length)) {
+            assertEquals(0, writer.add(crop));
+            assertThrows(IllegalArgumentException.class, () -> writer.add(crop), "Same image and face twice");
+        }
+        try (CropContainer.Writer writer = CropContainer.create(file, crop.image.length - 1)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.add(crop), "Larger than a chunk");
+        }
+        try (CropContainer container = CropContainer.open(file)) {
+            assertEquals(0, container.size());
+            assertEquals(-1, container.find(SEVERAL_FACES, 0));
+        }
+        try (CropContainer.Writer writer = CropContainer.create(file, crop.image.length)) {
+            writer.add(crop);
+            writer.abort();
+            assertThrows(IllegalStateException.class, () -> writer.add(crop));
+        }
+        try (CropContainer container = CropContainer.open(file)) {
+            assertEquals(0, container.size(), "An aborted writer leaves the file as it was");
+        }
+        assertFalse(Files.exists(dir.resolve("crops.bin.tmp")));
+
+        Files.write(dir.resolve("other.bin"), Arrays.copyOf("HNSW".getBytes(), 64));
+        assertThrows(UncheckedIOException.class, () -> CropContainer.open(dir.resolve("other.bin")));
+    }
+}
@@ -0,0 +1,112 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.cache.DetectCache;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+@ExtendWith(ReportPortalExtension.class)
+public class DetectCacheTests {
+    private final AtomicInteger detectCalls = new AtomicInteger();
+    private FaceSdk countingFaceSdk;
+
+    @BeforeEach
+    void setUp() {
+        OkHttpClient httpClient = TransportSettings.fromSystemProperties().newHttpClient().newBuilder()
+                .addInterceptor(chain -> {
+                    if (chain.request().url().encodedPath().endsWith("/api/detect")) {
+                        detectCalls.incrementAndGet();
+                    }
+                    return chain.proceed(chain.request());
+                })
+                .build();
+        countingFaceSdk = TransportSettings.newFaceSdk(PathsConfig.API_BASE_PATH, httpClient);
+    }
+
+    private static ProcessParam qualityParams() {
+        ProcessParam processParam = new ProcessParam();
+        processParam.setScenario(FaceQualityScenarios.QUALITY_FULL);
+        OutputImageParams outputImageParams = new OutputImageParams();
+        outputImageParams.setBackgroundColor(Arrays.asList(128, 128, 128));
+        processParam.setOutputImageParams(outputImageParams);
+        return processParam;
+    }
+
+    private static DetectRequest qualityRequest() {
+        DetectRequest request = ScenarioRequests.detect(PathsConfig.FACE1_PATH, null, null);
+        request.setProcessParam(qualityParams());
+        return request;
+    }
+
+    @Test
+    void secondIdenticalDetectShouldNotCallTheService() {
+        DetectCache cache = new DetectCache(countingFaceSdk, 100, Duration.ofMinutes(10));
+
+        DetectResponse first = cache.detect(qualityRequest());
+        // Built again from scratch: equal content must hit, not just the same object
+        DetectResponse second = cache.detect(qualityRequest());
+
+        assertEquals(1, detectCalls.get(), "The second identical detect went to the service");
+        assertSame(first, second, "Expected the cached response");
+        assertEquals(FaceSDKResultCode.FACER_OK, second.getCode(), "Unexpected response code");
+        DetectCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits, "Unexpected hit count");
+        assertEquals(1, stats.misses, "Unexpected miss count");
+    }
+
+    @Test
+    void differentImageOrParamsShouldMiss() {
+        DetectCache cache = new DetectCache(countingFaceSdk, 100, Duration.ofMinutes(10));
+
+        cache.detect(qualityRequest());
+        cache.detect(ScenarioRequests.detect(PathsConfig.FACE1_PATH, FaceQualityScenarios.CROP_ALL_FACES, false));
+        DetectRequest otherImage = ScenarioRequests.detect(PathsConfig.FACE2_PATH, null, null);
+        otherImage.setProcessParam(qualityParams());
+        cache.detect(otherImage);
+
+        assertEquals(3, detectCalls.get(), "Each distinct request should call the service once");
+        assertEquals(0, cache.stats().hits, "No request should have hit");
+        assertEquals(3, cache.stats().size, "Expected one entry per distinct request");
+    }
+
+    @Test
+    void shouldEvictBeyondMaxEntries() {
+        DetectCache cache = new DetectCache(countingFaceSdk, 2, Duration.ofMinutes(10));
+
+        cache.detect(ScenarioRequests.detect(PathsConfig.FACE1_PATH, null, null));
+        cache.detect(ScenarioRequests.detect(PathsConfig.FACE2_PATH, null, null));
+        cache.detect(ScenarioRequests.detect(PathsConfig.FACE3_PATH, null, null));
+
+        DetectCache.Stats stats = cache.stats();
+        assertTrue(stats.evictions >= 1, "Expected an eviction, got " + stats);
+        assertTrue(stats.size <= 2, "Cache grew past its bound: " + stats);
+    }
+
+    @Test
+    void shouldExpireAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        DetectCache cache = new DetectCache(countingFaceSdk, 100, Duration.ofSeconds(30), now::get);
+
+        cache.detect(qualityRequest());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        cache.detect(qualityRequest());
+        assertEquals(1, detectCalls.get(), "Entry expired before its TTL");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cache.detect(qualityRequest());
+        assertEquals(2, detectCalls.get(), "Expired entry was still served");
+    }
+}
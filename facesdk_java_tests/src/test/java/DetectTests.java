@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Objects;
 
 import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
 import com.regula.facesdk.webclient.gen.model.*;
 
 @ExtendWith(ReportPortalExtension.class)
@@ -55,12 +56,7 @@ public class DetectTests {
 
     @Test
     void testCropAllFacesScenario() {
-        DetectRequest request = new DetectRequest();
-        request.setImage(sevFacesB64);
-        ProcessParam processParam = new ProcessParam();
-        processParam.setScenario(FaceQualityScenarios.CROP_ALL_FACES);
-        processParam.setOnlyCentralFace(false);
-        request.setProcessParam(processParam);
+        DetectRequest request = ScenarioRequests.detect(PathsConfig.SEVERAL_FACES_IMAGE_PATH, FaceQualityScenarios.CROP_ALL_FACES, false);
         DetectResponse response = PathsConfig.faceSdk.matchingApi.detect(request);
         basicAssertions(response);
         assertEquals(5, Objects.requireNonNull(response.getResults()).getDetections().size(), "Expected 5 detections");
@@ -68,11 +64,7 @@ public class DetectTests {
 
     @Test
     void testOnlyCentralFace() {
-        DetectRequest request = new DetectRequest();
-        request.setImage(sevFacesB64);
-        ProcessParam processParam = new ProcessParam();
-        processParam.setOnlyCentralFace(true);
-        request.setProcessParam(processParam);
+        DetectRequest request = ScenarioRequests.detect(PathsConfig.SEVERAL_FACES_IMAGE_PATH, null, true);
         DetectResponse response = PathsConfig.faceSdk.matchingApi.detect(request);
         basicAssertions(response);
         assertEquals(1, Objects.requireNonNull(response.getResults()).getDetections().size(), "Expected 1 detection");
@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.groups.GroupReconciler;
+import com.regula.facesdk.tests.groups.UuidSet;
+import com.regula.facesdk.tests.paging.Pages;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class GroupReconcileTests {
+    private final Tenant tenant = new Tenant();
+    private final List<UUID> createdGroups = new ArrayList<>();
+    private final List<UUID> createdPersons = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (UUID personId : createdPersons) {
+            PathsConfig.faceSdk.personApi.deletePerson(personId);
+        }
+        for (UUID groupId : createdGroups) {
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        }
+    }
+
+    private UUID createGroup(String name) {
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName(tenant.name(name));
+        UUID groupId = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate).getId();
+        createdGroups.add(groupId);
+        return groupId;
+    }
+
+    private UUID createPerson(String name, List<UUID> groups) {
+        PersonFields personFields = new PersonFields();
+        personFields.setName(name);
+        personFields.setGroups(groups);
+        UUID personId = PathsConfig.faceSdk.personApi.createPerson(personFields).getId();
+        createdPersons.add(personId);
+        return personId;
+    }
+
+    private static List<UUID> members(UUID groupId) {
+        try (Stream<Person> persons = Pages.personsInGroup(PathsConfig.faceSdk, groupId, 1000)) {
+            return persons.map(Person::getId).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void uuidSetShouldBehaveLikeASet() {
+        UuidSet set = new UuidSet(4);
+        Set<UUID> reference = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            UUID id = UUID.randomUUID();
+            assertTrue(set.add(id), "New id reported as present");
+            reference.add(id);
+        }
+        for (UUID id : reference) {
+            assertFalse(set.add(id), "Duplicate id added twice");
+            assertTrue(set.contains(id), "Added id not found");
+        }
+        assertFalse(set.contains(UUID.randomUUID()), "Unknown id found");
+        assertTrue(set.add(new UUID(0, 0)), "Nil UUID not added");
+        assertTrue(set.contains(new UUID(0, 0)), "Nil UUID not found");
+        assertEquals(reference.size() + 1, set.size(), "Unexpected size");
+
+        Set<UUID> visited = new HashSet<>();
+        set.forEach((slot, id) -> {
+            assertEquals(slot, set.slotOf(id), "Slot does not match the id");
+            visited.add(id);
+        });
+        reference.add(new UUID(0, 0));
+        assertEquals(reference, visited, "forEach did not visit every id exactly");
+    }
+
+    @Test
+    void shouldAddAndRemoveMembersInChunks() {
+        UUID groupId = createGroup("reconcile");
+        List<UUID> persons = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            persons.add(createPerson("Person " + i, i < 3 ? List.of(groupId) : List.of()));
+        }
+        // Members 0..2; desired 1..4: keep 1 and 2, add 3 and 4, remove 0
+        UuidSet desired = UuidSet.of(persons.subList(1, 5));
+
+        GroupReconciler.Result plan = new GroupReconciler(PathsConfig.faceSdk).dryRun(true).reconcile(groupId, desired);
+        assertEquals(0, plan.calls, "Dry run must not send updates");
+        assertEquals(3, members(groupId).size(), "Dry run changed the group");
+
+        GroupReconciler.Result result = new GroupReconciler(PathsConfig.faceSdk).chunkSize(1).pageSize(2).reconcile(groupId, desired);
+        assertEquals(2, result.added, "Unexpected number of added persons");
+        assertEquals(1, result.removed, "Unexpected number of removed persons");
+        assertEquals(2, result.unchanged, "Unexpected number of kept persons");
+        assertEquals(2, result.calls, "Adds and removes should share calls");
+        assertEquals(new HashSet<>(persons.subList(1, 5)), new HashSet<>(members(groupId)), "Group membership not reconciled");
+
+        GroupReconciler.Result again = new GroupReconciler(PathsConfig.faceSdk).reconcile(groupId, desired);
+        assertEquals(0, again.calls, "A reconciled group should need no updates");
+    }
+
+    @Test
+    void shouldReconcileLargeGroupInFewCalls() {
+        assumeTrue(StandInServer.isEnabled(), "Seeding tens of thousands of persons needs the stand-in");
+        UUID groupId = createGroup("reconcile-large");
+        UUID poolId = createGroup("reconcile-pool");
+        StandInServer.shared().seedPersons(groupId, 20_000, "member-");
+        StandInServer.shared().seedPersons(poolId, 3_000, "newcomer-");
+
+        // Keep every other current member and bring in everyone from the pool
+        List<UUID> current = members(groupId);
+        UuidSet desired = new UuidSet(current.size() / 2 + 3_000);
+        for (int i = 0; i < current.size(); i += 2) {
+            desired.add(current.get(i));
+        }
+        members(poolId).forEach(desired::add);
+
+        GroupReconciler.Result result = new GroupReconciler(PathsConfig.faceSdk).chunkSize(5_000).reconcile(groupId, desired);
+        assertEquals(3_000, result.added, "Unexpected number of added persons");
+        assertEquals(10_000, result.removed, "Unexpected number of removed persons");
+        assertEquals(10_000, result.unchanged, "Unexpected number of kept persons");
+        assertEquals(2, result.calls, "Expected 10000 removals in two chunks of 5000");
+
+        List<UUID> after = members(groupId);
+        assertEquals(desired.size(), after.size(), "Unexpected group size after reconcile");
+        for (UUID id : after) {
+            assertTrue(desired.contains(id), "Unexpected member " + id);
+        }
+    }
+}
@@ -3,23 +3,28 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import com.regula.facesdk.tests.paging.Pages;
 import com.regula.facesdk.webclient.ApiException;
 import com.regula.facesdk.webclient.gen.model.*;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class GroupTests {
 
     private UUID groupId;
     private Group groupResponse;
-    private final String testGroupName = "test";
+    private final Tenant tenant = new Tenant();
+    private final String testGroupName = tenant.name("test");
     private final String nameA = "Person A";
     Map<String, Object> baseMetadata = new HashMap<>() {{
         put("description", "This is a test group");
@@ -29,7 +34,7 @@ class GroupTests {
     void setUp() {
         GroupToCreate groupToCreate = new GroupToCreate();
         groupToCreate.setName(testGroupName);
-        groupToCreate.setMetadata(baseMetadata);
+        groupToCreate.setMetadata(tenant.metadata(baseMetadata));
         groupResponse = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate);
         Assertions.assertNotNull(groupResponse.getId(), "No id field in the returned group");
         groupId = groupResponse.getId();
@@ -75,20 +80,26 @@ class GroupTests {
             for (int i = 1; i < 3; i++) {
                 GroupToCreate additionalGroupToCreate = new GroupToCreate();
                 additionalGroupToCreate.setName(testGroupName);
-                additionalGroupToCreate.setMetadata(baseMetadata);
+                additionalGroupToCreate.setMetadata(tenant.metadata(baseMetadata));
                 Group additionalGroup = PathsConfig.faceSdk.groupApi.createGroup(additionalGroupToCreate);
                 UUID additionalGroupId = additionalGroup.getId();
                 Assertions.assertNotNull(additionalGroupId, "No id field in the returned group");
                 createdGroupIds.add(additionalGroupId);
             }
 
-            // Getting all groups for a specific page
+            // Getting all groups for a specific page; other tests may be writing at the same time,
+            // so only our own three groups are known to exist
             GroupPage response = PathsConfig.faceSdk.groupApi.getAllGroups(2, 2);
 
             // Assertions
             Assertions.assertNotNull(response, "No response received");
-            Assertions.assertEquals(2, response.getItems().size(), "Expected 2 items on page, but got different items count");
             Assertions.assertEquals(2, response.getPage(), "Expected page to be 2, but got different page number");
+            Assertions.assertTrue(Objects.requireNonNull(response.getItems()).size() <= 2,
+                    "Expected at most 2 items on page, but got " + response.getItems().size());
+            // Any groups may be on page 2; whether ours are there too is checked over all pages below
+            Assertions.assertFalse(response.getItems().isEmpty(), "Expected page 2 of size 2 not to be empty with our three groups alone");
+            Assertions.assertEquals(new HashSet<>(createdGroupIds), findTenantGroupIds(2, createdGroupIds.size()),
+                    "Paging through all groups did not return exactly this test's groups");
         } catch (ApiException e) {
             System.err.println("ApiException occurred: " + e.getResponseBody());
             throw e;
@@ -155,10 +166,12 @@ class GroupTests {
     @Test
     void shouldGetAGroup() {
         try {
-            // Get all groups and take the first group_id that appears
+            // Get all groups and take the first group_id of this test that appears
             GroupPage groupsResponse = PathsConfig.faceSdk.groupApi.getAllGroups(1, 1);
             Assertions.assertTrue(Objects.requireNonNull(groupsResponse.getItems()).size() > 0, "No groups found");
-            UUID firstGroupId = groupsResponse.getItems().get(0).getId();
+            Set<UUID> tenantGroupIds = findTenantGroupIds(10, 1);
+            Assertions.assertFalse(tenantGroupIds.isEmpty(), "No groups of this test found");
+            UUID firstGroupId = tenantGroupIds.iterator().next();
 
             // Using obtained id to get chosen group
             Group groupResponse = PathsConfig.faceSdk.groupApi.getGroup(firstGroupId);
@@ -174,7 +187,7 @@ class GroupTests {
     void shouldUpdateAGroup() {
         try {
             // Updating group with a new name and metadata
-            String newName = "updated_test_group";
+            String newName = tenant.name("updated_test_group");
             Map<String, Object> updatedMetadata = new HashMap<>() {{
                 put("description", "updated meta");
             }};
@@ -253,6 +266,20 @@ class GroupTests {
         }
     }
 
+    /**
+     * Pages through every group and keeps the ones of this test. Concurrent deletes shift
+     * later items to earlier pages, so the scan is repeated until all expected groups are seen.
+     */
+    private Set<UUID> findTenantGroupIds(int pageSize, int expected) {
+        Set<UUID> found = new HashSet<>();
+        for (int pass = 0; pass < 3 && found.size() < expected; pass++) {
+            try (Stream<Group> groups = Pages.groups(PathsConfig.faceSdk, pageSize)) {
+                groups.filter(tenant::owns).forEach(group -> found.add(group.getId()));
+            }
+        }
+        return found;
+    }
+
     @Test
     void ShouldCreateGroupWithoutMetadata() {
         GroupToCreate groupToCreate = new GroupToCreate();
@@ -0,0 +1,182 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.index.DescriptorExport;
+import com.regula.facesdk.tests.index.FlatIndex;
+import com.regula.facesdk.tests.index.HnswIndex;
+import com.regula.facesdk.tests.index.IndexedPersons;
+import com.regula.facesdk.tests.index.SyntheticGallery;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.Descriptors;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class HnswIndexTests {
+    private static final int DIMENSION = 64;
+    private final Tenant tenant = new Tenant();
+
+    @Test
+    void indexShouldFollowEnrollmentAndDeletes() {
+        assumeTrue(StandInServer.isEnabled(), "Descriptor export is a stand-in endpoint");
+        IndexedPersons persons = new IndexedPersons(PathsConfig.faceSdk, HnswIndex.builder(Descriptors.DIMENSION).build());
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName(tenant.name("hnsw"));
+        UUID groupId = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate).getId();
+        List<UUID> personIds = new ArrayList<>();
+        try {
+            for (Path image : List.of(PathsConfig.FACE3_PATH, PathsConfig.PRINTED_DOCUMENT_PATH)) {
+                PersonFields personFields = new PersonFields();
+                personFields.setName("Person " + personIds.size());
+                personFields.setGroups(Collections.singletonList(groupId));
+                UUID personId = PathsConfig.faceSdk.personApi.createPerson(personFields).getId();
+                personIds.add(personId);
+                persons.addImageToPerson(personId, ScenarioRequests.addImage(image));
+            }
+            persons.addImageToPerson(personIds.get(1), ScenarioRequests.addImage(PathsConfig.SEVERAL_FACES_IMAGE_PATH));
+            assertEquals(2, persons.index().persons(), "Both persons should be indexed");
+            assertEquals(3, persons.index().size(), "Every image should be indexed once");
+
+            float[] probe = new DescriptorExport(PathsConfig.faceSdk).probe(FixtureRegistry.shared().bytes(PathsConfig.FACE1_PATH));
+            SearchRequest request = ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, 10, 0.8f);
+            List<SearchPerson> expected = PathsConfig.faceSdk.searchApi.search(request).getPersons();
+            List<SearchPerson> actual = persons.index().search(probe, request).getPersons();
+            assertEquals(1, expected.size(), "Only the FACE3 person should pass 0.8 on the server");
+            assertEquals(expected.size(), actual.size(), "Same number of persons");
+            assertEquals(expected.get(0).getId(), actual.get(0).getId(), "Same person");
+            assertEquals(expected.get(0).getImages().get(0).getSimilarity(), actual.get(0).getImages().get(0).getSimilarity(), 1e-5, "Same similarity");
+
+            persons.deletePerson(personIds.remove(0));
+            assertEquals(PathsConfig.faceSdk.searchApi.search(request).getPersons().size(), persons.index().search(probe, request).getPersons().size(),
+                    "A deleted person should be gone from both");
+            assertTrue(persons.index().search(probe, request).getPersons().isEmpty(), "Nobody left above 0.8");
+            assertEquals(1, persons.index().persons(), "One person left");
+        } finally {
+            for (UUID personId : personIds) {
+                persons.deletePerson(personId);
+            }
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        }
+    }
+
+    @Test
+    void recallAt10ShouldBeCloseToTheExactScan() {
+        int size = 4000;
+        SyntheticGallery gallery = new SyntheticGallery(DIMENSION, 32, 7);
+        HnswIndex hnsw = HnswIndex.builder(DIMENSION).efConstruction(100).build();
+        for (int person = 0; person < size; person++) {
+            hnsw.add(SyntheticGallery.personId(person), null, person, gallery.descriptor(person));
+        }
+        Set<UUID> removed = new HashSet<>();
+        for (int person = 0; person < size; person += 7) {
+            assertTrue(hnsw.deletePerson(SyntheticGallery.personId(person)), "Indexed persons can be deleted");
+            removed.add(SyntheticGallery.personId(person));
+        }
+        assertFalse(hnsw.deletePerson(SyntheticGallery.personId(0)), "A person is deleted once");
+        FlatIndex.Builder exact = FlatIndex.builder(DIMENSION);
+        for (int person = 0; person < size; person++) {
+            if (!removed.contains(SyntheticGallery.personId(person))) {
+                exact.add(SyntheticGallery.personId(person), null, person, gallery.descriptor(person));
+            }
+        }
+        FlatIndex flat = exact.build();
+        assertEquals(flat.size(), hnsw.size(), "Deleted persons' images should not count");
+
+        double found = 0;
+        double relevant = 0;
+        for (int query = 0; query < 100; query++) {
+            float[] probe = gallery.probe(query * 37 % size, query);
+            Set<UUID> truth = ids(flat.search(probe, 10, 0.8f));
+            Set<UUID> approximate = ids(hnsw.search(probe, 10, 0.8f));
+            assertTrue(approximate.size() <= 10, "At most the limit");
+            for (UUID id : approximate) {
+                assertFalse(removed.contains(id), "Deleted persons must not be found");
+            }
+            approximate.retainAll(truth);
+            found += approximate.size();
+            relevant += truth.size();
+        }
+        assertTrue(relevant > 300, "The queries should have persons above the threshold, had " + relevant);
+        assertTrue(found / relevant >= 0.95, "recall@10 should be at least 0.95, was " + found / relevant);
+    }
+
+    @Test
+    void savedIndexShouldMapBackAndTakeInserts(@TempDir Path dir) {
+        SyntheticGallery gallery = new SyntheticGallery(DIMENSION, 16, 11);
+        HnswIndex index = HnswIndex.builder(DIMENSION).efConstruction(64).build();
+        for (int person = 0; person < 1500; person++) {
+            index.add(SyntheticGallery.personId(person), "P" + person, person, gallery.descriptor(person));
+            assertFalse(index.add(SyntheticGallery.personId(person), "P" + person, person, gallery.descriptor(person)),
+                    "The same image is indexed once");
+        }
+        index.deletePerson(SyntheticGallery.personId(3));
+        Path file = dir.resolve("gallery.hnsw");
+        index.save(file);
+
+        HnswIndex reopened = HnswIndex.open(file);
+        try {
+            assertEquals(index.persons(), reopened.persons(), "Same persons after reopening");
+            assertEquals(index.size(), reopened.size(), "Same images after reopening");
+            for (int query = 0; query < 20; query++) {
+                float[] probe = gallery.probe(query * 53, query);
+                assertSameResult(index.search(probe, 10, 0.5f), reopened.search(probe, 10, 0.5f));
+            }
+
+            // Inserts after reopening go after the mapped rows, and saving over the mapped file unmaps it first
+            for (int person = 1500; person < 1600; person++) {
+                index.add(SyntheticGallery.personId(person), "P" + person, person, gallery.descriptor(person));
+                reopened.add(SyntheticGallery.personId(person), "P" + person, person, gallery.descriptor(person));
+            }
+            reopened.save(file);
+            HnswIndex again = HnswIndex.open(file);
+            try {
+                float[] probe = gallery.probe(1550, 99);
+                SearchResult expected = index.search(probe, 10, 0.5f);
+                assertEquals(SyntheticGallery.personId(1550).getLeastSignificantBits() / 16,
+                        expected.getPersons().get(0).getId().getLeastSignificantBits() / 16, "The probe's cluster should be found");
+                assertSameResult(expected, reopened.search(probe, 10, 0.5f));
+                assertSameResult(expected, again.search(probe, 10, 0.5f));
+                assertTrue(ids(again.search(gallery.probe(3, 5), 16, 0f)).stream().noneMatch(SyntheticGallery.personId(3)::equals),
+                        "A deleted person stays deleted");
+            } finally {
+                again.unmap();
+            }
+        } finally {
+            // Windows deletes neither file while a mapping of it is alive
+            reopened.unmap();
+        }
+    }
+
+    private static void assertSameResult(SearchResult expected, SearchResult actual) {
+        assertEquals(expected.getPersons().size(), actual.getPersons().size(), "Same number of persons");
+        for (int i = 0; i < expected.getPersons().size(); i++) {
+            SearchPerson a = expected.getPersons().get(i);
+            SearchPerson b = actual.getPersons().get(i);
+            assertEquals(a.getId(), b.getId(), "Same person at rank " + i);
+            assertEquals(a.getName(), b.getName(), "Same name at rank " + i);
+            assertEquals(a.getImages().get(0).getSimilarity(), b.getImages().get(0).getSimilarity(), 1e-6, "Same similarity at rank " + i);
+        }
+    }
+
+    private static Set<UUID> ids(SearchResult result) {
+        Set<UUID> ids = new HashSet<>();
+        for (SearchPerson person : result.getPersons()) {
+            ids.add(person.getId());
+        }
+        return ids;
+    }
+}
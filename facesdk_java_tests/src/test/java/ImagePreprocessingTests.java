@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.preprocess.ImagePreprocessor;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.webclient.gen.model.*;
+
+/**
+ * Against a live service these check that downscaled images detect and match like the
+ * originals. Against the stand-in (USE_STANDIN) only the request size part means anything:
+ * the stand-in recognizes a downscaled fixture by its thumbnail and answers it as the
+ * original, with proportional face boxes, so the with/without comparisons cannot fail.
+ */
+@ExtendWith(ReportPortalExtension.class)
+public class ImagePreprocessingTests {
+    private static final float SIMILARITY_TOLERANCE = 0.05f;
+
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor().maxDimension(640).quality(0.85f);
+
+    private static int detections(DetectRequest request) {
+        DetectResponse response = PathsConfig.faceSdk.matchingApi.detect(request);
+        assertEquals(FaceSDKResultCode.FACER_OK, response.getCode(), "Unexpected response code");
+        return Objects.requireNonNull(response.getResults()).getDetections().size();
+    }
+
+    private static float similarity(MatchRequest request) {
+        MatchResponse response = PathsConfig.faceSdk.matchingApi.match(request);
+        assertEquals(FaceSDKResultCode.FACER_OK, response.getCode(), "Unexpected response code");
+        assertFalse(response.getResults().isEmpty(), "Expected a match result");
+        return response.getResults().get(0).getSimilarity();
+    }
+
+    @Test
+    void downscaledImagesShouldDetectTheSameFaces() {
+        for (Path path : new Path[]{PathsConfig.SEVERAL_FACES_IMAGE_PATH, PathsConfig.DOCUMENT_WITH_LIVE_PATH, PathsConfig.FACE1_PATH}) {
+            int original = detections(ScenarioRequests.detect(path, null, null));
+            DetectRequest request = preprocessor.apply(ScenarioRequests.detect(path, null, null));
+            assertTrue(request.getImage().length < FixtureRegistry.shared().bytes(path).length,
+                    path.getFileName() + " should be smaller after preprocessing");
+            // Equal by construction against the stand-in, see the class comment
+            assertEquals(original, detections(request), "Detections in " + path.getFileName());
+        }
+    }
+
+    @Test
+    void downscaledImagesShouldMatchWithSimilarScores() {
+        Path[][] pairs = {
+                {PathsConfig.FACE1_PATH, PathsConfig.FACE2_PATH},
+                {PathsConfig.LIVE_PHOTO_PATH, PathsConfig.PRINTED_DOCUMENT_PATH},
+        };
+        for (Path[] pair : pairs) {
+            float original = similarity(ScenarioRequests.match(3, pair[0], 1, pair[1]));
+            MatchRequest request = preprocessor.apply(ScenarioRequests.match(3, pair[0], 1, pair[1]));
+            assertTrue(request.getImages().get(0).getData().length < FixtureRegistry.shared().bytes(pair[0]).length,
+                    pair[0].getFileName() + " should be smaller after preprocessing");
+            // Equal by construction against the stand-in, see the class comment
+            float preprocessed = similarity(request);
+            assertEquals(original, preprocessed, SIMILARITY_TOLERANCE,
+                    "Similarity of " + pair[0].getFileName() + " and " + pair[1].getFileName());
+        }
+    }
+
+    @Test
+    void smallJpegsShouldPassThroughAndOthersBecomeJpeg() {
+        ImagePreprocessor wide = new ImagePreprocessor().maxDimension(2000);
+        byte[] jpeg = FixtureRegistry.shared().bytes(PathsConfig.FACE1_PATH);
+        assertSame(jpeg, wide.process(jpeg), "A JPEG within bounds should be sent as it is");
+        assertEquals(0, wide.reencoded(), "Nothing should have been re-encoded");
+
+        AddImageToPersonRequestImage image = wide.apply(ScenarioRequests.image(PathsConfig.LIVE_PHOTO_PATH));
+        assertEquals("image/jpeg", image.getContentType(), "A PNG should be converted to JPEG");
+        assertEquals(1, wide.reencoded(), "The PNG should have been re-encoded");
+        assertTrue(wide.bytesOut() < wide.bytesIn(), "Converting the PNG should save bytes");
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.lazy.ImageRef;
+import com.regula.facesdk.tests.lazy.LazyDetectResponse;
+import com.regula.facesdk.tests.lazy.LazyDetection;
+import com.regula.facesdk.tests.lazy.LazyResponseClient;
+import com.regula.facesdk.tests.lazy.LazySearchResult;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class LazyResponseTests {
+    private final Tenant tenant = new Tenant();
+    private final LazyResponseClient lazyClient = new LazyResponseClient(PathsConfig.faceSdk);
+    private UUID groupId;
+    private UUID personId;
+
+    @BeforeEach
+    void setUp() {
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName(tenant.name("lazy"));
+        groupId = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate).getId();
+        PersonFields personFields = new PersonFields();
+        personFields.setName("Person A");
+        personFields.setGroups(Collections.singletonList(groupId));
+        personId = PathsConfig.faceSdk.personApi.createPerson(personFields).getId();
+        PathsConfig.faceSdk.personApi.addImageToPerson(personId, ScenarioRequests.addImage(PathsConfig.FACE3_PATH));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (personId != null) {
+            PathsConfig.faceSdk.personApi.deletePerson(personId);
+        }
+        if (groupId != null) {
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        }
+    }
+
+    @Test
+    void lazyDetectShouldAgreeWithTheGeneratedModel() {
+        DetectRequest request = ScenarioRequests.detect(PathsConfig.SEVERAL_FACES_IMAGE_PATH, FaceQualityScenarios.CROP_ALL_FACES, false);
+        DetectResponse expected = PathsConfig.faceSdk.matchingApi.detect(request);
+        LazyDetectResponse actual = lazyClient.detect(request);
+
+        assertEquals(FaceSDKResultCode.FACER_OK, actual.code(), "Unexpected response code");
+        List<Detection> expectedDetections = Objects.requireNonNull(expected.getResults()).getDetections();
+        assertEquals(5, actual.detections().size(), "Expected 5 detections");
+        for (int i = 0; i < expectedDetections.size(); i++) {
+            LazyDetection detection = actual.detections().get(i);
+            assertEquals(expectedDetections.get(i).getRoi(), detection.roi(), "Box of face " + i);
+            ImageRef crop = detection.crop();
+            assertNotNull(crop, "Crop of face " + i + " should be referenced");
+            assertArrayEquals(expectedDetections.get(i).getCrop(), crop.decode(), "Crop of face " + i);
+        }
+    }
+
+    @Test
+    void lazySearchShouldReferenceTheDetectionCrop() {
+        SearchRequest request = ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, 10, 0.8f);
+        OutputImageParams outputImageParams = new OutputImageParams();
+        Crop crop = new Crop();
+        crop.setType(FaceImageQualityAlignType.fromValue(0));
+        crop.setPadColor(Arrays.asList(0, 0, 0));
+        crop.setSize(Arrays.asList(300, 400));
+        outputImageParams.setCrop(crop);
+        request.setOutputImageParams(outputImageParams);
+
+        SearchPerson expected = PathsConfig.faceSdk.searchApi.search(request).getPersons().stream()
+                .filter(p -> personId.equals(p.getId())).findFirst().orElseThrow();
+        LazySearchResult.Person actual = lazyClient.search(request).persons().stream()
+                .filter(p -> personId.equals(p.id())).findFirst().orElseThrow();
+
+        assertEquals(expected.getName(), actual.name(), "Same person either way");
+        assertEquals(expected.getDetection().getRoi(), actual.detection().roi(), "Same probe box either way");
+        assertArrayEquals(expected.getDetection().getCrop(), actual.detection().crop().decode(), "Same crop either way");
+    }
+
+    @Test
+    void escapedBase64ShouldStillDecode() {
+        // Gson-style HTML-safe output escapes the padding, which the fast path cannot take as it is
+        byte[] body = "{\"code\":0,\"results\":{\"detections\":[{\"roi\":[1,2,3,4],\"crop\":\"AQI\\u003d\"}]}}"
+                .getBytes(StandardCharsets.UTF_8);
+        LazyDetection detection = LazyDetectResponse.parse(body).detections().get(0);
+        assertEquals(Arrays.asList(1, 2, 3, 4), detection.roi(), "Box should be read");
+        assertArrayEquals(new byte[]{1, 2}, detection.crop().decode(), "Escaped base64 should decode");
+    }
+}
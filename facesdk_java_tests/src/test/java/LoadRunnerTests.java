@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.load.LoadRunner;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import okhttp3.OkHttpClient;
+
+/** Short runs of the load generator against a stand-in of its own, so the latencies it is given are the only ones. */
+@ExtendWith(ReportPortalExtension.class)
+public class LoadRunnerTests {
+    private StandInServer server;
+    private OkHttpClient httpClient;
+    private FaceSdk faceSdk;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        faceSdk = TransportSettings.newFaceSdk(server.baseUrl(), httpClient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private LoadRunner run(double rate, long warmupSeconds, long durationSeconds, int maxInFlight) throws InterruptedException {
+        LoadRunner runner = new LoadRunner(faceSdk, "detect=1", rate, warmupSeconds, durationSeconds, maxInFlight);
+        runner.setUp();
+        try {
+            runner.run();
+        } finally {
+            runner.tearDown();
+        }
+        return runner;
+    }
+
+    /** 7 calls/s has no whole-nanosecond interval; truncating it once and multiplying fits a 15th call into 2 s. */
+    @Test
+    void shouldStartRateTimesDurationCalls() throws Exception {
+        LoadRunner runner = run(7, 0, 2, 10000);
+        assertEquals(14, runner.calls(), "Expected rate x duration calls");
+        assertEquals(0, runner.errors(), "Unexpected failed calls");
+        assertEquals(0, runner.dropped(), "Unexpected dropped calls");
+    }
+
+    @Test
+    void shouldNotMeasureWarmupCalls() throws Exception {
+        LoadRunner runner = run(7, 1, 1, 10000);
+        assertEquals(7, runner.calls(), "Expected only the calls scheduled after the warmup to be measured");
+    }
+
+    /** Each detect holds its slot past the end of the run, so every call after the first two is dropped. */
+    @Test
+    void shouldCountDroppedCallsAsFailures() throws Exception {
+        server.faults().latency("/api/detect", 1500, 1.0);
+        LoadRunner runner = run(10, 0, 1, 2);
+        assertEquals(8, runner.dropped(), "Expected the calls beyond the in-flight limit to be dropped");
+        assertEquals(10, runner.calls(), "Dropped calls should still count as calls");
+        assertEquals(8, runner.errors(), "Dropped calls should count as failed calls");
+        assertEquals(2, runner.peakInFlight(), "Expected the in-flight limit to be reached");
+    }
+}
@@ -0,0 +1,215 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.index.DescriptorExport;
+import com.regula.facesdk.tests.index.FlatIndex;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.Descriptors;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class LocalIndexTests {
+    private final Tenant tenant = new Tenant();
+    private final List<UUID> personIds = new ArrayList<>();
+    private UUID groupId;
+
+    @BeforeEach
+    void setUp() {
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName(tenant.name("index"));
+        groupId = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (UUID personId : personIds) {
+            PathsConfig.faceSdk.personApi.deletePerson(personId);
+        }
+        if (groupId != null) {
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        }
+    }
+
+    private void enroll(String name, Path... images) {
+        PersonFields personFields = new PersonFields();
+        personFields.setName(name);
+        personFields.setGroups(Collections.singletonList(groupId));
+        UUID personId = PathsConfig.faceSdk.personApi.createPerson(personFields).getId();
+        personIds.add(personId);
+        for (Path image : images) {
+            PathsConfig.faceSdk.personApi.addImageToPerson(personId, ScenarioRequests.addImage(image));
+        }
+    }
+
+    @Test
+    void localSearchShouldAgreeWithTheServer() {
+        assumeTrue(StandInServer.isEnabled(), "Descriptor export is a stand-in endpoint");
+        enroll("Person A", PathsConfig.FACE3_PATH);
+        enroll("Person B", PathsConfig.PRINTED_DOCUMENT_PATH, PathsConfig.SEVERAL_FACES_IMAGE_PATH);
+
+        DescriptorExport export = new DescriptorExport(PathsConfig.faceSdk).pageSize(1);
+        FlatIndex.Builder builder = FlatIndex.builder(Descriptors.DIMENSION);
+        assertEquals(3, export.exportGroup(groupId, builder::add), "Every enrolled image should be exported");
+        FlatIndex index = builder.build();
+        assertEquals(2, index.persons(), "Both persons should be indexed");
+        float[] probe = export.probe(FixtureRegistry.shared().bytes(PathsConfig.FACE1_PATH));
+
+        for (SearchRequest request : List.of(
+                ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, 10, 0.8f),
+                ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, 1, 0f),
+                ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, null, null))) {
+            List<SearchPerson> expected = PathsConfig.faceSdk.searchApi.search(request).getPersons();
+            SearchResult actual = index.search(probe, request);
+            assertEquals(FaceSDKResultCode.FACER_OK, actual.getCode(), "Unexpected response code");
+            assertEquals(expected.size(), actual.getPersons().size(), "Same number of persons");
+            for (int i = 0; i < expected.size(); i++) {
+                SearchPerson server = expected.get(i);
+                SearchPerson local = actual.getPersons().get(i);
+                assertEquals(server.getId(), local.getId(), "Same person at rank " + i);
+                assertEquals(server.getName(), local.getName(), "Same name at rank " + i);
+                assertEquals(server.getImages().size(), local.getImages().size(), "Same images at rank " + i);
+                for (int j = 0; j < server.getImages().size(); j++) {
+                    assertEquals(server.getImages().get(j).getId(), local.getImages().get(j).getId(), "Same image");
+                    assertEquals(server.getImages().get(j).getSimilarity(), local.getImages().get(j).getSimilarity(), 1e-5, "Same similarity");
+                    assertEquals(server.getImages().get(j).getDistance(), local.getImages().get(j).getDistance(), 1e-5, "Same distance");
+                }
+            }
+        }
+        SearchResult face3 = index.search(probe, 10, 0.8f);
+        assertEquals(1, face3.getPersons().size(), "Only the FACE3 person should pass 0.8");
+        assertEquals(personIds.get(0), face3.getPersons().get(0).getId(), "FACE1 should find the FACE3 person");
+    }
+
+    @Test
+    void parallelScanShouldMatchBruteForce() throws IOException {
+        int persons = 20_000;
+        int dimension = 100; // not a multiple of the vector width, so the tail loop runs too
+        Random random = new Random(17);
+        float[][][] vectors = new float[persons][][];
+        for (int p = 0; p < persons; p++) {
+            vectors[p] = new float[1 + random.nextInt(3)][dimension];
+            for (float[] vector : vectors[p]) {
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = (float) random.nextGaussian();
+                }
+            }
+        }
+        float[] probe = vectors[123][0].clone();
+        for (int i = 0; i < dimension; i++) {
+            probe[i] += 0.6f * (float) random.nextGaussian();
+        }
+
+        // Not a @TempDir: Windows cannot delete the files while mapped, and a FlatIndex stays mapped until collected
+        Path dir = Files.createTempDirectory("flat-index");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<FlatIndex> indexes = new ArrayList<>();
+            for (boolean vectorized : new boolean[]{true, false}) {
+                FlatIndex.Builder direct = FlatIndex.builder(dimension).vectorized(vectorized).parallelism(4).pool(pool);
+                FlatIndex.Builder mapped = FlatIndex.builder(dimension, dir.resolve("index-" + vectorized)).vectorized(vectorized).parallelism(4).pool(pool);
+                for (int p = 0; p < persons; p++) {
+                    for (int j = 0; j < vectors[p].length; j++) {
+                        direct.add(id(p), "P" + p, j, vectors[p][j]);
+                        mapped.add(id(p), "P" + p, j, vectors[p][j]);
+                    }
+                }
+                indexes.add(direct.build());
+                indexes.add(mapped.build());
+            }
+
+            for (float threshold : new float[]{0f, 0.05f, 0.5f}) {
+                for (int limit : new int[]{1, 10, 250}) {
+                    List<float[]> expected = bruteForce(vectors, probe, limit, threshold);
+                    for (FlatIndex index : indexes) {
+                        List<SearchPerson> actual = index.search(probe, limit, threshold).getPersons();
+                        String where = " for limit " + limit + ", threshold " + threshold;
+                        assertEquals(expected.size(), actual.size(), "Persons" + where);
+                        assertEquals(id(123), actual.get(0).getId(), "The probe's own person should rank first" + where);
+                        for (int i = 0; i < expected.size(); i++) {
+                            // Float rounding may swap persons whose scores differ in the last bits, so ranks compare by score
+                            float best = 0;
+                            for (SearchPersonImage image : actual.get(i).getImages()) {
+                                assertTrue(image.getSimilarity() >= threshold, "Images below the threshold should be left out");
+                                best = Math.max(best, image.getSimilarity());
+                            }
+                            assertEquals(expected.get(i)[0], best, 1e-5, "Score at rank " + i + where);
+                        }
+                    }
+                }
+            }
+            assertTrue(indexes.get(0).search(probe, 0, 0f).getPersons().isEmpty(), "Limit 0 finds nobody");
+        } finally {
+            pool.shutdown();
+            // Deleted at exit in reverse order of registration: the files, then the directory
+            dir.toFile().deleteOnExit();
+            for (boolean vectorized : new boolean[]{true, false}) {
+                dir.resolve("index-" + vectorized).toFile().deleteOnExit();
+            }
+        }
+    }
+
+    @Test
+    void builderShouldRejectScatteredImagesOfAPerson() {
+        FlatIndex.Builder builder = FlatIndex.builder(2)
+                .add(id(1), "P1", 1, new float[]{1, 0})
+                .add(id(1), "P1", 2, new float[]{0, 1})
+                .add(id(2), "P2", 3, new float[]{1, 1});
+        assertThrows(IllegalArgumentException.class, () -> builder.add(id(1), "P1", 4, new float[]{1, 0}),
+                "A person's images must be consecutive");
+        assertThrows(IllegalArgumentException.class, () -> builder.add(id(3), "P3", 5, new float[]{1, 0, 0}),
+                "Descriptor length must match the index");
+        FlatIndex index = builder.build();
+        assertEquals(2, index.persons(), "Two persons");
+        assertEquals(3, index.size(), "Three descriptors");
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[]{1}, 10, 0f), "Probe length must match the index");
+    }
+
+    private static UUID id(int person) {
+        return new UUID(0, person);
+    }
+
+    /** Best similarity and index of the top persons, in the order the service ranks them. */
+    private static List<float[]> bruteForce(float[][][] vectors, float[] probe, int limit, float threshold) {
+        double norm = 0;
+        for (float x : probe) {
+            norm += x * x;
+        }
+        List<float[]> ranked = new ArrayList<>();
+        for (int p = 0; p < vectors.length; p++) {
+            float best = -1;
+            for (float[] vector : vectors[p]) {
+                double dot = 0;
+                double vectorNorm = 0;
+                for (int i = 0; i < vector.length; i++) {
+                    dot += vector[i] * probe[i];
+                    vectorNorm += vector[i] * vector[i];
+                }
+                best = Math.max(best, (float) Math.max(0, Math.min(1, dot / Math.sqrt(norm * vectorNorm))));
+            }
+            if (best >= threshold) {
+                ranked.add(new float[]{best, p});
+            }
+        }
+        ranked.sort(Comparator.comparingDouble((float[] r) -> -r[0]).thenComparingDouble(r -> r[1]));
+        return ranked.subList(0, Math.min(limit, ranked.size()));
+    }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.async.AsyncFaceSdk;
+import com.regula.facesdk.tests.matching.MatchMany;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class MatchManyTests {
+    private static final Path[] REFERENCE_PATHS = {
+            PathsConfig.FACE2_PATH, PathsConfig.FACE3_PATH, PathsConfig.PRINTED_DOCUMENT_PATH,
+            PathsConfig.FACE1_PATH, PathsConfig.LIVE_PHOTO_PATH,
+    };
+    private static final int[] REFERENCE_TYPES = {2, 1, 1, 3, 3};
+
+    private AsyncFaceSdk asyncFaceSdk;
+    private MatchImage probe;
+    private List<MatchImage> references;
+
+    @BeforeEach
+    void setUp() {
+        asyncFaceSdk = new AsyncFaceSdk(PathsConfig.faceSdk, 4);
+        probe = ScenarioRequests.matchImage(3, PathsConfig.FACE1_PATH);
+        references = new ArrayList<>();
+        for (int i = 0; i < REFERENCE_PATHS.length; i++) {
+            references.add(ScenarioRequests.matchImage(REFERENCE_TYPES[i], REFERENCE_PATHS[i]));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncFaceSdk.close();
+    }
+
+    /** Best similarity of the probe with one reference, from a plain two-image match. */
+    private static float pairwiseSimilarity(Path reference, int type) {
+        MatchResponse response = PathsConfig.faceSdk.matchingApi.match(
+                ScenarioRequests.match(3, PathsConfig.FACE1_PATH, type, reference));
+        assertEquals(FaceSDKResultCode.FACER_OK, response.getCode(), "Unexpected response code");
+        float best = Float.NEGATIVE_INFINITY;
+        for (MatchResult result : response.getResults()) {
+            if (!result.getFirstIndex().equals(result.getSecondIndex())) {
+                best = Math.max(best, result.getSimilarity());
+            }
+        }
+        return best;
+    }
+
+    private static void assertSorted(List<MatchMany.Candidate> candidates) {
+        for (int i = 1; i < candidates.size(); i++) {
+            assertTrue(candidates.get(i - 1).similarity >= candidates.get(i).similarity,
+                    "Candidates should be sorted by descending similarity: " + candidates);
+        }
+    }
+
+    @Test
+    void chunkedMatchShouldAgreeWithPairwiseMatches() {
+        MatchMany.Result result = new MatchMany(asyncFaceSdk).maxReferencesPerRequest(2).match(probe, references);
+
+        assertEquals(3, result.requests, "5 references at 2 per request should take 3 requests");
+        assertEquals(REFERENCE_PATHS.length, result.candidates.size(), "Every reference has a face");
+        assertSorted(result.candidates);
+        for (MatchMany.Candidate candidate : result.candidates) {
+            assertEquals(ImageSource.fromValue(REFERENCE_TYPES[candidate.reference]), candidate.type,
+                    "Candidate should carry its reference's type");
+            assertEquals(pairwiseSimilarity(REFERENCE_PATHS[candidate.reference], REFERENCE_TYPES[candidate.reference]),
+                    candidate.similarity, 1e-4, "Similarity for reference " + candidate.reference);
+        }
+        assertEquals(3, result.candidates.get(0).reference, "The probe itself should be the best match");
+    }
+
+    @Test
+    void payloadLimitShouldSplitWithoutChangingResults() {
+        MatchMany.Result single = new MatchMany(asyncFaceSdk).match(probe, references);
+        MatchMany.Result split = new MatchMany(asyncFaceSdk).maxPayloadBytes(1).match(probe, references);
+
+        assertEquals(1, single.requests, "All references fit in one request by default");
+        assertEquals(REFERENCE_PATHS.length, split.requests, "A reference over the limit should go on its own");
+        assertEquals(single.candidates.size(), split.candidates.size(), "Same candidates either way");
+        for (int i = 0; i < single.candidates.size(); i++) {
+            assertEquals(single.candidates.get(i).reference, split.candidates.get(i).reference, "Same order either way");
+            assertEquals(single.candidates.get(i).similarity, split.candidates.get(i).similarity, 1e-4,
+                    "Same similarity either way");
+        }
+        for (MatchImage reference : references) {
+            assertNull(reference.getIndex(), "The caller's images should not be modified");
+        }
+    }
+}
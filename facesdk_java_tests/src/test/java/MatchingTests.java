@@ -6,10 +6,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
 
 import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
 import com.regula.facesdk.webclient.gen.model.*;
 
 @ExtendWith(ReportPortalExtension.class)
@@ -30,26 +29,7 @@ public class MatchingTests {
 
 
     private MatchRequest createMatchRequest(int type1, Path path1, Integer type2, Path path2) throws IOException {
-        List<MatchImage> images = new ArrayList<>();
-
-        MatchImage image1 = new MatchImage();
-        image1.setIndex(1);
-        image1.data(PathsConfig.readImageBytes(path1));
-        image1.setType(ImageSource.fromValue(type1));
-        images.add(image1);
-
-
-        if (type2 != null && path2 != null) {
-            MatchImage image2 = new MatchImage();
-            image2.setIndex(2);
-            image2.data(PathsConfig.readImageBytes(path2));
-            image2.setType(ImageSource.fromValue(type2));
-            images.add(image2);
-        }
-
-        MatchRequest matchRequest = new MatchRequest();
-        matchRequest.setImages(images);
-        return matchRequest;
+        return ScenarioRequests.match(type1, path1, type2, path2);
     }
 
     @Test
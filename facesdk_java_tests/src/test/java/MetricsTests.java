@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.metrics.FaceSdkMetrics;
+import com.regula.facesdk.tests.metrics.OperationStats;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+/** Runs against a stand-in of its own, which injects the errors, whatever the suite's target is. */
+@ExtendWith(ReportPortalExtension.class)
+public class MetricsTests {
+    private static final String DETECT = "POST /api/detect";
+    private static final String ADD_IMAGE = "POST /api/persons/{id}/images";
+
+    private StandInServer server;
+    private OkHttpClient httpClient;
+    private FaceSdkMetrics metrics;
+    private FaceSdk faceSdk;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        metrics = new FaceSdkMetrics();
+        faceSdk = TransportSettings.newFaceSdk(server.baseUrl(), metrics.instrument(httpClient));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private Map<String, OperationStats> stats() {
+        return metrics.getOperations().stream().collect(Collectors.toMap(OperationStats::getOperation, stats -> stats));
+    }
+
+    @Test
+    void callsShouldBeBrokenDownByOperationAndPhase(@TempDir Path dir) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            metrics.record(() -> faceSdk.matchingApi.detect(ScenarioRequests.detect(PathsConfig.FACE1_PATH, null, null)));
+        }
+        PersonFields personFields = new PersonFields();
+        personFields.setName("Metrics");
+        UUID personId = metrics.record(() -> faceSdk.personApi.createPerson(personFields)).getId();
+        metrics.record(() -> faceSdk.personApi.addImageToPerson(personId, ScenarioRequests.addImage(PathsConfig.FACE3_PATH)));
+        assertThrows(ApiException.class, () -> metrics.record(() -> faceSdk.groupApi.getGroup(UUID.randomUUID())), "No such group");
+        server.faults().errors("/api/detect", 503, 1.0);
+        assertThrows(ApiException.class, () -> metrics.record(() -> faceSdk.matchingApi.detect(
+                ScenarioRequests.detect(PathsConfig.FACE1_PATH, null, null))), "Injected failure");
+
+        Map<String, OperationStats> stats = stats();
+        OperationStats detect = stats.get(DETECT);
+        assertEquals(6, detect.getCalls(), "Every detect is counted: " + stats.values());
+        assertEquals(Map.of("HTTP_503", 1L), detect.getErrorsByCode(), "The failed detect is counted by status");
+        assertTrue(detect.getRequestBytesMean() > Files.size(PathsConfig.FACE1_PATH) * 4 / 3, "The request carries the base64 image");
+        assertTrue(detect.getResponseBytesMean() > 0, "Response sizes are recorded");
+        assertTrue(detect.getClientMeanMicros() > 0 && detect.getServerMeanMicros() > 0, "Client and server time are split: " + detect);
+        assertTrue(detect.getTotalP99Micros() >= detect.getTotalP50Micros(), "Percentiles are ordered");
+        assertEquals(1, stats.get(ADD_IMAGE).getCalls(), "Ids are folded into the operation name: " + stats.keySet());
+        assertEquals(1, stats.get("GET /api/groups/{id}").getErrorsByCode().get("HTTP_404"), "The 404 is counted");
+
+        String text = metrics.prometheusText();
+        assertTrue(text.contains("# TYPE facesdk_call_phase_seconds summary"), text);
+        assertTrue(text.contains("facesdk_call_phase_seconds_count{operation=\"POST /api/detect\",phase=\"server\"} 6"), text);
+        assertTrue(text.contains("facesdk_errors_total{operation=\"POST /api/detect\",code=\"HTTP_503\"} 1"), text);
+        assertTrue(text.contains("facesdk_calls_total{operation=\"" + ADD_IMAGE + "\"} 1"), text);
+        Path file = dir.resolve("facesdk.prom");
+        try (AutoCloseable dumper = metrics.dumpEvery(file, 1, TimeUnit.HOURS)) {
+            metrics.record(() -> faceSdk.personApi.getPerson(personId));
+        }
+        assertTrue(Files.readString(file).contains("facesdk_calls_total{operation=\"GET /api/persons/{id}\"} 1"), "Closing the dumper writes the file");
+
+        MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.registerMBean("metrics-tests");
+        try {
+            assertEquals(metrics.prometheusText(), mbeans.getAttribute(name, "PrometheusText"), "The MBean serves the same text");
+            CompositeData[] operations = (CompositeData[]) mbeans.getAttribute(name, "Operations");
+            assertEquals(stats().size(), operations.length, "One composite per operation");
+            mbeans.invoke(name, "reset", null, null);
+            assertTrue(metrics.getOperations().isEmpty(), "reset goes through JMX");
+        } finally {
+            FaceSdkMetrics.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    void dumperShouldKeepWritingAfterAFailedWrite(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("missing").resolve("facesdk.prom");
+        try (AutoCloseable dumper = metrics.dumpEvery(file, 20, TimeUnit.MILLISECONDS)) {
+            // The directory is missing, so the first writes fail
+            Thread.sleep(100);
+            Files.createDirectories(file.getParent());
+            for (int i = 0; i < 100 && !Files.exists(file); i++) {
+                Thread.sleep(20);
+            }
+            assertTrue(Files.exists(file), "The schedule survives the failed writes");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.paging.PagedIterator;
+import com.regula.facesdk.tests.paging.Pages;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.webclient.gen.model.*;
+
+@ExtendWith(ReportPortalExtension.class)
+public class PagingTests {
+    private final Tenant tenant = new Tenant();
+
+    private UUID createGroup(String name) {
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName(tenant.name(name));
+        return PathsConfig.faceSdk.groupApi.createGroup(groupToCreate).getId();
+    }
+
+    @Test
+    void shouldPrefetchNextPageAndKeepTwoPagesAtMost() {
+        AtomicInteger requested = new AtomicInteger();
+        PagedIterator<Integer> iterator = Pages.iterator((page, size) -> {
+            requested.incrementAndGet();
+            List<Integer> items = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                items.add((page - 1) * size + i);
+            }
+            return new PagedIterator.Page<>(items, 10);
+        }, 50);
+
+        assertEquals(0, requested.get(), "Nothing should be fetched before the first element is read");
+        assertEquals(0, iterator.next(), "Unexpected first element");
+        assertEquals(2, iterator.pagesFetched(), "Page 2 should be requested as soon as page 1 arrives");
+
+        int expected = 1;
+        while (iterator.hasNext()) {
+            assertEquals(expected++, iterator.next(), "Elements out of order");
+        }
+        assertEquals(500, expected, "Unexpected number of elements");
+        assertEquals(10, requested.get(), "Should stop at the reported page count");
+        assertTrue(iterator.maxBufferedItems() <= 100, "Held more than two pages: " + iterator.maxBufferedItems());
+    }
+
+    @Test
+    void shouldStreamLargeGroupWithBoundedBuffering() {
+        assumeTrue(StandInServer.isEnabled(), "Seeding tens of thousands of persons needs the stand-in");
+        int persons = 30_000;
+        int pageSize = 500;
+        UUID groupId = createGroup("paging");
+        try {
+            StandInServer.shared().seedPersons(groupId, persons, "seeded-");
+
+            PagedIterator<Person> iterator = Pages.iterator((page, size) -> {
+                PersonsPage response = PathsConfig.faceSdk.groupApi.getAllPersonsByGroupId(page, size, groupId);
+                return new PagedIterator.Page<>(response.getItems(), response.getTotalPages());
+            }, pageSize);
+            int count = 0;
+            while (iterator.hasNext()) {
+                assertEquals("seeded-" + count, iterator.next().getName(), "Persons out of order");
+                count++;
+            }
+            assertEquals(persons, count, "Unexpected number of persons");
+            assertEquals(persons / pageSize, iterator.pagesFetched(), "Unexpected number of pages");
+            assertTrue(iterator.maxBufferedItems() <= 2 * pageSize, "Held more than two pages: " + iterator.maxBufferedItems());
+
+            // The stream reads through the same iterator, so the two-page bound above holds for it too
+            try (Stream<Person> stream = Pages.personsInGroup(PathsConfig.faceSdk, groupId, pageSize)) {
+                assertEquals(persons / 10, stream.filter(p -> p.getName().endsWith("7")).count(), "Unexpected number of filtered persons");
+            }
+        } finally {
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        }
+    }
+
+    @Test
+    void shouldStopEarlyWhenStreamIsClosed() {
+        assumeTrue(StandInServer.isEnabled(), "Seeding persons needs the stand-in");
+        UUID groupId = createGroup("paging-early");
+        try {
+            StandInServer.shared().seedPersons(groupId, 1_000, "seeded-");
+            List<String> firstNames;
+            try (Stream<Person> stream = Pages.personsInGroup(PathsConfig.faceSdk, groupId, 100)) {
+                firstNames = stream.limit(3).map(Person::getName).collect(Collectors.toList());
+            }
+            assertEquals(List.of("seeded-0", "seeded-1", "seeded-2"), firstNames, "Unexpected first persons");
+        } finally {
+            PathsConfig.faceSdk.groupApi.deleteGroup(groupId);
+        }
+    }
+
+    @Test
+    void shouldStreamImagesAndGroupsOfPerson() {
+        UUID firstGroup = createGroup("paging-a");
+        UUID secondGroup = createGroup("paging-b");
+        UUID personId = null;
+        try {
+            PersonFields personFields = new PersonFields();
+            personFields.setName("Person A");
+            personFields.setGroups(List.of(firstGroup, secondGroup));
+            personId = PathsConfig.faceSdk.personApi.createPerson(personFields).getId();
+            for (var path : List.of(PathsConfig.FACE1_PATH, PathsConfig.FACE2_PATH, PathsConfig.FACE3_PATH)) {
+                PathsConfig.faceSdk.personApi.addImageToPerson(personId, ScenarioRequests.addImage(path));
+            }
+
+            try (Stream<Image> images = Pages.imagesOfPerson(PathsConfig.faceSdk, personId, 2)) {
+                assertEquals(3, images.count(), "Expected all images across pages of 2");
+            }
+            try (Stream<Group> groups = Pages.groupsOfPerson(PathsConfig.faceSdk, personId, 1)) {
+                assertEquals(List.of(firstGroup, secondGroup).stream().sorted().collect(Collectors.toList()),
+                        groups.map(Group::getId).sorted().collect(Collectors.toList()), "Unexpected groups of person");
+            }
+            try (Stream<Group> groups = Pages.groups(PathsConfig.faceSdk, 2)) {
+                assertEquals(2, groups.filter(tenant::owns).count(), "Expected both tenant groups in the full listing");
+            }
+        } finally {
+            if (personId != null) {
+                PathsConfig.faceSdk.personApi.deletePerson(personId);
+            }
+            PathsConfig.faceSdk.groupApi.deleteGroup(firstGroup);
+            PathsConfig.faceSdk.groupApi.deleteGroup(secondGroup);
+        }
+    }
+}
@@ -1,15 +1,20 @@
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
 import com.regula.facesdk.webclient.FaceSdk;
 
 import java.io.Console;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.lang.System;
 
 public class PathsConfig {
-    public static final String API_BASE_PATH = System.getProperty("apiBasePath", "http://localhost:41101/");
-    static final FaceSdk faceSdk = new FaceSdk(PathsConfig.API_BASE_PATH);
+    public static final String API_BASE_PATH = StandInServer.isEnabled()
+            ? StandInServer.shared().baseUrl()
+            : System.getProperty("apiBasePath", "http://localhost:41101/");
+    static final FaceSdk faceSdk = TransportSettings.fromSystemProperties().newFaceSdk(PathsConfig.API_BASE_PATH);
     private static final String PROJECT_DIR = System.getProperty("user.dir");
     private static final Path FILES_PATH = Paths.get(PROJECT_DIR, "misc", "files");
     public static final Path FACE1_PATH = FILES_PATH.resolve("face1.jpg");
@@ -20,7 +25,12 @@ public class PathsConfig {
     public static final Path DOCUMENT_WITH_LIVE_PATH = FILES_PATH.resolve("me_and_id.png");
     public static final Path SEVERAL_FACES_IMAGE_PATH = FILES_PATH.resolve("severalFaces.jpg");
 
+    // Served from the shared fixture cache: every file is read once per JVM, the returned array must not be modified
     public static byte[] readImageBytes(Path path) throws IOException {
-        return Files.readAllBytes(path);
+        try {
+            return FixtureRegistry.shared().bytes(path);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 }
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.perf.MannWhitney;
+import com.regula.facesdk.tests.perf.PerfGate;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import okhttp3.OkHttpClient;
+
+/** Runs against a stand-in of its own, which adds the latency, whatever the suite's target is. */
+@ExtendWith(ReportPortalExtension.class)
+public class PerfGateTests {
+    private static final String DETECT = "POST /api/detect";
+
+    private StandInServer server;
+    private OkHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Test
+    void mannWhitneyShouldTellShiftsFromNoise() {
+        MannWhitney separated = MannWhitney.greater(new double[]{1, 2, 3, 4, 5}, new double[]{6, 7, 8, 9, 10});
+        assertEquals(25, separated.u);
+        assertEquals(1.0, separated.effect);
+        // Normal approximation: z = (25 - 12.5 - 0.5) / sqrt(25 * 11 / 12)
+        assertEquals(0.0061, separated.p, 1e-4);
+        assertTrue(MannWhitney.greater(new double[]{6, 7, 8, 9, 10}, new double[]{1, 2, 3, 4, 5}).p > 0.99, "Wrong direction");
+
+        Random random = new Random(7);
+        double[] baseline = new double[100];
+        double[] noisy = new double[100];
+        double[] slower = new double[100];
+        for (int i = 0; i < 100; i++) {
+            // Long-tailed like latencies: mostly around 1000, some calls ten times that
+            baseline[i] = 1000 + random.nextGaussian() * 50 + (random.nextInt(10) == 0 ? 9000 : 0);
+            noisy[i] = 1000 + random.nextGaussian() * 50 + (random.nextInt(5) == 0 ? 9000 : 0);
+            slower[i] = 1100 + random.nextGaussian() * 50 + (random.nextInt(10) == 0 ? 9000 : 0);
+        }
+        assertTrue(MannWhitney.greater(baseline, noisy).p > 0.01, "More outliers do not make a shift: " + MannWhitney.greater(baseline, noisy));
+        assertTrue(MannWhitney.greater(baseline, slower).p < 1e-6, "10% slower is a shift: " + MannWhitney.greater(baseline, slower));
+        assertEquals(0.5, MannWhitney.greater(baseline, baseline).effect, "No difference to itself");
+    }
+
+    @Test
+    void slowerEndpointShouldFailTheGate(@TempDir Path dir) throws IOException {
+        PerfGate gate = new PerfGate(TransportSettings.newFaceSdk(server.baseUrl(), httpClient), 20, 30);
+        gate.setUp();
+        PerfGate.Result before = gate.run("a".repeat(64));
+        assertEquals(7, before.endpoints.size(), "The whole workload is measured: " + before.endpoints.keySet());
+        assertTrue(PerfGate.compare(before, before, 0.01, 0.05).stream().noneMatch(delta -> delta.regression), "A run does not regress on itself");
+
+        server.faults().latency("/api/detect", 100, 1.0);
+        PerfGate.Result after = gate.run("b".repeat(64));
+        Map<String, PerfGate.Delta> deltas = PerfGate.compare(before, after, 0.01, 0.05).stream()
+                .collect(Collectors.toMap(delta -> delta.endpoint, Function.identity()));
+        assertTrue(deltas.get(DETECT).regression, "100 ms more per detect is a regression: " + deltas.get(DETECT).slower);
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        PerfGate.printTable(new PrintStream(table, true), List.copyOf(deltas.values()), 0.01);
+        assertTrue(table.toString().lines().anyMatch(line -> line.startsWith(DETECT) && line.endsWith("SLOWER")), table.toString());
+
+        PerfGate.write(before, dir.resolve(before.clientJarSha256 + ".json"));
+        PerfGate.write(after, dir.resolve(after.clientJarSha256 + ".json"));
+        assertEquals(before.clientJarSha256, PerfGate.baseline(dir, after.clientJarSha256, null).orElseThrow().clientJarSha256,
+                "The baseline is the run of the other jar");
+        assertEquals(after.clientJarSha256, PerfGate.baseline(dir, "c".repeat(64), null).orElseThrow().clientJarSha256,
+                "The newest run of another jar");
+        assertEquals(after.clientJarSha256, PerfGate.baseline(dir, before.clientJarSha256, "bbbb").orElseThrow().clientJarSha256,
+                "A checksum prefix picks the run");
+    }
+}
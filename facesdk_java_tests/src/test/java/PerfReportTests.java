@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.metrics.FaceSdkMetrics;
+import com.regula.facesdk.tests.perf.PerfReport;
+import com.regula.facesdk.tests.perf.PerfReportExtension;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs against a stand-in of its own, which adds the latency, whatever the suite's target is.
+ * Isolated: a test's calls are all the run's calls while it runs, so no other test may run beside it.
+ */
+@Isolated
+@Execution(ExecutionMode.SAME_THREAD)
+@ExtendWith({ReportPortalExtension.class, PerfReportExtension.class})
+public class PerfReportTests {
+    private static final String DETECT = "POST /api/detect";
+    private static final String GROUPS = "GET /api/groups";
+
+    private StandInServer server;
+    private OkHttpClient httpClient;
+    private FaceSdkMetrics metrics;
+    private FaceSdk faceSdk;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        metrics = new FaceSdkMetrics();
+        faceSdk = TransportSettings.newFaceSdk(server.baseUrl(), metrics.instrument(httpClient));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    @Test
+    void callsOfTheTestShouldBeTimedByEndpoint() {
+        server.faults().latency("/api/detect", 20, 1.0);
+        for (int i = 0; i < 3; i++) {
+            faceSdk.matchingApi.detect(ScenarioRequests.detect(PathsConfig.FACE1_PATH, null, null));
+        }
+        faceSdk.groupApi.getAllGroups(1, 10);
+
+        PerfReport.TestStats test = PerfReportExtension.currentTest();
+        assertEquals("PerfReportTests.callsOfTheTestShouldBeTimedByEndpoint", test.test);
+        PerfReport.EndpointStats detect = test.endpoint(DETECT);
+        assertEquals(3, detect.calls, "Every detect is counted: " + test.endpoints);
+        assertEquals(1, test.endpoint(GROUPS).calls, "Other endpoints are counted apart: " + test.endpoints);
+        assertTrue(detect.serverMeanMicros >= 20_000, "The injected latency is server time: " + detect);
+        assertTrue(detect.networkP50Micros >= 20_000 && detect.networkP95Micros >= detect.serverMeanMicros,
+                "Server time is part of network time: " + detect);
+        assertTrue(detect.clientMeanMicros > 0 && detect.clientMeanMicros < detect.networkP50Micros,
+                "Serializing the image and parsing the response is client time: " + detect);
+        String text = metrics.prometheusText();
+        assertTrue(text.contains("facesdk_call_phase_seconds_count{operation=\"" + DETECT + "\",phase=\"server\"} 3"),
+                "The client's own listener still sees the calls: " + text);
+    }
+
+    @Test
+    void slowerEndpointsShouldBeRegressions(@TempDir Path dir) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            faceSdk.groupApi.getAllGroups(1, 10);
+            faceSdk.matchingApi.detect(ScenarioRequests.detect(PathsConfig.FACE1_PATH, null, null));
+        }
+        PerfReport baselineRun = new PerfReport(List.of(PerfReportExtension.currentTest()));
+        baselineRun.writeJson(dir.resolve("baseline.json"));
+        PerfReport.Baseline baseline = PerfReport.Baseline.read(dir.resolve("baseline.json"));
+        assertTrue(baselineRun.regressionsAgainst(baseline, 0.25, 0, 5).isEmpty(), "A run is no regression of itself");
+
+        // The test's stats still hold the 10 calls above: with 30 slowed ones the p50 is a slowed
+        // call, whatever the baseline's calls took
+        server.faults().latency("/api/detect", 50, 1.0);
+        for (int i = 0; i < 30; i++) {
+            faceSdk.matchingApi.detect(ScenarioRequests.detect(PathsConfig.FACE1_PATH, null, null));
+        }
+        PerfReport slower = new PerfReport(List.of(PerfReportExtension.currentTest()));
+        List<PerfReport.Regression> regressions = slower.regressionsAgainst(baseline, 0.25, 5_000, 5);
+        assertEquals(1, regressions.size(), "Only detect got slower, and only its network time: " + regressions);
+        assertEquals(DETECT, regressions.get(0).endpoint);
+        assertEquals("network p50", regressions.get(0).metric);
+        assertTrue(slower.regressionsAgainst(baseline, 0.25, 5_000, 20).isEmpty(), "Too few calls in the baseline to compare");
+        assertTrue(slower.regressionsAgainst(baseline, 1000, 5_000, 5).isEmpty(), "Under the threshold");
+
+        slower.writeHtml(dir.resolve("report.html"), regressions);
+        String html = Files.readString(dir.resolve("report.html"));
+        assertTrue(html.contains("<h2>Regressions</h2>") && html.contains("POST /api/detect"), html);
+    }
+}
@@ -23,7 +23,8 @@ class PersonTests {
 
     private UUID groupId;
     private UUID personId;
-    final String testGroupName = "test";
+    private final Tenant tenant = new Tenant();
+    final String testGroupName = tenant.name("test");
     private static final String nameA = "Person A";
     private static final String nameB = "Person B";
     Map<String, Object> baseMetadata = new HashMap<>() {{
@@ -37,7 +38,7 @@ class PersonTests {
             // Create a test group
             GroupToCreate groupToCreate = new GroupToCreate();
             groupToCreate.setName(testGroupName);
-            groupToCreate.setMetadata(baseMetadata);
+            groupToCreate.setMetadata(tenant.metadata(baseMetadata));
             Group createdGroup = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate);
             groupId = createdGroup.getId();
             assertNotNull(groupId, "No id field in the returned group");
@@ -175,8 +176,8 @@ class PersonTests {
         try {
             // Create a second test group
             GroupToCreate secondGroupToCreate = new GroupToCreate();
-            secondGroupToCreate.setName("secondTestGroup");
-            secondGroupToCreate.setMetadata(baseMetadata);
+            secondGroupToCreate.setName(tenant.name("secondTestGroup"));
+            secondGroupToCreate.setMetadata(tenant.metadata(baseMetadata));
 
             Group secondGroup = PathsConfig.faceSdk.groupApi.createGroup(secondGroupToCreate);
             UUID secondGroupId = secondGroup.getId();
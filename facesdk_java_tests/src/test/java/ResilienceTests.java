@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.resilience.CircuitBreaker;
+import com.regula.facesdk.tests.resilience.ResilientFaceSdk;
+import com.regula.facesdk.tests.resilience.RetryBudget;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+/** Runs against a stand-in of its own, which injects the latency and errors, whatever the suite's target is. */
+@ExtendWith(ReportPortalExtension.class)
+public class ResilienceTests {
+    private static final String SEARCH = "/api/search";
+    private static final String PERSONS = "/api/persons";
+
+    private StandInServer server;
+    private OkHttpClient httpClient;
+    private FaceSdk faceSdk;
+    private UUID groupId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = StandInServer.start();
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        faceSdk = TransportSettings.newFaceSdk(server.baseUrl(), httpClient);
+        GroupToCreate group = new GroupToCreate();
+        group.setName("Resilience");
+        groupId = faceSdk.groupApi.createGroup(group).getId();
+        PersonFields personFields = new PersonFields();
+        personFields.setName("A");
+        personFields.setGroups(Collections.singletonList(groupId));
+        faceSdk.personApi.addImageToPerson(faceSdk.personApi.createPerson(personFields).getId(),
+                ScenarioRequests.addImage(PathsConfig.FACE3_PATH));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private SearchRequest search() {
+        return ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, 10, 0.8f);
+    }
+
+    @Test
+    void transientErrorsShouldBeRetried() {
+        server.faults().seed(1).errors(SEARCH, 503, 0.3);
+        try (ResilientFaceSdk resilient = new ResilientFaceSdk(faceSdk).hedging(false).backoff(Duration.ofMillis(1))
+                .maxAttempts(5).retryBudget(new RetryBudget(0.5, 50))) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(1, resilient.search(search()).getPersons().size(), "Every search should end with the enrolled person");
+            }
+            assertTrue(resilient.retries() > 5, "About 30% of the calls need a retry, had " + resilient.retries());
+            assertEquals(50 + resilient.retries(), server.faults().requests(SEARCH), "Each retry is one more request");
+        }
+
+        server.faults().clear().errors(SEARCH, 400, 1.0);
+        try (ResilientFaceSdk resilient = new ResilientFaceSdk(faceSdk)) {
+            ApiException e = assertThrows(ApiException.class, () -> resilient.search(search()), "A 400 is not retried");
+            assertEquals(400, e.getCode(), "The service's error comes through");
+            assertEquals(1, server.faults().requests(SEARCH), "Once only");
+        }
+    }
+
+    @Test
+    void hedgingShouldCutTheTailOfASlowInstance() {
+        server.faults().seed(2).latency(SEARCH, 400, 0.1);
+        long[] plain;
+        try (ResilientFaceSdk resilient = new ResilientFaceSdk(faceSdk).hedging(false)) {
+            plain = latencies(resilient, 100);
+        }
+        long[] hedged;
+        try (ResilientFaceSdk resilient = new ResilientFaceSdk(faceSdk).hedgePercentile(0.8).retryBudget(new RetryBudget(0.3, 10))) {
+            latencies(resilient, 30);
+            hedged = latencies(resilient, 100);
+            assertTrue(resilient.hedges() > 0 && resilient.hedgeWins() > 0, "Slow calls should be hedged and the hedges win");
+            assertTrue(resilient.hedges() < 60, "Only calls past the percentile are hedged, were " + resilient.hedges());
+        }
+        assertTrue(plain[94] >= 400, "Without hedging p95 is the injected latency, was " + plain[94] + " ms");
+        assertTrue(hedged[94] < 300, "With hedging p95 should stay well under it, was " + hedged[94] + " ms");
+    }
+
+    /** Sorted latencies in ms of count searches. */
+    private long[] latencies(ResilientFaceSdk resilient, int count) {
+        long[] millis = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            resilient.search(search());
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    @Test
+    void retryBudgetShouldPreventARetryStorm() {
+        server.faults().errors(SEARCH, 503, 1.0);
+        try (ResilientFaceSdk resilient = new ResilientFaceSdk(faceSdk).backoff(Duration.ofMillis(1)).maxAttempts(5)
+                .retryBudget(new RetryBudget(0.1, 5))) {
+            for (int i = 0; i < 50; i++) {
+                assertThrows(ApiException.class, () -> resilient.search(search()), "A service that always fails fails the call");
+            }
+            // Without the budget 50 calls of 5 attempts would be 250 requests
+            long requests = server.faults().requests(SEARCH);
+            assertTrue(requests <= 50 + 5 + 5 + 1, "Retries should stay within the budget, had " + requests + " requests");
+            assertTrue(resilient.retryBudget().rejected() > 0, "The budget should have turned retries down");
+        }
+    }
+
+    @Test
+    void failingWritesShouldOpenTheBreaker() throws InterruptedException {
+        server.faults().clear().errors(PERSONS, 500, 1.0);
+        try (ResilientFaceSdk resilient = new ResilientFaceSdk(faceSdk).circuitBreaker(3, Duration.ofMillis(300))) {
+            PersonFields personFields = new PersonFields();
+            personFields.setName("B");
+            for (int i = 0; i < 3; i++) {
+                assertThrows(ApiException.class, () -> resilient.createPerson(personFields), "The write fails");
+            }
+            assertEquals(3, server.faults().requests(PERSONS), "Writes are never repeated");
+            assertEquals(CircuitBreaker.State.OPEN, resilient.breakerState("createPerson"), "Three failures open the breaker");
+            CircuitBreaker.OpenException e = assertThrows(CircuitBreaker.OpenException.class, () -> resilient.createPerson(personFields),
+                    "An open breaker refuses the call");
+            assertEquals("createPerson", e.getEndpoint(), "The exception names the endpoint");
+            assertEquals(3, server.faults().requests(PERSONS), "A refused call does not reach the service");
+            assertNotNull(resilient.getGroup(groupId), "Other endpoints are not affected");
+
+            server.faults().clear();
+            Thread.sleep(350);
+            assertNotNull(resilient.createPerson(personFields).getId(), "After openFor a trial call goes through");
+            assertEquals(CircuitBreaker.State.CLOSED, resilient.breakerState("createPerson"), "A successful trial closes the breaker");
+        }
+    }
+}
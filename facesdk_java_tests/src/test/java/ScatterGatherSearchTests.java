@@ -0,0 +1,133 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.shard.ScatterGatherSearch;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs against stand-ins of its own, one per shard plus one holding the whole gallery as
+ * the unsharded reference, whatever the suite's target is.
+ */
+@ExtendWith(ReportPortalExtension.class)
+public class ScatterGatherSearchTests {
+    private final List<StandInServer> servers = new ArrayList<>();
+    private OkHttpClient httpClient;
+    private StandInServer unsharded;
+    private List<String> shards;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+        unsharded = start();
+        shards = List.of(start().baseUrl(), start().baseUrl(), start().baseUrl());
+        // Disjoint persons: the face1 identity is spread over all three shards
+        enroll(0, "A1", PathsConfig.FACE3_PATH);
+        enroll(0, "Crowd", PathsConfig.SEVERAL_FACES_IMAGE_PATH);
+        enroll(1, "A2", PathsConfig.FACE2_PATH);
+        enroll(2, "B1", PathsConfig.PRINTED_DOCUMENT_PATH);
+        enroll(2, "A3", PathsConfig.FACE3_PATH, PathsConfig.FACE2_PATH);
+    }
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(StandInServer::close);
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private StandInServer start() throws IOException {
+        StandInServer server = StandInServer.start();
+        servers.add(server);
+        return server;
+    }
+
+    /** Enrolls the person on the shard and on the unsharded reference. */
+    private void enroll(int shard, String name, Path... images) {
+        for (String basePath : List.of(shards.get(shard), unsharded.baseUrl())) {
+            FaceSdk faceSdk = TransportSettings.newFaceSdk(basePath, httpClient);
+            PersonFields personFields = new PersonFields();
+            personFields.setName(name);
+            Person person = faceSdk.personApi.createPerson(personFields);
+            for (Path image : images) {
+                faceSdk.personApi.addImageToPerson(person.getId(), ScenarioRequests.addImage(image));
+            }
+        }
+    }
+
+    private static SearchRequest search(Integer limit, Float threshold) {
+        SearchRequest request = ScenarioRequests.search(null, PathsConfig.FACE1_PATH, limit, threshold);
+        request.setGroupIds(null);
+        return request;
+    }
+
+    @Test
+    void mergedResultShouldEqualTheUnshardedSearch() {
+        FaceSdk reference = TransportSettings.newFaceSdk(unsharded.baseUrl(), httpClient);
+        try (ScatterGatherSearch coordinator = ScatterGatherSearch.of(shards, Duration.ofSeconds(10))) {
+            for (Map.Entry<Integer, Float> query : Map.of(10, 0.8f, 2, 0.8f, 1, 0.3f, 3, 0.01f).entrySet()) {
+                SearchRequest request = search(query.getKey(), query.getValue());
+                List<SearchPerson> expected = reference.searchApi.search(request).getPersons();
+                ScatterGatherSearch.Result actual = coordinator.search(request);
+                String where = " for limit " + query.getKey() + ", threshold " + query.getValue();
+
+                assertTrue(actual.complete(), "Every shard should answer" + where);
+                assertEquals(expected.size(), actual.persons.size(), "Same number of persons" + where);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getName(), actual.persons.get(i).getName(), "Same person at rank " + i + where);
+                    assertEquals(expected.get(i).getImages().size(), actual.persons.get(i).getImages().size(), "Same images at rank " + i + where);
+                    assertEquals(expected.get(i).getImages().get(0).getSimilarity(), actual.persons.get(i).getImages().get(0).getSimilarity(),
+                            1e-5, "Same similarity at rank " + i + where);
+                }
+            }
+            assertEquals(3, coordinator.search(search(10, 0.8f)).toSearchResult().getPersons().size(), "All three A persons pass 0.8");
+        }
+    }
+
+    @Test
+    void slowAndDeadShardsShouldLeaveAPartialResult() throws IOException {
+        try (ServerSocket silent = new ServerSocket(0); ServerSocket closed = new ServerSocket(0)) {
+            closed.close();
+            List<ScatterGatherSearch.Shard> endpoints = List.of(
+                    new ScatterGatherSearch.Shard(shards.get(0), Duration.ofSeconds(10)),
+                    // Accepts connections through its backlog and never answers
+                    new ScatterGatherSearch.Shard("http://localhost:" + silent.getLocalPort() + "/", Duration.ofMillis(500)),
+                    new ScatterGatherSearch.Shard("http://localhost:" + closed.getLocalPort() + "/", Duration.ofSeconds(10)));
+            try (ScatterGatherSearch coordinator = new ScatterGatherSearch(endpoints, httpClient)) {
+                long start = System.nanoTime();
+                ScatterGatherSearch.Result result = coordinator.search(search(10, 0.8f));
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+                assertFalse(result.complete(), "The result should be partial");
+                assertEquals(ScatterGatherSearch.Status.OK, result.shards.get(0).status, "The stand-in shard answers");
+                assertEquals(ScatterGatherSearch.Status.TIMED_OUT, result.shards.get(1).status, "The silent shard times out");
+                assertEquals(ScatterGatherSearch.Status.FAILED, result.shards.get(2).status, "The closed port fails");
+                assertEquals(1, result.persons.size(), "Only the answering shard's A1 passes 0.8");
+                assertEquals("A1", result.persons.get(0).getName(), "A1 is on the answering shard");
+                assertTrue(elapsedMillis < 5000, "The silent shard should not hold the search past its timeout, took " + elapsedMillis + " ms");
+
+                coordinator.minShards(2);
+                ScatterGatherSearch.ShardsUnavailableException e = assertThrows(ScatterGatherSearch.ShardsUnavailableException.class,
+                        () -> coordinator.search(search(10, 0.8f)), "Two shards are required");
+                assertEquals(3, e.getOutcomes().size(), "Every shard is reported");
+            }
+        }
+    }
+}
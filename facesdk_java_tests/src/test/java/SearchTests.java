@@ -3,6 +3,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
 import com.regula.facesdk.webclient.ApiException;
 import com.regula.facesdk.webclient.gen.model.*;
 
@@ -19,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.*;
 class SearchTests {
     private UUID groupId;
     private UUID personId;
+    private final Tenant tenant = new Tenant();
     private static final String nameA = "Person A";
     Map<String, Object> baseMetadata = new HashMap<>() {{
         put("description", "This is a test group");
@@ -41,9 +43,9 @@ class SearchTests {
     @BeforeEach
     void setUp() throws ApiException, IOException {
         GroupToCreate groupToCreate = new GroupToCreate();
-        String testGroupName = "test";
+        String testGroupName = tenant.name("test");
         groupToCreate.setName(testGroupName);
-        groupToCreate.setMetadata(baseMetadata);
+        groupToCreate.setMetadata(tenant.metadata(baseMetadata));
         Group createdGroup = PathsConfig.faceSdk.groupApi.createGroup(groupToCreate);
         groupId = createdGroup.getId();
         PersonFields personFields = new PersonFields();
@@ -52,12 +54,7 @@ class SearchTests {
         personFields.setMetadata(baseMetadata);
         Person createdPerson = PathsConfig.faceSdk.personApi.createPerson(personFields);
         personId = createdPerson.getId();
-        byte[] imageContent = PathsConfig.readImageBytes(PathsConfig.FACE3_PATH);
-        AddImageToPersonRequestImage image = new AddImageToPersonRequestImage();
-        image.setContent(imageContent);
-        image.setContentType("image/jpeg");
-        AddImageToPersonRequest imageFields = new AddImageToPersonRequest();
-        imageFields.setImage(image);
+        AddImageToPersonRequest imageFields = ScenarioRequests.addImage(PathsConfig.FACE3_PATH);
         PathsConfig.faceSdk.personApi.addImageToPerson(personId, imageFields);
     }
 
@@ -76,23 +73,13 @@ class SearchTests {
     @Test
     void shouldSearchWithLimitAndThreshold() {
         try {
-            SearchRequest searchRequest = new SearchRequest();
-            searchRequest.setGroupIds(Arrays.asList(groupId));
-            byte[] imageContent = PathsConfig.readImageBytes(PathsConfig.FACE1_PATH);
-            AddImageToPersonRequestImage image = new AddImageToPersonRequestImage();
-            image.setContentType("image/jpeg");
-            image.setContent(imageContent);
-            searchRequest.setImage(image);
-            searchRequest.setLimit(10);
-            searchRequest.setThreshold(0.8f);
+            SearchRequest searchRequest = ScenarioRequests.search(groupId, PathsConfig.FACE1_PATH, 10, 0.8f);
 
             SearchResult response = PathsConfig.faceSdk.searchApi.search(searchRequest);
             standardAssertions(response, personId);
         } catch (ApiException e) {
             System.err.println("ApiException occurred: " + e.getResponseBody());
             throw e;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
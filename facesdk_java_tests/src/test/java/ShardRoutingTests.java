@@ -0,0 +1,169 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.shard.HashRing;
+import com.regula.facesdk.tests.shard.RebalancePlan;
+import com.regula.facesdk.tests.shard.ShardRouter;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+/** Runs against stand-ins of its own, one per node, whatever the suite's target is. */
+@ExtendWith(ReportPortalExtension.class)
+public class ShardRoutingTests {
+    private final List<StandInServer> servers = new ArrayList<>();
+    private OkHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() {
+        httpClient = TransportSettings.fromSystemProperties().newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(StandInServer::close);
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private String start() throws IOException {
+        StandInServer server = StandInServer.start();
+        servers.add(server);
+        return server.baseUrl();
+    }
+
+    private static List<UUID> keys(int count) {
+        Random random = new Random(20);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return keys;
+    }
+
+    @Test
+    void keysShouldSpreadEvenlyAndMoveOnlyToANewNode() {
+        List<String> nodes = List.of("http://node-0/", "http://node-1/", "http://node-2/", "http://node-3/", "http://node-4/");
+        HashRing ring = new HashRing(nodes);
+        List<UUID> keys = keys(100_000);
+        Map<String, Integer> counts = new HashMap<>();
+        for (UUID key : keys) {
+            counts.merge(ring.owner(key), 1, Integer::sum);
+        }
+        double mean = keys.size() / (double) nodes.size();
+        for (String node : nodes) {
+            assertEquals(mean, counts.get(node), mean * 0.15, "Keys per node should be within 15% of the mean: " + counts);
+            assertEquals(0.2, ring.shares().get(node), 0.03, "Ring share of " + node);
+        }
+        assertEquals(1.0, ring.shares().values().stream().mapToDouble(Double::doubleValue).sum(), 1e-9, "Shares cover the ring");
+
+        HashRing grown = ring.withNode("http://node-5/");
+        RebalancePlan plan = RebalancePlan.between(ring, grown, keys);
+        assertEquals(1.0 / 6, plan.movedFraction(), 0.03, "About 1/6 of the keys should move: " + plan);
+        assertTrue(plan.moves.stream().allMatch(move -> move.to.equals("http://node-5/")), "Keys only move to the new node");
+        assertEquals(nodes.size(), plan.byRoute().size(), "Every old node gives some keys up: " + plan.byRoute());
+    }
+
+    @Test
+    void writesShouldLandOnTheOwnerAndAdditionsShouldMoveAFraction() throws IOException {
+        List<String> nodes = List.of(start(), start(), start());
+        ShardRouter router = new ShardRouter(nodes, httpClient);
+        Map<String, FaceSdk> direct = new HashMap<>();
+        for (String node : nodes) {
+            direct.put(node, TransportSettings.newFaceSdk(node, httpClient));
+        }
+
+        List<UUID> groupIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupToCreate group = new GroupToCreate();
+            group.setName("Shard group " + i);
+            groupIds.add(router.createGroup(group).getId());
+        }
+        List<UUID> personIds = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            PersonFields personFields = new PersonFields();
+            personFields.setName("Person " + i);
+            personFields.setGroups(Collections.singletonList(groupIds.get(i % groupIds.size())));
+            personIds.add(router.createPerson(personFields).getId());
+        }
+        assertTrue(router.placementRetries() > 0, "Some creates should have landed on a node that does not own the new id");
+
+        for (UUID personId : personIds) {
+            String owner = router.ownerOf(personId);
+            for (String node : nodes) {
+                if (node.equals(owner)) {
+                    assertEquals(personId, direct.get(node).personApi.getPerson(personId).getId(), "The owner has the person");
+                } else {
+                    ApiException e = assertThrows(ApiException.class, () -> direct.get(node).personApi.getPerson(personId),
+                            "Only the owner has the person");
+                    assertEquals(404, e.getCode(), "Other nodes do not know the person");
+                }
+            }
+        }
+        UUID first = personIds.get(0);
+        assertNotNull(router.addImageToPerson(first, ScenarioRequests.addImage(PathsConfig.FACE1_PATH)).getId(), "Images go to the owner");
+        assertEquals(30, router.getAllPersonsByGroupId(1, 100, groupIds.get(0)).getItems().size(), "Group listings go to the group's owner");
+
+        RebalancePlan plan = router.planAddition("http://localhost:1/");
+        assertEquals(personIds.size(), plan.persons, "Every person is found through its group");
+        assertTrue(plan.moves.stream().allMatch(move -> move.to.equals("http://localhost:1/")), "Persons only move to the new node");
+        assertTrue(plan.movedFraction() > 0.1 && plan.movedFraction() < 0.45, "About 1/4 of the persons should move: " + plan);
+        for (RebalancePlan.Move move : plan.moves) {
+            assertEquals(router.ownerOf(move.personId), move.from, "Moves start at the current owner");
+        }
+
+        router.deletePerson(first);
+        assertThrows(ApiException.class, () -> router.getPerson(first), "Deletes go to the owner");
+        for (UUID groupId : groupIds) {
+            router.deleteGroup(groupId);
+        }
+    }
+
+    @Test
+    void aDeadNodeShouldBeEjectedAndWritesPlacedOnTheOthers() throws IOException {
+        int deadPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            deadPort = socket.getLocalPort();
+        }
+        String dead = "http://localhost:" + deadPort + "/";
+        List<String> nodes = List.of(start(), dead, start());
+        ShardRouter router = new ShardRouter(nodes, httpClient).ejectAfter(1);
+
+        Map<String, Boolean> health = router.checkHealth();
+        assertEquals(false, health.get(dead), "The closed port is unhealthy: " + health);
+        assertTrue(router.isEjected(dead), "One failure ejects with ejectAfter(1)");
+
+        for (int i = 0; i < 20; i++) {
+            PersonFields personFields = new PersonFields();
+            personFields.setName("Person " + i);
+            String owner = router.ownerOf(router.createPerson(personFields).getId());
+            assertNotEquals(dead, owner, "Nothing is placed on an ejected node");
+        }
+        UUID onDead = keys(1000).stream().filter(key -> router.ownerOf(key).equals(dead)).findFirst().orElseThrow();
+        ShardRouter.NodeUnavailableException e = assertThrows(ShardRouter.NodeUnavailableException.class,
+                () -> router.deletePerson(onDead), "Ids of the ejected node fail fast");
+        assertEquals(dead, e.getNode(), "The exception names the node");
+
+        router.ejectionCooldown(java.time.Duration.ZERO);
+        assertThrows(ApiException.class, () -> router.deletePerson(onDead), "After the cooldown calls go through again");
+    }
+}
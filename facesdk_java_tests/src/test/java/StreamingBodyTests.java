@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import com.epam.reportportal.junit5.ReportPortalExtension;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.streaming.StreamingApiClient;
+import com.regula.facesdk.tests.streaming.StreamingRequestBody;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+@ExtendWith(ReportPortalExtension.class)
+public class StreamingBodyTests {
+    private static final String JSON = "application/json";
+
+    private static JsonElement written(RequestBody body) throws Exception {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertEquals(body.contentLength(), buffer.size(), "Content-Length should match the bytes written");
+        return JsonParser.parseString(buffer.readUtf8());
+    }
+
+    private static void assertSameJson(Object model) throws Exception {
+        JsonElement expected = written(new ApiClient().serialize(model, JSON));
+        RequestBody streaming = new StreamingApiClient().serialize(model, JSON);
+        assertTrue(streaming instanceof StreamingRequestBody, "JSON bodies should be streamed");
+        assertEquals(expected, written(streaming), "Streamed JSON should equal the generated client's");
+    }
+
+    @Test
+    void streamedBodiesShouldEqualTheGeneratedClientsJson() throws Exception {
+        assertSameJson(ScenarioRequests.detect(PathsConfig.DOCUMENT_WITH_LIVE_PATH, FaceQualityScenarios.CROP_ALL_FACES, false));
+        assertSameJson(ScenarioRequests.match(3, PathsConfig.FACE1_PATH, 1, PathsConfig.PRINTED_DOCUMENT_PATH));
+        assertSameJson(ScenarioRequests.addImage(PathsConfig.FACE3_PATH));
+        byte[] fixture = FixtureRegistry.shared().bytes(PathsConfig.FACE3_PATH);
+        assertNotNull(FixtureRegistry.shared().base64View(fixture), "Fixture images should go out as their cached base64");
+        assertNull(FixtureRegistry.shared().base64View(fixture.clone()), "Only the registry's own arrays are recognised");
+
+        // Every remainder of the image length modulo 3, i.e. each base64 padding case
+        Random random = new Random(42);
+        for (int length = 0; length <= 5; length++) {
+            byte[] image = new byte[length];
+            random.nextBytes(image);
+            DetectRequest request = new DetectRequest();
+            request.setImage(image);
+            assertSameJson(request);
+        }
+    }
+
+    @Test
+    void callsWithStreamedBodiesShouldGetTheSameResults() {
+        FaceSdk streaming = TransportSettings.fromSystemProperties().streamingBodies(true).newFaceSdk(PathsConfig.API_BASE_PATH);
+
+        DetectRequest detect = ScenarioRequests.detect(PathsConfig.SEVERAL_FACES_IMAGE_PATH, FaceQualityScenarios.CROP_ALL_FACES, false);
+        DetectResponse expected = PathsConfig.faceSdk.matchingApi.detect(detect);
+        DetectResponse actual = streaming.matchingApi.detect(detect);
+        assertEquals(FaceSDKResultCode.FACER_OK, actual.getCode(), "Unexpected response code");
+        assertEquals(rois(expected), rois(actual), "Same faces either way");
+
+        MatchRequest match = ScenarioRequests.match(3, PathsConfig.FACE1_PATH, 2, PathsConfig.FACE2_PATH);
+        assertEquals(PathsConfig.faceSdk.matchingApi.match(match).getResults().get(0).getSimilarity(),
+                streaming.matchingApi.match(match).getResults().get(0).getSimilarity(), 1e-4, "Same similarity either way");
+    }
+
+    private static List<List<Integer>> rois(DetectResponse response) {
+        List<List<Integer>> rois = new ArrayList<>();
+        for (var detection : Objects.requireNonNull(response.getResults()).getDetections()) {
+            rois.add(detection.getRoi());
+        }
+        return rois;
+    }
+}
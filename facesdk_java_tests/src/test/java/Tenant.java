@@ -0,0 +1,32 @@
+import com.regula.facesdk.webclient.gen.model.Group;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-test namespace for data created on the shared server. Each test instance gets its
+ * own tenant, so tests running concurrently can tell their groups apart from everyone else's.
+ */
+public class Tenant {
+    public static final String METADATA_KEY = "tenant";
+    private final String id = UUID.randomUUID().toString().substring(0, 8);
+
+    public String getId() {
+        return id;
+    }
+
+    public String name(String base) {
+        return base + "-" + id;
+    }
+
+    public Map<String, Object> metadata(Map<String, Object> base) {
+        Map<String, Object> metadata = new HashMap<>(base);
+        metadata.put(METADATA_KEY, id);
+        return metadata;
+    }
+
+    public boolean owns(Group group) {
+        return group.getName() != null && group.getName().endsWith("-" + id);
+    }
+}
@@ -0,0 +1,178 @@
+package com.regula.facesdk.tests.async;
+
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * CompletableFuture facade over the blocking matching, search and person APIs.
+ *
+ * At most maxInFlight calls run at once. Submitting never blocks: calls beyond that wait in
+ * a queue, and a thread that finishes a call takes the next queued one itself. So however
+ * many calls are submitted, at most maxInFlight threads are busy. That matters on 17, where
+ * they are platform threads from a cached pool; on 21+ they are virtual threads. Each
+ * running call holds its thread for the whole blocking HTTP call. The queue is unbounded:
+ * a producer that can outrun the service bounds its own backlog, as BatchDetector does
+ * with its read-ahead window.
+ */
+public final class AsyncFaceSdk implements AutoCloseable {
+    private final FaceSdk faceSdk;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Semaphore permits;
+    private final Queue<Call<?>> waiting = new ConcurrentLinkedQueue<>();
+    private final int maxInFlight;
+
+    public AsyncFaceSdk(FaceSdk faceSdk, int maxInFlight) {
+        this(faceSdk, maxInFlight, VirtualThreads.newExecutor(), true);
+    }
+
+    /** Runs calls on the given executor, which the caller keeps ownership of. */
+    public AsyncFaceSdk(FaceSdk faceSdk, int maxInFlight, ExecutorService executor) {
+        this(faceSdk, maxInFlight, executor, false);
+    }
+
+    private AsyncFaceSdk(FaceSdk faceSdk, int maxInFlight, ExecutorService executor, boolean ownsExecutor) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive, got " + maxInFlight);
+        }
+        this.faceSdk = faceSdk;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    public CompletableFuture<DetectResponse> detect(DetectRequest request) {
+        return submit(() -> faceSdk.matchingApi.detect(request));
+    }
+
+    public CompletableFuture<MatchResponse> match(MatchRequest request) {
+        return submit(() -> faceSdk.matchingApi.match(request));
+    }
+
+    public CompletableFuture<SearchResult> search(SearchRequest request) {
+        return submit(() -> faceSdk.searchApi.search(request));
+    }
+
+    public CompletableFuture<Person> createPerson(PersonFields fields) {
+        return submit(() -> faceSdk.personApi.createPerson(fields));
+    }
+
+    public CompletableFuture<Person> getPerson(UUID personId) {
+        return submit(() -> faceSdk.personApi.getPerson(personId));
+    }
+
+    public CompletableFuture<AddImageToPersonResponse> addImageToPerson(UUID personId, AddImageToPersonRequest request) {
+        return submit(() -> faceSdk.personApi.addImageToPerson(personId, request));
+    }
+
+    public CompletableFuture<Void> deletePerson(UUID personId) {
+        return submit(() -> {
+            faceSdk.personApi.deletePerson(personId);
+            return null;
+        });
+    }
+
+    /** Calls running now, at most maxInFlight. */
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /** Calls submitted and not started yet. */
+    public int queued() {
+        return waiting.size();
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        Call<T> call = new Call<>(supplier);
+        waiting.add(call);
+        dispatch();
+        return call.future;
+    }
+
+    /** Starts queued calls while permits are free. */
+    private void dispatch() {
+        // Looking again after giving a permit back: a call queued while it was held found none and waits on this loop
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Call<?> call = waiting.poll();
+            if (call == null) {
+                permits.release();
+                continue;
+            }
+            try {
+                executor.execute(() -> work(call));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                call.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** Runs the call and then queued ones on the same thread and permit until the queue is empty. */
+    private void work(Call<?> call) {
+        while (true) {
+            Runnable completion = call.run();
+            Call<?> next = waiting.poll();
+            if (next == null) {
+                // Given back before completing, so that inFlight() is 0 once the last future is done
+                permits.release();
+                dispatch();
+                completion.run();
+                return;
+            }
+            completion.run();
+            call = next;
+        }
+    }
+
+    private static final class Call<T> {
+        final Supplier<T> supplier;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Call(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        /** Makes the call; the returned action completes the future with its outcome. */
+        Runnable run() {
+            T result;
+            try {
+                result = supplier.get();
+            } catch (Throwable t) {
+                return () -> future.completeExceptionally(t);
+            }
+            return () -> future.complete(result);
+        }
+    }
+
+    /** Waits for calls in flight and queued, then shuts down the executor if this facade created it. */
+    @Override
+    public void close() {
+        if (!ownsExecutor) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.regula.facesdk.tests.batch;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.regula.facesdk.tests.async.AsyncFaceSdk;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs detect over every image under a directory and writes one JSON line per image
+ * (NDJSON) as results come back, so memory stays flat however many files there are.
+ *
+ * A reader thread loads at most readAhead files ahead of the calls, and at most
+ * parallelism calls run at once. Lines carry the image's position in the sorted listing
+ * ("seq"); in ordered mode (the default) they are also written in that order, holding
+ * back results that overtake a slower one, otherwise they are written as they arrive.
+ * Either way no more than parallelism + readAhead images are between reading and writing.
+ *
+ * Line format: {"seq":0,"file":"face1.jpg","elapsedMs":12,"response":{...}} or, when the
+ * call failed, "status" and "error" in place of "response".
+ */
+public final class BatchDetector {
+
+    public static final class Summary {
+        public final int images;
+        public final int failed;
+        public final int detections;
+        public final long elapsedMillis;
+
+        Summary(int images, int failed, int detections, long elapsedMillis) {
+            this.images = images;
+            this.failed = failed;
+            this.detections = detections;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return images + " images, " + detections + " detections, " + failed + " failed in " + elapsedMillis + " ms";
+        }
+    }
+
+    private static final class Item {
+        final int seq;
+        final Path file;
+        final byte[] content;
+        final Exception error;
+
+        Item(int seq, Path file, byte[] content, Exception error) {
+            this.seq = seq;
+            this.file = file;
+            this.content = content;
+            this.error = error;
+        }
+    }
+
+    private static final Item END = new Item(-1, null, null, null);
+    private final FaceSdk faceSdk;
+    /** The client's own Gson, so responses are written back as the service sent them. */
+    private final Gson gson;
+    private int parallelism = 4;
+    private int readAhead = 8;
+    private ProcessParam processParam;
+    private boolean ordered = true;
+
+    public BatchDetector(FaceSdk faceSdk) {
+        this.faceSdk = faceSdk;
+        this.gson = faceSdk.matchingApi.getApiClient().gson;
+    }
+
+    public BatchDetector parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public BatchDetector readAhead(int readAhead) {
+        this.readAhead = readAhead;
+        return this;
+    }
+
+    public BatchDetector processParam(ProcessParam processParam) {
+        this.processParam = processParam;
+        return this;
+    }
+
+    public BatchDetector ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /** Image files under the directory, sorted by path; this order defines "seq". */
+    public static List<Path> listImages(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(BatchDetector::isImage)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png");
+    }
+
+    public Summary run(Path directory, Path output) throws IOException, InterruptedException {
+        if (parallelism < 1 || readAhead < 1) {
+            throw new IllegalArgumentException("parallelism and readAhead must be positive");
+        }
+        long started = System.nanoTime();
+        List<Path> files = listImages(directory);
+        int window = parallelism + readAhead;
+        Semaphore pending = new Semaphore(window);
+        BlockingQueue<Item> loaded = new ArrayBlockingQueue<>(readAhead);
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger detections = new AtomicInteger();
+
+        Thread reader = new Thread(() -> read(files, loaded), "batch-reader");
+        reader.setDaemon(true);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(output);
+             AsyncFaceSdk async = new AsyncFaceSdk(faceSdk, parallelism)) {
+            NdjsonSink sink = new NdjsonSink(gson, writer, ordered, pending);
+            reader.start();
+            try {
+                for (Item item = loaded.take(); item != END; item = loaded.take()) {
+                    pending.acquire();
+                    Item current = item;
+                    if (current.error != null) {
+                        failed.incrementAndGet();
+                        sink.write(current.seq, errorLine(current, 0, current.error.toString(), 0));
+                        continue;
+                    }
+                    long submitted = System.nanoTime();
+                    async.detect(request(current.content)).whenComplete((response, error) -> {
+                        long elapsed = (System.nanoTime() - submitted) / 1_000_000;
+                        JsonObject line;
+                        try {
+                            line = error == null ? detected(current, elapsed, response, detections) : failure(current, elapsed, error);
+                        } catch (RuntimeException | Error e) {
+                            // Every seq needs its line: the ordered sink holds back the ones after it, and its permit never comes back
+                            line = errorLine(current, elapsed, e.toString(), 0);
+                        }
+                        if (line.has("error")) {
+                            failed.incrementAndGet();
+                        }
+                        sink.write(current.seq, line);
+                    });
+                }
+                // Every permit comes back once its line is written
+                pending.acquire(window);
+            } finally {
+                reader.interrupt();
+            }
+            sink.finish();
+        }
+        return new Summary(files.size(), failed.get(), detections.get(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static void read(List<Path> files, BlockingQueue<Item> loaded) {
+        try {
+            for (int seq = 0; seq < files.size(); seq++) {
+                Path file = files.get(seq);
+                try {
+                    loaded.put(new Item(seq, file, Files.readAllBytes(file), null));
+                } catch (IOException | RuntimeException e) {
+                    loaded.put(new Item(seq, file, null, e));
+                }
+            }
+        } catch (InterruptedException e) {
+            // run() is over and takes nothing more, END included
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            // Whatever else stops the loop, run() waits for END
+            if (!Thread.currentThread().isInterrupted()) {
+                try {
+                    loaded.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private JsonObject detected(Item item, long elapsedMillis, DetectResponse response, AtomicInteger detections) {
+        JsonObject line = line(item, elapsedMillis);
+        line.add("response", gson.toJsonTree(response));
+        if (response.getResults() != null && response.getResults().getDetections() != null) {
+            detections.addAndGet(response.getResults().getDetections().size());
+        }
+        return line;
+    }
+
+    private static JsonObject failure(Item item, long elapsedMillis, Throwable error) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        int status = cause instanceof ApiException ? ((ApiException) cause).getCode() : 0;
+        String message = cause instanceof ApiException ? ((ApiException) cause).getResponseBody() : cause.toString();
+        return errorLine(item, elapsedMillis, message, status);
+    }
+
+    private DetectRequest request(byte[] content) {
+        DetectRequest request = new DetectRequest();
+        request.setImage(content);
+        request.setProcessParam(processParam);
+        return request;
+    }
+
+    private static JsonObject line(Item item, long elapsedMillis) {
+        JsonObject line = new JsonObject();
+        line.addProperty("seq", item.seq);
+        line.addProperty("file", item.file.getFileName().toString());
+        line.addProperty("elapsedMs", elapsedMillis);
+        return line;
+    }
+
+    private static JsonObject errorLine(Item item, long elapsedMillis, String message, int status) {
+        JsonObject line = line(item, elapsedMillis);
+        line.addProperty("status", status);
+        line.addProperty("error", message);
+        return line;
+    }
+
+    /**
+     * Command line entry, see the batchDetect task in build.gradle. Settings are system
+     * properties: batch.dir (misc/files), batch.out (build/batch-detect.ndjson),
+     * batch.parallelism (4), batch.readAhead (8), batch.ordered (true), batch.scenario
+     * (a FaceQualityScenarios name) and batch.onlyCentralFace. Output image parameters
+     * are only available through the API.
+     */
+    public static void main(String[] args) throws Exception {
+        String basePath = StandInServer.isEnabled()
+                ? StandInServer.shared().baseUrl()
+                : System.getProperty("apiBasePath", "http://localhost:41101/");
+        Path directory = Paths.get(System.getProperty("batch.dir", "misc/files"));
+        Path output = Paths.get(System.getProperty("batch.out", "build/batch-detect.ndjson"));
+
+        ProcessParam processParam = null;
+        String scenario = System.getProperty("batch.scenario");
+        String onlyCentralFace = System.getProperty("batch.onlyCentralFace");
+        if (scenario != null || onlyCentralFace != null) {
+            processParam = new ProcessParam();
+            if (scenario != null) {
+                processParam.setScenario(FaceQualityScenarios.valueOf(scenario));
+            }
+            if (onlyCentralFace != null) {
+                processParam.setOnlyCentralFace(Boolean.parseBoolean(onlyCentralFace));
+            }
+        }
+
+        BatchDetector detector = new BatchDetector(TransportSettings.fromSystemProperties().newFaceSdk(basePath))
+                .parallelism(Integer.getInteger("batch.parallelism", 4))
+                .readAhead(Integer.getInteger("batch.readAhead", 8))
+                .ordered(Boolean.parseBoolean(System.getProperty("batch.ordered", "true")))
+                .processParam(processParam);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try {
+            System.out.println(detector.run(directory, output) + ", written to " + output);
+        } finally {
+            if (StandInServer.isEnabled()) {
+                StandInServer.shared().close();
+            }
+        }
+    }
+
+    private static final class NdjsonSink {
+        private final Gson gson;
+        private final BufferedWriter writer;
+        private final boolean ordered;
+        private final Semaphore pending;
+        private final Map<Integer, String> heldBack = new HashMap<>();
+        private int next;
+        private IOException failure;
+
+        NdjsonSink(Gson gson, BufferedWriter writer, boolean ordered, Semaphore pending) {
+            this.gson = gson;
+            this.writer = writer;
+            this.ordered = ordered;
+            this.pending = pending;
+        }
+
+        synchronized void write(int seq, JsonObject line) {
+            String text = gson.toJson(line);
+            if (!ordered) {
+                append(text);
+                return;
+            }
+            heldBack.put(seq, text);
+            for (String ready = heldBack.remove(next); ready != null; ready = heldBack.remove(next)) {
+                append(ready);
+                next++;
+            }
+        }
+
+        private void append(String text) {
+            try {
+                if (failure == null) {
+                    writer.write(text);
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                pending.release();
+            }
+        }
+
+        synchronized void finish() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.regula.facesdk.tests.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.regula.facesdk.tests.standin.FixtureCatalog;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.DetectRequest;
+import com.regula.facesdk.webclient.gen.model.DetectResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opt-in cache in front of matchingApi.detect for runs that send the same image with the
+ * same parameters again and again. Entries are keyed by the SHA-256 of the image bytes
+ * plus the ProcessParam serialized with its keys sorted, so two requests built separately
+ * but asking the same thing share an entry.
+ *
+ * Eviction is Caffeine's W-TinyLFU bounded by entry count, which keeps frequently repeated
+ * requests over one-off ones, and entries expire ttl after they were loaded. Concurrent
+ * misses on the same key make a single call. Failed calls are not cached.
+ *
+ * Cached responses are shared between callers and must not be modified.
+ */
+public final class DetectCache {
+    private static final Gson GSON = new Gson();
+
+    /** Counters since the cache was created. */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long size;
+
+        Stats(long hits, long misses, long evictions, long size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits %d, misses %d (hit rate %.1f%%), evictions %d, size %d",
+                    hits, misses, hitRate() * 100, evictions, size);
+        }
+    }
+
+    private final FaceSdk faceSdk;
+    private final Cache<String, DetectResponse> cache;
+
+    public DetectCache(FaceSdk faceSdk, long maxEntries, Duration ttl) {
+        this(faceSdk, maxEntries, ttl, Ticker.systemTicker());
+    }
+
+    /** With a custom clock, for tests of expiry. */
+    public DetectCache(FaceSdk faceSdk, long maxEntries, Duration ttl, Ticker ticker) {
+        this.faceSdk = faceSdk;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                // Evict on the calling thread so that counters are exact when the call returns
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    public DetectResponse detect(DetectRequest request) {
+        return cache.get(key(request), k -> faceSdk.matchingApi.detect(request));
+    }
+
+    public Stats stats() {
+        cache.cleanUp();
+        var stats = cache.stats();
+        return new Stats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.estimatedSize());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    static String key(DetectRequest request) {
+        byte[] image = request.getImage();
+        String imageHash = image == null ? "-" : FixtureCatalog.sha256(image);
+        JsonElement processParam = request.getProcessParam() == null ? null : GSON.toJsonTree(request.getProcessParam());
+        return imageHash + ' ' + canonical(processParam);
+    }
+
+    /** JSON text with object keys sorted and nulls dropped, so equal parameters give equal text. */
+    static String canonical(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return "null";
+        }
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                if (!entry.getValue().isJsonNull()) {
+                    names.add(entry.getKey());
+                }
+            }
+            Collections.sort(names);
+            StringBuilder sb = new StringBuilder("{");
+            for (String name : names) {
+                sb.append(sb.length() == 1 ? "" : ",").append(GSON.toJson(name)).append(':').append(canonical(object.get(name)));
+            }
+            return sb.append('}').toString();
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < array.size(); i++) {
+                sb.append(i == 0 ? "" : ",").append(canonical(array.get(i)));
+            }
+            return sb.append(']').toString();
+        }
+        return GSON.toJson(element);
+    }
+}
@@ -0,0 +1,49 @@
+package com.regula.facesdk.tests.crops;
+
+import java.util.Map;
+
+/** One face cut out of a source image, decoded and checked against the quality thresholds. */
+public final class Crop {
+    /** Name of the source image, unique within a run (its path relative to the input directory). */
+    public final String source;
+    /** Index of the detection in the source image's response. */
+    public final int face;
+    /** Face box in the source image: x, y, width, height. */
+    public final int[] roi;
+    /** Size of the decoded crop in pixels. */
+    public final int width;
+    public final int height;
+    /** Overall quality score, NaN when the service sent none. */
+    public final float score;
+    /** Value of every quality check the service sent, by name ("Yaw", "BlurLevel"...). */
+    public final Map<String, Float> quality;
+    /** The crop as the service encoded it; it is stored without recompressing. */
+    public final byte[] image;
+    /** Why the crop was left out, or null when it passed. */
+    public final String rejected;
+
+    public Crop(String source, int face, int[] roi, int width, int height, float score, Map<String, Float> quality, byte[] image, String rejected) {
+        this.source = source;
+        this.face = face;
+        this.roi = roi;
+        this.width = width;
+        this.height = height;
+        this.score = score;
+        this.quality = quality;
+        this.image = image;
+        this.rejected = rejected;
+    }
+
+    Crop rejected(String reason) {
+        return new Crop(source, face, roi, width, height, score, quality, image, reason);
+    }
+
+    public boolean accepted() {
+        return rejected == null;
+    }
+
+    @Override
+    public String toString() {
+        return source + "#" + face + " " + width + "x" + height + ", score " + score + (rejected == null ? "" : ", rejected: " + rejected);
+    }
+}
@@ -0,0 +1,407 @@
+package com.regula.facesdk.tests.crops;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accepted crops in one file: the encoded images packed into fixed-size chunks, then an
+ * index with one fixed-size entry per crop and a hash table over (source, face), so that
+ * a crop is found and read without scanning the file or loading more than its chunk.
+ *
+ * Layout: a 64-byte header, chunks of chunkBytes from offset 64 (the last one only as
+ * long as its content; a crop never spans two), then the entries, the source names and
+ * the hash table. Chunks keep every mapping below the 2 GiB a MappedByteBuffer can hold,
+ * so the file itself has no size limit, and are mapped on first access.
+ *
+ * Written once through {@link #create}; {@link #open} reads it, from any number of threads.
+ */
+public final class CropContainer implements AutoCloseable {
+    private static final int MAGIC = 0x43524F50; // "CROP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    /** chunk, offset, length, source, face, width, height, score, roi x, y, width, height */
+    private static final int ENTRY_BYTES = 48;
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+    /** What the index holds about a crop. */
+    public static final class Entry {
+        public final String source;
+        public final int face;
+        public final int[] roi;
+        public final int width;
+        public final int height;
+        public final float score;
+        /** Size of the encoded image in bytes. */
+        public final int length;
+
+        Entry(String source, int face, int[] roi, int width, int height, float score, int length) {
+            this.source = source;
+            this.face = face;
+            this.roi = roi;
+            this.width = width;
+            this.height = height;
+            this.score = score;
+            this.length = length;
+        }
+
+        @Override
+        public String toString() {
+            return source + "#" + face + " " + width + "x" + height + ", " + length + " bytes";
+        }
+    }
+
+    private final FileChannel channel;
+    private final int chunkBytes;
+    private final long dataEnd;
+    private final int count;
+    private final ByteBuffer entries;
+    private final ByteBuffer names;
+    private final int[] nameOffsets;
+    private final ByteBuffer table;
+    private final int mask;
+    private final ByteBuffer[] chunks;
+
+    private CropContainer(FileChannel channel, ByteBuffer header, ByteBuffer index, long indexOffset) {
+        this.channel = channel;
+        this.chunkBytes = header.getInt(8);
+        this.chunks = new ByteBuffer[header.getInt(12)];
+        this.count = header.getInt(16);
+        int slots = header.getInt(20);
+        int sources = header.getInt(24);
+        this.dataEnd = indexOffset;
+        this.mask = slots - 1;
+
+        int position = 0;
+        this.entries = index.slice(position, count * ENTRY_BYTES);
+        position += count * ENTRY_BYTES;
+        this.nameOffsets = new int[sources + 1];
+        for (int i = 0; i <= sources; i++, position += 4) {
+            nameOffsets[i] = index.getInt(position);
+        }
+        this.names = index.slice(position, nameOffsets[sources]);
+        position += nameOffsets[sources];
+        this.table = index.slice(position, slots * 4);
+    }
+
+    /**
+     * Starts a new container; the file appears, replacing an earlier one, when the writer is
+     * closed. An aborted writer leaves the earlier file as it was.
+     */
+    public static Writer create(Path file, int chunkBytes) {
+        return new Writer(file, chunkBytes);
+    }
+
+    public static CropContainer open(Path file) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (channel.read(header, 0) != HEADER_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a crop container file");
+            }
+            long indexOffset = header.getLong(32);
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, channel.size() - indexOffset);
+            return new CropContainer(channel, header, index, indexOffset);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Number of crops. */
+    public int size() {
+        return count;
+    }
+
+    public Entry entry(int id) {
+        int at = checked(id) * ENTRY_BYTES;
+        int[] roi = {entries.getInt(at + 32), entries.getInt(at + 36), entries.getInt(at + 40), entries.getInt(at + 44)};
+        return new Entry(name(entries.getInt(at + 12)), entries.getInt(at + 16), roi,
+                entries.getInt(at + 20), entries.getInt(at + 24), entries.getFloat(at + 28), entries.getInt(at + 8));
+    }
+
+    /** Id of the crop of the source's face, -1 if the container does not hold it. */
+    public int find(String source, int face) {
+        byte[] name = source.getBytes(StandardCharsets.UTF_8);
+        for (int slot = hash(source, face) & mask; ; slot = (slot + 1) & mask) {
+            int id = table.getInt(slot * 4) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            int at = id * ENTRY_BYTES;
+            if (entries.getInt(at + 16) == face && nameEquals(entries.getInt(at + 12), name)) {
+                return id;
+            }
+        }
+    }
+
+    /** The crop's encoded image as a read-only view of the mapped file. */
+    public ByteBuffer crop(int id) {
+        int at = checked(id) * ENTRY_BYTES;
+        return chunk(entries.getInt(at)).slice(entries.getInt(at + 4), entries.getInt(at + 8));
+    }
+
+    /** A copy of the crop's encoded image. */
+    public byte[] bytes(int id) {
+        ByteBuffer crop = crop(id);
+        byte[] bytes = new byte[crop.remaining()];
+        crop.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(channel);
+    }
+
+    private int checked(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("No crop " + id + " in " + count);
+        }
+        return id;
+    }
+
+    private synchronized ByteBuffer chunk(int chunk) {
+        if (chunks[chunk] == null) {
+            long start = HEADER_BYTES + (long) chunk * chunkBytes;
+            try {
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkBytes, dataEnd - start));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return chunks[chunk];
+    }
+
+    private String name(int source) {
+        byte[] bytes = new byte[nameOffsets[source + 1] - nameOffsets[source]];
+        names.get(nameOffsets[source], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean nameEquals(int source, byte[] name) {
+        int start = nameOffsets[source];
+        if (nameOffsets[source + 1] - start != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (names.get(start + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** String.hashCode is fixed by the language spec, so the table stays valid across JVMs. */
+    private static int hash(String source, int face) {
+        int h = source.hashCode() * 31 + face;
+        // murmur3 finalizer, so that close keys land far apart
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Read-only; nothing is lost
+            }
+        }
+    }
+
+    /**
+     * Appends crops to the chunks as they come and keeps only their index entries in
+     * memory; {@link #close()} writes the index and header and moves the file in place.
+     * {@link #abort()} instead deletes what was written, as does a close that fails.
+     * Not thread-safe: one thread adds.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final Path file;
+        private final Path temporary;
+        private final int chunkBytes;
+        private final FileChannel channel;
+        private final Map<String, Integer> sources = new HashMap<>();
+        private final List<String> sourceNames = new ArrayList<>();
+        private final Set<Long> keys = new HashSet<>();
+        private ByteBuffer entries = ByteBuffer.allocate(64 * ENTRY_BYTES);
+        private int count;
+        private int chunk;
+        private int offset;
+        private boolean closed;
+
+        private Writer(Path file, int chunkBytes) {
+            if (chunkBytes < 1) {
+                throw new IllegalArgumentException("chunkBytes must be positive");
+            }
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            this.chunkBytes = chunkBytes;
+            try {
+                this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** Stores the crop's image and returns its id, the number of crops added before it. */
+        public int add(Crop crop) {
+            if (closed) {
+                throw new IllegalStateException("Writer is closed");
+            }
+            int length = crop.image.length;
+            if (length > chunkBytes) {
+                throw new IllegalArgumentException(crop.source + "#" + crop.face + " has " + length + " bytes, chunks hold " + chunkBytes);
+            }
+            Integer source = sources.get(crop.source);
+            if (source == null) {
+                source = sourceNames.size();
+                sources.put(crop.source, source);
+                sourceNames.add(crop.source);
+            }
+            if (!keys.add(((long) source << 32) | (crop.face & 0xFFFFFFFFL))) {
+                throw new IllegalArgumentException(crop.source + "#" + crop.face + " was already added");
+            }
+            if (offset + length > chunkBytes) {
+                chunk++;
+                offset = 0;
+            }
+            try {
+                write(channel, ByteBuffer.wrap(crop.image), HEADER_BYTES + (long) chunk * chunkBytes + offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (entries.remaining() < ENTRY_BYTES) {
+                entries = ByteBuffer.allocate(entries.capacity() * 2).put(entries.flip());
+            }
+            int[] roi = crop.roi.length == 4 ? crop.roi : new int[4];
+            entries.putInt(chunk).putInt(offset).putInt(length).putInt(source).putInt(crop.face)
+                    .putInt(crop.width).putInt(crop.height).putFloat(crop.score)
+                    .putInt(roi[0]).putInt(roi[1]).putInt(roi[2]).putInt(roi[3]);
+            offset += length;
+            return count++;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                try (FileChannel out = channel) {
+                    long indexOffset = HEADER_BYTES + (long) chunk * chunkBytes + offset;
+                    write(out, index(), indexOffset);
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                            .putInt(MAGIC).putInt(VERSION).putInt(chunkBytes).putInt(count == 0 ? 0 : chunk + 1)
+                            .putInt(count).putInt(slots()).putInt(sourceNames.size()).putInt(0)
+                            .putLong(indexOffset);
+                    write(out, header.clear(), 0);
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                deleteTemporary(e);
+                throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            }
+        }
+
+        /** Drops the crops added so far; the target file is not touched. Closing afterwards does nothing. */
+        public void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                deleteTemporary(e);
+                throw new UncheckedIOException(e);
+            }
+            deleteTemporary(null);
+        }
+
+        private void deleteTemporary(Exception failure) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                if (failure == null) {
+                    throw new UncheckedIOException(e);
+                }
+                failure.addSuppressed(e);
+            }
+        }
+
+        private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        /** Power of two at least twice the count, so probes stay short. */
+        private int slots() {
+            return Integer.highestOneBit(Math.max(count, 1) * 4 - 1);
+        }
+
+        private ByteBuffer index() {
+            List<byte[]> encoded = new ArrayList<>(sourceNames.size());
+            int nameBytes = 0;
+            for (String name : sourceNames) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                nameBytes += bytes.length;
+            }
+            int slots = slots();
+            ByteBuffer index = ByteBuffer.allocate(count * ENTRY_BYTES + (encoded.size() + 1) * 4 + nameBytes + slots * 4);
+            index.put(entries.flip());
+
+            int nameOffset = 0;
+            for (byte[] bytes : encoded) {
+                index.putInt(nameOffset);
+                nameOffset += bytes.length;
+            }
+            index.putInt(nameOffset);
+            encoded.forEach(index::put);
+
+            int[] table = new int[slots];
+            for (int id = 0; id < count; id++) {
+                int at = id * ENTRY_BYTES;
+                int slot = hash(sourceNames.get(entries.getInt(at + 12)), entries.getInt(at + 16)) & (slots - 1);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (slots - 1);
+                }
+                table[slot] = id + 1;
+            }
+            for (int id : table) {
+                index.putInt(id);
+            }
+            return index.flip();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return count + " crops of " + (nameOffsets.length - 1) + " sources in " + chunks.length + " chunks of " + chunkBytes + " bytes";
+    }
+}
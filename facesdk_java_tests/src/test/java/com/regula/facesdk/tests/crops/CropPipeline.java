@@ -0,0 +1,270 @@
+package com.regula.facesdk.tests.crops;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.regula.facesdk.tests.batch.BatchDetector;
+import com.regula.facesdk.tests.lazy.ImageRef;
+import com.regula.facesdk.tests.lazy.LazyDetection;
+import com.regula.facesdk.tests.lazy.LazyResponseClient;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.DetectRequest;
+import com.regula.facesdk.webclient.gen.model.FaceQualityScenarios;
+import com.regula.facesdk.webclient.gen.model.ProcessParam;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Turns group photos into per-face crops: detect with CROP_ALL_FACES and onlyCentralFace
+ * false, then every detection's crop is decoded on a ForkJoinPool, checked against the
+ * {@link QualityThresholds} with the quality the service sent for it, and the ones that
+ * pass are appended to a {@link CropContainer}.
+ *
+ * Detect responses are read with {@link LazyResponseClient}, so the base64 crops are
+ * decoded on the pool too rather than on the calling thread. That thread makes one detect
+ * call at a time while the pool works on the crops of up to window earlier images, and
+ * adds crops to the container in file order, faces in response order, so a run over the
+ * same images always gives the same ids.
+ */
+public final class CropPipeline {
+
+    public static final class Summary {
+        public final int images;
+        public final int failed;
+        public final int detections;
+        public final int accepted;
+        public final int rejected;
+        public final long elapsedMillis;
+
+        Summary(int images, int failed, int detections, int accepted, int rejected, long elapsedMillis) {
+            this.images = images;
+            this.failed = failed;
+            this.detections = detections;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /** Detections decoded and checked per second, whether or not they passed. */
+        public double cropsPerSecond() {
+            return detections * 1000.0 / Math.max(elapsedMillis, 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d images, %d failed, %d detections (%d accepted, %d rejected) in %d ms, %.1f crops/s",
+                    images, failed, detections, accepted, rejected, elapsedMillis, cropsPerSecond());
+        }
+    }
+
+    private final LazyResponseClient client;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private QualityThresholds thresholds = QualityThresholds.none();
+    private int window = 4;
+
+    public CropPipeline(FaceSdk faceSdk) {
+        this.client = new LazyResponseClient(faceSdk);
+    }
+
+    /** Pool the crops are decoded on; the common pool unless set. */
+    public CropPipeline pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    public CropPipeline thresholds(QualityThresholds thresholds) {
+        this.thresholds = thresholds;
+        return this;
+    }
+
+    /** Images whose crops may still be decoding while the next detect runs; 4 unless set. */
+    public CropPipeline window(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.window = window;
+        return this;
+    }
+
+    /** Every crop of the image, rejected ones included, in response order. */
+    public List<Crop> crops(String source, byte[] image) {
+        List<Crop> crops = new ArrayList<>();
+        for (ForkJoinTask<Crop> task : submit(source, image)) {
+            crops.add(task.join());
+        }
+        return crops;
+    }
+
+    /**
+     * Crops of every image under the directory into a new container at the given path. The
+     * container only replaces an earlier one when the run completes; images that fail on
+     * their own are counted, not fatal.
+     */
+    public Summary run(Path directory, Path container, int chunkBytes) throws IOException {
+        CropContainer.Writer writer = CropContainer.create(container, chunkBytes);
+        Summary summary;
+        try {
+            summary = run(directory, writer);
+        } catch (IOException | RuntimeException | Error e) {
+            try {
+                writer.abort();
+            } catch (RuntimeException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+        writer.close();
+        return summary;
+    }
+
+    /** Sources are the images' paths relative to the directory, with '/' separators. */
+    public Summary run(Path directory, CropContainer.Writer writer) throws IOException {
+        long started = System.nanoTime();
+        List<Path> files = BatchDetector.listImages(directory);
+        Deque<List<ForkJoinTask<Crop>>> pending = new ArrayDeque<>();
+        int failed = 0;
+        int[] counts = new int[3];
+        for (Path file : files) {
+            String source = directory.relativize(file).toString().replace('\\', '/');
+            try {
+                pending.add(submit(source, Files.readAllBytes(file)));
+            } catch (IOException | UncheckedIOException | LazyResponseClient.StatusException e) {
+                failed++;
+                System.err.println(source + ": " + e.getMessage());
+                continue;
+            }
+            while (pending.size() > window) {
+                store(pending.remove(), writer, counts);
+            }
+        }
+        while (!pending.isEmpty()) {
+            store(pending.remove(), writer, counts);
+        }
+        return new Summary(files.size(), failed, counts[0], counts[1], counts[2], (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /** Detects the faces on the calling thread and hands each crop to the pool. */
+    private List<ForkJoinTask<Crop>> submit(String source, byte[] image) {
+        List<LazyDetection> detections = client.detect(request(image)).detections();
+        List<ForkJoinTask<Crop>> tasks = new ArrayList<>(detections.size());
+        for (int face = 0; face < detections.size(); face++) {
+            LazyDetection detection = detections.get(face);
+            int index = face;
+            tasks.add(pool.submit(() -> decode(source, index, detection)));
+        }
+        return tasks;
+    }
+
+    private static void store(List<ForkJoinTask<Crop>> tasks, CropContainer.Writer writer, int[] counts) {
+        for (ForkJoinTask<Crop> task : tasks) {
+            Crop crop = task.join();
+            counts[0]++;
+            if (crop.accepted()) {
+                writer.add(crop);
+                counts[1]++;
+            } else {
+                counts[2]++;
+            }
+        }
+    }
+
+    private DetectRequest request(byte[] image) {
+        ProcessParam processParam = new ProcessParam();
+        processParam.setScenario(FaceQualityScenarios.CROP_ALL_FACES);
+        processParam.setOnlyCentralFace(false);
+        processParam.setQuality(thresholds.request());
+        DetectRequest request = new DetectRequest();
+        request.setImage(image);
+        request.setProcessParam(processParam);
+        return request;
+    }
+
+    private Crop decode(String source, int face, LazyDetection detection) {
+        int[] roi = detection.roi().stream().mapToInt(Integer::intValue).toArray();
+        float score = Float.NaN;
+        Map<String, Float> quality = new LinkedHashMap<>();
+        JsonNode qualityNode = detection.node().get("quality");
+        if (qualityNode != null) {
+            JsonNode scoreNode = qualityNode.get("score");
+            if (scoreNode != null && scoreNode.isNumber()) {
+                score = scoreNode.floatValue();
+            }
+            for (JsonNode detail : qualityNode.path("details")) {
+                JsonNode value = detail.get("value");
+                if (detail.hasNonNull("name") && value != null && value.isNumber()) {
+                    quality.put(detail.get("name").asText(), value.floatValue());
+                }
+            }
+        }
+        quality = Collections.unmodifiableMap(quality);
+
+        ImageRef ref = detection.crop();
+        if (ref == null) {
+            return new Crop(source, face, roi, 0, 0, score, quality, new byte[0], "no crop in the response");
+        }
+        byte[] image;
+        BufferedImage decoded;
+        try {
+            image = ref.decode();
+            // From memory: ImageIO.read(InputStream) would cache through a temporary file
+            decoded = ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(image)));
+        } catch (IOException | RuntimeException e) {
+            return new Crop(source, face, roi, 0, 0, score, quality, new byte[0], "crop does not decode: " + e.getMessage());
+        }
+        if (decoded == null) {
+            return new Crop(source, face, roi, 0, 0, score, quality, image, "crop is not an image");
+        }
+        Crop crop = new Crop(source, face, roi, decoded.getWidth(), decoded.getHeight(), score, quality, image, null);
+        String reason = thresholds.reject(crop);
+        return reason == null ? crop : crop.rejected(reason);
+    }
+
+    /**
+     * Command line entry, see the cropFaces task in build.gradle. Settings are system
+     * properties: crops.dir (misc/files), crops.out (build/crops.bin), crops.thresholds
+     * (as {@link QualityThresholds#parse}, none by default), crops.parallelism (decoding
+     * threads, the common pool unless set), crops.window (4) and crops.chunkBytes (4 MiB).
+     */
+    public static void main(String[] args) throws Exception {
+        String basePath = StandInServer.isEnabled()
+                ? StandInServer.shared().baseUrl()
+                : System.getProperty("apiBasePath", "http://localhost:41101/");
+        Path directory = Paths.get(System.getProperty("crops.dir", "misc/files"));
+        Path output = Paths.get(System.getProperty("crops.out", "build/crops.bin"));
+        Integer parallelism = Integer.getInteger("crops.parallelism");
+        ForkJoinPool pool = parallelism == null ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
+
+        CropPipeline pipeline = new CropPipeline(TransportSettings.fromSystemProperties().newFaceSdk(basePath))
+                .pool(pool)
+                .thresholds(QualityThresholds.parse(System.getProperty("crops.thresholds")))
+                .window(Integer.getInteger("crops.window", 4));
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try {
+            Summary summary = pipeline.run(directory, output, Integer.getInteger("crops.chunkBytes", CropContainer.DEFAULT_CHUNK_BYTES));
+            System.out.println(summary + ", written to " + output);
+        } finally {
+            pool.shutdown();
+            if (StandInServer.isEnabled()) {
+                StandInServer.shared().close();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.regula.facesdk.tests.crops;
+
+import com.regula.facesdk.webclient.gen.model.FaceQualityConfigName;
+import com.regula.facesdk.webclient.gen.model.QualityConfig;
+import com.regula.facesdk.webclient.gen.model.QualityRequest;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Which crops are worth keeping: a minimum overall quality score, a minimum crop size and
+ * an allowed range per quality check. The ranges also go to the service as the quality
+ * config of the detect request, so that it evaluates exactly these checks; the crop is
+ * then judged on the values it sent back.
+ *
+ * Parsed from text as "score=0.6,size=64,Yaw=-15:15,BlurLevel=0:0.5".
+ */
+public final class QualityThresholds {
+    private float minScore = Float.NEGATIVE_INFINITY;
+    private int minSize;
+    private final Map<FaceQualityConfigName, float[]> ranges = new EnumMap<>(FaceQualityConfigName.class);
+
+    /** Every crop passes. */
+    public static QualityThresholds none() {
+        return new QualityThresholds();
+    }
+
+    public static QualityThresholds parse(String text) {
+        QualityThresholds thresholds = new QualityThresholds();
+        if (text == null || text.isBlank()) {
+            return thresholds;
+        }
+        for (String part : text.split(",")) {
+            String[] entry = part.trim().split("=", 2);
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got '" + part + "'");
+            }
+            String name = entry[0].trim();
+            String value = entry[1].trim();
+            if (name.equals("score")) {
+                thresholds.minScore(Float.parseFloat(value));
+            } else if (name.equals("size")) {
+                thresholds.minSize(Integer.parseInt(value));
+            } else {
+                // Negative bounds: the separator is the first ':' after the first character
+                int separator = value.indexOf(':', 1);
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Expected " + name + "=min:max, got '" + value + "'");
+                }
+                thresholds.range(FaceQualityConfigName.fromValue(name),
+                        Float.parseFloat(value.substring(0, separator)), Float.parseFloat(value.substring(separator + 1)));
+            }
+        }
+        return thresholds;
+    }
+
+    public QualityThresholds minScore(float minScore) {
+        this.minScore = minScore;
+        return this;
+    }
+
+    public QualityThresholds minSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize must not be negative");
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    public QualityThresholds range(FaceQualityConfigName name, float min, float max) {
+        if (!(min <= max)) {
+            throw new IllegalArgumentException(name.getValue() + ": min " + min + " is above max " + max);
+        }
+        ranges.put(name, new float[]{min, max});
+        return this;
+    }
+
+    /**
+     * The quality part of the detect request, or null when nothing here needs it. With a
+     * minimum score but no ranges the config is empty and the service runs its default checks.
+     */
+    QualityRequest request() {
+        if (ranges.isEmpty() && minScore == Float.NEGATIVE_INFINITY) {
+            return null;
+        }
+        QualityRequest request = new QualityRequest();
+        ranges.forEach((name, range) -> {
+            QualityConfig config = new QualityConfig();
+            config.setName(name);
+            config.setRange(Arrays.asList(range[0], range[1]));
+            request.addConfigItem(config);
+        });
+        return request;
+    }
+
+    /** Why the crop does not pass, or null when it does. */
+    String reject(Crop crop) {
+        if (crop.width < minSize || crop.height < minSize) {
+            return String.format(Locale.ROOT, "%dx%d is below %d px", crop.width, crop.height, minSize);
+        }
+        if (minScore > Float.NEGATIVE_INFINITY && !(crop.score >= minScore)) {
+            return String.format(Locale.ROOT, "score %.2f is below %.2f", crop.score, minScore);
+        }
+        for (Map.Entry<FaceQualityConfigName, float[]> range : ranges.entrySet()) {
+            String name = range.getKey().getValue();
+            Float value = crop.quality.get(name);
+            if (value == null) {
+                return name + " is missing";
+            }
+            if (value < range.getValue()[0] || value > range.getValue()[1]) {
+                return String.format(Locale.ROOT, "%s %.2f is out of %.2f..%.2f", name, value, range.getValue()[0], range.getValue()[1]);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (minScore > Float.NEGATIVE_INFINITY) {
+            text.append("score=").append(minScore);
+        }
+        if (minSize > 0) {
+            text.append(text.length() > 0 ? "," : "").append("size=").append(minSize);
+        }
+        ranges.forEach((name, range) -> text.append(text.length() > 0 ? "," : "")
+                .append(name.getValue()).append('=').append(range[0]).append(':').append(range[1]));
+        return text.length() > 0 ? text.toString() : "none";
+    }
+}
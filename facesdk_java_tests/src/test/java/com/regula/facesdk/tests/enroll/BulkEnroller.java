@@ -0,0 +1,342 @@
+package com.regula.facesdk.tests.enroll;
+
+import com.regula.facesdk.tests.async.VirtualThreads;
+import com.regula.facesdk.tests.resilience.Retries;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Enrolls the persons of a {@link Manifest}: createPerson, then addImageToPerson for each
+ * of their images. Up to concurrency persons are in progress at once, so one person's
+ * uploads overlap the next ones' creation instead of waiting for them.
+ *
+ * Transient failures (no response, 408, 429, 5xx) are retried with jittered exponential
+ * backoff ({@link Retries}). A failed attempt may still have been applied by the server, so retries check
+ * before repeating a write: every person is created with its manifest key in the
+ * "enrollmentKey" metadata entry and looked up by it in its first group, and an image is
+ * only added again if the person has fewer images than expected. The lookup only reads the
+ * tail of the group, where the lost create can have landed: members are listed in the order
+ * they joined, and the person is no further from the end than the creates sent since its
+ * first attempt plus those in flight then. Persons without a group cannot be looked up, and
+ * neither can persons pushed out of that tail by another process enrolling into the same
+ * group at the same time; both may be created twice if a create times out.
+ *
+ * Progress goes to a {@link Checkpoint}; running again with the same checkpoint skips
+ * finished persons and resumes half-enrolled ones from the last added image. Every write
+ * is logged there before it is sent, so a write that a crash cut off from its confirmation
+ * is checked like a retry when the next run resumes: the person is looked up in the whole
+ * of its first group, and the image count is read.
+ */
+public final class BulkEnroller {
+    public static final String KEY_METADATA = "enrollmentKey";
+    private static final int MAX_REPORTED_FAILURES = 100;
+    private static final int LOOKUP_PAGE_SIZE = 100;
+
+    public static final class Report {
+        public final long persons;
+        public final long images;
+        public final long skipped;
+        public final long failed;
+        public final long retries;
+        public final long elapsedMillis;
+        public final List<String> failures;
+
+        Report(long persons, long images, long skipped, long failed, long retries, long elapsedMillis, List<String> failures) {
+            this.persons = persons;
+            this.images = images;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.retries = retries;
+            this.elapsedMillis = elapsedMillis;
+            this.failures = failures;
+        }
+
+        public double personsPerSecond() {
+            return elapsedMillis == 0 ? 0 : persons * 1000.0 / elapsedMillis;
+        }
+
+        public double imagesPerSecond() {
+            return elapsedMillis == 0 ? 0 : images * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d persons (%.1f/s), %d images (%.1f/s), %d already done, %d failed, %d retries in %.1f s",
+                    persons, personsPerSecond(), images, imagesPerSecond(), skipped, failed, retries, elapsedMillis / 1000.0);
+        }
+    }
+
+    private static final class TransientFailure extends Exception {
+        TransientFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private final FaceSdk faceSdk;
+    private int concurrency = 8;
+    private int maxAttempts = 5;
+    private long backoffMillis = 200;
+    private PrintStream progressOut;
+    private long progressIntervalSeconds = 10;
+
+    private final LongAdder persons = new LongAdder();
+    private final LongAdder images = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final AtomicLong creates = new AtomicLong();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+    public BulkEnroller(FaceSdk faceSdk) {
+        this.faceSdk = faceSdk;
+    }
+
+    public BulkEnroller concurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public BulkEnroller maxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public BulkEnroller backoff(long backoffMillis) {
+        this.backoffMillis = backoffMillis;
+        return this;
+    }
+
+    /** Prints a progress line to the stream every interval while running. */
+    public BulkEnroller progress(PrintStream out, long intervalSeconds) {
+        this.progressOut = out;
+        this.progressIntervalSeconds = intervalSeconds;
+        return this;
+    }
+
+    public Report run(Path manifest, Path checkpointFile) throws IOException, InterruptedException {
+        if (concurrency < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("concurrency and maxAttempts must be positive");
+        }
+        long started = System.nanoTime();
+        long skipped = 0;
+        Semaphore slots = new Semaphore(concurrency);
+        ExecutorService executor = VirtualThreads.newExecutor();
+        ScheduledExecutorService reporter = progressOut == null ? null : startReporter(started);
+        try (Checkpoint checkpoint = Checkpoint.open(checkpointFile);
+             Stream<ManifestEntry> entries = Manifest.read(manifest)) {
+            // Even when the manifest or a wait fails, the checkpoint stays open until every started person is written
+            try {
+                Iterator<ManifestEntry> iterator = entries.iterator();
+                while (iterator.hasNext()) {
+                    ManifestEntry entry = iterator.next();
+                    Checkpoint.Progress progress = checkpoint.get(entry.key);
+                    if (progress != null && progress.done) {
+                        skipped++;
+                        continue;
+                    }
+                    slots.acquire();
+                    executor.execute(() -> {
+                        try {
+                            enroll(entry, progress, checkpoint);
+                            persons.increment();
+                        } catch (Exception e) {
+                            failed.increment();
+                            if (failures.size() < MAX_REPORTED_FAILURES) {
+                                failures.add(entry.key + ": " + describe(e));
+                            }
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+            } finally {
+                slots.acquireUninterruptibly(concurrency);
+                executor.shutdown();
+            }
+        } finally {
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+        }
+        long elapsed = (System.nanoTime() - started) / 1_000_000;
+        return new Report(persons.sum(), images.sum(), skipped, failed.sum(), retries.sum(), elapsed, new ArrayList<>(failures));
+    }
+
+    private void enroll(ManifestEntry entry, Checkpoint.Progress progress, Checkpoint checkpoint) throws Exception {
+        UUID personId = progress != null ? progress.personId : null;
+        int added = progress != null ? progress.imagesAdded : 0;
+        // A write the crashed run sent and never confirmed may have been applied
+        boolean uncertain = progress != null && progress.uncertain;
+        if (personId == null) {
+            checkpoint.creating(entry.key);
+            personId = createPerson(entry, uncertain);
+            checkpoint.created(entry.key, personId);
+            uncertain = false;
+        }
+        for (int i = added; i < entry.images.size(); i++) {
+            checkpoint.adding(entry.key, i);
+            addImage(personId, entry.images.get(i), i, uncertain);
+            images.increment();
+            checkpoint.imagesAdded(entry.key, i + 1);
+            uncertain = false;
+        }
+        checkpoint.done(entry.key);
+    }
+
+    private UUID createPerson(ManifestEntry entry, boolean startedBefore) throws Exception {
+        PersonFields fields = new PersonFields();
+        fields.setName(entry.name);
+        fields.setGroups(entry.groups);
+        Map<String, Object> metadata = new HashMap<>(entry.metadata);
+        metadata.put(KEY_METADATA, entry.key);
+        fields.setMetadata(metadata);
+        boolean[] uncertain = {startedBefore};
+        long first = creates.get();
+        return retrying(() -> {
+            if (uncertain[0]) {
+                // Nothing bounds where a create of an earlier run landed, so that lookup reads the whole group
+                UUID existing = findEnrolled(entry, startedBefore ? Long.MAX_VALUE : creates.get() - first + concurrency);
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            uncertain[0] = true;
+            creates.incrementAndGet();
+            return faceSdk.personApi.createPerson(fields).getId();
+        });
+    }
+
+    /** Looks for the person among the last window members of its first group, newest page first. */
+    private UUID findEnrolled(ManifestEntry entry, long window) {
+        if (entry.groups.isEmpty()) {
+            return null;
+        }
+        UUID groupId = entry.groups.get(0);
+        // With a page size of 1 the page count is the number of members
+        Integer total = faceSdk.groupApi.getAllPersonsByGroupId(1, 1, groupId).getTotalPages();
+        if (total == null || total == 0) {
+            return null;
+        }
+        long from = Math.max(0, total - window);
+        for (int page = (total - 1) / LOOKUP_PAGE_SIZE + 1; page > from / LOOKUP_PAGE_SIZE; page--) {
+            PersonsPage persons = faceSdk.groupApi.getAllPersonsByGroupId(page, LOOKUP_PAGE_SIZE, groupId);
+            if (persons.getItems() == null) {
+                continue;
+            }
+            for (Person person : persons.getItems()) {
+                if (person.getMetadata() != null && entry.key.equals(person.getMetadata().get(KEY_METADATA))) {
+                    return person.getId();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addImage(UUID personId, Path image, int index, boolean startedBefore) throws Exception {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(image);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + image, e);
+        }
+        AddImageToPersonRequest request = ScenarioRequests.addImage(content, ScenarioRequests.contentType(image));
+        boolean[] uncertain = {startedBefore};
+        retrying(() -> {
+            // With a page size of 1 the page count is the number of images the person has
+            if (uncertain[0] && imageCount(personId) > index) {
+                return null;
+            }
+            uncertain[0] = true;
+            return faceSdk.personApi.addImageToPerson(personId, request);
+        });
+    }
+
+    private int imageCount(UUID personId) {
+        ImagePage page = faceSdk.personApi.getAllImagesByPersonId(1, 1, personId);
+        return page.getTotalPages() == null ? 0 : page.getTotalPages();
+    }
+
+    private <T> T retrying(Supplier<T> call) throws InterruptedException {
+        return Retries.retrying(maxAttempts, backoffMillis, () -> true, retries::increment, call);
+    }
+
+    private static String describe(Exception e) {
+        if (e instanceof ApiException) {
+            ApiException api = (ApiException) e;
+            return "HTTP " + api.getCode() + " " + api.getResponseBody();
+        }
+        return e.toString();
+    }
+
+    private ScheduledExecutorService startReporter(long started) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "enroll-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            double seconds = (System.nanoTime() - started) / 1e9;
+            progressOut.printf("%.0f s: %d persons (%.1f/s), %d images (%.1f/s), %d failed%n", seconds,
+                    persons.sum(), persons.sum() / seconds, images.sum(), images.sum() / seconds, failed.sum());
+        }, progressIntervalSeconds, progressIntervalSeconds, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    /**
+     * Command line entry, see the enroll task in build.gradle. System properties:
+     * enroll.manifest (required), enroll.checkpoint (manifest path + ".checkpoint"),
+     * enroll.concurrency (8), enroll.maxAttempts (5).
+     */
+    public static void main(String[] args) throws Exception {
+        String manifestPath = System.getProperty("enroll.manifest");
+        if (manifestPath == null || manifestPath.isEmpty()) {
+            throw new IllegalArgumentException("Set enroll.manifest to a CSV or JSON manifest");
+        }
+        Path manifest = Paths.get(manifestPath);
+        Path checkpoint = Paths.get(System.getProperty("enroll.checkpoint", manifestPath + ".checkpoint"));
+        String basePath = StandInServer.isEnabled()
+                ? StandInServer.shared().baseUrl()
+                : System.getProperty("apiBasePath", "http://localhost:41101/");
+
+        BulkEnroller enroller = new BulkEnroller(TransportSettings.fromSystemProperties().newFaceSdk(basePath))
+                .concurrency(Integer.getInteger("enroll.concurrency", 8))
+                .maxAttempts(Integer.getInteger("enroll.maxAttempts", 5))
+                .progress(System.out, 10);
+        try {
+            Report report = enroller.run(manifest, checkpoint);
+            System.out.println(report);
+            report.failures.forEach(failure -> System.out.println("  failed " + failure));
+            System.out.println("Checkpoint: " + checkpoint);
+        } finally {
+            if (StandInServer.isEnabled()) {
+                StandInServer.shared().close();
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.regula.facesdk.tests.enroll;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only log of enrollment progress, replayed when a run starts so a crashed run
+ * continues where it stopped. Each write is logged and flushed before it is sent and again
+ * once it has succeeded on the server:
+ *
+ * S, -, key           - person about to be created
+ * C, person id, key   - person created
+ * A, image index, key - image about to be added (index counts from 0)
+ * I, image count, key - that many of the entry's images added
+ * D, -, key           - entry complete
+ *
+ * An S or A without the line that confirms it is a write that may have been applied before
+ * the crash; {@link Progress#uncertain} tells the next run to check before repeating it.
+ *
+ * Fields are tab-separated with the key last. A line cut short by a crash is dropped
+ * when loading and overwritten by the next write.
+ */
+public final class Checkpoint implements Closeable {
+
+    public static final class Progress {
+        public final UUID personId;
+        public final int imagesAdded;
+        public final boolean done;
+        /** The next write (the create, or adding image imagesAdded) was sent and never confirmed. */
+        public final boolean uncertain;
+
+        Progress(UUID personId, int imagesAdded, boolean done, boolean uncertain) {
+            this.personId = personId;
+            this.imagesAdded = imagesAdded;
+            this.done = done;
+            this.uncertain = uncertain;
+        }
+    }
+
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    private Checkpoint(Path file) throws IOException {
+        long validLength = Files.exists(file) ? load(file) : 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+    }
+
+    public static Checkpoint open(Path file) throws IOException {
+        return new Checkpoint(file);
+    }
+
+    /** Progress recorded for the entry, or null if it was never started. */
+    public Progress get(String key) {
+        return progress.get(key);
+    }
+
+    public int doneCount() {
+        int count = 0;
+        for (Progress p : progress.values()) {
+            if (p.done) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void creating(String key) throws IOException {
+        progress.put(key, new Progress(null, 0, false, true));
+        append("S", "-", key);
+    }
+
+    public void created(String key, UUID personId) throws IOException {
+        progress.put(key, new Progress(personId, 0, false, false));
+        append("C", personId.toString(), key);
+    }
+
+    public void adding(String key, int index) throws IOException {
+        Progress previous = progress.get(key);
+        progress.put(key, new Progress(previous.personId, index, false, true));
+        append("A", Integer.toString(index), key);
+    }
+
+    public void imagesAdded(String key, int count) throws IOException {
+        Progress previous = progress.get(key);
+        progress.put(key, new Progress(previous.personId, count, false, false));
+        append("I", Integer.toString(count), key);
+    }
+
+    public void done(String key) throws IOException {
+        Progress previous = progress.get(key);
+        progress.put(key, new Progress(previous != null ? previous.personId : null,
+                previous != null ? previous.imagesAdded : 0, true, false));
+        append("D", "-", key);
+    }
+
+    private synchronized void append(String type, String value, String key) throws IOException {
+        writer.write(type + '\t' + value + '\t' + key + '\n');
+        writer.flush();
+    }
+
+    private long load(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        int complete = 0;
+        for (int i = content.length - 1; i >= 0; i--) {
+            if (content[i] == '\n') {
+                complete = i + 1;
+                break;
+            }
+        }
+        String text = new String(content, 0, complete, StandardCharsets.UTF_8);
+        for (String line : text.split("\n")) {
+            String[] fields = line.split("\t", 3);
+            if (fields.length < 3) {
+                continue;
+            }
+            String key = fields[2];
+            Progress previous = progress.get(key);
+            switch (fields[0]) {
+                case "S":
+                    progress.put(key, new Progress(null, 0, false, true));
+                    break;
+                case "C":
+                    progress.put(key, new Progress(UUID.fromString(fields[1]), 0, false, false));
+                    break;
+                case "A":
+                    if (previous != null) {
+                        progress.put(key, new Progress(previous.personId, Integer.parseInt(fields[1]), false, true));
+                    }
+                    break;
+                case "I":
+                    if (previous != null) {
+                        progress.put(key, new Progress(previous.personId, Integer.parseInt(fields[1]), false, false));
+                    }
+                    break;
+                case "D":
+                    progress.put(key, new Progress(previous != null ? previous.personId : null,
+                            previous != null ? previous.imagesAdded : 0, true, false));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return complete;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,236 @@
+package com.regula.facesdk.tests.enroll;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads an enrollment manifest lazily, one entry at a time, so a 100k-person gallery is
+ * never held in memory. Image paths are resolved against the manifest's directory.
+ *
+ * JSON (.json): an array of {"id", "name", "groups": [uuid], "metadata": {}, "images": [path]}.
+ * CSV (anything else): a header line naming the columns, then one person per line.
+ * Columns id, name, groups and images are recognised, groups and images holding
+ * ";"-separated lists; every other column becomes a metadata entry. Fields may be quoted
+ * with "" for a literal quote, but may not span lines.
+ *
+ * "id" is optional. Without it an entry is known by the manifest file name and its
+ * position, so a manifest must not be reordered between a crashed run and its resume.
+ */
+public final class Manifest {
+    private static final Gson GSON = new Gson();
+
+    private Manifest() {
+    }
+
+    public static Stream<ManifestEntry> read(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file);
+        Iterator<ManifestEntry> entries;
+        try {
+            entries = file.getFileName().toString().toLowerCase().endsWith(".json")
+                    ? new JsonEntries(file, reader)
+                    : new CsvEntries(file, reader);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private static String defaultKey(Path file, int index) {
+        return file.getFileName() + ":" + index;
+    }
+
+    private static final class JsonEntries implements Iterator<ManifestEntry> {
+        private final Path file;
+        private final JsonReader reader;
+        private int index;
+
+        JsonEntries(Path file, BufferedReader source) throws IOException {
+            this.file = file;
+            this.reader = new JsonReader(source);
+            reader.beginArray();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return reader.hasNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public ManifestEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            JsonObject object = JsonParser.parseReader(reader).getAsJsonObject();
+            String key = object.has("id") ? object.get("id").getAsString() : defaultKey(file, index);
+            index++;
+            List<UUID> groups = new ArrayList<>();
+            for (JsonElement group : array(object, "groups")) {
+                groups.add(UUID.fromString(group.getAsString()));
+            }
+            List<Path> images = new ArrayList<>();
+            for (JsonElement image : array(object, "images")) {
+                images.add(file.resolveSibling(image.getAsString()));
+            }
+            Map<String, Object> metadata = object.has("metadata")
+                    ? GSON.fromJson(object.get("metadata"), new TypeToken<LinkedHashMap<String, Object>>() {}.getType())
+                    : new HashMap<>();
+            return new ManifestEntry(key, object.get("name").getAsString(), groups, metadata, images);
+        }
+
+        private static JsonArray array(JsonObject object, String name) {
+            return object.has(name) ? object.getAsJsonArray(name) : new JsonArray();
+        }
+    }
+
+    private static final class CsvEntries implements Iterator<ManifestEntry> {
+        private final Path file;
+        private final BufferedReader reader;
+        private final List<String> columns;
+        private String line;
+        private int index;
+
+        CsvEntries(Path file, BufferedReader reader) throws IOException {
+            this.file = file;
+            this.reader = reader;
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException(file + " is empty, expected a header line");
+            }
+            this.columns = split(header);
+            if (!columns.contains("name")) {
+                throw new IOException(file + " has no 'name' column");
+            }
+            advance();
+        }
+
+        private void advance() throws IOException {
+            do {
+                line = reader.readLine();
+            } while (line != null && line.isBlank());
+        }
+
+        @Override
+        public boolean hasNext() {
+            return line != null;
+        }
+
+        @Override
+        public ManifestEntry next() {
+            if (line == null) {
+                throw new NoSuchElementException();
+            }
+            List<String> fields = split(line);
+            String key = defaultKey(file, index);
+            String name = null;
+            List<UUID> groups = new ArrayList<>();
+            List<Path> images = new ArrayList<>();
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            for (int i = 0; i < columns.size() && i < fields.size(); i++) {
+                String value = fields.get(i);
+                switch (columns.get(i)) {
+                    case "id":
+                        if (!value.isEmpty()) {
+                            key = value;
+                        }
+                        break;
+                    case "name":
+                        name = value;
+                        break;
+                    case "groups":
+                        for (String group : list(value)) {
+                            groups.add(UUID.fromString(group));
+                        }
+                        break;
+                    case "images":
+                        for (String image : list(value)) {
+                            images.add(file.resolveSibling(image));
+                        }
+                        break;
+                    default:
+                        metadata.put(columns.get(i), value);
+                }
+            }
+            index++;
+            try {
+                advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new ManifestEntry(key, name, groups, metadata, images);
+        }
+
+        private static List<String> list(String value) {
+            List<String> items = new ArrayList<>();
+            for (String item : value.split(";")) {
+                if (!item.isBlank()) {
+                    items.add(item.trim());
+                }
+            }
+            return items.isEmpty() ? Collections.emptyList() : items;
+        }
+
+        static List<String> split(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString().trim());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString().trim());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.regula.facesdk.tests.enroll;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/** One person to enroll: who they are, where they go and which images to add. */
+public final class ManifestEntry {
+    public final String key;
+    public final String name;
+    public final List<UUID> groups;
+    public final Map<String, Object> metadata;
+    public final List<Path> images;
+
+    public ManifestEntry(String key, String name, List<UUID> groups, Map<String, Object> metadata, List<Path> images) {
+        if (key.indexOf('\t') >= 0 || key.indexOf('\n') >= 0 || key.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Manifest key must not contain tabs or line breaks: '" + key + "'");
+        }
+        this.key = key;
+        this.name = name;
+        this.groups = groups;
+        this.metadata = metadata;
+        this.images = images;
+    }
+}
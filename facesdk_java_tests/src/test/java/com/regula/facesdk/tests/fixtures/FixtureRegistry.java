@@ -0,0 +1,97 @@
+package com.regula.facesdk.tests.fixtures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Image fixtures loaded once per JVM. Each file is memory-mapped on first use; the byte[]
+ * copy the client API needs is made once and cached, so repeated setUp calls and long load
+ * or benchmark runs do no disk I/O. The base64 text of a fixture is also encoded once:
+ * streamed request bodies ({@link com.regula.facesdk.tests.streaming.StreamingRequestBody},
+ * TRANSPORT_STREAMING_BODIES) recognise a fixture array and copy its cached base64 into the
+ * connection. The generated client's own serializer still encodes every request.
+ *
+ * The cached arrays are shared between callers and must not be modified.
+ */
+public final class FixtureRegistry {
+    public static final Path FILES_PATH = Paths.get(System.getProperty("user.dir"), "misc", "files");
+    private static final FixtureRegistry SHARED = new FixtureRegistry();
+
+    private static final class Fixture {
+        final ByteBuffer mapped;
+        volatile byte[] bytes;
+        volatile ByteBuffer base64;
+
+        Fixture(ByteBuffer mapped) {
+            this.mapped = mapped;
+        }
+    }
+
+    private final Map<Path, Fixture> fixtures = new ConcurrentHashMap<>();
+    // Arrays have identity equals and hashCode, so this finds exactly the arrays handed out
+    private final Map<byte[], Fixture> byArray = new ConcurrentHashMap<>();
+
+    public static FixtureRegistry shared() {
+        return SHARED;
+    }
+
+    /** File contents as an array, copied out of the mapping once. */
+    public byte[] bytes(Path path) {
+        Fixture fixture = fixture(path);
+        byte[] bytes = fixture.bytes;
+        if (bytes == null) {
+            synchronized (fixture) {
+                bytes = fixture.bytes;
+                if (bytes == null) {
+                    ByteBuffer view = fixture.mapped.duplicate();
+                    bytes = new byte[view.remaining()];
+                    view.get(bytes);
+                    byArray.put(bytes, fixture);
+                    fixture.bytes = bytes;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public byte[] bytes(String name) {
+        return bytes(FILES_PATH.resolve(name));
+    }
+
+    /**
+     * Read-only view of the base64 (ASCII) encoding of an array returned by {@link #bytes},
+     * encoded once; null for any other array, even one with the same contents.
+     */
+    public ByteBuffer base64View(byte[] bytes) {
+        Fixture fixture = byArray.get(bytes);
+        if (fixture == null) {
+            return null;
+        }
+        ByteBuffer base64 = fixture.base64;
+        if (base64 == null) {
+            base64 = Base64.getEncoder().encode(fixture.mapped.duplicate()).asReadOnlyBuffer();
+            fixture.base64 = base64;
+        }
+        return base64.duplicate();
+    }
+
+    private Fixture fixture(Path path) {
+        return fixtures.computeIfAbsent(path.toAbsolutePath().normalize(), FixtureRegistry::map);
+    }
+
+    private static Fixture map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Fixture(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map fixture " + path, e);
+        }
+    }
+}
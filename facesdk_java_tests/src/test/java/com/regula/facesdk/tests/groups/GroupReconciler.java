@@ -0,0 +1,139 @@
+package com.regula.facesdk.tests.groups;
+
+import com.regula.facesdk.tests.paging.Pages;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.Person;
+import com.regula.facesdk.webclient.gen.model.UpdateGroup;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Brings a group's membership to a desired set of person ids with a few batched
+ * updatePersonsInGroup calls instead of one call per person.
+ *
+ * The current members are streamed page by page and checked against the desired set;
+ * nothing is changed until the scan is over, since removing members while paging would
+ * shift the pages under it. Ids are held in {@link UuidSet}s, and the desired ids already
+ * in the group are marked in a BitSet over the desired set's slots.
+ *
+ * Adds and removes are then sent in chunks of chunkSize ids, adds and removes of the same
+ * chunk index sharing one call.
+ */
+public final class GroupReconciler {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    public static final class Result {
+        public final int added;
+        public final int removed;
+        public final int unchanged;
+        public final int calls;
+
+        Result(int added, int removed, int unchanged, int calls) {
+            this.added = added;
+            this.removed = removed;
+            this.unchanged = unchanged;
+            this.calls = calls;
+        }
+
+        @Override
+        public String toString() {
+            return added + " added, " + removed + " removed, " + unchanged + " unchanged in " + calls + " calls";
+        }
+    }
+
+    private final FaceSdk faceSdk;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int pageSize = 1000;
+    private boolean dryRun;
+
+    public GroupReconciler(FaceSdk faceSdk) {
+        this.faceSdk = faceSdk;
+    }
+
+    public GroupReconciler chunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public GroupReconciler pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /** Computes the diff without sending any update. */
+    public GroupReconciler dryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+        return this;
+    }
+
+    public Result reconcile(UUID groupId, UuidSet desired) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive, got " + chunkSize);
+        }
+        BitSet present = new BitSet(desired.slotCount());
+        UuidSet toRemove = new UuidSet(16);
+        try (Stream<Person> members = Pages.personsInGroup(faceSdk, groupId, pageSize)) {
+            members.forEach(person -> {
+                int slot = desired.slotOf(person.getId());
+                if (slot >= 0) {
+                    present.set(slot);
+                } else {
+                    toRemove.add(person.getId());
+                }
+            });
+        }
+        int unchanged = present.cardinality();
+        int added = desired.size() - unchanged;
+        int removed = toRemove.size();
+        int calls = Math.max(chunks(added), chunks(removed));
+        if (dryRun) {
+            return new Result(added, removed, unchanged, 0);
+        }
+
+        // Chunks are cut as they are sent, so only one call's worth of UUID objects exists at a time
+        Chunker adds = new Chunker(desired, present);
+        Chunker removes = new Chunker(toRemove, null);
+        for (int i = 0; i < calls; i++) {
+            List<UUID> addChunk = adds.next(chunkSize);
+            List<UUID> removeChunk = removes.next(chunkSize);
+            // Left unset rather than empty, the way GroupTests sends one-sided updates
+            UpdateGroup update = new UpdateGroup();
+            update.setAddItems(addChunk.isEmpty() ? null : addChunk);
+            update.setRemoveItems(removeChunk.isEmpty() ? null : removeChunk);
+            faceSdk.groupApi.updatePersonsInGroup(groupId, update);
+        }
+        return new Result(added, removed, unchanged, calls);
+    }
+
+    private int chunks(int count) {
+        return (count + chunkSize - 1) / chunkSize;
+    }
+
+    /** Walks a UuidSet, skipping slots set in the skip bits, handing out up to n ids at a time. */
+    private static final class Chunker {
+        private final UuidSet set;
+        private final BitSet skip;
+        private int slot;
+
+        Chunker(UuidSet set, BitSet skip) {
+            this.set = set;
+            this.skip = skip;
+            this.slot = set.nextSlot(0);
+        }
+
+        List<UUID> next(int n) {
+            List<UUID> chunk = new ArrayList<>(Math.min(n, set.size()));
+            while (slot >= 0 && chunk.size() < n) {
+                if (skip == null || !skip.get(slot)) {
+                    chunk.add(set.get(slot));
+                }
+                slot = set.nextSlot(slot + 1);
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.regula.facesdk.tests.groups;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash set of UUIDs stored as two longs per slot, with no UUID objects or
+ * boxing: a million ids take 32 MB at most instead of roughly 80 MB in a HashSet<UUID>.
+ *
+ * Slots are stable until the set grows, so {@link #slotOf} can key a BitSet of per-entry
+ * flags. The nil UUID (all zeros) marks empty slots and is kept aside.
+ */
+public final class UuidSet {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private boolean containsNil;
+
+    public UuidSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+        slots = new long[capacity * 2];
+        mask = capacity - 1;
+    }
+
+    public static UuidSet of(Iterable<UUID> ids) {
+        UuidSet set = new UuidSet(16);
+        for (UUID id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    public boolean add(UUID id) {
+        return add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public boolean add(long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            boolean added = !containsNil;
+            containsNil = true;
+            size += added ? 1 : 0;
+            return added;
+        }
+        if (size + 1 > (mask + 1) * LOAD_FACTOR) {
+            grow();
+        }
+        int slot = find(slots, mask, msb, lsb);
+        if (slots[2 * slot] == msb && slots[2 * slot + 1] == lsb) {
+            return false;
+        }
+        slots[2 * slot] = msb;
+        slots[2 * slot + 1] = lsb;
+        size++;
+        return true;
+    }
+
+    public boolean contains(UUID id) {
+        return slotOf(id) >= 0;
+    }
+
+    /**
+     * Slot holding the id, or -1 if absent. The nil UUID, when present, reports the slot
+     * just past the table, so callers sizing a BitSet should use {@link #slotCount()}.
+     */
+    public int slotOf(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            return containsNil ? mask + 1 : -1;
+        }
+        int slot = find(slots, mask, msb, lsb);
+        return slots[2 * slot] == msb && slots[2 * slot + 1] == lsb ? slot : -1;
+    }
+
+    /** Upper bound (exclusive) of the values slotOf can return. */
+    public int slotCount() {
+        return mask + 2;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** First occupied slot at or after from, or -1; walks the set without creating UUIDs. */
+    public int nextSlot(int from) {
+        for (int slot = Math.max(from, 0); slot <= mask; slot++) {
+            if (slots[2 * slot] != 0 || slots[2 * slot + 1] != 0) {
+                return slot;
+            }
+        }
+        return containsNil && from <= mask + 1 ? mask + 1 : -1;
+    }
+
+    /** Id in an occupied slot, as returned by slotOf or nextSlot. */
+    public UUID get(int slot) {
+        return slot == mask + 1 ? new UUID(0, 0) : new UUID(slots[2 * slot], slots[2 * slot + 1]);
+    }
+
+    /** Visits every id with its slot, creating one UUID per call. */
+    public void forEach(SlotConsumer consumer) {
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            consumer.accept(slot, get(slot));
+        }
+    }
+
+    public void forEach(Consumer<UUID> consumer) {
+        forEach((slot, id) -> consumer.accept(id));
+    }
+
+    @FunctionalInterface
+    public interface SlotConsumer {
+        void accept(int slot, UUID id);
+    }
+
+    private void grow() {
+        long[] old = slots;
+        int newMask = (mask + 1) * 2 - 1;
+        long[] grown = new long[(newMask + 1) * 2];
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != 0 || old[i + 1] != 0) {
+                int slot = find(grown, newMask, old[i], old[i + 1]);
+                grown[2 * slot] = old[i];
+                grown[2 * slot + 1] = old[i + 1];
+            }
+        }
+        slots = grown;
+        mask = newMask;
+    }
+
+    /** Slot holding the id, or the empty slot where it would go (linear probing). */
+    private static int find(long[] slots, int mask, long msb, long lsb) {
+        int slot = hash(msb, lsb) & mask;
+        while (true) {
+            long m = slots[2 * slot];
+            long l = slots[2 * slot + 1];
+            if ((m == msb && l == lsb) || (m == 0 && l == 0)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        // Random UUIDs are already well mixed, but ids from other sources may not be
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    @Override
+    public String toString() {
+        return "UuidSet(" + size + " of " + (mask + 1) + " slots)";
+    }
+}
@@ -0,0 +1,134 @@
+package com.regula.facesdk.tests.index;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.regula.facesdk.tests.lazy.LazyResponseClient;
+import com.regula.facesdk.tests.lazy.LazyResponseClient.StatusException;
+import com.regula.facesdk.tests.streaming.StreamingRequestBody;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import com.regula.facesdk.webclient.gen.model.AddImageToPersonRequestImage;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Pulls face descriptors for a {@link FlatIndex} or {@link HnswIndex}. The service does
+ * not hand its descriptors out, so this talks to the export endpoints of the stand-in
+ * server (or of a deployment that adds the same ones): GET /api/groups/{id}/descriptors
+ * pages over the group's persons with the descriptors of their images,
+ * GET /api/persons/{id}/descriptors returns one person that way, and POST /api/descriptors
+ * returns the descriptor of the face a search would take as its probe. Descriptors travel
+ * as base64 of little-endian float32 components.
+ *
+ * Calls go over the FaceSdk's own OkHttp client, like {@link LazyResponseClient}, and fail
+ * with its {@link StatusException} on a non-2xx answer; 404 usually means the endpoint is
+ * not there, i.e. not the stand-in.
+ */
+public final class DescriptorExport {
+
+    /** Receives exported descriptors, e.g. {@code builder::add} or {@code index::add}. */
+    @FunctionalInterface
+    public interface Sink {
+        void add(UUID personId, String name, int imageId, float[] descriptor);
+    }
+
+    private final OkHttpClient httpClient;
+    private final String basePath;
+    private final Gson gson;
+    private int pageSize = 500;
+
+    public DescriptorExport(FaceSdk faceSdk) {
+        ApiClient apiClient = faceSdk.matchingApi.getApiClient();
+        this.httpClient = apiClient.getHttpClient();
+        String basePath = apiClient.getBasePath();
+        this.basePath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+        this.gson = StreamingRequestBody.gson(apiClient);
+    }
+
+    /** Persons per export page, 500 by default. */
+    public DescriptorExport pageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /** Adds the descriptors of every image of the group's persons; returns how many were added. */
+    public int exportGroup(UUID groupId, Sink sink) {
+        int added = 0;
+        int totalPages = 1;
+        for (int page = 1; page <= totalPages; page++) {
+            JsonObject json = get("/api/groups/" + groupId + "/descriptors?page=" + page + "&size=" + pageSize);
+            for (JsonElement item : json.getAsJsonArray("items")) {
+                added += addPerson(item.getAsJsonObject(), sink);
+            }
+            totalPages = json.get("totalPages").getAsInt();
+        }
+        return added;
+    }
+
+    /** Adds the descriptors of every image of the person; returns how many were added. */
+    public int exportPerson(UUID personId, Sink sink) {
+        return addPerson(get("/api/persons/" + personId + "/descriptors"), sink);
+    }
+
+    /** Descriptor of the probe face of the image, the one a search of it would use. */
+    public float[] probe(byte[] image) {
+        AddImageToPersonRequestImage content = new AddImageToPersonRequestImage();
+        content.setContent(image);
+        return decode(post("/api/descriptors", Collections.singletonMap("image", content)).get("descriptor").getAsString());
+    }
+
+    private static int addPerson(JsonObject person, Sink sink) {
+        UUID personId = UUID.fromString(person.get("id").getAsString());
+        String name = person.has("name") && !person.get("name").isJsonNull() ? person.get("name").getAsString() : null;
+        int added = 0;
+        for (JsonElement image : person.getAsJsonArray("images")) {
+            JsonObject imageJson = image.getAsJsonObject();
+            sink.add(personId, name, imageJson.get("id").getAsInt(), decode(imageJson.get("descriptor").getAsString()));
+            added++;
+        }
+        return added;
+    }
+
+    static float[] decode(String base64) {
+        ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(base64)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] descriptor = new float[bytes.remaining() / Float.BYTES];
+        bytes.asFloatBuffer().get(descriptor);
+        return descriptor;
+    }
+
+    private JsonObject get(String path) {
+        return call(new Request.Builder().url(basePath + path).get().build());
+    }
+
+    private JsonObject post(String path, Object model) {
+        return call(new Request.Builder().url(basePath + path).post(new StreamingRequestBody(gson, model)).build());
+    }
+
+    private JsonObject call(Request request) {
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            String text = body == null ? "" : body.string();
+            if (!response.isSuccessful()) {
+                throw new StatusException(response.code(), text);
+            }
+            return JsonParser.parseString(text).getAsJsonObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.regula.facesdk.tests.index;
+
+import com.regula.facesdk.webclient.gen.model.FaceSDKResultCode;
+import com.regula.facesdk.webclient.gen.model.SearchPerson;
+import com.regula.facesdk.webclient.gen.model.SearchPersonImage;
+import com.regula.facesdk.webclient.gen.model.SearchRequest;
+import com.regula.facesdk.webclient.gen.model.SearchResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Exact top-K search over face descriptors kept outside the heap, for searching a group
+ * offline once its descriptors have been pulled (see {@link DescriptorExport}).
+ *
+ * Descriptors are stored normalized as little-endian float rows, in a direct buffer or a
+ * file mapped read-only, with the images of a person in consecutive rows. A search scans
+ * every row: the persons are split into partitions scanned in parallel on a ForkJoinPool,
+ * each keeping its own top-K of persons by best image, and the partial results are merged.
+ * Dot products use the Vector API when jdk.incubator.vector is available.
+ *
+ * Results follow the service's search: images below the threshold are left out, persons
+ * with no image left are dropped, the rest are ordered by their best similarity and cut to
+ * the limit. Similarity is the cosine clamped to [0, 1] and distance is 1 - similarity.
+ * Instances are immutable and safe to search from many threads.
+ */
+public final class FlatIndex {
+    /** Persons below this are not worth a partition of their own. */
+    private static final int MIN_PARTITION = 4096;
+    private static final int DEFAULT_LIMIT = 100;
+
+    private final int dimension;
+    private final ByteBuffer rows;
+    private final UUID[] personIds;
+    private final String[] names;
+    private final int[] personStart;
+    private final int[] imageIds;
+    private final int persons;
+    private final boolean vectorized;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    private FlatIndex(Builder builder, ByteBuffer rows) {
+        this.dimension = builder.dimension;
+        this.rows = rows.order(ByteOrder.LITTLE_ENDIAN);
+        this.persons = builder.persons;
+        this.personIds = Arrays.copyOf(builder.personIds, persons);
+        this.names = Arrays.copyOf(builder.names, persons);
+        this.personStart = Arrays.copyOf(builder.personStart, persons + 1);
+        this.personStart[persons] = builder.rows;
+        this.imageIds = Arrays.copyOf(builder.imageIds, builder.rows);
+        this.vectorized = builder.vectorized;
+        this.parallelism = builder.parallelism;
+        this.pool = builder.pool;
+    }
+
+    /** Builder of an index in a direct buffer. */
+    public static Builder builder(int dimension) {
+        return new Builder(dimension, null);
+    }
+
+    /** Builder of an index whose rows are written to the file and mapped from it. */
+    public static Builder builder(int dimension, Path file) {
+        return new Builder(dimension, file);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /** Number of persons. */
+    public int persons() {
+        return persons;
+    }
+
+    /** Number of descriptors, i.e. of enrolled images. */
+    public int size() {
+        return imageIds.length;
+    }
+
+    /** Search with the request's limit and threshold, or the service's defaults of 100 and 0. */
+    public SearchResult search(float[] probe, SearchRequest request) {
+        return search(probe,
+                request.getLimit() == null ? DEFAULT_LIMIT : request.getLimit(),
+                request.getThreshold() == null ? 0f : request.getThreshold());
+    }
+
+    public SearchResult search(float[] probe, int limit, float threshold) {
+        if (probe.length != dimension) {
+            throw new IllegalArgumentException("Probe has " + probe.length + " components, the index " + dimension);
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        float[] query = RowStore.normalized(probe);
+        TopK top = new TopK(limit);
+        int partitions = (int) Math.min(parallelism, (persons + (long) MIN_PARTITION - 1) / MIN_PARTITION);
+        if (limit > 0 && partitions <= 1) {
+            scan(query, threshold, 0, persons, top);
+        } else if (limit > 0) {
+            List<ForkJoinTask<TopK>> tasks = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                int from = (int) ((long) persons * i / partitions);
+                int to = (int) ((long) persons * (i + 1) / partitions);
+                tasks.add(pool.submit(() -> scan(query, threshold, from, to, new TopK(limit))));
+            }
+            for (ForkJoinTask<TopK> task : tasks) {
+                top.addAll(task.join());
+            }
+        }
+
+        List<SearchPerson> result = new ArrayList<>();
+        for (int person : top.sorted()) {
+            List<SearchPersonImage> images = new ArrayList<>();
+            for (int row = personStart[person]; row < personStart[person + 1]; row++) {
+                float similarity = similarity(row, query);
+                if (similarity < threshold) {
+                    continue;
+                }
+                SearchPersonImage image = new SearchPersonImage();
+                image.setId(imageIds[row]);
+                image.setSimilarity(similarity);
+                image.setDistance(1f - similarity);
+                images.add(image);
+            }
+            SearchPerson hit = new SearchPerson();
+            hit.setId(personIds[person]);
+            hit.setName(names[person]);
+            hit.setImages(images);
+            result.add(hit);
+        }
+        SearchResult response = new SearchResult();
+        response.setCode(FaceSDKResultCode.FACER_OK);
+        response.setPersons(result);
+        return response;
+    }
+
+    private TopK scan(float[] query, float threshold, int from, int to, TopK top) {
+        for (int person = from; person < to; person++) {
+            float best = -1f;
+            for (int row = personStart[person]; row < personStart[person + 1]; row++) {
+                best = Math.max(best, similarity(row, query));
+            }
+            if (best >= threshold) {
+                top.offer(person, best);
+            }
+        }
+        return top;
+    }
+
+    private float similarity(int row, float[] query) {
+        int offset = row * dimension * Float.BYTES;
+        float dot = vectorized ? VectorMath.dot(rows, offset, query) : VectorMath.dotScalar(rows, offset, query);
+        return Math.max(0f, Math.min(1f, dot));
+    }
+
+    /** Bounded min-heap of persons by best similarity; ties go to the person added first, as in the service. */
+    private static final class TopK {
+        private final int capacity;
+        private final int[] persons;
+        private final float[] scores;
+        private int size;
+
+        TopK(int capacity) {
+            this.capacity = capacity;
+            this.persons = new int[capacity];
+            this.scores = new float[capacity];
+        }
+
+        void offer(int person, float score) {
+            if (size < capacity) {
+                persons[size] = person;
+                scores[size] = score;
+                up(size++);
+            } else if (capacity > 0 && worse(0, person, score)) {
+                persons[0] = person;
+                scores[0] = score;
+                down(0);
+            }
+        }
+
+        void addAll(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.persons[i], other.scores[i]);
+            }
+        }
+
+        /** Persons from the best down. */
+        int[] sorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> scores[a] != scores[b] ? Float.compare(scores[b], scores[a]) : Integer.compare(persons[a], persons[b]));
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = persons[order[i]];
+            }
+            return sorted;
+        }
+
+        /** Whether the entry at i ranks below the given person and score. */
+        private boolean worse(int i, int person, float score) {
+            return scores[i] < score || scores[i] == score && persons[i] > person;
+        }
+
+        private void up(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!worse(i, persons[parent], scores[parent])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void down(int i) {
+            while (true) {
+                int least = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (worse(child, persons[least], scores[least])) {
+                        least = child;
+                    }
+                }
+                if (least == i) {
+                    return;
+                }
+                swap(i, least);
+                i = least;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int person = persons[a];
+            persons[a] = persons[b];
+            persons[b] = person;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+
+    /**
+     * Adds descriptors person by person: all images of a person must be added one after
+     * the other. Rows are written as they come, so building a file-backed index of a large
+     * gallery needs no more heap than the ids.
+     */
+    public static final class Builder {
+        private static final int STAGING_BYTES = 1 << 20;
+
+        private final int dimension;
+        private final int rowBytes;
+        private final Path file;
+        private FileChannel channel;
+        private ByteBuffer buffer;
+        private final Set<UUID> seen = new HashSet<>();
+        private UUID[] personIds = new UUID[64];
+        private String[] names = new String[64];
+        private int[] personStart = new int[65];
+        private int[] imageIds = new int[64];
+        private int persons;
+        private int rows;
+        private boolean vectorized = VectorMath.AVAILABLE;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private boolean built;
+
+        private Builder(int dimension, Path file) {
+            if (dimension < 1) {
+                throw new IllegalArgumentException("dimension must be positive");
+            }
+            this.dimension = dimension;
+            this.rowBytes = dimension * Float.BYTES;
+            this.file = file;
+            this.buffer = ByteBuffer.allocateDirect(file == null ? 1024 * rowBytes : Math.max(rowBytes, STAGING_BYTES / rowBytes * rowBytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /** Whether to use the Vector API, on by default when jdk.incubator.vector is available. */
+        public Builder vectorized(boolean vectorized) {
+            if (vectorized && !VectorMath.AVAILABLE) {
+                throw new IllegalArgumentException("jdk.incubator.vector is not available, run with --add-modules jdk.incubator.vector");
+            }
+            this.vectorized = vectorized;
+            return this;
+        }
+
+        /** Number of partitions a search is split into at most, by default one per core. */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public Builder add(UUID personId, String name, int imageId, float[] descriptor) {
+            if (built) {
+                throw new IllegalStateException("Index already built");
+            }
+            if (descriptor.length != dimension) {
+                throw new IllegalArgumentException("Descriptor has " + descriptor.length + " components, the index " + dimension);
+            }
+            if (persons == 0 || !personIds[persons - 1].equals(personId)) {
+                if (!seen.add(personId)) {
+                    throw new IllegalArgumentException("Images of person " + personId + " must be added one after the other");
+                }
+                if (persons == personIds.length) {
+                    personIds = Arrays.copyOf(personIds, persons * 2);
+                    names = Arrays.copyOf(names, persons * 2);
+                    personStart = Arrays.copyOf(personStart, persons * 2 + 1);
+                }
+                personIds[persons] = personId;
+                names[persons] = name;
+                personStart[persons++] = rows;
+            }
+            if ((long) (rows + 1) * rowBytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("An index holds at most " + Integer.MAX_VALUE / rowBytes + " descriptors");
+            }
+            if (rows == imageIds.length) {
+                imageIds = Arrays.copyOf(imageIds, rows * 2);
+            }
+            imageIds[rows++] = imageId;
+            if (!buffer.hasRemaining()) {
+                makeRoom();
+            }
+            for (float x : RowStore.normalized(descriptor)) {
+                buffer.putFloat(x);
+            }
+            return this;
+        }
+
+        public FlatIndex build() {
+            if (built) {
+                throw new IllegalStateException("Index already built");
+            }
+            built = true;
+            if (file == null) {
+                return new FlatIndex(this, buffer.flip().slice());
+            }
+            try {
+                flush();
+                ByteBuffer mapped = map();
+                buffer = null;
+                return new FlatIndex(this, mapped);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void makeRoom() {
+            if (file == null) {
+                long capacity = Math.min((long) buffer.capacity() * 2, Integer.MAX_VALUE / rowBytes * (long) rowBytes);
+                ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.LITTLE_ENDIAN);
+                grown.put(buffer.flip());
+                buffer = grown;
+                return;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flush() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private ByteBuffer map() throws IOException {
+            // The mapping stays valid after the channel is closed
+            try (FileChannel rowsChannel = channel) {
+                channel = null;
+                return rowsChannel.map(FileChannel.MapMode.READ_ONLY, 0, (long) rows * rowBytes);
+            }
+        }
+    }
+}
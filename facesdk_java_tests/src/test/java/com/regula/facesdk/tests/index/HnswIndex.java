@@ -0,0 +1,659 @@
+package com.regula.facesdk.tests.index;
+
+import com.regula.facesdk.webclient.gen.model.FaceSDKResultCode;
+import com.regula.facesdk.webclient.gen.model.SearchPerson;
+import com.regula.facesdk.webclient.gen.model.SearchPersonImage;
+import com.regula.facesdk.webclient.gen.model.SearchRequest;
+import com.regula.facesdk.webclient.gen.model.SearchResult;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate top-K search over face descriptors with a hierarchical navigable small
+ * world graph (Malkov and Yashunin), for galleries too large to scan with a
+ * {@link FlatIndex} on every query.
+ *
+ * Every enrolled image is a node; descriptors live outside the heap in a {@link RowStore},
+ * the graph on the heap. Images can be added at any time, e.g. through
+ * {@link IndexedPersons} as they are enrolled, and persons deleted: the images of a
+ * deleted person stay in the graph as tombstones so it stays connected, and are never
+ * returned. {@link #save} writes the index to a file and {@link #open} maps it back, with
+ * the descriptors read from the mapping rather than loaded; an opened index takes inserts
+ * like a new one.
+ *
+ * Results follow the service's search as {@link FlatIndex} does, except that persons are
+ * only looked for among the efSearch nearest images, so one can be missed; raise efSearch
+ * for recall at the cost of latency. Searches run concurrently, adds and deletes one at a
+ * time under a write lock.
+ */
+public final class HnswIndex {
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int MAX_LEVEL = 16;
+    private static final int DEFAULT_LIMIT = 100;
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final long seed;
+    private final double levelFactor;
+    private final SplittableRandom random;
+    private final RowStore rows;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+    private volatile int efSearch;
+
+    // Per node, i.e. per image: links[node][level] holds the neighbour count, then the neighbours
+    private int[][][] links = new int[64][][];
+    private int[] nodePerson = new int[64];
+    private int[] nodeImage = new int[64];
+    private final BitSet deleted = new BitSet();
+    private int entry = -1;
+    private int maxLevel = -1;
+    private int liveImages;
+
+    // Per person; a person deleted and enrolled again gets a new entry
+    private final List<UUID> personIds = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<int[]> personNodes = new ArrayList<>();
+    private final Map<UUID, Integer> livePersons = new HashMap<>();
+
+    // The file the descriptors are read from, when opened, until unmapped
+    private MappedByteBuffer mapping;
+    private Path mappedFile;
+
+    private HnswIndex(int dimension, int m, int efConstruction, int efSearch, long seed, RowStore rows) {
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.seed = seed;
+        this.levelFactor = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed + rows.size());
+        this.rows = rows;
+    }
+
+    public static Builder builder(int dimension) {
+        return new Builder(dimension);
+    }
+
+    /**
+     * Maps an index written by {@link #save}; files are limited to 2 GB. The file is read-only
+     * from here on. Saving this index over it is allowed; anything else that replaces or
+     * deletes it should {@link #unmap} first, as Windows refuses both while it is mapped.
+     */
+    public static HnswIndex open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException(file + " is not an HNSW index file");
+            }
+            int dimension = mapped.getInt(8);
+            int m = mapped.getInt(12);
+            int efConstruction = mapped.getInt(16);
+            int efSearch = mapped.getInt(20);
+            int count = mapped.getInt(24);
+            long seed = mapped.getLong(36);
+            int vectorBytes = count * dimension * Float.BYTES;
+            RowStore rows = new RowStore(dimension, VectorMath.AVAILABLE, mapped.slice(HEADER_BYTES, vectorBytes), count);
+            HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch, seed, rows);
+            index.entry = mapped.getInt(28);
+            index.maxLevel = mapped.getInt(32);
+            index.read(mapped.position(HEADER_BYTES + vectorBytes), count);
+            index.mapping = mapped;
+            index.mappedFile = file.toAbsolutePath().normalize();
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /** Number of persons not deleted. */
+    public int persons() {
+        lock.readLock().lock();
+        try {
+            return livePersons.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of images of persons not deleted. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveImages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Nearest images looked at per search, at least the limit; 64 unless set. */
+    public HnswIndex efSearch(int efSearch) {
+        if (efSearch < 1) {
+            throw new IllegalArgumentException("efSearch must be positive");
+        }
+        this.efSearch = efSearch;
+        return this;
+    }
+
+    /** Adds an image of the person; returns false if that image id is already indexed for it. */
+    public boolean add(UUID personId, String name, int imageId, float[] descriptor) {
+        if (descriptor.length != dimension) {
+            throw new IllegalArgumentException("Descriptor has " + descriptor.length + " components, the index " + dimension);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer person = livePersons.get(personId);
+            if (person == null) {
+                person = personIds.size();
+                personIds.add(personId);
+                names.add(name);
+                personNodes.add(new int[0]);
+                livePersons.put(personId, person);
+            } else {
+                for (int node : personNodes.get(person)) {
+                    if (nodeImage[node] == imageId) {
+                        return false;
+                    }
+                }
+            }
+            int node = rows.append(descriptor);
+            if (node == nodeImage.length) {
+                links = Arrays.copyOf(links, node * 2);
+                nodePerson = Arrays.copyOf(nodePerson, node * 2);
+                nodeImage = Arrays.copyOf(nodeImage, node * 2);
+            }
+            nodePerson[node] = person;
+            nodeImage[node] = imageId;
+            int[] nodes = personNodes.get(person);
+            nodes = Arrays.copyOf(nodes, nodes.length + 1);
+            nodes[nodes.length - 1] = node;
+            personNodes.set(person, nodes);
+            liveImages++;
+            insert(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes the person's images from results; returns false if the person is not indexed. */
+    public boolean deletePerson(UUID personId) {
+        lock.writeLock().lock();
+        try {
+            Integer person = livePersons.remove(personId);
+            if (person == null) {
+                return false;
+            }
+            for (int node : personNodes.get(person)) {
+                deleted.set(node);
+                liveImages--;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Search with the request's limit and threshold, or the service's defaults of 100 and 0. */
+    public SearchResult search(float[] probe, SearchRequest request) {
+        return search(probe,
+                request.getLimit() == null ? DEFAULT_LIMIT : request.getLimit(),
+                request.getThreshold() == null ? 0f : request.getThreshold());
+    }
+
+    public SearchResult search(float[] probe, int limit, float threshold) {
+        if (probe.length != dimension) {
+            throw new IllegalArgumentException("Probe has " + probe.length + " components, the index " + dimension);
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        float[] query = RowStore.normalized(probe);
+        List<SearchPerson> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (entry >= 0 && limit > 0) {
+                NodeHeap nearest = searchLayer(query, descend(query, 0), Math.max(efSearch, limit), 0, true);
+                Map<Integer, Float> best = new HashMap<>();
+                for (; !nearest.isEmpty(); nearest.pop()) {
+                    float similarity = clamp(nearest.topScore());
+                    if (similarity >= threshold) {
+                        best.merge(nodePerson[nearest.topNode()], similarity, Math::max);
+                    }
+                }
+                List<Integer> ranked = new ArrayList<>(best.keySet());
+                ranked.sort((a, b) -> !best.get(a).equals(best.get(b)) ? Float.compare(best.get(b), best.get(a)) : Integer.compare(a, b));
+                for (int person : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                    result.add(hit(person, query, threshold));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        SearchResult response = new SearchResult();
+        response.setCode(FaceSDKResultCode.FACER_OK);
+        response.setPersons(result);
+        return response;
+    }
+
+    /**
+     * Copies the descriptors read from the opened file into memory and releases the mapping,
+     * so that the file can be replaced or deleted. The index stays usable; nothing happens
+     * if it was not opened from a file or is already unmapped.
+     */
+    public void unmap() {
+        lock.writeLock().lock();
+        try {
+            if (mapping != null) {
+                rows.copyBase();
+                Mappings.release(mapping);
+                mapping = null;
+                mappedFile = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the index to the file through a temporary sibling that then replaces it. When
+     * the file is the one this index was opened from, the index is {@link #unmap}ped first.
+     * Other indexes opened from it keep reading the previous version where the platform
+     * allows replacing a mapped file, but not on Windows, where they must be unmapped first.
+     */
+    public void save(Path file) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        if (file.toAbsolutePath().normalize().equals(mappedFile())) {
+            unmap();
+        }
+        lock.readLock().lock();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                int count = rows.size();
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dimension);
+                out.writeInt(m);
+                out.writeInt(efConstruction);
+                out.writeInt(efSearch);
+                out.writeInt(count);
+                out.writeInt(entry);
+                out.writeInt(maxLevel);
+                out.writeLong(seed);
+                out.write(new byte[HEADER_BYTES - out.size()]);
+                float[] row = new float[dimension];
+                for (int node = 0; node < count; node++) {
+                    for (float x : rows.read(node, row)) {
+                        out.writeInt(Integer.reverseBytes(Float.floatToRawIntBits(x)));
+                    }
+                }
+                out.writeInt(personIds.size());
+                for (int person = 0; person < personIds.size(); person++) {
+                    out.writeLong(personIds.get(person).getMostSignificantBits());
+                    out.writeLong(personIds.get(person).getLeastSignificantBits());
+                    String name = names.get(person);
+                    byte[] bytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes == null ? -1 : bytes.length);
+                    if (bytes != null) {
+                        out.write(bytes);
+                    }
+                }
+                for (int node = 0; node < count; node++) {
+                    out.writeInt(nodePerson[node]);
+                    out.writeInt(nodeImage[node]);
+                    out.writeBoolean(deleted.get(node));
+                    out.writeByte(links[node].length);
+                    for (int[] level : links[node]) {
+                        for (int i = 0; i <= level[0]; i++) {
+                            out.writeInt(level[i]);
+                        }
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Path mappedFile() {
+        lock.readLock().lock();
+        try {
+            return mappedFile;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void read(ByteBuffer in, int count) {
+        int persons = in.getInt();
+        for (int person = 0; person < persons; person++) {
+            personIds.add(new UUID(in.getLong(), in.getLong()));
+            int length = in.getInt();
+            byte[] name = length < 0 ? null : new byte[length];
+            if (name != null) {
+                in.get(name);
+            }
+            names.add(name == null ? null : new String(name, StandardCharsets.UTF_8));
+            personNodes.add(new int[0]);
+        }
+        int capacity = Math.max(64, count);
+        links = new int[capacity][][];
+        nodePerson = new int[capacity];
+        nodeImage = new int[capacity];
+        for (int node = 0; node < count; node++) {
+            int person = in.getInt();
+            nodePerson[node] = person;
+            nodeImage[node] = in.getInt();
+            if (in.get() != 0) {
+                deleted.set(node);
+            } else {
+                int[] nodes = personNodes.get(person);
+                nodes = Arrays.copyOf(nodes, nodes.length + 1);
+                nodes[nodes.length - 1] = node;
+                personNodes.set(person, nodes);
+                livePersons.put(personIds.get(person), person);
+                liveImages++;
+            }
+            links[node] = new int[in.get()][];
+            for (int level = 0; level < links[node].length; level++) {
+                int[] neighbours = new int[maxConnections(level) + 1];
+                neighbours[0] = in.getInt();
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    neighbours[i] = in.getInt();
+                }
+                links[node][level] = neighbours;
+            }
+        }
+    }
+
+    private void insert(int node) {
+        float[] query = rows.read(node, new float[dimension]);
+        int level = (int) Math.min(MAX_LEVEL, Math.floor(-Math.log(1 - random.nextDouble()) * levelFactor));
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxConnections(l) + 1];
+        }
+        if (entry < 0) {
+            entry = node;
+            maxLevel = level;
+            return;
+        }
+        int entryPoint = descend(query, level);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap found = searchLayer(query, entryPoint, efConstruction, l, false);
+            int n = found.size();
+            int[] candidates = new int[n];
+            float[] scores = new float[n];
+            for (int i = n - 1; i >= 0; i--, found.pop()) {
+                candidates[i] = found.topNode();
+                scores[i] = found.topScore();
+            }
+            int[] selected = selectNeighbours(candidates, scores, m);
+            int[] own = links[node][l];
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+            for (int neighbour : selected) {
+                connect(neighbour, node, l);
+            }
+            entryPoint = candidates[0];
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entry = node;
+        }
+    }
+
+    /** Greedy walk from the entry point down to the given level; returns the closest node found. */
+    private int descend(float[] query, int level) {
+        int current = entry;
+        float score = rows.dot(current, query);
+        for (int l = maxLevel; l > level; l--) {
+            boolean moved = true;
+            while (moved) {
+                moved = false;
+                int[] neighbours = links[current][l];
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    float s = rows.dot(neighbours[i], query);
+                    if (s > score) {
+                        score = s;
+                        current = neighbours[i];
+                        moved = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /** The ef nearest nodes of a level reachable from the entry point, worst on top; deleted ones only when building. */
+    private NodeHeap searchLayer(float[] query, int entryPoint, int ef, int level, boolean liveOnly) {
+        Visited seen = visited.get();
+        seen.reset(rows.size());
+        NodeHeap candidates = new NodeHeap(ef * 2, true);
+        NodeHeap results = new NodeHeap(ef + 1, false);
+        float entryScore = rows.dot(entryPoint, query);
+        seen.firstVisit(entryPoint);
+        candidates.push(entryPoint, entryScore);
+        if (!liveOnly || !deleted.get(entryPoint)) {
+            results.push(entryPoint, entryScore);
+        }
+        while (!candidates.isEmpty()) {
+            int current = candidates.topNode();
+            if (results.size() >= ef && candidates.topScore() < results.topScore()) {
+                break;
+            }
+            candidates.pop();
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int next = neighbours[i];
+                if (!seen.firstVisit(next)) {
+                    continue;
+                }
+                float score = rows.dot(next, query);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(next, score);
+                    if (!liveOnly || !deleted.get(next)) {
+                        results.push(next, score);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The neighbour heuristic of the paper: candidates, best first, are kept while they are
+     * closer to the query than to every neighbour kept before them, which spreads the links
+     * over directions instead of piling them into one cluster.
+     */
+    private int[] selectNeighbours(int[] candidates, float[] scores, int max) {
+        int[] selected = new int[Math.min(max, candidates.length)];
+        int count = 0;
+        float[] row = new float[dimension];
+        for (int i = 0; i < candidates.length && count < selected.length; i++) {
+            rows.read(candidates[i], row);
+            boolean keep = true;
+            for (int j = 0; j < count && keep; j++) {
+                keep = rows.dot(selected[j], row) <= scores[i];
+            }
+            if (keep) {
+                selected[count++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    private void connect(int node, int neighbour, int level) {
+        int[] own = links[node][level];
+        int max = maxConnections(level);
+        if (own[0] < max) {
+            own[++own[0]] = neighbour;
+            return;
+        }
+        float[] row = rows.read(node, new float[dimension]);
+        Integer[] order = new Integer[max + 1];
+        int[] candidates = new int[max + 1];
+        float[] scores = new float[max + 1];
+        for (int i = 0; i <= max; i++) {
+            candidates[i] = i < max ? own[i + 1] : neighbour;
+            scores[i] = rows.dot(candidates[i], row);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        int[] sortedCandidates = new int[max + 1];
+        float[] sortedScores = new float[max + 1];
+        for (int i = 0; i <= max; i++) {
+            sortedCandidates[i] = candidates[order[i]];
+            sortedScores[i] = scores[order[i]];
+        }
+        int[] selected = selectNeighbours(sortedCandidates, sortedScores, max);
+        own[0] = selected.length;
+        System.arraycopy(selected, 0, own, 1, selected.length);
+    }
+
+    private SearchPerson hit(int person, float[] query, float threshold) {
+        List<SearchPersonImage> images = new ArrayList<>();
+        for (int node : personNodes.get(person)) {
+            float similarity = clamp(rows.dot(node, query));
+            if (similarity < threshold) {
+                continue;
+            }
+            SearchPersonImage image = new SearchPersonImage();
+            image.setId(nodeImage[node]);
+            image.setSimilarity(similarity);
+            image.setDistance(1f - similarity);
+            images.add(image);
+        }
+        SearchPerson hit = new SearchPerson();
+        hit.setId(personIds.get(person));
+        hit.setName(names.get(person));
+        hit.setImages(images);
+        return hit;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private static float clamp(float dot) {
+        return Math.max(0f, Math.min(1f, dot));
+    }
+
+    /** Visited marks reused across searches on a thread; a new epoch clears them. */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == 0) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean firstVisit(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+
+    public static final class Builder {
+        private final int dimension;
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+        private long seed = 42;
+        private boolean vectorized = VectorMath.AVAILABLE;
+
+        private Builder(int dimension) {
+            if (dimension < 1) {
+                throw new IllegalArgumentException("dimension must be positive");
+            }
+            this.dimension = dimension;
+        }
+
+        /** Links per node and level, twice that on the bottom level; 16 by default. */
+        public Builder m(int m) {
+            if (m < 2) {
+                throw new IllegalArgumentException("m must be at least 2");
+            }
+            this.m = m;
+            return this;
+        }
+
+        /** Candidates looked at when linking a new node; 200 by default. */
+        public Builder efConstruction(int efConstruction) {
+            if (efConstruction < 1) {
+                throw new IllegalArgumentException("efConstruction must be positive");
+            }
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        public Builder efSearch(int efSearch) {
+            if (efSearch < 1) {
+                throw new IllegalArgumentException("efSearch must be positive");
+            }
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /** Seed of the level draws, so the same inserts build the same graph. */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder vectorized(boolean vectorized) {
+            if (vectorized && !VectorMath.AVAILABLE) {
+                throw new IllegalArgumentException("jdk.incubator.vector is not available, run with --add-modules jdk.incubator.vector");
+            }
+            this.vectorized = vectorized;
+            return this;
+        }
+
+        public HnswIndex build() {
+            return new HnswIndex(dimension, m, efConstruction, efSearch, seed, new RowStore(dimension, vectorized));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.regula.facesdk.tests.index;
+
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.AddImageToPersonRequest;
+import com.regula.facesdk.webclient.gen.model.AddImageToPersonResponse;
+
+import java.util.UUID;
+
+/**
+ * The personApi calls that change what a search can find, keeping an {@link HnswIndex} in
+ * step: after an image is added the person's descriptors are pulled through
+ * {@link DescriptorExport} (images already indexed are skipped), and a deleted person is
+ * deleted from the index too. The index is only touched once the service call succeeded.
+ */
+public final class IndexedPersons {
+    private final FaceSdk faceSdk;
+    private final DescriptorExport export;
+    private final HnswIndex index;
+
+    public IndexedPersons(FaceSdk faceSdk, HnswIndex index) {
+        this.faceSdk = faceSdk;
+        this.export = new DescriptorExport(faceSdk);
+        this.index = index;
+    }
+
+    public HnswIndex index() {
+        return index;
+    }
+
+    public AddImageToPersonResponse addImageToPerson(UUID personId, AddImageToPersonRequest request) {
+        AddImageToPersonResponse response = faceSdk.personApi.addImageToPerson(personId, request);
+        export.exportPerson(personId, index::add);
+        return response;
+    }
+
+    public void deletePerson(UUID personId) {
+        faceSdk.personApi.deletePerson(personId);
+        index.deletePerson(personId);
+    }
+}
@@ -0,0 +1,52 @@
+package com.regula.facesdk.tests.index;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases a file mapping now rather than when its buffer is collected. Windows refuses to
+ * replace or delete a file while any mapping of it is alive, however long ago its buffer
+ * became unreachable. Uses sun.misc.Unsafe.invokeCleaner (jdk.unsupported); where that is
+ * not available the mapping is left to the collector.
+ *
+ * The buffer, and every slice or duplicate of it, must not be read after release: the
+ * memory is gone and a read crashes the JVM. Callers release under a lock that keeps
+ * readers out.
+ */
+final class Mappings {
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private Mappings() {
+    }
+
+    /** Unmaps the buffer returned by FileChannel.map (not a slice or duplicate of it). */
+    static void release(MappedByteBuffer mapping) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) mapping);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot release mapping", e);
+        }
+    }
+
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.regula.facesdk.tests.index;
+
+import java.util.Arrays;
+
+/** Binary heap of (node, score) pairs without boxing, with the best or the worst score on top. */
+final class NodeHeap {
+    private final boolean bestOnTop;
+    private int[] nodes;
+    private float[] scores;
+    private int size;
+
+    NodeHeap(int capacity, boolean bestOnTop) {
+        this.bestOnTop = bestOnTop;
+        this.nodes = new int[Math.max(1, capacity)];
+        this.scores = new float[nodes.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    void push(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!above(score, scores[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    /** Removes the top; read it with {@link #topNode()} and {@link #topScore()} first. */
+    void pop() {
+        int node = nodes[--size];
+        float score = scores[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && above(scores[child + 1], scores[child])) {
+                child++;
+            }
+            if (!above(scores[child], score)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    private boolean above(float a, float b) {
+        return bestOnTop ? a > b : a < b;
+    }
+}
@@ -0,0 +1,109 @@
+package com.regula.facesdk.tests.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only normalized float rows outside the heap: an optional read-only base (the
+ * rows of an index file mapped when it was opened) followed by direct chunks of a fixed
+ * number of rows, so appending never copies what is already stored. Not thread-safe for
+ * appends; readers need whatever lock the owner holds around them.
+ */
+final class RowStore {
+    private static final int CHUNK_ROWS = 16384;
+
+    private final int dimension;
+    private final int rowBytes;
+    private final boolean vectorized;
+    private ByteBuffer base;
+    private final int baseRows;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int rows;
+
+    RowStore(int dimension, boolean vectorized) {
+        this(dimension, vectorized, null, 0);
+    }
+
+    /** Store whose first rows are read from the given little-endian buffer. */
+    RowStore(int dimension, boolean vectorized, ByteBuffer base, int baseRows) {
+        this.dimension = dimension;
+        this.rowBytes = dimension * Float.BYTES;
+        this.vectorized = vectorized;
+        this.base = base == null ? null : base.order(ByteOrder.LITTLE_ENDIAN);
+        this.baseRows = baseRows;
+        this.rows = baseRows;
+    }
+
+    int size() {
+        return rows;
+    }
+
+    /**
+     * Copies the base rows into direct memory, so that the buffer they were read from, e.g.
+     * a file mapping, is no longer used. Needs the owner's exclusive lock.
+     */
+    void copyBase() {
+        if (base == null) {
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocateDirect(baseRows * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        copy.put(base.duplicate().position(0).limit(baseRows * rowBytes)).clear();
+        base = copy;
+    }
+
+    /** Appends the descriptor normalized; returns its row. */
+    int append(float[] descriptor) {
+        int chunk = (rows - baseRows) / CHUNK_ROWS;
+        if (chunk == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_ROWS * rowBytes).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        ByteBuffer buffer = chunks.get(chunk);
+        int offset = (rows - baseRows) % CHUNK_ROWS * rowBytes;
+        float[] unit = normalized(descriptor);
+        for (int i = 0; i < dimension; i++) {
+            buffer.putFloat(offset + i * Float.BYTES, unit[i]);
+        }
+        return rows++;
+    }
+
+    /** Dot product of the row with a normalized query. */
+    float dot(int row, float[] query) {
+        ByteBuffer buffer = buffer(row);
+        int offset = offset(row);
+        return vectorized ? VectorMath.dot(buffer, offset, query) : VectorMath.dotScalar(buffer, offset, query);
+    }
+
+    float[] read(int row, float[] into) {
+        ByteBuffer buffer = buffer(row);
+        int offset = offset(row);
+        for (int i = 0; i < dimension; i++) {
+            into[i] = buffer.getFloat(offset + i * Float.BYTES);
+        }
+        return into;
+    }
+
+    private ByteBuffer buffer(int row) {
+        return row < baseRows ? base : chunks.get((row - baseRows) / CHUNK_ROWS);
+    }
+
+    private int offset(int row) {
+        return row < baseRows ? row * rowBytes : (row - baseRows) % CHUNK_ROWS * rowBytes;
+    }
+
+    static float[] normalized(float[] v) {
+        double norm = 0;
+        for (float x : v) {
+            norm += x * x;
+        }
+        float[] unit = new float[v.length];
+        if (norm > 0) {
+            float inv = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < v.length; i++) {
+                unit[i] = v[i] * inv;
+            }
+        }
+        return unit;
+    }
+}
@@ -0,0 +1,69 @@
+package com.regula.facesdk.tests.index;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic descriptors for index tests and benchmarks, in clusters of look-alikes:
+ * each cluster has a random unit center and each person in it is the center plus a random
+ * unit direction times the spread. With the default spread of 0.5 two persons of a cluster
+ * score about 0.8 and a probe of the cluster scores about 0.8 against each of them, so a
+ * search with threshold 0.8 has a real top-K to rank; different clusters score near zero.
+ */
+public final class SyntheticGallery {
+    private final int dimension;
+    private final int clusterSize;
+    private final float spread;
+    private final long seed;
+
+    public SyntheticGallery(int dimension, int clusterSize, long seed) {
+        this(dimension, clusterSize, 0.5f, seed);
+    }
+
+    public SyntheticGallery(int dimension, int clusterSize, float spread, long seed) {
+        if (dimension < 1 || clusterSize < 1) {
+            throw new IllegalArgumentException("dimension and clusterSize must be positive");
+        }
+        this.dimension = dimension;
+        this.clusterSize = clusterSize;
+        this.spread = spread;
+        this.seed = seed;
+    }
+
+    public static UUID personId(int person) {
+        return new UUID(0, person);
+    }
+
+    public float[] descriptor(int person) {
+        return around(person / clusterSize, 2L * person + 1);
+    }
+
+    /** A probe for the cluster of the given person, different for every salt. */
+    public float[] probe(int person, long salt) {
+        return around(person / clusterSize, -2L * salt - 2);
+    }
+
+    private float[] around(int cluster, long key) {
+        float[] center = gaussian(seed * 31 + cluster);
+        float[] direction = gaussian(seed * 31 - 1_000_003L * key);
+        for (int i = 0; i < dimension; i++) {
+            center[i] += spread * direction[i];
+        }
+        return center;
+    }
+
+    private float[] gaussian(long key) {
+        Random random = new Random(key);
+        float[] v = new float[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            v[i] = (float) random.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        float inv = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) {
+            v[i] *= inv;
+        }
+        return v;
+    }
+}
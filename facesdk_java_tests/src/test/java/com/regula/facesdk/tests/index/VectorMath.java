@@ -0,0 +1,30 @@
+package com.regula.facesdk.tests.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dot products over little-endian float rows of an off-heap buffer with the incubating
+ * Vector API. That needs jdk.incubator.vector in the boot layer (the build adds it with
+ * --add-modules to the test JVM and the index benchmarks' forks), see {@link #AVAILABLE};
+ * {@link #dotScalar} is the fallback. The vector code itself is {@link VectorDot}, in
+ * src/vector/java. The buffer must be in little-endian order for the scalar path as well.
+ */
+final class VectorMath {
+    static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private VectorMath() {
+    }
+
+    /** Vector API path; callers check {@link #AVAILABLE} first, it does not link without the module. */
+    static float dot(ByteBuffer rows, int offset, float[] query) {
+        return VectorDot.dot(rows, offset, query);
+    }
+
+    static float dotScalar(ByteBuffer rows, int offset, float[] query) {
+        float dot = 0;
+        for (int i = 0; i < query.length; i++) {
+            dot += rows.getFloat(offset + i * Float.BYTES) * query[i];
+        }
+        return dot;
+    }
+}
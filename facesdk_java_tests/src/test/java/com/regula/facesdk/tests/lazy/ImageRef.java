@@ -0,0 +1,62 @@
+package com.regula.facesdk.tests.lazy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * A base64 image left in place in the response body: the offset and length of the JSON
+ * string between its quotes. Nothing is decoded until {@link #decode()} is called, and
+ * every call decodes again, so a caller that needs the bytes twice should keep them.
+ *
+ * The reference keeps the whole response body reachable; copy what is needed out of it
+ * before holding on to a response for long.
+ */
+public final class ImageRef {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final byte[] body;
+    private final int offset;
+    private final int length;
+    private final boolean escaped;
+
+    ImageRef(byte[] body, int offset, int length, boolean escaped) {
+        this.body = body;
+        this.offset = offset;
+        this.length = length;
+        this.escaped = escaped;
+    }
+
+    /** Length of the base64 text in the response. */
+    public int encodedLength() {
+        return length;
+    }
+
+    /** Decodes the image; a few JSON writers escape '=' or '/', which is undone first. */
+    public byte[] decode() {
+        if (!escaped) {
+            ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(body, offset, length));
+            if (decoded.arrayOffset() == 0 && decoded.remaining() == decoded.array().length) {
+                return decoded.array();
+            }
+            byte[] image = new byte[decoded.remaining()];
+            decoded.get(image);
+            return image;
+        }
+        try (JsonParser parser = JSON.createParser(body, offset - 1, length + 2)) {
+            parser.nextToken();
+            return Base64.getMimeDecoder().decode(parser.getText());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "base64 image, " + length + " chars at " + offset;
+    }
+}
@@ -0,0 +1,48 @@
+package com.regula.facesdk.tests.lazy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.regula.facesdk.webclient.gen.model.FaceSDKResultCode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/** Detect response read by {@link LazyJson}: the same content as DetectResponse with crops undecoded. */
+public final class LazyDetectResponse {
+    static final Set<String> LAZY_FIELDS = Set.of("crop");
+
+    private final JsonNode root;
+    private final List<LazyDetection> detections;
+
+    private LazyDetectResponse(JsonNode root) {
+        this.root = root;
+        List<LazyDetection> detections = new ArrayList<>();
+        for (JsonNode detection : root.path("results").path("detections")) {
+            detections.add(new LazyDetection(detection));
+        }
+        this.detections = Collections.unmodifiableList(detections);
+    }
+
+    public static LazyDetectResponse parse(byte[] body) {
+        return new LazyDetectResponse(LazyJson.parse(body, LAZY_FIELDS));
+    }
+
+    public FaceSDKResultCode code() {
+        return FaceSDKResultCode.fromValue(root.path("code").asInt());
+    }
+
+    /** Scenario the service ran, e.g. "CropAllFaces", or null. */
+    public String scenario() {
+        JsonNode scenario = root.path("results").get("scenario");
+        return scenario == null || scenario.isNull() ? null : scenario.asText();
+    }
+
+    public List<LazyDetection> detections() {
+        return detections;
+    }
+
+    public JsonNode node() {
+        return root;
+    }
+}
@@ -0,0 +1,48 @@
+package com.regula.facesdk.tests.lazy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** One detected face: its box and score-like fields read, its crop left undecoded. */
+public final class LazyDetection {
+    private final JsonNode node;
+
+    LazyDetection(JsonNode node) {
+        this.node = node;
+    }
+
+    /** Face box as x, y, width, height, or an empty list when there is none. */
+    public List<Integer> roi() {
+        return ints(node.get("roi"));
+    }
+
+    /** The crop, or null when the service sent none. */
+    public ImageRef crop() {
+        return image(node, "crop");
+    }
+
+    /** The whole detection (quality, attributes, landmarks...) with images as {@link ImageRef} POJO nodes. */
+    public JsonNode node() {
+        return node;
+    }
+
+    static ImageRef image(JsonNode parent, String field) {
+        JsonNode value = parent == null ? null : parent.get(field);
+        return value != null && value.isPojo() ? (ImageRef) ((POJONode) value).getPojo() : null;
+    }
+
+    static List<Integer> ints(JsonNode array) {
+        if (array == null || !array.isArray()) {
+            return Collections.emptyList();
+        }
+        List<Integer> values = new ArrayList<>(array.size());
+        for (JsonNode value : array) {
+            values.add(value.asInt());
+        }
+        return values;
+    }
+}
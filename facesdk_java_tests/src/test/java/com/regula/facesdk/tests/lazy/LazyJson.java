@@ -0,0 +1,88 @@
+package com.regula.facesdk.tests.lazy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+/**
+ * Reads a response body into a Jackson tree with Jackson's streaming parser, leaving the
+ * string values of the given field names in the body as {@link ImageRef}s (POJO nodes).
+ *
+ * The parser never builds those strings: it skips a string token it is not asked for, and
+ * the reference is taken from the token's byte offset. Everything else, the boxes, scores
+ * and ids, becomes ordinary tree nodes, which are small next to the images.
+ */
+final class LazyJson {
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private LazyJson() {
+    }
+
+    static JsonNode parse(byte[] body, Set<String> lazyFields) {
+        try (JsonParser parser = JSON.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            return token == null ? NODES.missingNode() : value(parser, token, body, lazyFields, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable response body", e);
+        }
+    }
+
+    private static JsonNode value(JsonParser parser, JsonToken token, byte[] body, Set<String> lazyFields, String field)
+            throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                ObjectNode object = NODES.objectNode();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    object.set(name, value(parser, parser.nextToken(), body, lazyFields, name));
+                }
+                return object;
+            case START_ARRAY:
+                ArrayNode array = NODES.arrayNode();
+                for (JsonToken item = parser.nextToken(); item != JsonToken.END_ARRAY; item = parser.nextToken()) {
+                    array.add(value(parser, item, body, lazyFields, field));
+                }
+                return array;
+            case VALUE_STRING:
+                return field != null && lazyFields.contains(field) ? reference(parser, body) : NODES.textNode(parser.getText());
+            case VALUE_NUMBER_INT:
+                return parser.getNumberType() == JsonParser.NumberType.INT
+                        ? NODES.numberNode(parser.getIntValue()) : NODES.numberNode(parser.getLongValue());
+            case VALUE_NUMBER_FLOAT:
+                return NODES.numberNode(parser.getDoubleValue());
+            case VALUE_TRUE:
+                return NODES.booleanNode(true);
+            case VALUE_FALSE:
+                return NODES.booleanNode(false);
+            case VALUE_NULL:
+                return NODES.nullNode();
+            default:
+                throw new IOException("Unexpected " + token + " at " + parser.getTokenLocation());
+        }
+    }
+
+    /** The string token as a range of the body, found from its opening quote. */
+    private static POJONode reference(JsonParser parser, byte[] body) {
+        int start = (int) parser.getTokenLocation().getByteOffset() + 1;
+        int end = start;
+        boolean escaped = false;
+        while (body[end] != '"') {
+            if (body[end] == '\\') {
+                escaped = true;
+                end++;
+            }
+            end++;
+        }
+        return new POJONode(new ImageRef(body, start, end - start, escaped));
+    }
+}
@@ -0,0 +1,84 @@
+package com.regula.facesdk.tests.lazy;
+
+import com.google.gson.Gson;
+import com.regula.facesdk.tests.streaming.StreamingRequestBody;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import com.regula.facesdk.webclient.gen.model.DetectRequest;
+import com.regula.facesdk.webclient.gen.model.SearchRequest;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Detect and search calls whose responses are read lazily (see {@link LazyJson}): the
+ * body is read once into a byte array and crops stay base64 in it until asked for,
+ * instead of the generated client's String body, model tree and decoded crop arrays.
+ * Requests go out as {@link StreamingRequestBody}s over the FaceSdk's own OkHttp client,
+ * so connection settings are shared with it.
+ */
+public final class LazyResponseClient {
+
+    /** Non-2xx answer of a call made outside the generated client; the body is the service's error JSON. */
+    public static final class StatusException extends RuntimeException {
+        private final int code;
+        private final String responseBody;
+
+        public StatusException(int code, String responseBody) {
+            super("HTTP " + code + ": " + responseBody);
+            this.code = code;
+            this.responseBody = responseBody;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public String getResponseBody() {
+            return responseBody;
+        }
+    }
+
+    private final OkHttpClient httpClient;
+    private final String basePath;
+    private final Gson gson;
+
+    public LazyResponseClient(FaceSdk faceSdk) {
+        ApiClient apiClient = faceSdk.matchingApi.getApiClient();
+        this.httpClient = apiClient.getHttpClient();
+        String basePath = apiClient.getBasePath();
+        this.basePath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+        this.gson = StreamingRequestBody.gson(apiClient);
+    }
+
+    public LazyDetectResponse detect(DetectRequest request) {
+        return post("/api/detect", request, LazyDetectResponse::parse);
+    }
+
+    public LazySearchResult search(SearchRequest request) {
+        return post("/api/search", request, LazySearchResult::parse);
+    }
+
+    private <T> T post(String path, Object model, Function<byte[], T> parse) {
+        Request request = new Request.Builder()
+                .url(basePath + path)
+                .post(new StreamingRequestBody(gson, model))
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            byte[] bytes = body == null ? new byte[0] : body.bytes();
+            if (!response.isSuccessful()) {
+                throw new StatusException(response.code(), new String(bytes, StandardCharsets.UTF_8));
+            }
+            return parse.apply(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
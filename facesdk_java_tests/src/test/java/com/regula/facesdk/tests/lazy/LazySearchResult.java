@@ -0,0 +1,78 @@
+package com.regula.facesdk.tests.lazy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.regula.facesdk.webclient.gen.model.FaceSDKResultCode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/** Search result read by {@link LazyJson}: persons with their detection crops undecoded. */
+public final class LazySearchResult {
+
+    /** One person found, as in SearchPerson. */
+    public static final class Person {
+        private final JsonNode node;
+
+        Person(JsonNode node) {
+            this.node = node;
+        }
+
+        public UUID id() {
+            return UUID.fromString(node.path("id").asText());
+        }
+
+        public String name() {
+            JsonNode name = node.get("name");
+            return name == null || name.isNull() ? null : name.asText();
+        }
+
+        /** Highest similarity among the person's matching images. */
+        public float similarity() {
+            float best = 0f;
+            for (JsonNode image : node.path("images")) {
+                best = Math.max(best, (float) image.path("similarity").asDouble());
+            }
+            return best;
+        }
+
+        /** The probe face the person was matched against, with its crop when one was asked for. */
+        public LazyDetection detection() {
+            JsonNode detection = node.get("detection");
+            return detection == null || detection.isNull() ? null : new LazyDetection(detection);
+        }
+
+        public JsonNode node() {
+            return node;
+        }
+    }
+
+    private final JsonNode root;
+    private final List<Person> persons;
+
+    private LazySearchResult(JsonNode root) {
+        this.root = root;
+        List<Person> persons = new ArrayList<>();
+        for (JsonNode person : root.path("persons")) {
+            persons.add(new Person(person));
+        }
+        this.persons = Collections.unmodifiableList(persons);
+    }
+
+    public static LazySearchResult parse(byte[] body) {
+        return new LazySearchResult(LazyJson.parse(body, LazyDetectResponse.LAZY_FIELDS));
+    }
+
+    public FaceSDKResultCode code() {
+        return FaceSDKResultCode.fromValue(root.path("code").asInt());
+    }
+
+    public List<Person> persons() {
+        return persons;
+    }
+
+    public JsonNode node() {
+        return root;
+    }
+}
@@ -0,0 +1,318 @@
+package com.regula.facesdk.tests.load;
+
+import com.regula.facesdk.tests.async.VirtualThreads;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.load.Workload.Operation;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the FaceSDK web service, built on the same requests the
+ * functional tests send (see {@link ScenarioRequests}).
+ *
+ * Calls are started on a fixed schedule (load.rate per second) whether or not earlier
+ * calls have finished, each on its own (virtual when available) thread. Response time is
+ * measured from the scheduled start, not the actual one, so a stalled service or client
+ * shows up as queueing delay instead of being hidden by the generator slowing down
+ * (coordinated omission). Service time, measured from the actual start, is reported next
+ * to it; a wide gap between the two means the generator or the client is the bottleneck.
+ *
+ * Settings (system properties, see the loadTest task in build.gradle):
+ * load.rate calls per second (200), load.duration seconds measured (30), load.warmup seconds
+ * discarded before that (5), load.mix operation weights (detect=60,match=30,search=10),
+ * load.maxInFlight calls allowed in flight before new ones are dropped (10000; a dropped
+ * call counts as a failed call of its operation, without a response time),
+ * load.report directory for the .hgrm percentile files (none).
+ * The endpoint is apiBasePath, or the embedded stand-in when standIn is set; the transport
+ * takes the transport.* properties (see {@link TransportSettings}).
+ */
+public final class LoadRunner {
+    private static final Path FILES_PATH = FixtureRegistry.FILES_PATH;
+    private static final String DROPPED = "dropped at the in-flight limit";
+
+    private static final class Stats {
+        final Histogram responseTime = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+    }
+
+    private final FaceSdk faceSdk;
+    private final Workload workload;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int maxInFlight;
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final Map<String, LongAdder> errorsByCause = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private DetectRequest detectRequest;
+    private MatchRequest matchRequest;
+    private SearchRequest searchRequest;
+    private UUID groupId;
+    private UUID personId;
+
+    public LoadRunner(FaceSdk faceSdk, String mix, double rate, long warmupSeconds, long durationSeconds, int maxInFlight) {
+        this.faceSdk = faceSdk;
+        this.workload = Workload.parse(mix);
+        this.rate = rate;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.maxInFlight = maxInFlight;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String basePath = StandInServer.isEnabled()
+                ? StandInServer.shared().baseUrl()
+                : System.getProperty("apiBasePath", "http://localhost:41101/");
+        TransportSettings transport = TransportSettings.fromSystemProperties();
+        LoadRunner runner = new LoadRunner(
+                transport.newFaceSdk(basePath),
+                System.getProperty("load.mix", "detect=60,match=30,search=10"),
+                Double.parseDouble(System.getProperty("load.rate", "200")),
+                Long.getLong("load.warmup", 5),
+                Long.getLong("load.duration", 30),
+                Integer.getInteger("load.maxInFlight", 10000));
+
+        System.out.println("Load against " + basePath + ": " + runner.rate + " calls/s, " + runner.workload
+                + (VirtualThreads.available() ? ", virtual threads" : ", platform threads (no virtual threads in this JVM)"));
+        System.out.println("Transport: " + transport);
+        runner.setUp();
+        try {
+            runner.run();
+        } finally {
+            runner.tearDown();
+            if (StandInServer.isEnabled()) {
+                // Its HTTP dispatcher is not a daemon thread and would keep the JVM alive
+                StandInServer.shared().close();
+            }
+        }
+        runner.printSummary(System.out);
+        String report = System.getProperty("load.report");
+        if (report != null && !report.isEmpty()) {
+            runner.writeDistributions(Paths.get(report));
+        }
+    }
+
+    public void setUp() {
+        detectRequest = ScenarioRequests.detect(FILES_PATH.resolve("face1.jpg"), null, null);
+        matchRequest = ScenarioRequests.match(ImageSource.LIVE.getValue(), FILES_PATH.resolve("face1.jpg"),
+                ImageSource.DOCUMENT_RFID.getValue(), FILES_PATH.resolve("face2.jpg"));
+
+        if (workload.operations().contains(Operation.SEARCH)) {
+            GroupToCreate groupToCreate = new GroupToCreate();
+            groupToCreate.setName("load-" + UUID.randomUUID().toString().substring(0, 8));
+            groupId = faceSdk.groupApi.createGroup(groupToCreate).getId();
+            PersonFields personFields = new PersonFields();
+            personFields.setName("Person A");
+            personFields.setGroups(Collections.singletonList(groupId));
+            personId = faceSdk.personApi.createPerson(personFields).getId();
+            faceSdk.personApi.addImageToPerson(personId, ScenarioRequests.addImage(FILES_PATH.resolve("face3.jpg")));
+            searchRequest = ScenarioRequests.search(groupId, FILES_PATH.resolve("face1.jpg"), 10, 0.8f);
+        }
+    }
+
+    public void tearDown() {
+        try {
+            if (personId != null) {
+                faceSdk.personApi.deletePerson(personId);
+            }
+            if (groupId != null) {
+                faceSdk.groupApi.deleteGroup(groupId);
+            }
+        } catch (ApiException e) {
+            System.err.println("Cleanup failed: " + e.getResponseBody());
+        }
+    }
+
+    public void run() throws InterruptedException {
+        ExecutorService executor = VirtualThreads.newExecutor();
+        double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        try {
+            for (long i = 0; ; i++) {
+                // Not i times a truncated interval, which drifts early and fits an extra call into the run
+                long scheduled = start + (long) (i * interval);
+                if (scheduled >= end) {
+                    break;
+                }
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = workload.next();
+                boolean measured = scheduled >= measureFrom;
+                int current = inFlight.incrementAndGet();
+                if (current > maxInFlight) {
+                    inFlight.decrementAndGet();
+                    dropped.increment();
+                    if (measured) {
+                        Stats s = stats.get(operation);
+                        s.errors.increment();
+                        s.dropped.increment();
+                        errorsByCause.computeIfAbsent(DROPPED, k -> new LongAdder()).increment();
+                    }
+                    continue;
+                }
+                peakInFlight.accumulateAndGet(current, Math::max);
+                executor.execute(() -> call(operation, scheduled, measured));
+            }
+        } finally {
+            executor.shutdown();
+            if (!executor.awaitTermination(2, TimeUnit.MINUTES)) {
+                System.err.println(inFlight.get() + " calls still running after 2 minutes, abandoning them");
+            }
+        }
+    }
+
+    private void call(Operation operation, long scheduled, boolean measured) {
+        long started = System.nanoTime();
+        boolean failed = false;
+        try {
+            switch (operation) {
+                case DETECT:
+                    faceSdk.matchingApi.detect(detectRequest);
+                    break;
+                case MATCH:
+                    faceSdk.matchingApi.match(matchRequest);
+                    break;
+                case SEARCH:
+                    faceSdk.searchApi.search(searchRequest);
+                    break;
+            }
+        } catch (ApiException e) {
+            failed = true;
+            if (measured) {
+                errorsByCause.computeIfAbsent("HTTP " + e.getCode(), k -> new LongAdder()).increment();
+            }
+        } catch (RuntimeException e) {
+            failed = true;
+            if (measured) {
+                errorsByCause.computeIfAbsent(e.getClass().getSimpleName(), k -> new LongAdder()).increment();
+            }
+        } finally {
+            long finished = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (measured) {
+                Stats s = stats.get(operation);
+                if (failed) {
+                    s.errors.increment();
+                }
+                s.responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(finished - scheduled));
+                s.serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(finished - started));
+            }
+        }
+    }
+
+    /** Measured calls, dropped ones included. */
+    public long calls() {
+        long calls = 0;
+        for (Operation operation : workload.operations()) {
+            Stats s = stats.get(operation);
+            calls += s.responseTime.getTotalCount() + s.dropped.sum();
+        }
+        return calls;
+    }
+
+    /** Measured calls that failed, dropped ones included. */
+    public long errors() {
+        long errors = 0;
+        for (Operation operation : workload.operations()) {
+            errors += stats.get(operation).errors.sum();
+        }
+        return errors;
+    }
+
+    /** Calls dropped at the in-flight limit over the whole run, warmup included. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    public void printSummary(PrintStream out) {
+        double seconds = durationNanos / 1e9;
+        Histogram totalResponse = new Histogram(3);
+        Histogram totalService = new Histogram(3);
+        long totalErrors = 0;
+        long totalDropped = 0;
+
+        out.println();
+        out.printf("%-8s %8s %7s %8s | %-37s | %-17s%n", "", "calls", "errors", "calls/s",
+                "response time ms (p50 p90 p99 p99.9 max)", "service ms (p50 p99)");
+        for (Operation operation : workload.operations()) {
+            Stats s = stats.get(operation);
+            totalResponse.add(s.responseTime);
+            totalService.add(s.serviceTime);
+            totalErrors += s.errors.sum();
+            totalDropped += s.dropped.sum();
+            printRow(out, operation.name().toLowerCase(), s.responseTime, s.serviceTime, s.dropped.sum(), s.errors.sum(), seconds);
+        }
+        printRow(out, "total", totalResponse, totalService, totalDropped, totalErrors, seconds);
+
+        out.println();
+        out.printf("Target %.0f calls/s over %.0f s, peak %d in flight, %d dropped at the in-flight limit%n",
+                rate, seconds, peakInFlight.get(), dropped.sum());
+        errorsByCause.forEach((cause, count) -> out.println("  errors " + cause + ": " + count.sum()));
+    }
+
+    /** Dropped calls count towards calls and errors; the latency columns cover the calls that ran. */
+    private static void printRow(PrintStream out, String name, Histogram response, Histogram service, long dropped, long errors, double seconds) {
+        long calls = response.getTotalCount() + dropped;
+        out.printf("%-8s %8d %7d %8.1f | %6.1f %6.1f %6.1f %7.1f %7.1f | %7.1f %7.1f%n",
+                name, calls, errors, calls / seconds,
+                ms(response.getValueAtPercentile(50)), ms(response.getValueAtPercentile(90)),
+                ms(response.getValueAtPercentile(99)), ms(response.getValueAtPercentile(99.9)),
+                ms(response.getMaxValue()),
+                ms(service.getValueAtPercentile(50)), ms(service.getValueAtPercentile(99)));
+    }
+
+    /** Writes one HdrHistogram percentile file per operation, readable by the HdrHistogram plotter. */
+    public void writeDistributions(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Operation operation : workload.operations()) {
+            Path file = directory.resolve(operation.name().toLowerCase() + ".hgrm");
+            try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()))) {
+                stats.get(operation).responseTime.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println("Percentile distributions written to " + directory);
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,64 @@
+package com.regula.facesdk.tests.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Weighted mix of operations, parsed from "detect=60,match=30,search=10". */
+final class Workload {
+
+    enum Operation {
+        DETECT, MATCH, SEARCH
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight;
+
+    static Workload parse(String mix) {
+        Workload workload = new Workload();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Bad workload entry '" + part + "', expected operation=weight");
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                workload.totalWeight += weight;
+                workload.operations.add(Operation.valueOf(pair[0].trim().toUpperCase()));
+                workload.cumulativeWeights.add(workload.totalWeight);
+            }
+        }
+        if (workload.totalWeight == 0) {
+            throw new IllegalArgumentException("Workload '" + mix + "' has no operations");
+        }
+        return workload;
+    }
+
+    Operation next() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int i = 0; i < operations.size(); i++) {
+            if (pick < cumulativeWeights.get(i)) {
+                return operations.get(i);
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    List<Operation> operations() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            int weight = cumulativeWeights.get(i) - previous;
+            previous = cumulativeWeights.get(i);
+            sb.append(i == 0 ? "" : ", ").append(operations.get(i).name().toLowerCase())
+                    .append(' ').append(weight * 100 / totalWeight).append('%');
+        }
+        return sb.toString();
+    }
+}
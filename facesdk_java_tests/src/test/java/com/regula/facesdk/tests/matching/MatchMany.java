@@ -0,0 +1,207 @@
+package com.regula.facesdk.tests.matching;
+
+import com.regula.facesdk.tests.async.AsyncFaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Matches one probe against many references (1:N) with as few match calls as the payload
+ * limits allow.
+ *
+ * The probe goes into every request at index 0, followed by a chunk of references at
+ * indexes 1..k. A chunk is closed when adding the next reference would push the estimated
+ * body (base64 image data plus a little JSON per image) over maxPayloadBytes, or when it
+ * holds maxReferencesPerRequest references; the latter matters as much as the former,
+ * because the service compares every image in a request with every other one, so results
+ * grow with the square of the chunk while only the probe pairs are wanted. Chunks are sent
+ * concurrently through an {@link AsyncFaceSdk}, whose maxInFlight bounds the fan-out.
+ *
+ * Each reference yields one {@link Candidate}: its best pair with any probe face.
+ * References in which the service finds no face yield none.
+ */
+public final class MatchMany {
+    /** JSON around one image: index, type and the quotes and keys of the data field. */
+    private static final int IMAGE_OVERHEAD_BYTES = 64;
+    private static final int PROBE_INDEX = 0;
+
+    private final AsyncFaceSdk asyncFaceSdk;
+    private long maxPayloadBytes = 16L << 20;
+    private int maxReferencesPerRequest = 16;
+
+    public MatchMany(AsyncFaceSdk asyncFaceSdk) {
+        this.asyncFaceSdk = asyncFaceSdk;
+    }
+
+    /** Upper bound for the estimated request body; a reference too large for it is sent on its own. */
+    public MatchMany maxPayloadBytes(long maxPayloadBytes) {
+        if (maxPayloadBytes < 1) {
+            throw new IllegalArgumentException("maxPayloadBytes must be positive, got " + maxPayloadBytes);
+        }
+        this.maxPayloadBytes = maxPayloadBytes;
+        return this;
+    }
+
+    public MatchMany maxReferencesPerRequest(int maxReferencesPerRequest) {
+        if (maxReferencesPerRequest < 1) {
+            throw new IllegalArgumentException("maxReferencesPerRequest must be positive, got " + maxReferencesPerRequest);
+        }
+        this.maxReferencesPerRequest = maxReferencesPerRequest;
+        return this;
+    }
+
+    /** Best pair of one reference with the probe. */
+    public static final class Candidate {
+        /** Position of the reference in the list passed to {@link #match}. */
+        public final int reference;
+        public final ImageSource type;
+        public final int probeFaceIndex;
+        public final int faceIndex;
+        public final float similarity;
+        public final Float score;
+
+        Candidate(int reference, ImageSource type, int probeFaceIndex, int faceIndex, float similarity, Float score) {
+            this.reference = reference;
+            this.type = type;
+            this.probeFaceIndex = probeFaceIndex;
+            this.faceIndex = faceIndex;
+            this.similarity = similarity;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return "reference " + reference + " face " + faceIndex + ": " + similarity;
+        }
+    }
+
+    public static final class Result {
+        /** Highest similarity first; ties keep the order of the references. */
+        public final List<Candidate> candidates;
+        public final int requests;
+
+        Result(List<Candidate> candidates, int requests) {
+            this.candidates = candidates;
+            this.requests = requests;
+        }
+    }
+
+    /** Splits the references into chunks of consecutive positions, as {@code [from, to)} pairs. */
+    List<int[]> chunks(MatchImage probe, List<MatchImage> references) {
+        long probeBytes = encodedSize(probe);
+        List<int[]> chunks = new ArrayList<>();
+        int from = 0;
+        long bytes = probeBytes;
+        for (int i = 0; i < references.size(); i++) {
+            long size = encodedSize(references.get(i));
+            if (i > from && (bytes + size > maxPayloadBytes || i - from == maxReferencesPerRequest)) {
+                chunks.add(new int[]{from, i});
+                from = i;
+                bytes = probeBytes;
+            }
+            bytes += size;
+        }
+        if (from < references.size()) {
+            chunks.add(new int[]{from, references.size()});
+        }
+        return chunks;
+    }
+
+    /**
+     * Matches the probe against every reference. Index values already set on the images are
+     * ignored; the probe and references themselves are not modified. Fails with the first
+     * chunk's error if any chunk fails.
+     */
+    public Result match(MatchImage probe, List<MatchImage> references) {
+        List<int[]> chunks = chunks(probe, references);
+        List<CompletableFuture<MatchResponse>> responses = new ArrayList<>(chunks.size());
+        for (int[] chunk : chunks) {
+            responses.add(asyncFaceSdk.match(request(probe, references, chunk[0], chunk[1])));
+        }
+
+        Candidate[] best = new Candidate[references.size()];
+        for (int c = 0; c < chunks.size(); c++) {
+            MatchResponse response = await(responses.get(c));
+            if (response.getResults() == null) {
+                continue;
+            }
+            int offset = chunks.get(c)[0] - 1;
+            for (MatchResult result : response.getResults()) {
+                Candidate candidate = candidate(result, offset);
+                if (candidate != null && (best[candidate.reference] == null
+                        || candidate.similarity > best[candidate.reference].similarity)) {
+                    best[candidate.reference] = candidate;
+                }
+            }
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Candidate candidate : best) {
+            if (candidate != null) {
+                candidates.add(candidate);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.similarity).reversed());
+        return new Result(Collections.unmodifiableList(candidates), chunks.size());
+    }
+
+    private static MatchRequest request(MatchImage probe, List<MatchImage> references, int from, int to) {
+        List<MatchImage> images = new ArrayList<>(to - from + 1);
+        images.add(copy(probe, PROBE_INDEX));
+        for (int i = from; i < to; i++) {
+            images.add(copy(references.get(i), i - from + 1));
+        }
+        MatchRequest request = new MatchRequest();
+        request.setImages(images);
+        return request;
+    }
+
+    private static MatchImage copy(MatchImage image, int index) {
+        MatchImage copy = new MatchImage();
+        copy.setIndex(index);
+        copy.setType(image.getType());
+        copy.setData(image.getData());
+        copy.setDetectAll(image.getDetectAll());
+        return copy;
+    }
+
+    /** The result as a probe/reference pair, or null for a pair between two references or within the probe. */
+    private static Candidate candidate(MatchResult result, int offset) {
+        int first = Objects.requireNonNull(result.getFirstIndex());
+        int second = Objects.requireNonNull(result.getSecondIndex());
+        if (first == PROBE_INDEX && second != PROBE_INDEX) {
+            return new Candidate(second + offset, result.getSecond(), faceIndex(result.getFirstFaceIndex()),
+                    faceIndex(result.getSecondFaceIndex()), result.getSimilarity(), result.getScore());
+        }
+        if (second == PROBE_INDEX && first != PROBE_INDEX) {
+            return new Candidate(first + offset, result.getFirst(), faceIndex(result.getSecondFaceIndex()),
+                    faceIndex(result.getFirstFaceIndex()), result.getSimilarity(), result.getScore());
+        }
+        return null;
+    }
+
+    private static int faceIndex(Integer faceIndex) {
+        return faceIndex == null ? 0 : faceIndex;
+    }
+
+    private static long encodedSize(MatchImage image) {
+        return 4L * ((image.getData().length + 2) / 3) + IMAGE_OVERHEAD_BYTES;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.regula.facesdk.tests.metrics;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.gen.model.DetectResponse;
+import com.regula.facesdk.webclient.gen.model.FaceSDKResultCode;
+import com.regula.facesdk.webclient.gen.model.MatchResponse;
+import com.regula.facesdk.webclient.gen.model.SearchResult;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import org.HdrHistogram.Histogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Where the time of a FaceSdk call goes, per operation ("POST /api/detect",
+ * "POST /api/persons/{id}/images", ...).
+ *
+ * The network phases come from an OkHttp EventListener installed by
+ * {@link #instrument(OkHttpClient)}: the whole HTTP call, connect (new connections only),
+ * request write, server (last request byte to first response byte) and response read,
+ * along with the request and response body sizes. Wrapping the call in
+ * {@link #record(Supplier)} adds the total, the client time before the request goes out
+ * (JSON serialization and base64 of the images) and after the response is read
+ * (deserialization), and errors by FaceSDKResultCode: the code of a response that is not
+ * FACER_OK, the code in an error body, or HTTP_&lt;status&gt;. Calls that are not wrapped
+ * get their client time from a {@link MeteredApiClient}, if the FaceSdk is built on one.
+ *
+ * Recording takes a few LongAdder increments and ConcurrentHistogram records, so it can
+ * stay on in load runs. The numbers are exported through {@link #registerMBean} and as
+ * Prometheus text ({@link #prometheusText()}, {@link #writePrometheus}, {@link #dumpEvery}).
+ */
+public final class FaceSdkMetrics implements FaceSdkMetricsMXBean {
+    public enum Phase { TOTAL, NETWORK, SERIALIZE, CONNECT, REQUEST_WRITE, SERVER, RESPONSE_READ, DESERIALIZE }
+
+    private static final String UNKNOWN = "unknown";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * The record() call in progress on this thread, which the listener of a synchronous call
+     * reports to, and the MeteredApiClient times of the calls on this thread otherwise.
+     */
+    private static final class CallContext {
+        boolean active;
+        String operation;
+        long callStart;
+        long responseEnd;
+        long pendingSerializeNanos;
+        Listener lastCall;
+        long bodyReadEnd;
+    }
+
+    private static final ThreadLocal<CallContext> CONTEXT = ThreadLocal.withInitial(CallContext::new);
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    /** Creates the listeners of a client, which report to every instance that instrumented it. */
+    private static final class ListenerFactory implements EventListener.Factory {
+        final FaceSdkMetrics[] targets;
+
+        ListenerFactory(FaceSdkMetrics[] targets) {
+            this.targets = targets;
+        }
+
+        @Override
+        public EventListener create(Call call) {
+            return new Listener(targets);
+        }
+    }
+
+    /**
+     * The client with this instance's event listener; it shares the original's pool and
+     * dispatcher. A client instrumented by another instance reports to both; any other
+     * event listener of the client is replaced.
+     */
+    public OkHttpClient instrument(OkHttpClient httpClient) {
+        FaceSdkMetrics[] targets = {this};
+        if (httpClient.eventListenerFactory() instanceof ListenerFactory) {
+            FaceSdkMetrics[] existing = ((ListenerFactory) httpClient.eventListenerFactory()).targets;
+            if (Arrays.asList(existing).contains(this)) {
+                return httpClient;
+            }
+            targets = Arrays.copyOf(existing, existing.length + 1);
+            targets[existing.length] = this;
+        }
+        return httpClient.newBuilder().eventListenerFactory(new ListenerFactory(targets)).build();
+    }
+
+    /** Runs a FaceSdk call, recording its total and client time and its result code. */
+    public <T> T record(Supplier<T> call) {
+        CallContext context = CONTEXT.get();
+        if (context.active) {
+            return call.get();
+        }
+        context.active = true;
+        context.operation = null;
+        context.callStart = -1;
+        context.responseEnd = -1;
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            T result = call.get();
+            error = resultCode(result);
+            return result;
+        } catch (ApiException e) {
+            error = errorCode(e);
+            throw e;
+        } catch (RuntimeException e) {
+            error = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            context.active = false;
+            OperationMetrics metrics = metrics(context.operation == null ? UNKNOWN : context.operation);
+            metrics.calls.increment();
+            metrics.record(Phase.TOTAL, end - start);
+            if (context.callStart >= 0) {
+                metrics.record(Phase.SERIALIZE, context.callStart - start);
+            }
+            if (context.responseEnd >= 0) {
+                metrics.record(Phase.DESERIALIZE, end - context.responseEnd);
+            }
+            if (error != null) {
+                metrics.error(error);
+            }
+        }
+    }
+
+    /** Serialization done before its call exists; the next call this thread starts is credited with it. */
+    static void serialized(long nanos) {
+        CallContext context = CONTEXT.get();
+        if (!context.active) {
+            context.pendingSerializeNanos += nanos;
+        }
+    }
+
+    /** Deserialization of the last response read on this thread, less the part spent reading the body. */
+    static void deserialized(long start, long end) {
+        CallContext context = CONTEXT.get();
+        if (!context.active && context.lastCall != null) {
+            context.lastCall.record(Phase.DESERIALIZE, end - Math.max(start, context.bodyReadEnd));
+        }
+        context.lastCall = null;
+    }
+
+    private OperationMetrics metrics(String operation) {
+        OperationMetrics metrics = operations.get(operation);
+        return metrics != null ? metrics : operations.computeIfAbsent(operation, o -> new OperationMetrics());
+    }
+
+    /** Method and path with ids and numbers replaced, so that every person's calls add up to one operation. */
+    public static String operation(Request request) {
+        StringBuilder name = new StringBuilder(request.method()).append(' ');
+        for (String segment : request.url().pathSegments()) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            name.append('/');
+            if (segment.length() == 36 && segment.charAt(8) == '-' && segment.charAt(13) == '-') {
+                name.append("{id}");
+            } else if (segment.chars().allMatch(Character::isDigit)) {
+                name.append("{n}");
+            } else {
+                name.append(segment);
+            }
+        }
+        return name.toString();
+    }
+
+    private static String resultCode(Object result) {
+        FaceSDKResultCode code = null;
+        if (result instanceof DetectResponse) {
+            code = ((DetectResponse) result).getCode();
+        } else if (result instanceof MatchResponse) {
+            code = ((MatchResponse) result).getCode();
+        } else if (result instanceof SearchResult) {
+            code = ((SearchResult) result).getCode();
+        }
+        return code == null || code == FaceSDKResultCode.FACER_OK ? null : code.name();
+    }
+
+    private static String errorCode(ApiException e) {
+        if (e.getCode() == 0) {
+            return "NO_RESPONSE";
+        }
+        try {
+            JsonElement body = JsonParser.parseString(e.getResponseBody());
+            if (body.isJsonObject()) {
+                JsonObject json = body.getAsJsonObject();
+                if (json.has("code") && json.get("code").isJsonPrimitive()) {
+                    return FaceSDKResultCode.fromValue(json.get("code").getAsInt()).name();
+                }
+            }
+        } catch (RuntimeException ignored) {
+            // Not a FaceSDK error body
+        }
+        return "HTTP_" + e.getCode();
+    }
+
+    private static final class Listener extends EventListener {
+        private final FaceSdkMetrics[] targets;
+        private final OperationMetrics[] metrics;
+        private CallContext context;
+        private long callStart;
+        private long connectStart;
+        private long requestStart;
+        private long requestEnd;
+        private long responseStart;
+
+        Listener(FaceSdkMetrics[] targets) {
+            this.targets = targets;
+            this.metrics = new OperationMetrics[targets.length];
+        }
+
+        void record(Phase phase, long nanos) {
+            for (OperationMetrics target : metrics) {
+                target.record(phase, nanos);
+            }
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+            String operation = operation(call.request());
+            for (int i = 0; i < targets.length; i++) {
+                metrics[i] = targets[i].metrics(operation);
+            }
+            CallContext current = CONTEXT.get();
+            if (current.active) {
+                context = current;
+                context.operation = operation;
+                context.callStart = callStart;
+            } else if (current.pendingSerializeNanos > 0) {
+                record(Phase.SERIALIZE, current.pendingSerializeNanos);
+                current.pendingSerializeNanos = 0;
+            }
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            record(Phase.CONNECT, System.nanoTime() - connectStart);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestEnd = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestEnd = System.nanoTime();
+            for (OperationMetrics target : metrics) {
+                target.requestBytes.recordValue(byteCount);
+            }
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            responseStart = System.nanoTime();
+            record(Phase.REQUEST_WRITE, requestEnd - requestStart);
+            record(Phase.SERVER, responseStart - requestEnd);
+            // The response is read and deserialized on this thread, the caller's or the dispatcher's for async calls
+            CONTEXT.get().lastCall = this;
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            long now = System.nanoTime();
+            record(Phase.RESPONSE_READ, now - responseStart);
+            for (OperationMetrics target : metrics) {
+                target.responseBytes.recordValue(byteCount);
+            }
+            CONTEXT.get().bodyReadEnd = now;
+            if (context != null) {
+                context.responseEnd = now;
+            }
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            record(Phase.NETWORK, System.nanoTime() - callStart);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            record(Phase.NETWORK, System.nanoTime() - callStart);
+        }
+    }
+
+    // Export
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> stats = new ArrayList<>();
+        new TreeMap<>(operations).forEach((operation, metrics) -> {
+            Histogram total = metrics.phases[Phase.TOTAL.ordinal()].copy();
+            Map<String, Long> errors = new TreeMap<>();
+            metrics.errors.forEach((code, count) -> errors.put(code, count.sum()));
+            stats.add(new OperationStats(operation, metrics.calls.sum(), errors.values().stream().mapToLong(Long::longValue).sum(), errors,
+                    total.getValueAtPercentile(50) / 1e3, total.getValueAtPercentile(99) / 1e3,
+                    (mean(metrics, Phase.SERIALIZE) + mean(metrics, Phase.DESERIALIZE)) / 1e3,
+                    mean(metrics, Phase.CONNECT) / 1e3, mean(metrics, Phase.SERVER) / 1e3,
+                    metrics.requestBytes.getMean(), metrics.responseBytes.getMean()));
+        });
+        return stats;
+    }
+
+    /** A copy of the phase's histogram of every operation, in nanoseconds. */
+    public Map<String, Histogram> histograms(Phase phase) {
+        Map<String, Histogram> histograms = new TreeMap<>();
+        operations.forEach((operation, metrics) -> histograms.put(operation, metrics.phases[phase.ordinal()].copy()));
+        return histograms;
+    }
+
+    private static double mean(OperationMetrics metrics, Phase phase) {
+        Histogram histogram = metrics.phases[phase.ordinal()];
+        return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+    }
+
+    /** Prometheus text exposition format: phase and body size summaries, call and error counters. */
+    @Override
+    public String getPrometheusText() {
+        return prometheusText();
+    }
+
+    public String prometheusText() {
+        Map<String, OperationMetrics> sorted = new TreeMap<>(operations);
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP facesdk_call_phase_seconds Time of FaceSdk calls by phase\n");
+        out.append("# TYPE facesdk_call_phase_seconds summary\n");
+        sorted.forEach((operation, metrics) -> {
+            for (Phase phase : Phase.values()) {
+                String labels = "operation=\"" + escape(operation) + "\",phase=\"" + phase.name().toLowerCase(Locale.ROOT) + "\"";
+                summary(out, "facesdk_call_phase_seconds", labels, metrics.phases[phase.ordinal()].copy(), 1e-9);
+            }
+        });
+        for (String direction : new String[] {"request", "response"}) {
+            out.append("# HELP facesdk_").append(direction).append("_bytes Body size of FaceSdk ").append(direction).append("s\n");
+            out.append("# TYPE facesdk_").append(direction).append("_bytes summary\n");
+            sorted.forEach((operation, metrics) -> summary(out, "facesdk_" + direction + "_bytes", "operation=\"" + escape(operation) + "\"",
+                    (direction.equals("request") ? metrics.requestBytes : metrics.responseBytes).copy(), 1));
+        }
+        out.append("# HELP facesdk_calls_total FaceSdk calls\n");
+        out.append("# TYPE facesdk_calls_total counter\n");
+        sorted.forEach((operation, metrics) ->
+                out.append("facesdk_calls_total{operation=\"").append(escape(operation)).append("\"} ").append(metrics.calls.sum()).append('\n'));
+        out.append("# HELP facesdk_errors_total Failed FaceSdk calls by FaceSDKResultCode or HTTP status\n");
+        out.append("# TYPE facesdk_errors_total counter\n");
+        sorted.forEach((operation, metrics) -> new TreeMap<>(metrics.errors).forEach((code, count) ->
+                out.append("facesdk_errors_total{operation=\"").append(escape(operation)).append("\",code=\"").append(escape(code))
+                        .append("\"} ").append(count.sum()).append('\n')));
+        return out.toString();
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, Histogram histogram, double scale) {
+        long count = histogram.getTotalCount();
+        if (count == 0) {
+            return;
+        }
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getValueAtPercentile(quantile * 100) * scale).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getMean() * count * scale).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /** Writes the Prometheus text through a temporary file, so a collector never reads half of it. */
+    public void writePrometheus(Path file) {
+        try {
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temporary, prometheusText().getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rewrites the Prometheus file every interval, for node_exporter's textfile collector; close for a last write.
+     * A failed write is logged and retried at the next interval.
+     */
+    public AutoCloseable dumpEvery(Path file, long interval, TimeUnit unit) {
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            // An exception would cancel the schedule for good; a full disk should only cost this write
+            try {
+                writePrometheus(file);
+            } catch (RuntimeException e) {
+                System.err.println("Cannot write metrics to " + file + ": " + e);
+            }
+        }, interval, interval, unit);
+        return () -> {
+            dumper.shutdownNow();
+            writePrometheus(file);
+        };
+    }
+
+    /** Registers with the platform MBean server as com.regula.facesdk.tests:type=FaceSdkMetrics,name=&lt;name&gt;. */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.regula.facesdk.tests:type=FaceSdkMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics MBean " + name, e);
+        }
+    }
+
+    public static void unregisterMBean(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + objectName, e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+    }
+}
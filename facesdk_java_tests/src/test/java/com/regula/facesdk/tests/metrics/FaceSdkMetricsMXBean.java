@@ -0,0 +1,13 @@
+package com.regula.facesdk.tests.metrics;
+
+import java.util.List;
+
+/** JMX view of {@link FaceSdkMetrics}, registered by {@link FaceSdkMetrics#registerMBean}. */
+public interface FaceSdkMetricsMXBean {
+    List<OperationStats> getOperations();
+
+    /** The same text as the Prometheus dump file. */
+    String getPrometheusText();
+
+    void reset();
+}
@@ -0,0 +1,37 @@
+package com.regula.facesdk.tests.metrics;
+
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.lang.reflect.Type;
+
+/**
+ * ApiClient that reports its serialization and deserialization time to the
+ * {@link FaceSdkMetrics} its HTTP client is instrumented with, for calls that are not
+ * wrapped in {@link FaceSdkMetrics#record}. A request body that is serialized while it is
+ * written (StreamingApiClient) shows up as network time instead.
+ */
+public class MeteredApiClient extends ApiClient {
+
+    @Override
+    public RequestBody serialize(Object obj, String contentType) throws ApiException {
+        long start = System.nanoTime();
+        try {
+            return super.serialize(obj, contentType);
+        } finally {
+            FaceSdkMetrics.serialized(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(Response response, Type returnType) throws ApiException {
+        long start = System.nanoTime();
+        try {
+            return super.deserialize(response, returnType);
+        } finally {
+            FaceSdkMetrics.deserialized(start, System.nanoTime());
+        }
+    }
+}
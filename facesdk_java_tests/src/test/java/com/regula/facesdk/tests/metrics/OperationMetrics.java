@@ -0,0 +1,34 @@
+package com.regula.facesdk.tests.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Recorders of one operation, e.g. "POST /api/persons/{id}/images". */
+final class OperationMetrics {
+    /** Phase histograms in nanoseconds, indexed by {@link FaceSdkMetrics.Phase}. */
+    final Histogram[] phases = new Histogram[FaceSdkMetrics.Phase.values().length];
+    final Histogram requestBytes = new ConcurrentHistogram(3);
+    final Histogram responseBytes = new ConcurrentHistogram(3);
+    final LongAdder calls = new LongAdder();
+    final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    OperationMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new ConcurrentHistogram(3);
+        }
+    }
+
+    void record(FaceSdkMetrics.Phase phase, long nanos) {
+        if (nanos >= 0) {
+            phases[phase.ordinal()].recordValue(nanos);
+        }
+    }
+
+    void error(String code) {
+        errors.computeIfAbsent(code, c -> new LongAdder()).increment();
+    }
+}
@@ -0,0 +1,93 @@
+package com.regula.facesdk.tests.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+
+/**
+ * Snapshot of one operation's metrics. Times are in microseconds; getters rather than
+ * public fields, since JMX maps this class to an open CompositeData through them.
+ */
+public final class OperationStats {
+    private final String operation;
+    private final long calls;
+    private final long errors;
+    private final Map<String, Long> errorsByCode;
+    private final double totalP50Micros;
+    private final double totalP99Micros;
+    private final double clientMeanMicros;
+    private final double connectMeanMicros;
+    private final double serverMeanMicros;
+    private final double requestBytesMean;
+    private final double responseBytesMean;
+
+    @ConstructorProperties({"operation", "calls", "errors", "errorsByCode", "totalP50Micros", "totalP99Micros",
+            "clientMeanMicros", "connectMeanMicros", "serverMeanMicros", "requestBytesMean", "responseBytesMean"})
+    public OperationStats(String operation, long calls, long errors, Map<String, Long> errorsByCode, double totalP50Micros,
+            double totalP99Micros, double clientMeanMicros, double connectMeanMicros, double serverMeanMicros,
+            double requestBytesMean, double responseBytesMean) {
+        this.operation = operation;
+        this.calls = calls;
+        this.errors = errors;
+        this.errorsByCode = errorsByCode;
+        this.totalP50Micros = totalP50Micros;
+        this.totalP99Micros = totalP99Micros;
+        this.clientMeanMicros = clientMeanMicros;
+        this.connectMeanMicros = connectMeanMicros;
+        this.serverMeanMicros = serverMeanMicros;
+        this.requestBytesMean = requestBytesMean;
+        this.responseBytesMean = responseBytesMean;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /** Errors by FaceSDKResultCode name, or HTTP_&lt;status&gt; when the response had no code. */
+    public Map<String, Long> getErrorsByCode() {
+        return errorsByCode;
+    }
+
+    public double getTotalP50Micros() {
+        return totalP50Micros;
+    }
+
+    public double getTotalP99Micros() {
+        return totalP99Micros;
+    }
+
+    /** Serialization before the request and deserialization after the response, per call. */
+    public double getClientMeanMicros() {
+        return clientMeanMicros;
+    }
+
+    public double getConnectMeanMicros() {
+        return connectMeanMicros;
+    }
+
+    public double getServerMeanMicros() {
+        return serverMeanMicros;
+    }
+
+    public double getRequestBytesMean() {
+        return requestBytesMean;
+    }
+
+    public double getResponseBytesMean() {
+        return responseBytesMean;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d calls, %d errors %s, total p50 %.0f p99 %.0f us, client %.1f us, server %.0f us, %.0f/%.0f bytes",
+                operation, calls, errors, errorsByCode, totalP50Micros, totalP99Micros, clientMeanMicros, serverMeanMicros,
+                requestBytesMean, responseBytesMean);
+    }
+}
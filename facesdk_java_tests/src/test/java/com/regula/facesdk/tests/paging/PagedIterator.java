@@ -0,0 +1,136 @@
+package com.regula.facesdk.tests.paging;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Iterates over a paged endpoint one page at a time, fetching page N+1 in the background
+ * while the caller works through page N. At most two pages are referenced at any moment
+ * (the one being consumed and the one being fetched), whatever the total size.
+ *
+ * Paging stops at the page count the service reports, or at the first short or empty
+ * page when it reports none.
+ */
+public final class PagedIterator<T> implements Iterator<T>, AutoCloseable {
+
+    /** One page of results and the total number of pages, which may be null if unknown. */
+    public static final class Page<T> {
+        final List<T> items;
+        final Integer totalPages;
+
+        public Page(List<T> items, Integer totalPages) {
+            this.items = items == null ? Collections.emptyList() : items;
+            this.totalPages = totalPages;
+        }
+    }
+
+    @FunctionalInterface
+    public interface PageFetcher<T> {
+        Page<T> fetch(int page, int size);
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final int pageSize;
+    private final Executor executor;
+    private Iterator<T> current = Collections.emptyIterator();
+    private CompletableFuture<Page<T>> next;
+    private boolean started;
+    private int nextPage = 1;
+    private int pagesFetched;
+    private int bufferedItems;
+    private int maxBufferedItems;
+    private volatile boolean closed;
+
+    public PagedIterator(PageFetcher<T> fetcher, int pageSize, Executor executor) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive, got " + pageSize);
+        }
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            // Nothing is requested until the first element is asked for
+            started = true;
+            next = prefetch();
+        }
+        while (!current.hasNext()) {
+            if (next == null || closed) {
+                return false;
+            }
+            Page<T> page = await(next);
+            int number = nextPage++;
+            boolean last = page.items.isEmpty()
+                    || (page.totalPages != null ? number >= page.totalPages : page.items.size() < pageSize);
+            bufferedItems = page.items.size();
+            next = last ? null : prefetch();
+            current = page.items.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /** Pages requested so far, including one being prefetched. */
+    public synchronized int pagesFetched() {
+        return pagesFetched;
+    }
+
+    /** Largest number of items held at once: the page being consumed plus the one prefetched. */
+    public synchronized int maxBufferedItems() {
+        return maxBufferedItems;
+    }
+
+    private CompletableFuture<Page<T>> prefetch() {
+        int page = nextPage;
+        synchronized (this) {
+            pagesFetched++;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            Page<T> result = fetcher.fetch(page, pageSize);
+            synchronized (this) {
+                maxBufferedItems = Math.max(maxBufferedItems, bufferedItems + result.items.size());
+            }
+            return result;
+        }, executor);
+    }
+
+    private static <T> Page<T> await(CompletableFuture<Page<T>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } catch (CancellationException e) {
+            throw new IllegalStateException("Iterator was closed", e);
+        }
+    }
+
+    /** Stops paging; a prefetch in flight is abandoned. */
+    @Override
+    public void close() {
+        closed = true;
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+        current = Collections.emptyIterator();
+    }
+}
@@ -0,0 +1,68 @@
+package com.regula.facesdk.tests.paging;
+
+import com.regula.facesdk.tests.async.VirtualThreads;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy streams over the paged list endpoints. Close the stream (try-with-resources) when
+ * stopping early so that a prefetch in flight is dropped.
+ *
+ * <pre>
+ * try (Stream&lt;Person&gt; persons = Pages.personsInGroup(faceSdk, groupId, 500)) {
+ *     persons.filter(...).forEach(...);
+ * }
+ * </pre>
+ */
+public final class Pages {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    private static final ExecutorService PREFETCH = VirtualThreads.newExecutor();
+
+    private Pages() {
+    }
+
+    public static Stream<Group> groups(FaceSdk faceSdk, int pageSize) {
+        return stream(iterator((page, size) -> {
+            GroupPage response = faceSdk.groupApi.getAllGroups(page, size);
+            return new PagedIterator.Page<>(response.getItems(), response.getTotalPages());
+        }, pageSize));
+    }
+
+    public static Stream<Person> personsInGroup(FaceSdk faceSdk, UUID groupId, int pageSize) {
+        return stream(iterator((page, size) -> {
+            PersonsPage response = faceSdk.groupApi.getAllPersonsByGroupId(page, size, groupId);
+            return new PagedIterator.Page<>(response.getItems(), response.getTotalPages());
+        }, pageSize));
+    }
+
+    public static Stream<Image> imagesOfPerson(FaceSdk faceSdk, UUID personId, int pageSize) {
+        return stream(iterator((page, size) -> {
+            ImagePage response = faceSdk.personApi.getAllImagesByPersonId(page, size, personId);
+            return new PagedIterator.Page<>(response.getItems(), response.getTotalPages());
+        }, pageSize));
+    }
+
+    public static Stream<Group> groupsOfPerson(FaceSdk faceSdk, UUID personId, int pageSize) {
+        return stream(iterator((page, size) -> {
+            GroupPage response = faceSdk.personApi.getAllGroupsByPersonId(page, size, personId);
+            return new PagedIterator.Page<>(response.getItems(), response.getTotalPages());
+        }, pageSize));
+    }
+
+    /** Iterator form, for callers that want paging statistics or to page without a stream. */
+    public static <T> PagedIterator<T> iterator(PagedIterator.PageFetcher<T> fetcher, int pageSize) {
+        return new PagedIterator<>(fetcher, pageSize, PREFETCH);
+    }
+
+    public static <T> Stream<T> stream(PagedIterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+}
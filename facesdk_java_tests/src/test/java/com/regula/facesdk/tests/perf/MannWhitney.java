@@ -0,0 +1,89 @@
+package com.regula.facesdk.tests.perf;
+
+import java.util.Arrays;
+
+/**
+ * One-sided Mann-Whitney U test: whether the values of one sample tend to be greater than
+ * those of another, without assuming either is normally distributed. Latencies are skewed
+ * and have long tails, where a t-test on the means would be thrown by a few outliers.
+ *
+ * The p-value comes from the normal approximation with tie and continuity corrections,
+ * which is close to the exact distribution from about 20 values per sample on.
+ */
+public final class MannWhitney {
+    /** U of the second sample over the first. */
+    public final double u;
+    /** Probability that a value of the second sample is greater than one of the first (ties count half), 0.5 = no difference. */
+    public final double effect;
+    /** Probability of a U this large if both samples came from the same distribution. */
+    public final double p;
+
+    private MannWhitney(double u, double effect, double p) {
+        this.u = u;
+        this.effect = effect;
+        this.p = p;
+    }
+
+    /** Whether {@code second} tends to be greater than {@code first}. */
+    public static MannWhitney greater(double[] first, double[] second) {
+        int n1 = first.length;
+        int n2 = second.length;
+        if (n1 == 0 || n2 == 0) {
+            throw new IllegalArgumentException("Both samples need values, got " + n1 + " and " + n2);
+        }
+        int n = n1 + n2;
+        // Both samples in one array, the second's values from index n1 on, and their order by value
+        double[] values = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i < n1 ? first[i] : second[i - n1];
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        // Ranks from 1, ties get the mean of the ranks they span
+        double secondRanks = 0;
+        double tieTerm = 0;
+        for (int start = 0; start < n; ) {
+            int end = start + 1;
+            while (end < n && values[order[end]] == values[order[start]]) {
+                end++;
+            }
+            double rank = (start + 1 + end) / 2.0;
+            for (int i = start; i < end; i++) {
+                if (order[i] >= n1) {
+                    secondRanks += rank;
+                }
+            }
+            double t = end - start;
+            tieTerm += t * t * t - t;
+            start = end;
+        }
+
+        double u = secondRanks - n2 * (n2 + 1) / 2.0;
+        double mean = (double) n1 * n2 / 2;
+        double variance = (double) n1 * n2 / 12 * ((n + 1) - tieTerm / ((double) n * (n - 1)));
+        double p = variance <= 0 ? (u > mean ? 0 : 1) : upperTail((u - mean - 0.5) / Math.sqrt(variance));
+        return new MannWhitney(u, u / ((double) n1 * n2), p);
+    }
+
+    /** P(Z &gt; z) for the standard normal distribution. */
+    static double upperTail(double z) {
+        return 0.5 * erfc(z / Math.sqrt(2));
+    }
+
+    /** Complementary error function, Numerical Recipes' erfcc (fractional error below 1.2e-7). */
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double result = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? result : 2 - result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("U %.1f, effect %.2f, p %.3g", u, effect, p);
+    }
+}
@@ -0,0 +1,289 @@
+package com.regula.facesdk.tests.perf;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.tests.scenarios.ScenarioRequests;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Performance regression gate for client.jar: a short fixed workload against an embedded
+ * stand-in, compared with the run of the previous client.jar.
+ *
+ * Every round calls each endpoint of the workload once, so that drift over the run (JIT,
+ * a busy machine) spreads over all endpoints alike; warm-up rounds are discarded. The
+ * time of every call is kept and the run is stored as &lt;sha256 of client.jar&gt;.json in
+ * the results directory, replacing an earlier run of the same jar. The baseline is the
+ * newest run of another jar. An endpoint regressed when its calls are slower with a
+ * one-sided Mann-Whitney p below perfGate.alpha and its median grew by more than
+ * perfGate.minChange: a noisy run moves the median without passing the test, and a
+ * significant but tiny shift does not fail the build either.
+ *
+ * Settings (system properties, see the perfGate task in build.gradle):
+ * perfGate.results directory of the stored runs (perf/gate), perfGate.clientJar the jar to
+ * key the run by (the one FaceSdk was loaded from), perfGate.baseline checksum prefix of
+ * the run to compare with (the newest of another jar), perfGate.rounds measured rounds
+ * (100), perfGate.warmup discarded rounds first (30), perfGate.alpha (0.01),
+ * perfGate.minChange relative growth of the median (0.05).
+ * The transport takes the transport.* properties (see {@link TransportSettings}).
+ */
+public final class PerfGate {
+    private static final Path FILES_PATH = FixtureRegistry.FILES_PATH;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /** A stored run. */
+    public static final class Result {
+        public String clientJarSha256;
+        public String recordedAt;
+        public String java;
+        public int rounds;
+        /** Call times in microseconds by endpoint, in call order. */
+        public Map<String, double[]> endpoints = new LinkedHashMap<>();
+    }
+
+    /** How one endpoint changed from the baseline. */
+    public static final class Delta {
+        public final String endpoint;
+        public final double baselineMedianMicros;
+        public final double currentMedianMicros;
+        /** Current calls slower than the baseline's. */
+        public final MannWhitney slower;
+        /** Current calls faster than the baseline's. */
+        public final MannWhitney faster;
+        public final boolean regression;
+        public final boolean improvement;
+
+        Delta(String endpoint, double[] baseline, double[] current, double alpha, double minChange) {
+            this.endpoint = endpoint;
+            this.baselineMedianMicros = median(baseline);
+            this.currentMedianMicros = median(current);
+            this.slower = MannWhitney.greater(baseline, current);
+            this.faster = MannWhitney.greater(current, baseline);
+            this.regression = slower.p < alpha && change() > minChange;
+            this.improvement = faster.p < alpha && change() < -minChange;
+        }
+
+        public double change() {
+            return currentMedianMicros / baselineMedianMicros - 1;
+        }
+    }
+
+    private final FaceSdk faceSdk;
+    private final int warmupRounds;
+    private final int rounds;
+    private final Map<String, Runnable> workload = new LinkedHashMap<>();
+
+    public PerfGate(FaceSdk faceSdk, int warmupRounds, int rounds) {
+        if (warmupRounds < 0 || rounds < 1) {
+            throw new IllegalArgumentException("Rounds must be positive, warm-up rounds non-negative");
+        }
+        this.faceSdk = faceSdk;
+        this.warmupRounds = warmupRounds;
+        this.rounds = rounds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path resultsDir = Paths.get(System.getProperty("perfGate.results", "perf/gate"));
+        String clientJar = System.getProperty("perfGate.clientJar");
+        Path jar = clientJar != null ? Paths.get(clientJar) : loadedFrom(FaceSdk.class);
+        String checksum = sha256(jar);
+        double alpha = Double.parseDouble(System.getProperty("perfGate.alpha", "0.01"));
+        double minChange = Double.parseDouble(System.getProperty("perfGate.minChange", "0.05"));
+
+        TransportSettings transport = TransportSettings.fromSystemProperties();
+        StandInServer standIn = StandInServer.start();
+        OkHttpClient httpClient = transport.newHttpClient();
+        Result current;
+        try {
+            PerfGate gate = new PerfGate(TransportSettings.newFaceSdk(standIn.baseUrl(), httpClient),
+                    Integer.getInteger("perfGate.warmup", 30), Integer.getInteger("perfGate.rounds", 100));
+            System.out.println("Perf gate for " + jar + " (" + checksum.substring(0, 12) + "): "
+                    + gate.warmupRounds + " warm-up and " + gate.rounds + " measured rounds against the stand-in");
+            System.out.println("Transport: " + transport);
+            gate.setUp();
+            current = gate.run(checksum);
+        } finally {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+            // Its HTTP dispatcher is not a daemon thread and would keep the JVM alive
+            standIn.close();
+        }
+
+        Optional<Result> baseline = baseline(resultsDir, checksum, System.getProperty("perfGate.baseline"));
+        write(current, resultsDir.resolve(checksum + ".json"));
+        if (baseline.isEmpty()) {
+            System.out.println("No run of another client.jar in " + resultsDir + " to compare with, this run is the baseline now");
+            return;
+        }
+        System.out.println("Baseline: " + baseline.get().clientJarSha256.substring(0, 12) + " recorded " + baseline.get().recordedAt);
+        List<Delta> deltas = compare(baseline.get(), current, alpha, minChange);
+        printTable(System.out, deltas, alpha);
+        long regressions = deltas.stream().filter(delta -> delta.regression).count();
+        if (regressions > 0) {
+            System.err.printf("%d endpoint(s) slower than the baseline (p < %s, median +%.0f%% or more)%n", regressions, alpha, minChange * 100);
+            System.exit(1);
+        }
+    }
+
+    public void setUp() throws IOException {
+        DetectRequest detectRequest = ScenarioRequests.detect(FILES_PATH.resolve("face1.jpg"), null, null);
+        MatchRequest matchRequest = ScenarioRequests.match(ImageSource.LIVE.getValue(), FILES_PATH.resolve("face1.jpg"),
+                ImageSource.DOCUMENT_RFID.getValue(), FILES_PATH.resolve("face2.jpg"));
+
+        GroupToCreate groupToCreate = new GroupToCreate();
+        groupToCreate.setName("perf-gate");
+        UUID groupId = faceSdk.groupApi.createGroup(groupToCreate).getId();
+        PersonFields searched = new PersonFields();
+        searched.setName("Person A");
+        searched.setGroups(Collections.singletonList(groupId));
+        UUID searchedId = faceSdk.personApi.createPerson(searched).getId();
+        faceSdk.personApi.addImageToPerson(searchedId, ScenarioRequests.addImage(FILES_PATH.resolve("face3.jpg")));
+        SearchRequest searchRequest = ScenarioRequests.search(groupId, FILES_PATH.resolve("face1.jpg"), 10, 0.8f);
+        // Images go to a person outside the group, so that the searched gallery stays the same over the run
+        PersonFields scratch = new PersonFields();
+        scratch.setName("Scratch");
+        UUID scratchId = faceSdk.personApi.createPerson(scratch).getId();
+        AddImageToPersonRequest addImage = ScenarioRequests.addImage(FILES_PATH.resolve("face2.jpg"));
+        PersonFields created = new PersonFields();
+        created.setName("Created");
+        UUID[] createdId = new UUID[1];
+
+        workload.put("POST /api/detect", () -> faceSdk.matchingApi.detect(detectRequest));
+        workload.put("POST /api/match", () -> faceSdk.matchingApi.match(matchRequest));
+        workload.put("POST /api/search", () -> faceSdk.searchApi.search(searchRequest));
+        workload.put("GET /api/groups/{id}", () -> faceSdk.groupApi.getGroup(groupId));
+        workload.put("POST /api/persons", () -> createdId[0] = faceSdk.personApi.createPerson(created).getId());
+        workload.put("DELETE /api/persons/{id}", () -> faceSdk.personApi.deletePerson(createdId[0]));
+        workload.put("POST /api/persons/{id}/images", () -> faceSdk.personApi.addImageToPerson(scratchId, addImage));
+    }
+
+    public Result run(String checksum) {
+        Result result = new Result();
+        result.clientJarSha256 = checksum;
+        result.java = System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+        result.rounds = rounds;
+        workload.keySet().forEach(endpoint -> result.endpoints.put(endpoint, new double[rounds]));
+        for (int round = -warmupRounds; round < rounds; round++) {
+            for (Map.Entry<String, Runnable> step : workload.entrySet()) {
+                long start = System.nanoTime();
+                step.getValue().run();
+                long micros = (System.nanoTime() - start) / 1000;
+                if (round >= 0) {
+                    result.endpoints.get(step.getKey())[round] = micros;
+                }
+            }
+        }
+        result.recordedAt = Instant.now().toString();
+        return result;
+    }
+
+    /** The endpoints of both runs, in the current run's order. */
+    public static List<Delta> compare(Result baseline, Result current, double alpha, double minChange) {
+        List<Delta> deltas = new ArrayList<>();
+        current.endpoints.forEach((endpoint, samples) -> {
+            double[] before = baseline.endpoints.get(endpoint);
+            if (before != null && before.length > 0 && samples.length > 0) {
+                deltas.add(new Delta(endpoint, before, samples, alpha, minChange));
+            }
+        });
+        return deltas;
+    }
+
+    public static void printTable(PrintStream out, List<Delta> deltas, double alpha) {
+        int width = deltas.stream().mapToInt(delta -> delta.endpoint.length()).max().orElse(8);
+        String format = "%-" + width + "s %12s %12s %8s %10s  %s%n";
+        out.printf(format, "Endpoint", "Baseline us", "Current us", "Change", "p", "");
+        for (Delta delta : deltas) {
+            boolean worse = delta.change() >= 0;
+            String verdict = delta.regression ? "SLOWER" : delta.improvement ? "faster" : "";
+            out.printf(format, delta.endpoint, String.format("%.0f", delta.baselineMedianMicros), String.format("%.0f", delta.currentMedianMicros),
+                    String.format("%+.1f%%", delta.change() * 100), String.format("%.2g", (worse ? delta.slower : delta.faster).p), verdict);
+        }
+        out.printf("Medians; p of a one-sided Mann-Whitney U test in the direction of the change, significant below %s%n", alpha);
+    }
+
+    /** The run named by a checksum prefix, or else the newest run of another jar. */
+    public static Optional<Result> baseline(Path resultsDir, String checksum, String requested) throws IOException {
+        if (!Files.isDirectory(resultsDir)) {
+            return Optional.empty();
+        }
+        List<Result> results = new ArrayList<>();
+        try (Stream<Path> files = Files.list(resultsDir)) {
+            for (Path file : (Iterable<Path>) files.filter(file -> file.toString().endsWith(".json"))::iterator) {
+                results.add(read(file));
+            }
+        }
+        if (requested != null && !requested.isEmpty()) {
+            return Optional.of(results.stream().filter(result -> result.clientJarSha256.startsWith(requested)).findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("No run of a client.jar " + requested + "... in " + resultsDir)));
+        }
+        return results.stream()
+                .filter(result -> !result.clientJarSha256.equals(checksum))
+                .max(Comparator.comparing((Result result) -> Instant.parse(result.recordedAt)));
+    }
+
+    static Result read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file)) {
+            return GSON.fromJson(reader, Result.class);
+        }
+    }
+
+    public static void write(Result result, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            GSON.toJson(result, writer);
+        }
+    }
+
+    static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path loadedFrom(Class<?> type) throws URISyntaxException {
+        return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+}
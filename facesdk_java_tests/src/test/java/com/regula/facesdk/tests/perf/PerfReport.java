@@ -0,0 +1,279 @@
+package com.regula.facesdk.tests.perf;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency report of a test run: the FaceSdk calls of every test by endpoint, and the same
+ * calls summed up by endpoint over the run. Written as report.json, which also serves as
+ * a baseline for later runs, and report.html; times are in microseconds, wall time of a
+ * test in milliseconds.
+ *
+ * A regression is an endpoint of the run whose network p50 or client mean grew by more
+ * than the threshold over the baseline's, by at least the minimum delta (so that a 40 us
+ * call getting 20 us slower on a busy machine does not fail the build) and with enough
+ * calls on both sides to have a meaningful p50.
+ */
+public final class PerfReport {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /** One endpoint's calls, in a test or over the run. */
+    public static final class EndpointStats {
+        public final String endpoint;
+        public final long calls;
+        public final double networkP50Micros;
+        public final double networkP95Micros;
+        public final double serverMeanMicros;
+        public final double clientMeanMicros;
+        // The exact sums, so that per-test stats add up to the run's means
+        final double serverTotalMicros;
+        final double clientTotalMicros;
+        // Network times of the run are merged from the tests' histograms, not written to JSON
+        final transient Histogram network;
+
+        EndpointStats(String endpoint, long calls, Histogram network, double serverTotalMicros, double clientTotalMicros) {
+            this.endpoint = endpoint;
+            this.calls = calls;
+            this.network = network;
+            this.networkP50Micros = network.getTotalCount() == 0 ? 0 : network.getValueAtPercentile(50) / 1e3;
+            this.networkP95Micros = network.getTotalCount() == 0 ? 0 : network.getValueAtPercentile(95) / 1e3;
+            this.serverTotalMicros = serverTotalMicros;
+            this.clientTotalMicros = clientTotalMicros;
+            this.serverMeanMicros = calls == 0 ? 0 : serverTotalMicros / calls;
+            this.clientMeanMicros = calls == 0 ? 0 : clientTotalMicros / calls;
+        }
+
+        static EndpointStats of(String endpoint, long calls, Histogram network, double serverNanos, double clientNanos) {
+            return new EndpointStats(endpoint, calls, network, serverNanos / 1e3, clientNanos / 1e3);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d calls, network p50 %.0f p95 %.0f us, server %.0f us, client %.1f us",
+                    endpoint, calls, networkP50Micros, networkP95Micros, serverMeanMicros, clientMeanMicros);
+        }
+    }
+
+    /** The calls of one test. */
+    public static final class TestStats {
+        public final String test;
+        public final double wallMillis;
+        public final List<EndpointStats> endpoints;
+
+        public TestStats(String test, double wallMillis, List<EndpointStats> endpoints) {
+            this.test = test;
+            this.wallMillis = wallMillis;
+            this.endpoints = endpoints;
+        }
+
+        public EndpointStats endpoint(String endpoint) {
+            return endpoints.stream().filter(stats -> stats.endpoint.equals(endpoint)).findFirst().orElse(null);
+        }
+    }
+
+    /** An endpoint that got slower than the baseline allows. */
+    public static final class Regression {
+        public final String endpoint;
+        public final String metric;
+        public final double baselineMicros;
+        public final double currentMicros;
+
+        Regression(String endpoint, String metric, double baselineMicros, double currentMicros) {
+            this.endpoint = endpoint;
+            this.metric = metric;
+            this.baselineMicros = baselineMicros;
+            this.currentMicros = currentMicros;
+        }
+
+        public double change() {
+            return currentMicros / baselineMicros - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s: %.0f -> %.0f us (%+.0f%%)", endpoint, metric, baselineMicros, currentMicros, change() * 100);
+        }
+    }
+
+    public final List<TestStats> tests;
+    public final List<EndpointStats> endpoints;
+
+    /** The tests and their calls summed up by endpoint. */
+    public PerfReport(List<TestStats> tests) {
+        this(tests, byEndpoint(tests));
+    }
+
+    /** The tests and the run's calls by endpoint, measured apart (tests that ran in parallel share calls). */
+    public PerfReport(List<TestStats> tests, List<EndpointStats> endpoints) {
+        this.tests = tests;
+        this.endpoints = endpoints;
+    }
+
+    private static List<EndpointStats> byEndpoint(List<TestStats> tests) {
+        Map<String, List<EndpointStats>> grouped = new TreeMap<>();
+        for (TestStats test : tests) {
+            for (EndpointStats stats : test.endpoints) {
+                grouped.computeIfAbsent(stats.endpoint, e -> new ArrayList<>()).add(stats);
+            }
+        }
+        List<EndpointStats> endpoints = new ArrayList<>();
+        grouped.forEach((endpoint, all) -> {
+            Histogram network = new Histogram(3);
+            long calls = 0;
+            double server = 0;
+            double client = 0;
+            for (EndpointStats stats : all) {
+                calls += stats.calls;
+                server += stats.serverTotalMicros;
+                client += stats.clientTotalMicros;
+                if (stats.network != null) {
+                    network.add(stats.network);
+                }
+            }
+            endpoints.add(new EndpointStats(endpoint, calls, network, server, client));
+        });
+        return endpoints;
+    }
+
+    public EndpointStats endpoint(String endpoint) {
+        return endpoints.stream().filter(stats -> stats.endpoint.equals(endpoint)).findFirst().orElse(null);
+    }
+
+    /**
+     * Endpoints that got slower than the baseline by more than threshold (0.25 = 25%) and
+     * minDeltaMicros; endpoints with fewer than minCalls calls in either report are skipped.
+     */
+    public List<Regression> regressionsAgainst(Baseline baseline, double threshold, double minDeltaMicros, long minCalls) {
+        List<Regression> regressions = new ArrayList<>();
+        for (EndpointStats current : endpoints) {
+            Baseline.Endpoint before = baseline.endpoints.get(current.endpoint);
+            if (before == null || before.calls < minCalls || current.calls < minCalls) {
+                continue;
+            }
+            check(regressions, current.endpoint, "network p50", before.networkP50Micros, current.networkP50Micros, threshold, minDeltaMicros);
+            check(regressions, current.endpoint, "client mean", before.clientMeanMicros, current.clientMeanMicros, threshold, minDeltaMicros);
+        }
+        return regressions;
+    }
+
+    private static void check(List<Regression> regressions, String endpoint, String metric, double before, double now,
+            double threshold, double minDeltaMicros) {
+        if (before > 0 && now > before * (1 + threshold) && now - before >= minDeltaMicros) {
+            regressions.add(new Regression(endpoint, metric, before, now));
+        }
+    }
+
+    /** The per-endpoint numbers of an earlier report.json. */
+    public static final class Baseline {
+        static final class Endpoint {
+            String endpoint;
+            long calls;
+            double networkP50Micros;
+            double clientMeanMicros;
+        }
+
+        private static final class Json {
+            List<Endpoint> endpoints = new ArrayList<>();
+        }
+
+        final Map<String, Endpoint> endpoints = new TreeMap<>();
+
+        public static Baseline read(Path file) throws IOException {
+            Baseline baseline = new Baseline();
+            try (Reader reader = Files.newBufferedReader(file)) {
+                Json json = GSON.fromJson(reader, Json.class);
+                if (json != null && json.endpoints != null) {
+                    json.endpoints.forEach(endpoint -> baseline.endpoints.put(endpoint.endpoint, endpoint));
+                }
+            }
+            return baseline;
+        }
+
+        public static Baseline of(PerfReport report) {
+            Baseline baseline = new Baseline();
+            for (EndpointStats stats : report.endpoints) {
+                Endpoint endpoint = new Endpoint();
+                endpoint.endpoint = stats.endpoint;
+                endpoint.calls = stats.calls;
+                endpoint.networkP50Micros = stats.networkP50Micros;
+                endpoint.clientMeanMicros = stats.clientMeanMicros;
+                baseline.endpoints.put(endpoint.endpoint, endpoint);
+            }
+            return baseline;
+        }
+    }
+
+    // Output
+
+    public void writeJson(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            GSON.toJson(this, writer);
+        }
+    }
+
+    /** The run's endpoints, the regressions if there was a baseline, then every test's calls. */
+    public void writeHtml(Path file, List<Regression> regressions) throws IOException {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>FaceSdk call latency</title>\n"
+                + "<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:2em}"
+                + "td,th{border:1px solid #ccc;padding:2px 8px}td.n{text-align:right}tr.slow{background:#fdd}</style></head><body>\n");
+        html.append("<h1>FaceSdk call latency</h1>\n<p>Network time is the HTTP call, server time its part from the request sent to the "
+                + "first response byte; client time is serialization and deserialization. Times in microseconds.</p>\n");
+        if (!regressions.isEmpty()) {
+            html.append("<h2>Regressions</h2>\n<table><tr><th>Endpoint</th><th>Metric</th><th>Baseline</th><th>Now</th><th>Change</th></tr>\n");
+            for (Regression regression : regressions) {
+                html.append("<tr class=\"slow\"><td>").append(escape(regression.endpoint)).append("</td><td>").append(regression.metric)
+                        .append(String.format("</td><td class=\"n\">%.0f</td><td class=\"n\">%.0f</td><td class=\"n\">%+.0f%%</td></tr>\n",
+                                regression.baselineMicros, regression.currentMicros, regression.change() * 100));
+            }
+            html.append("</table>\n");
+        }
+        html.append("<h2>By endpoint</h2>\n");
+        table(html, endpoints, regressions);
+        html.append("<h2>By test</h2>\n");
+        for (TestStats test : tests) {
+            html.append(String.format("<h3>%s <small>(%.0f ms)</small></h3>\n", escape(test.test), test.wallMillis));
+            if (test.endpoints.isEmpty()) {
+                html.append("<p>No FaceSdk calls</p>\n");
+            } else {
+                table(html, test.endpoints, List.of());
+            }
+        }
+        html.append("</body></html>\n");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, html);
+    }
+
+    private static void table(StringBuilder html, List<EndpointStats> endpoints, List<Regression> regressions) {
+        html.append("<table><tr><th>Endpoint</th><th>Calls</th><th>Network p50</th><th>Network p95</th>"
+                + "<th>Server mean</th><th>Client mean</th></tr>\n");
+        for (EndpointStats stats : endpoints) {
+            boolean slow = regressions.stream().anyMatch(regression -> regression.endpoint.equals(stats.endpoint));
+            html.append(slow ? "<tr class=\"slow\">" : "<tr>").append("<td>").append(escape(stats.endpoint)).append("</td>")
+                    .append(String.format("<td class=\"n\">%d</td><td class=\"n\">%.0f</td><td class=\"n\">%.0f</td>"
+                                    + "<td class=\"n\">%.0f</td><td class=\"n\">%.1f</td></tr>\n",
+                            stats.calls, stats.networkP50Micros, stats.networkP95Micros, stats.serverMeanMicros, stats.clientMeanMicros));
+        }
+        html.append("</table>\n");
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", endpoints.stream().map(EndpointStats::toString).toArray(String[]::new));
+    }
+}
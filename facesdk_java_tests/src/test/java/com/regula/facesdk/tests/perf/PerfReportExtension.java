@@ -0,0 +1,233 @@
+package com.regula.facesdk.tests.perf;
+
+import com.regula.facesdk.tests.metrics.FaceSdkMetrics;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Times the FaceSdk calls of every test and, when the run is over, writes report.json and
+ * report.html and compares the run with a baseline, failing the run if an endpoint
+ * regressed. Registered for autodetection in
+ * META-INF/services/org.junit.jupiter.api.extension.Extension.
+ *
+ * While the extension runs, TransportSettings instruments every FaceSdk it builds with one
+ * {@link FaceSdkMetrics} for the whole run ({@link #runMetrics()}); outside of it nothing
+ * is instrumented. A test's calls are what those metrics recorded between its start and
+ * its end: network time is the HTTP call, server time its part from the last request byte
+ * to the first response byte, client time serialization and deserialization. When tests
+ * run in parallel (junit.jupiter.execution.parallel.enabled) each one also gets the calls
+ * of the tests running beside it, and the run is neither compared with the baseline nor
+ * saved as one.
+ *
+ * System properties (passed from PERF_* environment variables in build.gradle):
+ * perf.reportDir where the reports go (build/reports/perf), perf.baseline the report.json
+ * of an earlier run to compare with (perf/baseline.json; no comparison if it is missing),
+ * perf.threshold relative growth of an endpoint's network p50 or client mean that fails
+ * the run (0.25), perf.minDelta growth in microseconds below which it does not (500),
+ * perf.minCalls calls an endpoint needs in both runs to be compared (5),
+ * perf.updateBaseline copy this run's report.json over the baseline instead (false).
+ */
+public class PerfReportExtension implements BeforeAllCallback, BeforeEachCallback, AfterEachCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(PerfReportExtension.class);
+    private static final String PARALLEL = "junit.jupiter.execution.parallel.enabled";
+    private static final ThreadLocal<TestRun> CURRENT = new ThreadLocal<>();
+    private static volatile FaceSdkMetrics runMetrics;
+
+    /** The metrics of the running test run, null outside of one. */
+    public static FaceSdkMetrics runMetrics() {
+        return runMetrics;
+    }
+
+    /** What the test running on this thread has called so far; empty outside of a test. */
+    public static PerfReport.TestStats currentTest() {
+        TestRun test = CURRENT.get();
+        return test != null ? test.stats() : new PerfReport.TestStats("", 0, List.of());
+    }
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        // The root store closes its resources when the whole run is over
+        context.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(Run.class, key -> {
+            Run run = Run.fromSystemProperties(context.getConfigurationParameter(PARALLEL).map(Boolean::parseBoolean).orElse(false));
+            runMetrics = run.metrics;
+            return run;
+        }, Run.class);
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        FaceSdkMetrics metrics = runMetrics;
+        if (metrics != null) {
+            TestRun test = new TestRun(testName(context), metrics);
+            context.getStore(NAMESPACE).put(TestRun.class, test);
+            CURRENT.set(test);
+        }
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        TestRun test = context.getStore(NAMESPACE).remove(TestRun.class, TestRun.class);
+        if (test == null) {
+            return;
+        }
+        CURRENT.remove();
+        Run run = context.getRoot().getStore(NAMESPACE).get(Run.class, Run.class);
+        if (run != null) {
+            run.tests.add(test.stats());
+        }
+    }
+
+    private static String testName(ExtensionContext context) {
+        String name = context.getRequiredTestClass().getSimpleName() + "." + context.getRequiredTestMethod().getName();
+        // Parameterized and repeated tests: "[1] face1.jpg", "repetition 1 of 5"
+        String displayName = context.getDisplayName();
+        return displayName.equals(context.getRequiredTestMethod().getName() + "()") ? name : name + " " + displayName;
+    }
+
+    /** A test and the run's histograms when it started. */
+    private static final class TestRun {
+        final String test;
+        final FaceSdkMetrics metrics;
+        final Snapshot start;
+        final long started = System.nanoTime();
+
+        TestRun(String test, FaceSdkMetrics metrics) {
+            this.test = test;
+            this.metrics = metrics;
+            this.start = new Snapshot(metrics);
+        }
+
+        PerfReport.TestStats stats() {
+            return new PerfReport.TestStats(test, (System.nanoTime() - started) / 1e6, new Snapshot(metrics).since(start));
+        }
+    }
+
+    /** The histograms of the run's metrics that the report is made of, by phase and operation. */
+    private static final class Snapshot {
+        final Map<String, Histogram> network;
+        final Map<String, Histogram> server;
+        final Map<String, Histogram> serialize;
+        final Map<String, Histogram> deserialize;
+
+        Snapshot(FaceSdkMetrics metrics) {
+            network = metrics.histograms(FaceSdkMetrics.Phase.NETWORK);
+            server = metrics.histograms(FaceSdkMetrics.Phase.SERVER);
+            serialize = metrics.histograms(FaceSdkMetrics.Phase.SERIALIZE);
+            deserialize = metrics.histograms(FaceSdkMetrics.Phase.DESERIALIZE);
+        }
+
+        /** The calls recorded after the earlier snapshot, by endpoint; null for everything. */
+        List<PerfReport.EndpointStats> since(Snapshot earlier) {
+            List<PerfReport.EndpointStats> stats = new ArrayList<>();
+            network.forEach((endpoint, histogram) -> {
+                Histogram calls = delta(histogram, earlier == null ? null : earlier.network.get(endpoint));
+                if (calls.getTotalCount() == 0) {
+                    return;
+                }
+                double serverNanos = total(delta(server.get(endpoint), earlier == null ? null : earlier.server.get(endpoint)));
+                double clientNanos = total(delta(serialize.get(endpoint), earlier == null ? null : earlier.serialize.get(endpoint)))
+                        + total(delta(deserialize.get(endpoint), earlier == null ? null : earlier.deserialize.get(endpoint)));
+                stats.add(PerfReport.EndpointStats.of(endpoint, calls.getTotalCount(), calls, serverNanos, clientNanos));
+            });
+            return stats;
+        }
+
+        private static Histogram delta(Histogram now, Histogram before) {
+            if (now == null) {
+                return new Histogram(3);
+            }
+            if (before != null) {
+                now.subtract(before);
+            }
+            return now;
+        }
+
+        private static double total(Histogram histogram) {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMean() * histogram.getTotalCount();
+        }
+    }
+
+    /** The tests of the run, reported when the root store is closed. */
+    static final class Run implements ExtensionContext.Store.CloseableResource {
+        final Queue<PerfReport.TestStats> tests = new ConcurrentLinkedQueue<>();
+        final FaceSdkMetrics metrics = new FaceSdkMetrics();
+        boolean parallel;
+        Path reportDir;
+        Path baseline;
+        double threshold;
+        double minDeltaMicros;
+        long minCalls;
+        boolean updateBaseline;
+
+        static Run fromSystemProperties(boolean parallel) {
+            Run run = new Run();
+            run.parallel = parallel;
+            run.reportDir = Paths.get(System.getProperty("perf.reportDir", "build/reports/perf"));
+            run.baseline = Paths.get(System.getProperty("perf.baseline", "perf/baseline.json"));
+            run.threshold = Double.parseDouble(System.getProperty("perf.threshold", "0.25"));
+            run.minDeltaMicros = Double.parseDouble(System.getProperty("perf.minDelta", "500"));
+            run.minCalls = Long.getLong("perf.minCalls", 5);
+            run.updateBaseline = Boolean.getBoolean("perf.updateBaseline");
+            return run;
+        }
+
+        @Override
+        public void close() throws IOException {
+            runMetrics = null;
+            List<PerfReport.TestStats> stats = new ArrayList<>(tests);
+            stats.sort(Comparator.comparing(test -> test.test));
+            PerfReport report = new PerfReport(stats, new Snapshot(metrics).since(null));
+
+            List<PerfReport.Regression> regressions = List.of();
+            if (parallel) {
+                System.out.println("Tests ran in parallel: the latency report is neither compared with nor saved as " + baseline);
+            } else if (!updateBaseline && Files.exists(baseline)) {
+                regressions = report.regressionsAgainst(PerfReport.Baseline.read(baseline), threshold, minDeltaMicros, minCalls);
+            }
+            Path json = reportDir.resolve("report.json");
+            report.writeJson(json);
+            report.writeHtml(reportDir.resolve("report.html"), regressions);
+            System.out.println("FaceSdk call latency report: " + reportDir.toAbsolutePath().resolve("report.html"));
+            if (updateBaseline && !parallel) {
+                Files.createDirectories(baseline.toAbsolutePath().getParent());
+                Files.copy(json, baseline, StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Perf baseline updated: " + baseline.toAbsolutePath());
+            }
+            if (!regressions.isEmpty()) {
+                StringBuilder message = new StringBuilder(String.format("%d FaceSdk latency regression(s) over %s (threshold %.0f%%, at least %.0f us):",
+                        regressions.size(), baseline, threshold * 100, minDeltaMicros));
+                regressions.forEach(regression -> message.append("\n  ").append(regression));
+                throw new RegressionException(message.toString(), regressions);
+            }
+        }
+    }
+
+    /** Thrown at the end of the run, which makes JUnit and the Gradle test task fail. */
+    public static class RegressionException extends RuntimeException {
+        private final List<PerfReport.Regression> regressions;
+
+        public RegressionException(String message, List<PerfReport.Regression> regressions) {
+            super(message);
+            this.regressions = regressions;
+        }
+
+        public List<PerfReport.Regression> getRegressions() {
+            return regressions;
+        }
+    }
+}
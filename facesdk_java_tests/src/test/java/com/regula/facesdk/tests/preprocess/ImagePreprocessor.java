@@ -0,0 +1,263 @@
+package com.regula.facesdk.tests.preprocess;
+
+import com.regula.facesdk.webclient.gen.model.*;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shrinks images on the client before they are uploaded, so a 3 MB PNG is not sent in
+ * full only for the service to resize it (compare ResizeOptions, which acts after upload).
+ *
+ * An image larger than maxDimension on either side is scaled down to fit, keeping its
+ * aspect ratio, and written as JPEG at the given quality; so is any image that is not a
+ * JPEG already. A JPEG within bounds is sent as it is, since re-encoding it would only
+ * lose detail. Images that cannot be decoded are left alone for the service to reject.
+ *
+ * Encoding goes through a pool of encoders, each a JPEG writer with an output buffer that
+ * keeps its capacity between images, so the output buffer is not regrown for every image.
+ * Only the header is read to decide whether an image needs work at all, so JPEGs within
+ * bounds are never decoded. Decoding dominates what is left: ImageIO takes well over
+ * 100 ms for a progressive JPEG such as face1.jpg, which is worth it only when the upload
+ * it saves is slower than that. Instances are thread safe.
+ */
+public final class ImagePreprocessor {
+    private static final int INITIAL_BUFFER_BYTES = 256 * 1024;
+
+    private int maxDimension = 1280;
+    private float quality = 0.9f;
+    private final BlockingQueue<Encoder> encoders;
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder reencoded = new LongAdder();
+
+    public ImagePreprocessor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Keeps at most poolSize idle encoders; more are created when more threads preprocess at once. */
+    public ImagePreprocessor(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive, got " + poolSize);
+        }
+        this.encoders = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    public ImagePreprocessor maxDimension(int maxDimension) {
+        if (maxDimension < 1) {
+            throw new IllegalArgumentException("maxDimension must be positive, got " + maxDimension);
+        }
+        this.maxDimension = maxDimension;
+        return this;
+    }
+
+    /** JPEG quality from 0 (smallest) to 1 (best). */
+    public ImagePreprocessor quality(float quality) {
+        if (quality < 0 || quality > 1) {
+            throw new IllegalArgumentException("quality must be between 0 and 1, got " + quality);
+        }
+        this.quality = quality;
+        return this;
+    }
+
+    /** Preprocesses the image of the request in place and returns the request. */
+    public DetectRequest apply(DetectRequest request) {
+        if (request.getImage() != null) {
+            request.setImage(process(request.getImage()));
+        }
+        return request;
+    }
+
+    public MatchRequest apply(MatchRequest request) {
+        if (request.getImages() != null) {
+            for (MatchImage image : request.getImages()) {
+                apply(image);
+            }
+        }
+        return request;
+    }
+
+    public MatchImage apply(MatchImage image) {
+        if (image.getData() != null) {
+            image.setData(process(image.getData()));
+        }
+        return image;
+    }
+
+    public AddImageToPersonRequest apply(AddImageToPersonRequest request) {
+        if (request.getImage() != null) {
+            apply(request.getImage());
+        }
+        return request;
+    }
+
+    public AddImageToPersonRequestImage apply(AddImageToPersonRequestImage image) {
+        byte[] content = image.getContent();
+        if (content != null) {
+            byte[] processed = process(content);
+            if (processed != content) {
+                image.setContent(processed);
+                image.setContentType("image/jpeg");
+            }
+        }
+        return image;
+    }
+
+    /** The image as it should be uploaded: the same array when it needs no change. */
+    public byte[] process(byte[] image) {
+        bytesIn.add(image.length);
+        byte[] result = image;
+        if (!isJpeg(image) || !fits(image)) {
+            BufferedImage decoded = decode(image);
+            if (decoded != null) {
+                boolean tooLarge = Math.max(decoded.getWidth(), decoded.getHeight()) > maxDimension;
+                result = encode(tooLarge ? scale(decoded) : decoded);
+                reencoded.increment();
+            }
+        }
+        bytesOut.add(result.length);
+        return result;
+    }
+
+    /** Bytes passed to {@link #process}. */
+    public long bytesIn() {
+        return bytesIn.sum();
+    }
+
+    /** Bytes returned from {@link #process}, what goes over the wire instead of bytesIn. */
+    public long bytesOut() {
+        return bytesOut.sum();
+    }
+
+    /** Images that were scaled or converted rather than passed through. */
+    public long reencoded() {
+        return reencoded.sum();
+    }
+
+    /**
+     * Bilinear steps of at most one half each: as smooth as a bicubic resize for the
+     * downscales that matter here at a third of the cost, and unlike a single bilinear
+     * step it does not skip source pixels when shrinking by more than half.
+     */
+    private BufferedImage scale(BufferedImage source) {
+        double factor = (double) maxDimension / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        BufferedImage scaled = source;
+        do {
+            int width = Math.max(targetWidth, scaled.getWidth() / 2);
+            int height = Math.max(targetHeight, scaled.getHeight() / 2);
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(scaled, 0, 0, width, height, Color.WHITE, null);
+            g.dispose();
+            scaled = step;
+        } while (scaled.getWidth() != targetWidth || scaled.getHeight() != targetHeight);
+        return scaled;
+    }
+
+    private byte[] encode(BufferedImage image) {
+        Encoder encoder = encoders.poll();
+        if (encoder == null) {
+            encoder = new Encoder();
+        }
+        try {
+            return encoder.encode(rgb(image), quality);
+        } finally {
+            if (!encoders.offer(encoder)) {
+                encoder.dispose();
+            }
+        }
+    }
+
+    /** JPEG has no alpha; flattens transparent and indexed images onto white. */
+    private static BufferedImage rgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, Color.WHITE, null);
+        g.dispose();
+        return rgb;
+    }
+
+    private static boolean isJpeg(byte[] image) {
+        return image.length > 2 && (image[0] & 0xFF) == 0xFF && (image[1] & 0xFF) == 0xD8;
+    }
+
+    /** Whether the header says the image is within maxDimension; false when it cannot be read. */
+    private boolean fits(byte[] image) {
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return Math.max(reader.getWidth(0), reader.getHeight(0)) <= maxDimension;
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static BufferedImage decode(byte[] image) {
+        // An explicit memory-cached stream, so ImageIO does not spool to a temp file; read closes it
+        try {
+            return ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(image)));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** A JPEG writer and its output buffer, used by one thread at a time. */
+    private static final class Encoder {
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        /** reset() keeps the array, so it grows to the largest image once and stays. */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_BYTES);
+
+        byte[] encode(BufferedImage image, float quality) {
+            buffer.reset();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            try (ImageOutputStream out = new MemoryCacheImageOutputStream(buffer)) {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                writer.reset();
+            }
+            return buffer.toByteArray();
+        }
+
+        void dispose() {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.regula.facesdk.tests.resilience;
+
+import java.time.Duration;
+
+/**
+ * Stops calls to an endpoint that keeps failing. failureThreshold consecutive transient
+ * failures open the breaker and calls are refused for openFor; then one trial call is let
+ * through (half-open), closing the breaker on success and opening it again on failure.
+ */
+public final class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** The call was refused without reaching the service. */
+    public static final class OpenException extends RuntimeException {
+        private final String endpoint;
+
+        OpenException(String endpoint) {
+            super("Circuit breaker for " + endpoint + " is open");
+            this.endpoint = endpoint;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openForNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openFor) {
+        if (failureThreshold < 1 || openFor.isNegative()) {
+            throw new IllegalArgumentException("failureThreshold must be positive and openFor not negative");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openForNanos = openFor.toNanos();
+    }
+
+    /** Whether a call may go out now; every permitted call must end in onSuccess or onFailure. */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openForNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+}
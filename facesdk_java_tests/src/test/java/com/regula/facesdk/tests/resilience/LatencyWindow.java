@@ -0,0 +1,39 @@
+package com.regula.facesdk.tests.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the last few hundred successful calls of one endpoint. Percentiles are
+ * taken from a sorted copy that is refreshed every REFRESH records, so reading one on every
+ * call costs nothing.
+ */
+final class LatencyWindow {
+    static final int MIN_SAMPLES = 20;
+    private static final int SIZE = 512;
+    private static final int REFRESH = 32;
+
+    private final long[] samples = new long[SIZE];
+    private int count;
+    private int sinceRefresh;
+    private volatile long[] sorted = new long[0];
+
+    synchronized void record(long nanos) {
+        samples[count % SIZE] = nanos;
+        count++;
+        if (++sinceRefresh >= REFRESH || count == MIN_SAMPLES) {
+            sinceRefresh = 0;
+            long[] copy = Arrays.copyOf(samples, Math.min(count, SIZE));
+            Arrays.sort(copy);
+            sorted = copy;
+        }
+    }
+
+    /** The percentile (0 to 1) of recent latencies in nanoseconds, -1 before MIN_SAMPLES calls. */
+    long percentile(double percentile) {
+        long[] snapshot = sorted;
+        if (snapshot.length < MIN_SAMPLES) {
+            return -1;
+        }
+        return snapshot[Math.max(0, Math.min(snapshot.length - 1, (int) Math.ceil(percentile * snapshot.length) - 1))];
+    }
+}
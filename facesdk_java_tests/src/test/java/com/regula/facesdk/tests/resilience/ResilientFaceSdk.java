@@ -0,0 +1,320 @@
+package com.regula.facesdk.tests.resilience;
+
+import com.regula.facesdk.tests.async.VirtualThreads;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * FaceSdk calls with retries, hedging and circuit breaking.
+ *
+ * Idempotent calls (detect, match, search and the gets) are retried on transient failures
+ * (no response, 408, 429, 5xx) up to maxAttempts with full-jitter exponential backoff
+ * ({@link Retries}). They are also hedged: when a call has not answered within the hedge
+ * percentile (p95 by default) of the endpoint's recent latencies, the same call is sent
+ * again and the first success wins, so one slow instance behind a balancer does not set
+ * the tail latency. A hedge is only sent while the first call is still running; when that
+ * call fails first, the failure goes to the retry loop, which backs off before repeating.
+ * Hedging starts once the endpoint has {@value LatencyWindow#MIN_SAMPLES} successful calls.
+ * Retries and hedges share a {@link RetryBudget}, so a failing service sees at most a
+ * fixed share of extra traffic.
+ *
+ * Writes are not repeated, since the service has no idempotency keys and a repeated
+ * createPerson or addImageToPerson could enroll twice. Each write endpoint has a
+ * {@link CircuitBreaker} instead, which fails calls fast with
+ * {@link CircuitBreaker.OpenException} while the endpoint keeps failing.
+ *
+ * Calls of other operations can go through {@link #idempotent} and {@link #write}.
+ */
+public final class ResilientFaceSdk implements AutoCloseable {
+    private final FaceSdk faceSdk;
+    private final ExecutorService executor = VirtualThreads.newExecutor();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private int maxAttempts = 3;
+    private long backoffMillis = 50;
+    private boolean hedging = true;
+    private double hedgePercentile = 0.95;
+    private RetryBudget retryBudget = RetryBudget.defaults();
+    private int breakerThreshold = 5;
+    private Duration breakerOpenFor = Duration.ofSeconds(10);
+
+    public ResilientFaceSdk(FaceSdk faceSdk) {
+        this.faceSdk = faceSdk;
+    }
+
+    /** Attempts of an idempotent call, counting the first, 3 by default. */
+    public ResilientFaceSdk maxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /** Backoff ceiling before the first retry, doubled for every further one, 50 ms by default. */
+    public ResilientFaceSdk backoff(Duration backoff) {
+        if (backoff.isNegative()) {
+            throw new IllegalArgumentException("backoff must not be negative");
+        }
+        this.backoffMillis = backoff.toMillis();
+        return this;
+    }
+
+    public ResilientFaceSdk hedging(boolean hedging) {
+        this.hedging = hedging;
+        return this;
+    }
+
+    /** Latency percentile (0 to 1) of an endpoint after which its calls are hedged, 0.95 by default. */
+    public ResilientFaceSdk hedgePercentile(double percentile) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("hedgePercentile must be in (0, 1]");
+        }
+        this.hedgePercentile = percentile;
+        return this;
+    }
+
+    public ResilientFaceSdk retryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+        return this;
+    }
+
+    /** Consecutive failures that open a write endpoint's breaker and how long it stays open, 5 and 10 s by default. */
+    public ResilientFaceSdk circuitBreaker(int failureThreshold, Duration openFor) {
+        if (failureThreshold < 1 || openFor.isNegative()) {
+            throw new IllegalArgumentException("failureThreshold must be positive and openFor not negative");
+        }
+        this.breakerThreshold = failureThreshold;
+        this.breakerOpenFor = openFor;
+        return this;
+    }
+
+    public long retries() {
+        return retries.sum();
+    }
+
+    public long hedges() {
+        return hedges.sum();
+    }
+
+    /** Hedged calls answered first by the hedge. */
+    public long hedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public RetryBudget retryBudget() {
+        return retryBudget;
+    }
+
+    /** State of the write endpoint's breaker, CLOSED for endpoints not called yet. */
+    public CircuitBreaker.State breakerState(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.state();
+    }
+
+    // Idempotent
+
+    public DetectResponse detect(DetectRequest request) {
+        return idempotent("detect", sdk -> sdk.matchingApi.detect(request));
+    }
+
+    public MatchResponse match(MatchRequest request) {
+        return idempotent("match", sdk -> sdk.matchingApi.match(request));
+    }
+
+    public SearchResult search(SearchRequest request) {
+        return idempotent("search", sdk -> sdk.searchApi.search(request));
+    }
+
+    public Person getPerson(UUID personId) {
+        return idempotent("getPerson", sdk -> sdk.personApi.getPerson(personId));
+    }
+
+    public ImagePage getAllImagesByPersonId(Integer page, Integer size, UUID personId) {
+        return idempotent("getAllImagesByPersonId", sdk -> sdk.personApi.getAllImagesByPersonId(page, size, personId));
+    }
+
+    public GroupPage getAllGroupsByPersonId(Integer page, Integer size, UUID personId) {
+        return idempotent("getAllGroupsByPersonId", sdk -> sdk.personApi.getAllGroupsByPersonId(page, size, personId));
+    }
+
+    public Group getGroup(UUID groupId) {
+        return idempotent("getGroup", sdk -> sdk.groupApi.getGroup(groupId));
+    }
+
+    public GroupPage getAllGroups(Integer page, Integer size) {
+        return idempotent("getAllGroups", sdk -> sdk.groupApi.getAllGroups(page, size));
+    }
+
+    public PersonsPage getAllPersonsByGroupId(Integer page, Integer size, UUID groupId) {
+        return idempotent("getAllPersonsByGroupId", sdk -> sdk.groupApi.getAllPersonsByGroupId(page, size, groupId));
+    }
+
+    // Writes
+
+    public Person createPerson(PersonFields fields) {
+        return write("createPerson", sdk -> sdk.personApi.createPerson(fields));
+    }
+
+    public void updatePerson(UUID personId, PersonToUpdateFields fields) {
+        write("updatePerson", sdk -> {
+            sdk.personApi.updatePerson(personId, fields);
+            return null;
+        });
+    }
+
+    public void deletePerson(UUID personId) {
+        write("deletePerson", sdk -> {
+            sdk.personApi.deletePerson(personId);
+            return null;
+        });
+    }
+
+    public AddImageToPersonResponse addImageToPerson(UUID personId, AddImageToPersonRequest request) {
+        return write("addImageToPerson", sdk -> sdk.personApi.addImageToPerson(personId, request));
+    }
+
+    public Group createGroup(GroupToCreate group) {
+        return write("createGroup", sdk -> sdk.groupApi.createGroup(group));
+    }
+
+    public void updateGroup(UUID groupId, GroupToCreate group) {
+        write("updateGroup", sdk -> {
+            sdk.groupApi.updateGroup(groupId, group);
+            return null;
+        });
+    }
+
+    public void deleteGroup(UUID groupId) {
+        write("deleteGroup", sdk -> {
+            sdk.groupApi.deleteGroup(groupId);
+            return null;
+        });
+    }
+
+    public void updatePersonsInGroup(UUID groupId, UpdateGroup update) {
+        write("updatePersonsInGroup", sdk -> {
+            sdk.groupApi.updatePersonsInGroup(groupId, update);
+            return null;
+        });
+    }
+
+    /** Runs a call that is safe to repeat with retries and hedging; endpoint names its latency statistics. */
+    public <T> T idempotent(String endpoint, Function<FaceSdk, T> call) {
+        retryBudget.deposit();
+        LatencyWindow window = latencies.computeIfAbsent(endpoint, e -> new LatencyWindow());
+        try {
+            return Retries.retrying(maxAttempts, backoffMillis, retryBudget::tryWithdraw, retries::increment, () -> hedged(window, call));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+
+    /** Runs a call that must not be repeated behind the endpoint's circuit breaker. */
+    public <T> T write(String endpoint, Function<FaceSdk, T> call) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint, e -> new CircuitBreaker(breakerThreshold, breakerOpenFor));
+        if (!breaker.tryAcquire()) {
+            throw new CircuitBreaker.OpenException(endpoint);
+        }
+        try {
+            T result = call.apply(faceSdk);
+            breaker.onSuccess();
+            return result;
+        } catch (ApiException e) {
+            // A 4xx says nothing about the endpoint's health
+            if (Retries.isTransient(e)) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    private <T> T hedged(LatencyWindow window, Function<FaceSdk, T> call) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        // Calls launched and not failed yet; the one that brings it to zero fails the winner
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        launch(window, call, winner, pending, failure, false);
+        long hedgeAfter = hedging ? window.percentile(hedgePercentile) : -1;
+        try {
+            if (hedgeAfter >= 0) {
+                try {
+                    return winner.get(hedgeAfter, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // Take the hedge's place before paying for it, and only while the first call is
+                    // still running: once it has failed, so has the winner, and the retry loop decides
+                    if (pending.getAndUpdate(n -> n == 0 ? 0 : n + 1) > 0) {
+                        if (retryBudget.tryWithdraw()) {
+                            hedges.increment();
+                            launch(window, call, winner, pending, failure, true);
+                        } else {
+                            release(winner, pending, failure);
+                        }
+                    }
+                }
+            }
+            return winner.get();
+        } catch (ExecutionException e) {
+            // Calls only complete the future exceptionally with RuntimeExceptions
+            throw (RuntimeException) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a response", e);
+        }
+    }
+
+    /** Runs the call on its own thread; the first success completes winner, the last failure fails it. */
+    private <T> void launch(LatencyWindow window, Function<FaceSdk, T> call, CompletableFuture<T> winner, AtomicInteger pending,
+                            AtomicReference<RuntimeException> failure, boolean hedge) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = call.apply(faceSdk);
+                window.record(System.nanoTime() - start);
+                if (winner.complete(result) && hedge) {
+                    hedgeWins.increment();
+                }
+            } catch (RuntimeException e) {
+                failure.set(e);
+                release(winner, pending, failure);
+            }
+        });
+    }
+
+    /** Gives up one place in pending; the last one fails winner with the latest failure. */
+    private static void release(CompletableFuture<?> winner, AtomicInteger pending, AtomicReference<RuntimeException> failure) {
+        if (pending.decrementAndGet() == 0) {
+            winner.completeExceptionally(failure.get());
+        }
+    }
+
+    /** Stops waiting for hedged calls that lost; they finish on their own threads. */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
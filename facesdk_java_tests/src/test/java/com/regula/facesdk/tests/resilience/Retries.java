@@ -0,0 +1,47 @@
+package com.regula.facesdk.tests.resilience;
+
+import com.regula.facesdk.webclient.ApiException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Which failed calls are worth repeating and how to repeat them, for {@link ResilientFaceSdk},
+ * the bulk enroller and the shard router. Retries wait a random time between zero and the
+ * backoff doubled for every retry after the first, at most 10 s (full jitter), so clients that
+ * failed together do not come back together.
+ */
+public final class Retries {
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private Retries() {
+    }
+
+    /** Whether a failed call may succeed when repeated: no response, 408, 429 or 5xx. */
+    public static boolean isTransient(ApiException e) {
+        int code = e.getCode();
+        return code == 0 || code == 408 || code == 429 || code >= 500;
+    }
+
+    /**
+     * Runs the call, repeating it while it fails transiently, fewer than maxAttempts attempts
+     * were made and mayRetry agrees; onRetry runs before each backoff.
+     */
+    public static <T> T retrying(int maxAttempts, long backoffMillis, BooleanSupplier mayRetry, Runnable onRetry,
+                                 Supplier<T> call) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (ApiException e) {
+                if (!isTransient(e) || attempt >= maxAttempts || !mayRetry.getAsBoolean()) {
+                    throw e;
+                }
+            }
+            onRetry.run();
+            long ceiling = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempt - 1, 16));
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.regula.facesdk.tests.resilience;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps retries and hedges at a share of the calls, so that a failing service gets at most
+ * (1 + ratio) times its normal traffic instead of maxAttempts times. Every call deposits
+ * ratio tokens, every retry or hedge takes one, and the balance never exceeds the reserve,
+ * which is also the starting balance and lets a quiet client retry its first few failures.
+ */
+public final class RetryBudget {
+    private final double ratio;
+    private final double reserve;
+    private final LongAdder rejected = new LongAdder();
+    private double balance;
+
+    public RetryBudget(double ratio, int reserve) {
+        if (ratio < 0 || reserve < 0) {
+            throw new IllegalArgumentException("ratio and reserve must not be negative");
+        }
+        this.ratio = ratio;
+        this.reserve = reserve;
+        this.balance = reserve;
+    }
+
+    /** Budget of 10% of the calls and a reserve of 10. */
+    public static RetryBudget defaults() {
+        return new RetryBudget(0.1, 10);
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(reserve, balance + ratio);
+    }
+
+    /** Takes a token for one retry or hedge, false when the budget is spent. */
+    boolean tryWithdraw() {
+        synchronized (this) {
+            if (balance >= 1) {
+                balance -= 1;
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /** Retries and hedges turned down for lack of budget. */
+    public long rejected() {
+        return rejected.sum();
+    }
+}
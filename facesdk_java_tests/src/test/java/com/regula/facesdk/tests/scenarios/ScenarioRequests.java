@@ -0,0 +1,92 @@
+package com.regula.facesdk.tests.scenarios;
+
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.webclient.gen.model.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Request builders shared by the functional tests, the benchmarks and the load runner,
+ * so that all of them send the service the same payloads.
+ */
+public final class ScenarioRequests {
+
+    private ScenarioRequests() {
+    }
+
+    public static DetectRequest detect(Path path, FaceQualityScenarios scenario, Boolean onlyCentralFace) {
+        DetectRequest request = new DetectRequest();
+        request.setImage(FixtureRegistry.shared().bytes(path));
+        if (scenario != null || onlyCentralFace != null) {
+            ProcessParam processParam = new ProcessParam();
+            if (scenario != null) {
+                processParam.setScenario(scenario);
+            }
+            if (onlyCentralFace != null) {
+                processParam.setOnlyCentralFace(onlyCentralFace);
+            }
+            request.setProcessParam(processParam);
+        }
+        return request;
+    }
+
+    public static MatchRequest match(int type1, Path path1, Integer type2, Path path2) {
+        List<MatchImage> images = new ArrayList<>();
+        images.add(matchImage(type1, path1).index(1));
+        if (type2 != null && path2 != null) {
+            images.add(matchImage(type2, path2).index(2));
+        }
+
+        MatchRequest matchRequest = new MatchRequest();
+        matchRequest.setImages(images);
+        return matchRequest;
+    }
+
+    /** Match image without an index, for callers that place it themselves (see MatchMany). */
+    public static MatchImage matchImage(int type, Path path) {
+        MatchImage image = new MatchImage();
+        image.data(FixtureRegistry.shared().bytes(path));
+        image.setType(ImageSource.fromValue(type));
+        return image;
+    }
+
+    public static SearchRequest search(UUID groupId, Path path, Integer limit, Float threshold) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setGroupIds(Collections.singletonList(groupId));
+        searchRequest.setImage(image(path));
+        searchRequest.setLimit(limit);
+        searchRequest.setThreshold(threshold);
+        return searchRequest;
+    }
+
+    public static AddImageToPersonRequest addImage(Path path) {
+        AddImageToPersonRequest imageFields = new AddImageToPersonRequest();
+        imageFields.setImage(image(path));
+        return imageFields;
+    }
+
+    /** Request for an image that is not a fixture, so it is not kept in the fixture cache. */
+    public static AddImageToPersonRequest addImage(byte[] content, String contentType) {
+        AddImageToPersonRequestImage image = new AddImageToPersonRequestImage();
+        image.setContent(content);
+        image.setContentType(contentType);
+        AddImageToPersonRequest imageFields = new AddImageToPersonRequest();
+        imageFields.setImage(image);
+        return imageFields;
+    }
+
+    public static AddImageToPersonRequestImage image(Path path) {
+        AddImageToPersonRequestImage image = new AddImageToPersonRequestImage();
+        image.setContent(FixtureRegistry.shared().bytes(path));
+        image.setContentType(contentType(path));
+        return image;
+    }
+
+    public static String contentType(Path path) {
+        return path.getFileName().toString().endsWith(".png") ? "image/png" : "image/jpeg";
+    }
+}
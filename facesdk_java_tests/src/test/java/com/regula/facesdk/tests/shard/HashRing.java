@@ -0,0 +1,142 @@
+package com.regula.facesdk.tests.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Consistent-hash ring over named nodes (service base paths). Every node is placed on a
+ * 64-bit ring at virtualNodes points, and a UUID belongs to the node of the first point at
+ * or after the UUID's hash, wrapping around. With enough virtual nodes the nodes own
+ * near-equal arcs, and adding a node takes keys only from the arcs its points split, about
+ * 1/(n+1) of all keys, leaving the rest where they were.
+ *
+ * Rings are immutable; {@link #withNode} gives the ring after a node is added.
+ */
+public final class HashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final List<String> nodes;
+    private final int virtualNodes;
+    private final long[] points;
+    private final int[] owners;
+
+    public HashRing(List<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one node and one virtual node per node");
+        }
+        if (nodes.stream().distinct().count() != nodes.size()) {
+            throw new IllegalArgumentException("Nodes must be distinct: " + nodes);
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.virtualNodes = virtualNodes;
+
+        int size = nodes.size() * virtualNodes;
+        long[] keys = new long[size];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                keys[node * virtualNodes + replica] = hash(nodes.get(node) + "#" + replica);
+            }
+        }
+        // Sort slot numbers by point, ties by node order, so equal points resolve the same way every time
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys[a] != keys[b] ? Long.compareUnsigned(keys[a], keys[b]) : Integer.compare(a, b));
+        points = new long[size];
+        owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = keys[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    public int virtualNodes() {
+        return virtualNodes;
+    }
+
+    public String owner(UUID key) {
+        return nodes.get(ownerIndex(key));
+    }
+
+    /** Position of the key's owner in {@link #nodes()}. */
+    public int ownerIndex(UUID key) {
+        long hash = hash(key);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /** The same ring with one more node, at the same number of virtual nodes. */
+    public HashRing withNode(String node) {
+        List<String> grown = new ArrayList<>(nodes);
+        grown.add(node);
+        return new HashRing(grown, virtualNodes);
+    }
+
+    /** Fraction of the ring each node owns, in node order; the expected fraction of keys it gets. */
+    public Map<String, Double> shares() {
+        double[] owned = new double[nodes.size()];
+        for (int i = 0; i < points.length; i++) {
+            long start = i == 0 ? points[points.length - 1] : points[i - 1];
+            // Unsigned distance from the previous point, the whole ring when there is one point
+            long arc = points[i] - start;
+            owned[owners[i]] += arc == 0 && points.length == 1 ? 0x1p64 : unsigned(arc);
+        }
+        Map<String, Double> shares = new LinkedHashMap<>();
+        for (int node = 0; node < nodes.size(); node++) {
+            shares.put(nodes.get(node), owned[node] / 0x1p64);
+        }
+        return shares;
+    }
+
+    private static double unsigned(long value) {
+        return value >= 0 ? value : value + 0x1p64;
+    }
+
+    static long hash(UUID key) {
+        return mix(key.getMostSignificantBits() ^ Long.rotateLeft(mix(key.getLeastSignificantBits()), 32));
+    }
+
+    /** FNV-1a over the UTF-8 bytes, finished with a mix so that similar names spread over the ring. */
+    static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /** The 64-bit finalizer of MurmurHash3. */
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,74 @@
+package com.regula.facesdk.tests.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Which persons change owner between two rings, typically before and after a node is
+ * added. Nothing is moved; copying a person means re-enrolling its images on the new owner,
+ * where the service gives it a new id, so the plan is for sizing and scheduling that work.
+ */
+public final class RebalancePlan {
+    public static final class Move {
+        public final UUID personId;
+        public final String from;
+        public final String to;
+
+        Move(UUID personId, String from, String to) {
+            this.personId = personId;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String toString() {
+            return personId + ": " + from + " -> " + to;
+        }
+    }
+
+    /** Persons looked at. */
+    public final int persons;
+    public final List<Move> moves;
+
+    private RebalancePlan(int persons, List<Move> moves) {
+        this.persons = persons;
+        this.moves = Collections.unmodifiableList(moves);
+    }
+
+    public static RebalancePlan between(HashRing current, HashRing next, Iterable<UUID> personIds) {
+        int persons = 0;
+        List<Move> moves = new ArrayList<>();
+        for (UUID personId : personIds) {
+            persons++;
+            String from = current.owner(personId);
+            String to = next.owner(personId);
+            if (!from.equals(to)) {
+                moves.add(new Move(personId, from, to));
+            }
+        }
+        return new RebalancePlan(persons, moves);
+    }
+
+    /** Share of the persons that move, 0 when there are none. */
+    public double movedFraction() {
+        return persons == 0 ? 0 : (double) moves.size() / persons;
+    }
+
+    /** Number of moving persons by "from -> to". */
+    public Map<String, Integer> byRoute() {
+        Map<String, Integer> routes = new LinkedHashMap<>();
+        for (Move move : moves) {
+            routes.merge(move.from + " -> " + move.to, 1, Integer::sum);
+        }
+        return routes;
+    }
+
+    @Override
+    public String toString() {
+        return moves.size() + " of " + persons + " persons move " + byRoute();
+    }
+}
@@ -0,0 +1,274 @@
+package com.regula.facesdk.tests.shard;
+
+import com.regula.facesdk.tests.async.VirtualThreads;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.FaceSDKResultCode;
+import com.regula.facesdk.webclient.gen.model.SearchPerson;
+import com.regula.facesdk.webclient.gen.model.SearchPersonImage;
+import com.regula.facesdk.webclient.gen.model.SearchRequest;
+import com.regula.facesdk.webclient.gen.model.SearchResult;
+import okhttp3.OkHttpClient;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Search over a gallery sharded across several service instances: the same SearchRequest
+ * goes to every shard at once and the persons they return are merged by best image
+ * similarity into one top-K of the requested limit (100 when unset, as in the service).
+ * Each shard returns its own top-K, so the merge is exact for disjoint shards; a person
+ * found on two shards is kept once, where it scored best.
+ *
+ * Every shard has its own timeout. It is also the shard client's OkHttp call timeout, so a
+ * shard that does not answer in time has its call cancelled rather than left to block a
+ * thread. Shards that time out or fail are left out of the merge and reported in
+ * {@link Result#shards}; the result counts as partial, and only when fewer than
+ * {@link #minShards} shards answered is the search failed with
+ * {@link ShardsUnavailableException}.
+ */
+public final class ScatterGatherSearch implements AutoCloseable {
+    private static final int DEFAULT_LIMIT = 100;
+
+    /** A shard endpoint and how long a search on it may take. */
+    public static final class Shard {
+        public final String basePath;
+        public final Duration timeout;
+
+        public Shard(String basePath, Duration timeout) {
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.basePath = basePath;
+            this.timeout = timeout;
+        }
+    }
+
+    public enum Status { OK, TIMED_OUT, FAILED }
+
+    /** How one shard did on one search. */
+    public static final class ShardOutcome {
+        public final String basePath;
+        public final Status status;
+        /** Persons the shard returned, 0 unless OK. */
+        public final int persons;
+        public final long elapsedMillis;
+        /** Why the shard failed or timed out, null when OK. */
+        public final Throwable error;
+        final SearchResult result;
+
+        ShardOutcome(String basePath, Status status, SearchResult result, long elapsedMillis, Throwable error) {
+            this.basePath = basePath;
+            this.status = status;
+            this.result = result;
+            this.persons = result == null || result.getPersons() == null ? 0 : result.getPersons().size();
+            this.elapsedMillis = elapsedMillis;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return basePath + ": " + status + " in " + elapsedMillis + " ms" + (error == null ? ", " + persons + " persons" : ", " + error);
+        }
+    }
+
+    public static final class Result {
+        /** Merged persons, best first, at most the request's limit. */
+        public final List<SearchPerson> persons;
+        /** One outcome per shard, in shard order. */
+        public final List<ShardOutcome> shards;
+
+        Result(List<SearchPerson> persons, List<ShardOutcome> shards) {
+            this.persons = Collections.unmodifiableList(persons);
+            this.shards = Collections.unmodifiableList(shards);
+        }
+
+        /** Whether every shard answered. */
+        public boolean complete() {
+            return shards.stream().allMatch(shard -> shard.status == Status.OK);
+        }
+
+        /** The merged persons as the service would return them. */
+        public SearchResult toSearchResult() {
+            SearchResult result = new SearchResult();
+            result.setCode(FaceSDKResultCode.FACER_OK);
+            result.setPersons(new ArrayList<>(persons));
+            return result;
+        }
+    }
+
+    /** Fewer shards answered than {@link #minShards} asks for. */
+    public static final class ShardsUnavailableException extends RuntimeException {
+        private final List<ShardOutcome> outcomes;
+
+        ShardsUnavailableException(String message, List<ShardOutcome> outcomes) {
+            super(message + ": " + outcomes);
+            this.outcomes = Collections.unmodifiableList(outcomes);
+        }
+
+        public List<ShardOutcome> getOutcomes() {
+            return outcomes;
+        }
+    }
+
+    private final List<Shard> shards;
+    private final List<FaceSdk> clients = new ArrayList<>();
+    private final OkHttpClient httpClient;
+    private final boolean ownsHttpClient;
+    private final ExecutorService executor = VirtualThreads.newExecutor();
+    private int minShards = 1;
+
+    /** Shards share the connection pool and dispatcher of the given client, which the caller keeps ownership of. */
+    public ScatterGatherSearch(List<Shard> shards, OkHttpClient httpClient) {
+        this(shards, httpClient, false);
+    }
+
+    private ScatterGatherSearch(List<Shard> shards, OkHttpClient httpClient, boolean ownsHttpClient) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.httpClient = httpClient;
+        this.ownsHttpClient = ownsHttpClient;
+        for (Shard shard : shards) {
+            OkHttpClient shardClient = httpClient.newBuilder().callTimeout(shard.timeout).build();
+            clients.add(TransportSettings.newFaceSdk(shard.basePath, shardClient));
+        }
+    }
+
+    /** Shards at the given base paths with the same timeout, over a client from the transport system properties. */
+    public static ScatterGatherSearch of(List<String> basePaths, Duration timeout) {
+        List<Shard> shards = new ArrayList<>();
+        for (String basePath : basePaths) {
+            shards.add(new Shard(basePath, timeout));
+        }
+        return new ScatterGatherSearch(shards, TransportSettings.fromSystemProperties().newHttpClient(), true);
+    }
+
+    /** Shards that must answer for a search to succeed, 1 by default; the number of shards makes partial results an error. */
+    public ScatterGatherSearch minShards(int minShards) {
+        if (minShards < 1 || minShards > shards.size()) {
+            throw new IllegalArgumentException("minShards must be between 1 and " + shards.size());
+        }
+        this.minShards = minShards;
+        return this;
+    }
+
+    public Result search(SearchRequest request) {
+        long start = System.nanoTime();
+        List<Future<ShardOutcome>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            FaceSdk client = clients.get(i);
+            futures.add(executor.submit(() -> {
+                try {
+                    return new ShardOutcome(shard.basePath, Status.OK, client.searchApi.search(request), millisSince(start), null);
+                } catch (RuntimeException e) {
+                    return new ShardOutcome(shard.basePath, timedOut(e, shard, start) ? Status.TIMED_OUT : Status.FAILED, null, millisSince(start), e);
+                }
+            }));
+        }
+
+        List<ShardOutcome> outcomes = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            Future<ShardOutcome> future = futures.get(i);
+            long remaining = start + shard.timeout.toNanos() - System.nanoTime();
+            try {
+                outcomes.add(future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                outcomes.add(new ShardOutcome(shard.basePath, Status.TIMED_OUT, null, millisSince(start), e));
+            } catch (ExecutionException e) {
+                outcomes.add(new ShardOutcome(shard.basePath, Status.FAILED, null, millisSince(start), e.getCause()));
+            } catch (InterruptedException e) {
+                futures.forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shards", e);
+            }
+        }
+
+        long answered = outcomes.stream().filter(outcome -> outcome.status == Status.OK).count();
+        if (answered < minShards) {
+            throw new ShardsUnavailableException(answered + " of " + shards.size() + " shards answered, " + minShards + " required", outcomes);
+        }
+        return new Result(merge(outcomes, request.getLimit() == null ? DEFAULT_LIMIT : request.getLimit()), outcomes);
+    }
+
+    /** Persons of every shard that answered, by best image similarity; ties keep shard order. */
+    static List<SearchPerson> merge(List<ShardOutcome> outcomes, int limit) {
+        List<SearchPerson> all = new ArrayList<>();
+        for (ShardOutcome outcome : outcomes) {
+            if (outcome.status == Status.OK && outcome.result.getPersons() != null) {
+                all.addAll(outcome.result.getPersons());
+            }
+        }
+        // List.sort is stable, so equal scores stay in shard order
+        all.sort((a, b) -> Float.compare(best(b), best(a)));
+        List<SearchPerson> merged = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        for (SearchPerson person : all) {
+            if (merged.size() == limit) {
+                break;
+            }
+            if (person.getId() == null || seen.add(person.getId())) {
+                merged.add(person);
+            }
+        }
+        return merged;
+    }
+
+    private static float best(SearchPerson person) {
+        float best = 0f;
+        if (person.getImages() != null) {
+            for (SearchPersonImage image : person.getImages()) {
+                if (image.getSimilarity() != null) {
+                    best = Math.max(best, image.getSimilarity());
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Whether the call failed because the shard's time was up. The generated client wraps
+     * OkHttp's call timeout in an ApiException without a cause, so the elapsed time decides
+     * when the InterruptedIOException is not in the chain.
+     */
+    private static boolean timedOut(Throwable e, Shard shard, long start) {
+        if (System.nanoTime() - start >= shard.timeout.toNanos()) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /** Stops the shard threads, and the HTTP client if this instance created it. */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        if (ownsHttpClient) {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+}
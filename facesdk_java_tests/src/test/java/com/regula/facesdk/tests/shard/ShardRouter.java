@@ -0,0 +1,309 @@
+package com.regula.facesdk.tests.shard;
+
+import com.regula.facesdk.tests.paging.Pages;
+import com.regula.facesdk.tests.resilience.Retries;
+import com.regula.facesdk.tests.transport.TransportSettings;
+import com.regula.facesdk.webclient.ApiException;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.model.*;
+import okhttp3.OkHttpClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Person and group calls of a deployment sharded over several service nodes, each sent to
+ * the node that owns the person or group id on a {@link HashRing}.
+ *
+ * The service assigns ids on create, so a create cannot be sent to the owner of an id that
+ * does not exist yet. createPerson and createGroup create on a healthy node and keep the
+ * result only when the ring maps the new id to that node; otherwise it is deleted and the
+ * create tried again, about as many times as there are nodes on average. A person created
+ * with groups is created on the groups' node, which must be the same for all of them, since
+ * a node only knows its own groups; updatePersonsInGroup likewise only works for persons on
+ * the group's node.
+ *
+ * A node is ejected after ejectAfter consecutive transient failures (no response, 408, 429
+ * or 5xx). Calls for ids it owns then fail fast with {@link NodeUnavailableException}
+ * rather than go to another node that does not have them, and creates go elsewhere. After
+ * the ejection cooldown calls go through again, and the first success readmits the node;
+ * {@link #checkHealth()} probes every node at once.
+ */
+public final class ShardRouter {
+    /** The node that owns an id is ejected. */
+    public static final class NodeUnavailableException extends RuntimeException {
+        private final String node;
+
+        NodeUnavailableException(String node, String message) {
+            super(message);
+            this.node = node;
+        }
+
+        public String getNode() {
+            return node;
+        }
+    }
+
+    private static final class Node {
+        final String basePath;
+        final FaceSdk faceSdk;
+        final AtomicInteger failures = new AtomicInteger();
+        volatile long ejectedAt;
+
+        Node(String basePath, FaceSdk faceSdk) {
+            this.basePath = basePath;
+            this.faceSdk = faceSdk;
+        }
+    }
+
+    private final HashRing ring;
+    private final List<Node> nodes = new ArrayList<>();
+    private final AtomicInteger nextNode = new AtomicInteger();
+    private final LongAdder placementRetries = new LongAdder();
+    private int ejectAfter = 3;
+    private long ejectionCooldownNanos = Duration.ofSeconds(30).toNanos();
+    private int placementAttempts;
+
+    public ShardRouter(List<String> basePaths, OkHttpClient httpClient) {
+        this(new HashRing(basePaths), httpClient);
+    }
+
+    public ShardRouter(HashRing ring, OkHttpClient httpClient) {
+        this.ring = ring;
+        for (String basePath : ring.nodes()) {
+            nodes.add(new Node(basePath, TransportSettings.newFaceSdk(basePath, httpClient)));
+        }
+        this.placementAttempts = 16 * nodes.size();
+    }
+
+    /** Consecutive transient failures that eject a node, 3 by default. */
+    public ShardRouter ejectAfter(int failures) {
+        if (failures < 1) {
+            throw new IllegalArgumentException("ejectAfter must be positive");
+        }
+        this.ejectAfter = failures;
+        return this;
+    }
+
+    /** How long an ejected node gets no calls, 30 seconds by default; applies to nodes already ejected too. */
+    public ShardRouter ejectionCooldown(Duration cooldown) {
+        if (cooldown.isNegative()) {
+            throw new IllegalArgumentException("ejectionCooldown must not be negative");
+        }
+        this.ejectionCooldownNanos = cooldown.toNanos();
+        return this;
+    }
+
+    /** Creates tried before giving up on placing a new person or group, 16 per node by default. */
+    public ShardRouter placementAttempts(int attempts) {
+        if (attempts < 1) {
+            throw new IllegalArgumentException("placementAttempts must be positive");
+        }
+        this.placementAttempts = attempts;
+        return this;
+    }
+
+    public HashRing ring() {
+        return ring;
+    }
+
+    public String ownerOf(UUID id) {
+        return ring.owner(id);
+    }
+
+    /** Creates that were undone because the new id belonged to another node. */
+    public long placementRetries() {
+        return placementRetries.sum();
+    }
+
+    public boolean isEjected(String node) {
+        return ejected(nodes.get(ring.nodes().indexOf(node)));
+    }
+
+    // Persons
+
+    public Person createPerson(PersonFields fields) {
+        Integer groupsNode = null;
+        if (fields.getGroups() != null) {
+            for (UUID groupId : fields.getGroups()) {
+                int owner = ring.ownerIndex(groupId);
+                if (groupsNode != null && groupsNode != owner) {
+                    throw new IllegalArgumentException("Groups " + fields.getGroups() + " are on different nodes");
+                }
+                groupsNode = owner;
+            }
+        }
+        return place(groupsNode, faceSdk -> faceSdk.personApi.createPerson(fields), Person::getId,
+                (faceSdk, id) -> faceSdk.personApi.deletePerson(id));
+    }
+
+    public Person getPerson(UUID personId) {
+        return call(personId, faceSdk -> faceSdk.personApi.getPerson(personId));
+    }
+
+    public AddImageToPersonResponse addImageToPerson(UUID personId, AddImageToPersonRequest request) {
+        return call(personId, faceSdk -> faceSdk.personApi.addImageToPerson(personId, request));
+    }
+
+    public void deletePerson(UUID personId) {
+        call(personId, faceSdk -> {
+            faceSdk.personApi.deletePerson(personId);
+            return null;
+        });
+    }
+
+    // Groups
+
+    public Group createGroup(GroupToCreate group) {
+        return place(null, faceSdk -> faceSdk.groupApi.createGroup(group), Group::getId,
+                (faceSdk, id) -> faceSdk.groupApi.deleteGroup(id));
+    }
+
+    public Group getGroup(UUID groupId) {
+        return call(groupId, faceSdk -> faceSdk.groupApi.getGroup(groupId));
+    }
+
+    public void updateGroup(UUID groupId, GroupToCreate group) {
+        call(groupId, faceSdk -> {
+            faceSdk.groupApi.updateGroup(groupId, group);
+            return null;
+        });
+    }
+
+    public void deleteGroup(UUID groupId) {
+        call(groupId, faceSdk -> {
+            faceSdk.groupApi.deleteGroup(groupId);
+            return null;
+        });
+    }
+
+    public PersonsPage getAllPersonsByGroupId(Integer page, Integer size, UUID groupId) {
+        return call(groupId, faceSdk -> faceSdk.groupApi.getAllPersonsByGroupId(page, size, groupId));
+    }
+
+    public void updatePersonsInGroup(UUID groupId, UpdateGroup update) {
+        call(groupId, faceSdk -> {
+            faceSdk.groupApi.updatePersonsInGroup(groupId, update);
+            return null;
+        });
+    }
+
+    // Health
+
+    /** Probes every node with a one-item group listing; healthy nodes are readmitted. */
+    public Map<String, Boolean> checkHealth() {
+        Map<String, Boolean> healthy = new LinkedHashMap<>();
+        for (Node node : nodes) {
+            boolean ok;
+            try {
+                node.faceSdk.groupApi.getAllGroups(1, 1);
+                succeeded(node);
+                ok = true;
+            } catch (ApiException e) {
+                failed(node, e);
+                ok = false;
+            }
+            healthy.put(node.basePath, ok);
+        }
+        return healthy;
+    }
+
+    // Rebalancing
+
+    /**
+     * Which persons would move if the node were added. Persons are found through the groups
+     * of every node, as the API has no listing of all persons; persons in no group are not
+     * seen. Every node must be available.
+     */
+    public RebalancePlan planAddition(String basePath) {
+        Set<UUID> personIds = new LinkedHashSet<>();
+        for (Node node : nodes) {
+            available(node);
+            try (Stream<Group> groups = Pages.groups(node.faceSdk, Pages.DEFAULT_PAGE_SIZE)) {
+                groups.forEach(group -> {
+                    try (Stream<Person> persons = Pages.personsInGroup(node.faceSdk, group.getId(), Pages.DEFAULT_PAGE_SIZE)) {
+                        persons.forEach(person -> personIds.add(person.getId()));
+                    }
+                });
+            }
+        }
+        return RebalancePlan.between(ring, ring.withNode(basePath), personIds);
+    }
+
+    private <T> T place(Integer pinned, Function<FaceSdk, T> create, Function<T, UUID> idOf, BiConsumer<FaceSdk, UUID> delete) {
+        for (int attempt = 0; attempt < placementAttempts; attempt++) {
+            int node = pinned != null ? pinned : nextAvailable();
+            T created = call(nodes.get(node), create);
+            UUID id = idOf.apply(created);
+            if (ring.ownerIndex(id) == node) {
+                return created;
+            }
+            placementRetries.increment();
+            call(nodes.get(node), faceSdk -> {
+                delete.accept(faceSdk, id);
+                return null;
+            });
+        }
+        throw new IllegalStateException("No id owned by the creating node in " + placementAttempts + " creates");
+    }
+
+    private int nextAvailable() {
+        for (int i = 0; i < nodes.size(); i++) {
+            int node = Math.floorMod(nextNode.getAndIncrement(), nodes.size());
+            if (!ejected(nodes.get(node))) {
+                return node;
+            }
+        }
+        throw new NodeUnavailableException(null, "Every node is ejected");
+    }
+
+    private <T> T call(UUID id, Function<FaceSdk, T> call) {
+        return call(nodes.get(ring.ownerIndex(id)), call);
+    }
+
+    private <T> T call(Node node, Function<FaceSdk, T> call) {
+        available(node);
+        try {
+            T result = call.apply(node.faceSdk);
+            succeeded(node);
+            return result;
+        } catch (ApiException e) {
+            failed(node, e);
+            throw e;
+        }
+    }
+
+    private void available(Node node) {
+        if (ejected(node)) {
+            throw new NodeUnavailableException(node.basePath, node.basePath + " is ejected after " + node.failures.get() + " failures");
+        }
+    }
+
+    private boolean ejected(Node node) {
+        return node.failures.get() >= ejectAfter && System.nanoTime() - node.ejectedAt < ejectionCooldownNanos;
+    }
+
+    private void succeeded(Node node) {
+        node.failures.set(0);
+    }
+
+    private void failed(Node node, ApiException e) {
+        // A 4xx is the caller's problem, not the node's
+        if (Retries.isTransient(e)) {
+            if (node.failures.incrementAndGet() >= ejectAfter) {
+                node.ejectedAt = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.regula.facesdk.tests.standin;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Deterministic face descriptors for the stand-in: every identity gets a fixed random
+ * direction and every image of it adds a little noise, so images of the same person
+ * score high and different people score near zero.
+ */
+public final class Descriptors {
+    public static final int DIMENSION = 128;
+    private static final float NOISE = 0.12f;
+
+    private Descriptors() {
+    }
+
+    public static float[] of(String identity, String imageKey) {
+        float[] base = gaussian(seed(identity));
+        float[] noise = gaussian(seed(imageKey));
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            v[i] = base[i] + NOISE * noise[i];
+        }
+        return normalize(v);
+    }
+
+    /** Cosine similarity of two normalized descriptors clamped to [0, 1] like the service reports it. */
+    public static float similarity(float[] a, float[] b) {
+        float dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return Math.max(0f, Math.min(1f, dot));
+    }
+
+    /** Base64 of the little-endian float32 components, how the stand-in exports descriptors. */
+    public static String encode(float[] descriptor) {
+        ByteBuffer bytes = ByteBuffer.allocate(descriptor.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(descriptor);
+        return Base64.getEncoder().encodeToString(bytes.array());
+    }
+
+    private static float[] gaussian(long seed) {
+        Random random = new Random(seed);
+        float[] v = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            v[i] = (float) random.nextGaussian();
+        }
+        return normalize(v);
+    }
+
+    private static float[] normalize(float[] v) {
+        double norm = 0;
+        for (float x : v) {
+            norm += x * x;
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < v.length; i++) {
+            v[i] *= inv;
+        }
+        return v;
+    }
+
+    private static long seed(String key) {
+        long h = 1125899906842597L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h = 31 * h + b;
+        }
+        return h;
+    }
+}
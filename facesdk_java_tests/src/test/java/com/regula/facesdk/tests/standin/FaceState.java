@@ -0,0 +1,484 @@
+package com.regula.facesdk.tests.standin;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-memory groups, persons and enrolled images behind the group, person and search
+ * endpoints. Everything is kept in concurrent maps ordered by creation sequence, so pages
+ * come back in a stable order and many tests can write at the same time.
+ */
+final class FaceState {
+
+    static final class StoredImage {
+        final int id;
+        final String contentType;
+        final String path;
+        final String createdAt = OffsetDateTime.now().toString();
+        final float[] descriptor;
+
+        StoredImage(int id, String contentType, String path, float[] descriptor) {
+            this.id = id;
+            this.contentType = contentType;
+            this.path = path;
+            this.descriptor = descriptor;
+        }
+    }
+
+    static final class StoredPerson {
+        final UUID id;
+        final long seq;
+        final String createdAt = OffsetDateTime.now().toString();
+        volatile String updatedAt = createdAt;
+        volatile String name;
+        volatile JsonElement metadata;
+        final List<UUID> groups = new CopyOnWriteArrayList<>();
+        final List<StoredImage> images = new CopyOnWriteArrayList<>();
+
+        StoredPerson(UUID id, long seq) {
+            this.id = id;
+            this.seq = seq;
+        }
+    }
+
+    static final class StoredGroup {
+        final UUID id;
+        final long seq;
+        final String createdAt = OffsetDateTime.now().toString();
+        volatile String name;
+        volatile JsonElement metadata;
+        final ConcurrentSkipListMap<Long, StoredPerson> members = new ConcurrentSkipListMap<>();
+
+        StoredGroup(UUID id, long seq) {
+            this.id = id;
+            this.seq = seq;
+        }
+    }
+
+    private final SyntheticResponder responder;
+    private final Map<UUID, StoredPerson> persons = new ConcurrentHashMap<>();
+    private final Map<UUID, StoredGroup> groups = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, StoredGroup> groupsInOrder = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger imageIds = new AtomicInteger();
+
+    FaceState(SyntheticResponder responder) {
+        this.responder = responder;
+    }
+
+    // Groups
+
+    JsonObject createGroup(JsonObject fields) {
+        StoredGroup group = new StoredGroup(UUID.randomUUID(), sequence.incrementAndGet());
+        group.name = requiredString(fields, "name");
+        group.metadata = fields.get("metadata");
+        groups.put(group.id, group);
+        groupsInOrder.put(group.seq, group);
+        return groupJson(group);
+    }
+
+    JsonObject getGroup(UUID id) {
+        return groupJson(group(id));
+    }
+
+    void updateGroup(UUID id, JsonObject fields) {
+        StoredGroup group = group(id);
+        if (fields.has("name")) {
+            group.name = requiredString(fields, "name");
+        }
+        if (fields.has("metadata")) {
+            group.metadata = fields.get("metadata");
+        }
+    }
+
+    void deleteGroup(UUID id) {
+        StoredGroup group = groups.remove(id);
+        if (group == null) {
+            throw new StandInException(404, "Group " + id + " not found");
+        }
+        groupsInOrder.remove(group.seq);
+        for (StoredPerson person : group.members.values()) {
+            synchronized (person) {
+                person.groups.remove(id);
+            }
+        }
+    }
+
+    JsonObject listGroups(int page, int size) {
+        return page(groupsInOrder.values(), page, size, FaceState::groupJson);
+    }
+
+    JsonObject listPersons(UUID groupId, int page, int size) {
+        return page(group(groupId).members.values(), page, size, FaceState::personJson);
+    }
+
+    void updatePersonsInGroup(UUID groupId, JsonObject update) {
+        StoredGroup group = group(groupId);
+        for (UUID personId : uuids(update.get("addItems"))) {
+            join(person(personId), group);
+        }
+        for (UUID personId : uuids(update.get("removeItems"))) {
+            leave(person(personId), group);
+        }
+    }
+
+    // Persons
+
+    JsonObject createPerson(JsonObject fields) {
+        List<StoredGroup> memberOf = new ArrayList<>();
+        for (UUID groupId : uuids(fields.get("groups"))) {
+            memberOf.add(group(groupId));
+        }
+        StoredPerson person = new StoredPerson(UUID.randomUUID(), sequence.incrementAndGet());
+        person.name = requiredString(fields, "name");
+        person.metadata = fields.get("metadata");
+        persons.put(person.id, person);
+        for (StoredGroup group : memberOf) {
+            join(person, group);
+        }
+        return personJson(person);
+    }
+
+    /** Creates count persons in the group in one go, for tests that need a large gallery. */
+    void seedPersons(UUID groupId, int count, String namePrefix) {
+        StoredGroup group = group(groupId);
+        for (int i = 0; i < count; i++) {
+            StoredPerson person = new StoredPerson(UUID.randomUUID(), sequence.incrementAndGet());
+            person.name = namePrefix + i;
+            persons.put(person.id, person);
+            join(person, group);
+        }
+    }
+
+    JsonObject getPerson(UUID id) {
+        return personJson(person(id));
+    }
+
+    void updatePerson(UUID id, JsonObject fields) {
+        StoredPerson person = person(id);
+        if (fields.has("name")) {
+            person.name = requiredString(fields, "name");
+        }
+        if (fields.has("metadata")) {
+            person.metadata = fields.get("metadata");
+        }
+        if (fields.has("groups") && !fields.get("groups").isJsonNull()) {
+            List<UUID> wanted = uuids(fields.get("groups"));
+            for (UUID groupId : wanted) {
+                join(person, group(groupId));
+            }
+            for (UUID groupId : new ArrayList<>(person.groups)) {
+                StoredGroup group = groups.get(groupId);
+                if (!wanted.contains(groupId) && group != null) {
+                    leave(person, group);
+                }
+            }
+        }
+        person.updatedAt = OffsetDateTime.now().toString();
+    }
+
+    void deletePerson(UUID id) {
+        StoredPerson person = persons.remove(id);
+        if (person == null) {
+            throw new StandInException(404, "Person " + id + " not found");
+        }
+        for (UUID groupId : person.groups) {
+            StoredGroup group = groups.get(groupId);
+            if (group != null) {
+                group.members.remove(person.seq);
+            }
+        }
+    }
+
+    JsonObject listGroupsOfPerson(UUID personId, int page, int size) {
+        List<StoredGroup> memberOf = new ArrayList<>();
+        for (UUID groupId : person(personId).groups) {
+            StoredGroup group = groups.get(groupId);
+            if (group != null) {
+                memberOf.add(group);
+            }
+        }
+        return page(memberOf, page, size, FaceState::groupJson);
+    }
+
+    // Images
+
+    JsonObject addImage(UUID personId, JsonObject request) {
+        StoredPerson person = person(personId);
+        JsonObject image = SyntheticResponder.object(request, "image");
+        SyntheticResponder.Analysis analysis = analyzeImage(image);
+        String contentType = SyntheticResponder.string(image, "contentType");
+        if (contentType == null) {
+            contentType = sniffContentType(analysis.image);
+        }
+        int id = imageIds.incrementAndGet();
+        StoredImage stored = new StoredImage(id, contentType, personId + "/" + id,
+                analysis.faces.get(analysis.faces.size() / 2).descriptor);
+        person.images.add(stored);
+        return imageJson(stored);
+    }
+
+    JsonObject listImages(UUID personId, int page, int size) {
+        return page(person(personId).images, page, size, FaceState::imageJson);
+    }
+
+    void deleteImage(UUID personId, int imageId) {
+        if (!person(personId).images.removeIf(image -> image.id == imageId)) {
+            throw new StandInException(404, "Image " + imageId + " not found");
+        }
+    }
+
+    // Search
+
+    JsonObject search(JsonObject request) {
+        SyntheticResponder.Analysis analysis = analyzeImage(SyntheticResponder.object(request, "image"));
+        SyntheticResponder.Face probe = analysis.faces.get(analysis.faces.size() / 2);
+        List<UUID> groupIds = uuids(request.get("groupIds"));
+        float threshold = request.has("threshold") ? request.get("threshold").getAsFloat() : 0f;
+        int limit = request.has("limit") ? request.get("limit").getAsInt() : 100;
+        boolean withCrop = SyntheticResponder.object(SyntheticResponder.object(request, "outputImageParams"), "crop") != null;
+
+        Collection<StoredPerson> candidates;
+        if (groupIds.isEmpty()) {
+            candidates = persons.values();
+        } else {
+            Map<UUID, StoredPerson> union = new ConcurrentHashMap<>();
+            for (UUID groupId : groupIds) {
+                for (StoredPerson person : group(groupId).members.values()) {
+                    union.put(person.id, person);
+                }
+            }
+            candidates = union.values();
+        }
+
+        List<JsonObject> hits = new ArrayList<>();
+        for (StoredPerson person : candidates) {
+            JsonArray images = new JsonArray();
+            float best = -1f;
+            for (StoredImage image : person.images) {
+                float similarity = Descriptors.similarity(probe.descriptor, image.descriptor);
+                if (similarity < threshold) {
+                    continue;
+                }
+                JsonObject json = imageJson(image);
+                json.addProperty("similarity", similarity);
+                json.addProperty("distance", 1f - similarity);
+                images.add(json);
+                best = Math.max(best, similarity);
+            }
+            if (images.size() == 0) {
+                continue;
+            }
+            JsonObject hit = personJson(person);
+            hit.add("images", images);
+            JsonObject detection = new JsonObject();
+            detection.add("roi", SyntheticResponder.ints(probe.roi));
+            if (withCrop && analysis.image != null) {
+                detection.addProperty("crop", Base64.getEncoder().encodeToString(responder.crop(analysis, probe)));
+            }
+            hit.add("detection", detection);
+            hit.addProperty("bestSimilarity", best);
+            hit.addProperty("seq", person.seq);
+            hits.add(hit);
+        }
+        // Equal scores in enrolment order, so that tied persons do not come in hash order of their ids
+        hits.sort(Comparator.comparingDouble((JsonObject hit) -> hit.get("bestSimilarity").getAsFloat()).reversed()
+                .thenComparingLong(hit -> hit.get("seq").getAsLong()));
+        JsonArray result = new JsonArray();
+        for (JsonObject hit : hits.subList(0, Math.min(limit, hits.size()))) {
+            hit.remove("bestSimilarity");
+            hit.remove("seq");
+            result.add(hit);
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("code", 0);
+        response.add("persons", result);
+        return response;
+    }
+
+    // Descriptors, a stand-in extension: the service keeps its descriptors to itself
+
+    /** A page of the group's persons with the descriptors of their images, see {@link Descriptors#encode}. */
+    JsonObject exportDescriptors(UUID groupId, int page, int size) {
+        return page(group(groupId).members.values(), page, size, FaceState::descriptorsJson);
+    }
+
+    /** The person with the descriptors of its images, as in a group export page. */
+    JsonObject exportDescriptors(UUID personId) {
+        return descriptorsJson(person(personId));
+    }
+
+    /** Descriptor of the face search would take as the probe of this image. */
+    JsonObject extractDescriptor(JsonObject request) {
+        SyntheticResponder.Analysis analysis = analyzeImage(SyntheticResponder.object(request, "image"));
+        SyntheticResponder.Face probe = analysis.faces.get(analysis.faces.size() / 2);
+        JsonObject response = new JsonObject();
+        response.addProperty("code", 0);
+        response.add("roi", SyntheticResponder.ints(probe.roi));
+        response.addProperty("descriptor", Descriptors.encode(probe.descriptor));
+        return response;
+    }
+
+    // Helpers
+
+    StoredPerson person(UUID id) {
+        StoredPerson person = persons.get(id);
+        if (person == null) {
+            throw new StandInException(404, "Person " + id + " not found");
+        }
+        return person;
+    }
+
+    StoredGroup group(UUID id) {
+        StoredGroup group = groups.get(id);
+        if (group == null) {
+            throw new StandInException(404, "Group " + id + " not found");
+        }
+        return group;
+    }
+
+    private static void join(StoredPerson person, StoredGroup group) {
+        synchronized (person) {
+            if (!person.groups.contains(group.id)) {
+                person.groups.add(group.id);
+            }
+            group.members.put(person.seq, person);
+        }
+    }
+
+    private static void leave(StoredPerson person, StoredGroup group) {
+        synchronized (person) {
+            person.groups.remove(group.id);
+            group.members.remove(person.seq);
+        }
+    }
+
+    private SyntheticResponder.Analysis analyzeImage(JsonObject image) {
+        if (image == null) {
+            throw new StandInException(400, "image is required");
+        }
+        String url = SyntheticResponder.string(image, "imageUrl");
+        if (url != null && !image.has("content")) {
+            return responder.analyzeUrl(url);
+        }
+        return responder.analyze(SyntheticResponder.decodeBase64(image.get("content")));
+    }
+
+    private static <T> JsonObject page(Collection<T> items, int page, int size, Function<T, JsonObject> toJson) {
+        if (page < 1 || size < 1) {
+            throw new StandInException(400, "page and size must be positive");
+        }
+        int total = items.size();
+        JsonArray pageItems = new JsonArray();
+        Iterator<T> iterator = items.iterator();
+        long skip = (long) (page - 1) * size;
+        while (skip-- > 0 && iterator.hasNext()) {
+            iterator.next();
+        }
+        while (pageItems.size() < size && iterator.hasNext()) {
+            pageItems.add(toJson.apply(iterator.next()));
+        }
+        JsonObject json = new JsonObject();
+        json.add("items", pageItems);
+        json.addProperty("page", page);
+        json.addProperty("totalPages", (total + size - 1) / size);
+        return json;
+    }
+
+    private static List<UUID> uuids(JsonElement element) {
+        List<UUID> ids = new ArrayList<>();
+        if (element != null && element.isJsonArray()) {
+            for (JsonElement item : element.getAsJsonArray()) {
+                try {
+                    ids.add(UUID.fromString(item.getAsString()));
+                } catch (IllegalArgumentException e) {
+                    throw new StandInException(400, "Invalid id " + item);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static String requiredString(JsonObject fields, String name) {
+        String value = SyntheticResponder.string(fields, name);
+        if (value == null) {
+            throw new StandInException(400, name + " is required");
+        }
+        return value;
+    }
+
+    static JsonObject groupJson(StoredGroup group) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", group.id.toString());
+        json.addProperty("name", group.name);
+        if (group.metadata != null) {
+            json.add("metadata", group.metadata);
+        }
+        json.addProperty("createdAt", group.createdAt);
+        return json;
+    }
+
+    static JsonObject personJson(StoredPerson person) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", person.id.toString());
+        json.addProperty("name", person.name);
+        JsonArray groups = new JsonArray();
+        person.groups.forEach(group -> groups.add(group.toString()));
+        json.add("groups", groups);
+        if (person.metadata != null) {
+            json.add("metadata", person.metadata);
+        }
+        json.addProperty("createdAt", person.createdAt);
+        json.addProperty("updatedAt", person.updatedAt);
+        return json;
+    }
+
+    static JsonObject imageJson(StoredImage image) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", image.id);
+        json.addProperty("contentType", image.contentType);
+        json.addProperty("path", image.path);
+        json.addProperty("url", "/api/persons/" + image.path);
+        json.addProperty("createdAt", image.createdAt);
+        return json;
+    }
+
+    private static JsonObject descriptorsJson(StoredPerson person) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", person.id.toString());
+        json.addProperty("name", person.name);
+        JsonArray images = new JsonArray();
+        for (StoredImage image : person.images) {
+            JsonObject item = new JsonObject();
+            item.addProperty("id", image.id);
+            item.addProperty("descriptor", Descriptors.encode(image.descriptor));
+            images.add(item);
+        }
+        json.add("images", images);
+        return json;
+    }
+
+    private static String sniffContentType(byte[] image) {
+        if (image != null && image.length > 3 && (image[0] & 0xFF) == 0x89 && image[1] == 'P' && image[2] == 'N') {
+            return "image/png";
+        }
+        return "image/jpeg";
+    }
+}
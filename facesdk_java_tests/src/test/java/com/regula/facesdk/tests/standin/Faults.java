@@ -0,0 +1,127 @@
+package com.regula.facesdk.tests.standin;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and errors the stand-in injects into its responses, for testing how clients cope
+ * with a slow or failing service instance. Rules are per request path (e.g. "/api/search",
+ * or "*" for every path) and fire with a probability drawn from a seeded Random, so a run
+ * injects the same faults into the same sequence of requests. A request can get both a
+ * delay and an error; the delay comes first. A lost response is an error sent after the
+ * request was handled, as when the connection drops on the way back: the write is applied
+ * but the client cannot tell.
+ */
+public final class Faults {
+    public static final String ANY_PATH = "*";
+
+    private static final class Rule {
+        final long delayMillis;
+        final double delayProbability;
+        final int status;
+        final double errorProbability;
+        final int lostStatus;
+        final double lostProbability;
+
+        Rule(long delayMillis, double delayProbability, int status, double errorProbability, int lostStatus, double lostProbability) {
+            this.delayMillis = delayMillis;
+            this.delayProbability = delayProbability;
+            this.status = status;
+            this.errorProbability = errorProbability;
+            this.lostStatus = lostStatus;
+            this.lostProbability = lostProbability;
+        }
+    }
+
+    private static final Rule NONE = new Rule(0, 0, 0, 0, 0, 0);
+
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    private Random random = new Random(0);
+
+    /** Reseeds the draws, so a test starts from a known sequence whatever ran before it. */
+    public synchronized Faults seed(long seed) {
+        random = new Random(seed);
+        return this;
+    }
+
+    /** Delays the given share of the path's requests by delayMillis. */
+    public Faults latency(String path, long delayMillis, double probability) {
+        check(probability);
+        rules.merge(path, new Rule(delayMillis, probability, 0, 0, 0, 0),
+                (old, rule) -> new Rule(delayMillis, probability, old.status, old.errorProbability, old.lostStatus, old.lostProbability));
+        return this;
+    }
+
+    /** Answers the given share of the path's requests with the status instead of handling them. */
+    public Faults errors(String path, int status, double probability) {
+        check(probability);
+        rules.merge(path, new Rule(0, 0, status, probability, 0, 0),
+                (old, rule) -> new Rule(old.delayMillis, old.delayProbability, status, probability, old.lostStatus, old.lostProbability));
+        return this;
+    }
+
+    /** Handles the given share of the path's requests, then answers them with the status instead of the response. */
+    public Faults lostResponses(String path, int status, double probability) {
+        check(probability);
+        rules.merge(path, new Rule(0, 0, 0, 0, status, probability),
+                (old, rule) -> new Rule(old.delayMillis, old.delayProbability, old.status, old.errorProbability, status, probability));
+        return this;
+    }
+
+    public Faults clear() {
+        rules.clear();
+        requests.clear();
+        return this;
+    }
+
+    /** Requests seen on the path since the last {@link #clear()}, faulted or not. */
+    public long requests(String path) {
+        AtomicLong count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /** Waits out the request's delay, if any, and throws its injected error, if any. */
+    void apply(String path) throws InterruptedException {
+        requests.computeIfAbsent(path, p -> new AtomicLong()).incrementAndGet();
+        Rule rule = rules.getOrDefault(path, rules.getOrDefault(ANY_PATH, NONE));
+        if (rule == NONE) {
+            return;
+        }
+        boolean delay;
+        boolean error;
+        synchronized (this) {
+            delay = random.nextDouble() < rule.delayProbability;
+            error = random.nextDouble() < rule.errorProbability;
+        }
+        if (delay) {
+            Thread.sleep(rule.delayMillis);
+        }
+        if (error) {
+            throw new StandInException(rule.status, "Injected failure");
+        }
+    }
+
+    /** Throws the injected error, if any, of a request that has been handled. */
+    void applyAfter(String path) {
+        Rule rule = rules.getOrDefault(path, rules.getOrDefault(ANY_PATH, NONE));
+        if (rule.lostProbability == 0) {
+            return;
+        }
+        boolean lost;
+        synchronized (this) {
+            lost = random.nextDouble() < rule.lostProbability;
+        }
+        if (lost) {
+            throw new StandInException(rule.lostStatus, "Injected lost response");
+        }
+    }
+
+    private static void check(double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("probability must be between 0 and 1");
+        }
+    }
+}
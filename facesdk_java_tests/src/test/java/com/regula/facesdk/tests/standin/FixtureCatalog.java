@@ -0,0 +1,212 @@
+package com.regula.facesdk.tests.standin;
+
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Knows what the images under misc/files contain, so the stand-in can answer for them
+ * the way the real service does (face count and which faces belong to the same person).
+ *
+ * Images are recognized by content hash, and failing that by a small thumbnail of their
+ * pixels, so a fixture that was downscaled or re-encoded on the way (see
+ * ImagePreprocessor) is still answered as that fixture.
+ */
+public final class FixtureCatalog {
+
+    public static final class Fixture {
+        public final String name;
+        public final int faces;
+        public final String identity;
+        /** Content hash of the fixture file, the same for every rendition of it. */
+        public final String key;
+        private float[] fingerprint;
+
+        Fixture(String name, int faces, String identity, String key) {
+            this.name = name;
+            this.faces = faces;
+            this.identity = identity;
+            this.key = key;
+        }
+
+        /** Identity of the face with the given index; group photos hold a different person per face. */
+        public String identityOf(int faceIndex) {
+            return identity.equals(CROWD) ? CROWD + "-" + faceIndex : identity;
+        }
+    }
+
+    static final String CROWD = "crowd";
+    private static final int FINGERPRINT_SIDE = 16;
+    /** Thumbnail correlation from which an image is taken as a rendition of a fixture. */
+    private static final float MIN_FINGERPRINT_CORRELATION = 0.98f;
+    public static final Path FILES_PATH = FixtureRegistry.FILES_PATH;
+
+    private final Path filesDir;
+    private final Map<String, Fixture> byHash = new HashMap<>();
+    private final Map<String, Path> urlAliases = new HashMap<>();
+    private boolean fingerprinted;
+
+    public FixtureCatalog() {
+        this(FILES_PATH);
+    }
+
+    public FixtureCatalog(Path filesDir) {
+        this.filesDir = filesDir;
+        register(filesDir, "face1.jpg", 1, "A");
+        register(filesDir, "face2.jpg", 1, "A");
+        register(filesDir, "face3.jpg", 1, "A");
+        register(filesDir, "me.png", 1, "B");
+        register(filesDir, "printedDoc.png", 1, "B");
+        register(filesDir, "me_and_id.png", 2, "B");
+        register(filesDir, "severalFaces.jpg", 5, CROWD);
+    }
+
+    private void register(Path dir, String name, int faces, String identity) {
+        Path file = dir.resolve(name);
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        String hash = sha256(FixtureRegistry.shared().bytes(file));
+        byHash.put(hash, new Fixture(name, faces, identity, hash));
+    }
+
+    /**
+     * Loads "fixture-name url" lines telling which fixture an image URL shows, so
+     * searches by URL can be answered without downloading anything.
+     */
+    public void loadUrlAliases(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(file);
+        for (String line : lines) {
+            String trimmed = line.trim();
+            int space = trimmed.indexOf(' ');
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || space < 0) {
+                continue;
+            }
+            urlAliases.put(trimmed.substring(space + 1).trim(), filesDir.resolve(trimmed.substring(0, space)));
+        }
+    }
+
+    /** Fixture file standing in for the given image URL, or null if the URL is unknown. */
+    public Path urlAlias(String url) {
+        return urlAliases.get(url);
+    }
+
+    /** Returns the fixture with the given content hash, or a single-face unknown image. */
+    public Fixture lookup(String hash) {
+        return lookup(hash, null);
+    }
+
+    /**
+     * Returns the fixture with the given content hash, else the fixture the decoded image
+     * looks like, else a single-face unknown image.
+     */
+    public Fixture lookup(String hash, BufferedImage decoded) {
+        Fixture fixture = byHash.get(hash);
+        if (fixture == null && decoded != null) {
+            fixture = nearest(fingerprint(decoded));
+        }
+        return fixture != null ? fixture : new Fixture(hash, 1, hash, hash);
+    }
+
+    private synchronized Fixture nearest(float[] fingerprint) {
+        if (!fingerprinted) {
+            // Decoding every fixture is only worth it once an unknown image shows up
+            for (Fixture fixture : byHash.values()) {
+                BufferedImage image = decode(FixtureRegistry.shared().bytes(filesDir.resolve(fixture.name)));
+                fixture.fingerprint = image == null ? null : fingerprint(image);
+            }
+            fingerprinted = true;
+        }
+        Fixture nearest = null;
+        float best = MIN_FINGERPRINT_CORRELATION;
+        for (Fixture fixture : byHash.values()) {
+            float correlation = fixture.fingerprint == null ? 0 : correlation(fixture.fingerprint, fingerprint);
+            if (correlation >= best) {
+                best = correlation;
+                nearest = fixture;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * 16x16 luminance thumbnail, shifted to zero mean and scaled to unit length so that the
+     * dot product of two of them is their correlation. Each cell averages every pixel it
+     * covers, so the result hardly depends on how the image was scaled or compressed.
+     */
+    static float[] fingerprint(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] sums = new double[FINGERPRINT_SIDE * FINGERPRINT_SIDE];
+        int[] counts = new int[sums.length];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = y * FINGERPRINT_SIDE / height * FINGERPRINT_SIDE;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int cell = cellRow + x * FINGERPRINT_SIDE / width;
+                sums[cell] += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                counts[cell]++;
+            }
+        }
+        double mean = 0;
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = counts[i] == 0 ? 0 : sums[i] / counts[i];
+            mean += sums[i] / sums.length;
+        }
+        double norm = 0;
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] -= mean;
+            norm += sums[i] * sums[i];
+        }
+        float[] fingerprint = new float[sums.length];
+        double scale = norm == 0 ? 0 : 1 / Math.sqrt(norm);
+        for (int i = 0; i < sums.length; i++) {
+            fingerprint[i] = (float) (sums[i] * scale);
+        }
+        return fingerprint;
+    }
+
+    static float correlation(float[] a, float[] b) {
+        float dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    private static BufferedImage decode(byte[] image) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(image));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.regula.facesdk.tests.standin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only file of recorded service responses, keyed by a SHA-256 of the request
+ * method, path and body. Existing recordings are memory-mapped once when the store is
+ * opened and replayed straight from the mapping, so a replay never touches the heap for
+ * response bodies.
+ *
+ * Entry layout: int magic, 32-byte key, int status, int body length, body bytes.
+ * A torn entry at the end of the file (crash while recording) is skipped when loading
+ * and overwritten by the next recording.
+ */
+public final class RecordingStore implements Closeable {
+    public static final String FILE_NAME = "recordings.bin";
+    private static final int MAGIC = 0x46534452;
+    private static final int KEY_LENGTH = 32;
+    private static final int HEADER_LENGTH = 4 + KEY_LENGTH + 4 + 4;
+
+    public static final class Recording {
+        public final int status;
+        private final ByteBuffer body;
+
+        Recording(int status, ByteBuffer body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        /** Independent read-only view of the body, positioned at its start. */
+        public ByteBuffer body() {
+            return body.asReadOnlyBuffer();
+        }
+
+        public int length() {
+            return body.remaining();
+        }
+    }
+
+    private final Path file;
+    private final Map<ByteBuffer, Recording> index = new ConcurrentHashMap<>();
+    private final long validLength;
+    private FileChannel appendChannel;
+
+    private RecordingStore(Path file) throws IOException {
+        this.file = file;
+        this.validLength = Files.exists(file) ? load() : 0;
+    }
+
+    public static RecordingStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new RecordingStore(directory.resolve(FILE_NAME));
+    }
+
+    /** Only stateless endpoints are recorded; everything keyed by generated ids is served from memory. */
+    public static boolean isReplayable(String method, String path) {
+        return method.equals("POST") && (path.equals("/api/detect") || path.equals("/api/match"));
+    }
+
+    public Recording find(String method, String path, byte[] body) {
+        return index.get(ByteBuffer.wrap(key(method, path, body)));
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public synchronized void append(String method, String path, byte[] body, int status, byte[] response) throws IOException {
+        byte[] key = key(method, path, body);
+        ByteBuffer entry = ByteBuffer.allocate(HEADER_LENGTH + response.length);
+        entry.putInt(MAGIC).put(key).putInt(status).putInt(response.length).put(response).flip();
+        if (appendChannel == null) {
+            // Opened on first write so that replaying never creates or modifies the file
+            appendChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            appendChannel.truncate(validLength);
+            appendChannel.position(validLength);
+        }
+        while (entry.hasRemaining()) {
+            appendChannel.write(entry);
+        }
+        index.put(ByteBuffer.wrap(key), new Recording(status, ByteBuffer.wrap(response)));
+    }
+
+    private long load() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GB, split the recordings");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            while (mapped.remaining() >= HEADER_LENGTH) {
+                int start = mapped.position();
+                if (mapped.getInt() != MAGIC) {
+                    mapped.position(start);
+                    break;
+                }
+                byte[] key = new byte[KEY_LENGTH];
+                mapped.get(key);
+                int status = mapped.getInt();
+                int length = mapped.getInt();
+                if (length < 0 || mapped.remaining() < length) {
+                    mapped.position(start);
+                    break;
+                }
+                ByteBuffer body = mapped.slice();
+                body.limit(length);
+                index.put(ByteBuffer.wrap(key), new Recording(status, body));
+                mapped.position(mapped.position() + length);
+            }
+            return mapped.position();
+        }
+    }
+
+    static byte[] key(String method, String path, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((method + " " + path + "\n").getBytes(StandardCharsets.UTF_8));
+            return digest.digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (appendChannel != null) {
+            appendChannel.close();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.regula.facesdk.tests.standin;
+
+/** Turns into an HTTP error response with the given status instead of a 500. */
+public class StandInException extends RuntimeException {
+    private final int status;
+
+    public StandInException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,431 @@
+package com.regula.facesdk.tests.standin;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP stand-in for the FaceSDK web service.
+ *
+ * In replay mode detect and match are answered from a {@link RecordingStore} and fall back
+ * to {@link SyntheticResponder} for requests that were never recorded; groups, persons,
+ * images and search are served from the in-memory {@link FaceState}, which also exports
+ * descriptors (GET /api/groups/{id}/descriptors, GET /api/persons/{id}/descriptors and
+ * POST /api/descriptors) for local indexes; the service has no such endpoints. In record
+ * mode every request is proxied to a real service and detect/match responses are appended
+ * to the store, so a later replay needs no network at all.
+ *
+ * {@link #faults()} injects latency, error responses and lost responses per path.
+ *
+ * The test suite switches to the stand-in with -DstandIn=true (replay) or -DstandIn=record,
+ * see {@link #shared()}.
+ */
+public class StandInServer implements AutoCloseable {
+    private static volatile StandInServer shared;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SyntheticResponder responder;
+    private final FaceState state;
+    private final RecordingStore store;
+    private final URI upstream;
+    private final HttpClient upstreamClient;
+    // Null unless capturing, see captureRequestBodies
+    private volatile Map<String, byte[]> lastRequestBodies;
+    private final Faults faults = new Faults();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+
+    private StandInServer(HttpServer server, ExecutorService executor, FixtureCatalog catalog, RecordingStore store, URI upstream) {
+        this.server = server;
+        this.executor = executor;
+        this.responder = new SyntheticResponder(catalog);
+        this.state = new FaceState(responder);
+        this.store = store;
+        this.upstream = upstream;
+        this.upstreamClient = upstream == null ? null : HttpClient.newBuilder().executor(executor).build();
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /** Stand-in without recordings: everything is answered synthetically. */
+    public static StandInServer start() throws IOException {
+        return start(0);
+    }
+
+    public static StandInServer start(int port) throws IOException {
+        return create(port, null, null, new FixtureCatalog());
+    }
+
+    /** Replays recordings from the given directory, answering misses synthetically. */
+    public static StandInServer replay(Path recordings) throws IOException {
+        return create(0, recordings, null, catalogWithAliases(recordings));
+    }
+
+    /** Proxies everything to upstream and records detect/match responses into the given directory. */
+    public static StandInServer record(Path recordings, String upstream) throws IOException {
+        URI upstreamUri = URI.create(upstream.endsWith("/") ? upstream : upstream + "/");
+        return create(0, recordings, upstreamUri, catalogWithAliases(recordings));
+    }
+
+    private static StandInServer create(int port, Path recordings, URI upstream, FixtureCatalog catalog) throws IOException {
+        // Without TCP_NODELAY every small response waits out a delayed ACK (~40 ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer http = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        RecordingStore store = recordings == null ? null : RecordingStore.open(recordings);
+        StandInServer standIn = new StandInServer(http, Executors.newCachedThreadPool(daemonThreads()), catalog, store, upstream);
+        http.start();
+        return standIn;
+    }
+
+    private static FixtureCatalog catalogWithAliases(Path recordings) throws IOException {
+        FixtureCatalog catalog = new FixtureCatalog();
+        catalog.loadUrlAliases(recordings.resolve("urls.txt"));
+        return catalog;
+    }
+
+    /** True when the suite was asked to run against the stand-in (-DstandIn=true or record). */
+    public static boolean isEnabled() {
+        String mode = System.getProperty("standIn", "false");
+        return mode.equals("true") || mode.equals("record");
+    }
+
+    /**
+     * One stand-in per JVM, configured from system properties: standIn (true or record),
+     * standIn.recordings (defaults to misc/recordings) and apiBasePath as the upstream
+     * service when recording. It lives until the JVM exits.
+     */
+    public static StandInServer shared() {
+        if (shared == null) {
+            synchronized (StandInServer.class) {
+                if (shared == null) {
+                    Path recordings = Paths.get(System.getProperty("standIn.recordings",
+                            Paths.get(System.getProperty("user.dir"), "misc", "recordings").toString()));
+                    try {
+                        shared = System.getProperty("standIn", "false").equals("record")
+                                ? record(recordings, System.getProperty("apiBasePath", "http://localhost:41101/"))
+                                : replay(recordings);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot start the stand-in server", e);
+                    }
+                }
+            }
+        }
+        return shared;
+    }
+
+    /** Base path in the same form as PathsConfig.API_BASE_PATH. */
+    public String baseUrl() {
+        return "http://localhost:" + port() + "/";
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Adds count persons named namePrefix + index to an existing group without going
+     * through HTTP, so tests can page over galleries far larger than they could enroll.
+     */
+    public void seedPersons(UUID groupId, int count, String namePrefix) {
+        state.seedPersons(groupId, count, namePrefix);
+    }
+
+    /**
+     * Starts or stops keeping the body of the most recent request to each path. Off by
+     * default: paths carry ids, so a long run would keep a body per person it ever touched.
+     * Stopping drops what was kept.
+     */
+    public void captureRequestBodies(boolean capture) {
+        lastRequestBodies = capture ? new ConcurrentHashMap<>() : null;
+    }
+
+    /** Body of the most recent request to the given path, e.g. "/api/detect", while capturing. */
+    public byte[] lastRequestBody(String path) {
+        Map<String, byte[]> bodies = lastRequestBodies;
+        if (bodies == null) {
+            throw new IllegalStateException("Request bodies are not captured, see captureRequestBodies");
+        }
+        return bodies.get(path);
+    }
+
+    /** Most requests that were being handled at the same time since the server started. */
+    public int peakConcurrentRequests() {
+        return peakActive.get();
+    }
+
+    /** Latency and errors to inject into responses, none until configured. */
+    public Faults faults() {
+        return faults;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            respond(exchange);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        int status;
+        ByteBuffer body;
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] request = in.readAllBytes();
+            Map<String, byte[]> bodies = lastRequestBodies;
+            if (bodies != null) {
+                bodies.put(path, request);
+            }
+            faults.apply(path);
+            if (upstream != null) {
+                HttpResponse<byte[]> response = proxy(exchange, request);
+                status = response.statusCode();
+                body = ByteBuffer.wrap(response.body());
+                if (store != null && status < 500 && RecordingStore.isReplayable(method, path)) {
+                    store.append(method, path, request, status, response.body());
+                }
+            } else {
+                RecordingStore.Recording recording = store != null && RecordingStore.isReplayable(method, path)
+                        ? store.find(method, path, request) : null;
+                if (recording != null) {
+                    status = recording.status;
+                    body = recording.body();
+                } else {
+                    JsonObject response = dispatch(method, path, query(exchange.getRequestURI().getRawQuery()), request);
+                    status = response == null ? 204 : 200;
+                    body = response == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(response.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            faults.applyAfter(path);
+        } catch (StandInException e) {
+            status = e.getStatus();
+            body = error(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 502;
+            body = error("Interrupted while calling upstream");
+        } catch (RuntimeException | IOException e) {
+            status = upstream != null ? 502 : 500;
+            body = error(String.valueOf(e));
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (!body.hasRemaining()) {
+            // Length -1 already finishes the exchange, closing the body again trips an assertion in the JDK server
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.remaining());
+        try (OutputStream out = exchange.getResponseBody()) {
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+    }
+
+    private HttpResponse<byte[]> proxy(HttpExchange exchange, byte[] request) throws IOException, InterruptedException {
+        URI uri = exchange.getRequestURI();
+        URI target = upstream.resolve(uri.getRawPath().substring(1) + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery()));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target).method(exchange.getRequestMethod(),
+                request.length == 0 ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(request));
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null) {
+            builder.header("Content-Type", contentType);
+        }
+        return upstreamClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private JsonObject dispatch(String method, String path, Map<String, String> query, byte[] request) {
+        String[] s = path.replaceAll("^/+|/+$", "").split("/");
+        int n = s.length;
+        if (n < 2 || !s[0].equals("api")) {
+            throw notFound(method, path);
+        }
+        switch (s[1]) {
+            case "detect":
+                if (n == 2 && method.equals("POST")) {
+                    return responder.detect(json(request));
+                }
+                break;
+            case "match":
+                if (n == 2 && method.equals("POST")) {
+                    return responder.match(json(request));
+                }
+                break;
+            case "search":
+                if (n == 2 && method.equals("POST")) {
+                    return state.search(json(request));
+                }
+                break;
+            case "descriptors":
+                if (n == 2 && method.equals("POST")) {
+                    return state.extractDescriptor(json(request));
+                }
+                break;
+            case "groups":
+                if (n == 2 && method.equals("POST")) {
+                    return state.createGroup(json(request));
+                }
+                if (n == 2 && method.equals("GET")) {
+                    return state.listGroups(intParam(query, "page"), intParam(query, "size"));
+                }
+                if (n == 3 && method.equals("GET")) {
+                    return state.getGroup(uuid(s[2]));
+                }
+                if (n == 3 && method.equals("PUT")) {
+                    state.updateGroup(uuid(s[2]), json(request));
+                    return null;
+                }
+                if (n == 3 && method.equals("DELETE")) {
+                    state.deleteGroup(uuid(s[2]));
+                    return null;
+                }
+                if (n == 4 && s[3].equals("persons") && method.equals("GET")) {
+                    return state.listPersons(uuid(s[2]), intParam(query, "page"), intParam(query, "size"));
+                }
+                if (n == 4 && s[3].equals("descriptors") && method.equals("GET")) {
+                    return state.exportDescriptors(uuid(s[2]), intParam(query, "page"), intParam(query, "size"));
+                }
+                if (n == 4 && s[3].equals("persons") && (method.equals("PUT") || method.equals("POST"))) {
+                    state.updatePersonsInGroup(uuid(s[2]), json(request));
+                    return null;
+                }
+                break;
+            case "persons":
+                if (n == 2 && method.equals("POST")) {
+                    return state.createPerson(json(request));
+                }
+                if (n == 3 && method.equals("GET")) {
+                    return state.getPerson(uuid(s[2]));
+                }
+                if (n == 3 && method.equals("PUT")) {
+                    state.updatePerson(uuid(s[2]), json(request));
+                    return null;
+                }
+                if (n == 3 && method.equals("DELETE")) {
+                    state.deletePerson(uuid(s[2]));
+                    return null;
+                }
+                if (n == 4 && s[3].equals("images") && method.equals("POST")) {
+                    return state.addImage(uuid(s[2]), json(request));
+                }
+                if (n == 4 && s[3].equals("images") && method.equals("GET")) {
+                    return state.listImages(uuid(s[2]), intParam(query, "page"), intParam(query, "size"));
+                }
+                if (n == 4 && s[3].equals("descriptors") && method.equals("GET")) {
+                    return state.exportDescriptors(uuid(s[2]));
+                }
+                if (n == 4 && s[3].equals("groups") && method.equals("GET")) {
+                    return state.listGroupsOfPerson(uuid(s[2]), intParam(query, "page"), intParam(query, "size"));
+                }
+                if (n == 5 && s[3].equals("images") && method.equals("DELETE")) {
+                    state.deleteImage(uuid(s[2]), intValue(s[4]));
+                    return null;
+                }
+                break;
+            default:
+                break;
+        }
+        throw notFound(method, path);
+    }
+
+    private static StandInException notFound(String method, String path) {
+        return new StandInException(404, "Stand-in has no route " + method + " " + path);
+    }
+
+    private static JsonObject json(byte[] body) {
+        if (body.length == 0) {
+            throw new StandInException(400, "Request body is required");
+        }
+        return JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), pair.substring(eq + 1));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name) {
+        String value = query.get(name);
+        return value == null ? 1 : intValue(value);
+    }
+
+    private static int intValue(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new StandInException(400, "Invalid number " + value);
+        }
+    }
+
+    private static UUID uuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new StandInException(400, "Invalid id " + value);
+        }
+    }
+
+    private static ByteBuffer error(String message) {
+        JsonObject json = new JsonObject();
+        json.addProperty("message", message);
+        return ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ThreadFactory daemonThreads() {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "standin-http");
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close recordings: " + e.getMessage());
+            }
+        }
+    }
+}
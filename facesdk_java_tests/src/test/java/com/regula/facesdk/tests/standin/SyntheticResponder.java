@@ -0,0 +1,314 @@
+package com.regula.facesdk.tests.standin;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds detect and match responses for images the stand-in has no recording for.
+ * Face counts and identities come from {@link FixtureCatalog}; face boxes are laid out
+ * on a grid and crops are cut from the real image, so payload sizes stay realistic.
+ */
+final class SyntheticResponder {
+    private static final int MAX_CACHED_IMAGES = 256;
+    private static final String[] QUALITY_FULL_CHECKS = {"Roll", "Pitch", "Yaw", "BlurLevel", "NoiseLevel", "EyesDistance"};
+
+    static final class Face {
+        final int index;
+        final String identity;
+        final int[] roi;
+        final float[] descriptor;
+        private volatile byte[] crop;
+
+        Face(int index, String identity, int[] roi, float[] descriptor) {
+            this.index = index;
+            this.identity = identity;
+            this.roi = roi;
+            this.descriptor = descriptor;
+        }
+    }
+
+    static final class Analysis {
+        final String hash;
+        final byte[] image;
+        final List<Face> faces;
+
+        Analysis(String hash, byte[] image, List<Face> faces) {
+            this.hash = hash;
+            this.image = image;
+            this.faces = faces;
+        }
+    }
+
+    private final FixtureCatalog catalog;
+    private final Map<String, Analysis> analyses = new ConcurrentHashMap<>();
+
+    SyntheticResponder(FixtureCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    Analysis analyze(byte[] image) {
+        String hash = FixtureCatalog.sha256(image);
+        Analysis cached = analyses.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+        if (analyses.size() > MAX_CACHED_IMAGES) {
+            analyses.clear();
+        }
+        int width = 640;
+        int height = 480;
+        BufferedImage decoded = decode(image);
+        FixtureCatalog.Fixture fixture = catalog.lookup(hash, decoded);
+        if (decoded != null) {
+            width = decoded.getWidth();
+            height = decoded.getHeight();
+        }
+        List<Face> faces = new ArrayList<>(fixture.faces);
+        int cell = width / fixture.faces;
+        for (int i = 0; i < fixture.faces; i++) {
+            int[] roi = {i * cell + cell / 4, height / 4, Math.max(1, cell / 2), Math.max(1, height / 2)};
+            String identity = fixture.identityOf(i);
+            faces.add(new Face(i, identity, roi, Descriptors.of(identity, fixture.key + "#" + i)));
+        }
+        Analysis analysis = new Analysis(hash, image, faces);
+        analyses.put(hash, analysis);
+        return analysis;
+    }
+
+    /**
+     * Analysis for an image given by URL. The image is never fetched: a URL listed in the
+     * url aliases is answered as its fixture, any other URL is treated as an unknown face.
+     */
+    Analysis analyzeUrl(String url) {
+        Path alias = catalog.urlAlias(url);
+        if (alias != null) {
+            return analyze(FixtureRegistry.shared().bytes(alias));
+        }
+        String identity = FixtureCatalog.sha256(url.getBytes(StandardCharsets.UTF_8));
+        Face face = new Face(0, identity, new int[]{0, 0, 1, 1}, Descriptors.of(identity, identity));
+        return new Analysis(identity, null, List.of(face));
+    }
+
+    JsonObject detect(JsonObject request) {
+        Analysis analysis = analyze(decodeBase64(request.get("image")));
+        JsonObject processParam = object(request, "processParam");
+        String scenario = string(processParam, "scenario");
+        boolean onlyCentral = bool(processParam, "onlyCentralFace") || "CropCentralFace".equals(scenario);
+        boolean withCrop = "CropCentralFace".equals(scenario) || "CropAllFaces".equals(scenario)
+                || object(object(processParam, "outputImageParams"), "crop") != null;
+        boolean withQuality = "QualityFull".equals(scenario) || object(processParam, "quality") != null;
+
+        JsonArray detections = new JsonArray();
+        for (Face face : selectFaces(analysis, onlyCentral)) {
+            JsonObject detection = new JsonObject();
+            detection.add("roi", ints(face.roi));
+            if (withCrop) {
+                detection.addProperty("crop", Base64.getEncoder().encodeToString(crop(analysis, face)));
+            }
+            if (withQuality) {
+                detection.add("quality", quality(analysis, face, object(processParam, "quality")));
+            }
+            detections.add(detection);
+        }
+        JsonObject results = new JsonObject();
+        results.add("detections", detections);
+        if (scenario != null) {
+            results.addProperty("scenario", scenario);
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("code", 0);
+        response.add("results", results);
+        return response;
+    }
+
+    JsonObject match(JsonObject request) {
+        JsonArray images = request.getAsJsonArray("images");
+        List<Analysis> analyses = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        JsonArray detections = new JsonArray();
+        for (int i = 0; i < images.size(); i++) {
+            JsonObject image = images.get(i).getAsJsonObject();
+            Analysis analysis = analyze(decodeBase64(image.get("data")));
+            int index = image.has("index") ? image.get("index").getAsInt() : i;
+            analyses.add(analysis);
+            indexes.add(index);
+            types.add(image.has("type") ? image.get("type").getAsInt() : 3);
+
+            JsonArray faces = new JsonArray();
+            for (Face face : analysis.faces) {
+                JsonObject f = new JsonObject();
+                f.addProperty("faceIndex", face.index);
+                f.add("roi", ints(face.roi));
+                faces.add(f);
+            }
+            JsonObject detection = new JsonObject();
+            detection.addProperty("imageIndex", index);
+            detection.addProperty("status", 0);
+            detection.add("faces", faces);
+            detections.add(detection);
+        }
+
+        JsonArray results = new JsonArray();
+        if (analyses.size() == 1) {
+            List<Face> faces = analyses.get(0).faces;
+            for (int a = 0; a < faces.size(); a++) {
+                for (int b = a + 1; b < faces.size(); b++) {
+                    results.add(pair(indexes.get(0), types.get(0), faces.get(a), indexes.get(0), types.get(0), faces.get(b)));
+                }
+            }
+        }
+        for (int i = 0; i < analyses.size(); i++) {
+            for (int j = i + 1; j < analyses.size(); j++) {
+                for (Face first : analyses.get(i).faces) {
+                    for (Face second : analyses.get(j).faces) {
+                        results.add(pair(indexes.get(i), types.get(i), first, indexes.get(j), types.get(j), second));
+                    }
+                }
+            }
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("code", 0);
+        response.add("detections", detections);
+        response.add("results", results);
+        return response;
+    }
+
+    byte[] crop(Analysis analysis, Face face) {
+        byte[] crop = face.crop;
+        if (crop == null) {
+            crop = encodeCrop(analysis.image, face.roi);
+            face.crop = crop;
+        }
+        return crop;
+    }
+
+    static List<Face> selectFaces(Analysis analysis, boolean onlyCentral) {
+        return onlyCentral ? List.of(analysis.faces.get(analysis.faces.size() / 2)) : analysis.faces;
+    }
+
+    private static JsonObject pair(int firstIndex, int firstType, Face first, int secondIndex, int secondType, Face second) {
+        float similarity = Descriptors.similarity(first.descriptor, second.descriptor);
+        JsonObject result = new JsonObject();
+        result.addProperty("firstIndex", firstIndex);
+        result.addProperty("firstFaceIndex", first.index);
+        result.addProperty("first", firstType);
+        result.addProperty("secondIndex", secondIndex);
+        result.addProperty("secondFaceIndex", second.index);
+        result.addProperty("second", secondType);
+        result.addProperty("similarity", similarity);
+        result.addProperty("score", similarity);
+        return result;
+    }
+
+    private static JsonObject quality(Analysis analysis, Face face, JsonObject qualityRequest) {
+        Random random = new Random((analysis.hash + face.index).hashCode());
+        JsonArray details = new JsonArray();
+        JsonArray config = qualityRequest == null ? null : qualityRequest.getAsJsonArray("config");
+        if (config != null) {
+            for (JsonElement item : config) {
+                JsonObject check = item.getAsJsonObject();
+                JsonArray range = check.getAsJsonArray("range");
+                details.add(qualityDetail(check.get("name").getAsString(), random,
+                        range != null ? range.get(0).getAsFloat() : 0f, range != null ? range.get(1).getAsFloat() : 1f));
+            }
+        } else {
+            for (String name : QUALITY_FULL_CHECKS) {
+                details.add(qualityDetail(name, random, 0f, 10f));
+            }
+        }
+        JsonObject quality = new JsonObject();
+        quality.addProperty("score", 0.5f + random.nextFloat() / 2);
+        quality.add("details", details);
+        return quality;
+    }
+
+    private static JsonObject qualityDetail(String name, Random random, float min, float max) {
+        float span = Math.max(1f, max - min);
+        float value = min - span * 0.1f + random.nextFloat() * span * 1.2f;
+        JsonObject detail = new JsonObject();
+        detail.addProperty("name", name);
+        detail.addProperty("value", value);
+        detail.addProperty("status", value >= min && value <= max ? 1 : 0);
+        JsonArray range = new JsonArray();
+        range.add(min);
+        range.add(max);
+        detail.add("range", range);
+        return detail;
+    }
+
+    private static byte[] encodeCrop(byte[] image, int[] roi) {
+        BufferedImage source = image == null ? null : decode(image);
+        BufferedImage rgb = new BufferedImage(roi[2], roi[3], BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        if (source != null) {
+            g.drawImage(source, 0, 0, roi[2], roi[3], roi[0], roi[1], roi[0] + roi[2], roi[1] + roi[3], null);
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(rgb, "jpg", out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] image) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(image));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static byte[] decodeBase64(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            throw new StandInException(400, "image is required");
+        }
+        return Base64.getMimeDecoder().decode(element.getAsString());
+    }
+
+    static JsonObject object(JsonObject parent, String name) {
+        if (parent == null || !parent.has(name) || !parent.get(name).isJsonObject()) {
+            return null;
+        }
+        return parent.getAsJsonObject(name);
+    }
+
+    static String string(JsonObject parent, String name) {
+        if (parent == null || !parent.has(name) || parent.get(name).isJsonNull()) {
+            return null;
+        }
+        return parent.get(name).getAsString();
+    }
+
+    static boolean bool(JsonObject parent, String name) {
+        return parent != null && parent.has(name) && !parent.get(name).isJsonNull() && parent.get(name).getAsBoolean();
+    }
+
+    static JsonArray ints(int[] values) {
+        JsonArray array = new JsonArray();
+        for (int v : values) {
+            array.add(v);
+        }
+        return array;
+    }
+}
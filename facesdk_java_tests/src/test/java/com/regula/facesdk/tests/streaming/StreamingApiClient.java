@@ -0,0 +1,28 @@
+package com.regula.facesdk.tests.streaming;
+
+import com.google.gson.Gson;
+import com.regula.facesdk.tests.metrics.MeteredApiClient;
+import com.regula.facesdk.webclient.ApiException;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+/**
+ * ApiClient whose JSON request bodies are {@link StreamingRequestBody}s, so the generated
+ * APIs send images without building the JSON in memory first. Everything else, including
+ * how responses are read, is left to the generated client.
+ */
+public class StreamingApiClient extends MeteredApiClient {
+    private final Gson streamingGson = StreamingRequestBody.gson(this);
+
+    @Override
+    public RequestBody serialize(Object obj, String contentType) throws ApiException {
+        if (obj != null && !(obj instanceof byte[]) && !(obj instanceof String) && isJson(contentType)) {
+            return new StreamingRequestBody(streamingGson, obj, MediaType.parse(contentType));
+        }
+        return super.serialize(obj, contentType);
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && (contentType.startsWith("application/json") || contentType.contains("+json"));
+    }
+}
@@ -0,0 +1,250 @@
+package com.regula.facesdk.tests.streaming;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.regula.facesdk.tests.fixtures.FixtureRegistry;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * JSON request body that is written straight into the OkHttp sink when the call is made.
+ *
+ * The generated client serializes a request to a String, with every byte[] field turned
+ * into a base64 String first, and then encodes that String to the body's byte array: for
+ * a 10 MB scan about 13 MB of base64 chars, 27 MB of JSON String and 13 MB of body bytes
+ * live at once. Here the JSON around the images goes out through a Writer over the sink,
+ * and each image is base64-encoded from its byte[] into the sink a few KB at a time, so
+ * nothing proportional to the image is allocated beyond the byte[] the request already
+ * holds. The content length is worked out by a first pass that writes the JSON to a
+ * counting sink and adds the base64 lengths arithmetically, so the request is still
+ * sent with Content-Length and not chunked. Fixture images ({@link FixtureRegistry#bytes})
+ * are not encoded at all: their base64, encoded once per JVM, is copied into the sink.
+ *
+ * The body keeps the model, not its bytes, so it can be written again when OkHttp
+ * retries the call.
+ */
+public final class StreamingRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    /** Base64 output per chunk; a multiple of 4 so each chunk encodes whole 3-byte groups. */
+    private static final int CHUNK_CHARS = 8192;
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    /** The ApiClient's byte[] adapter, except that images go straight into the sink when the body is written. */
+    private static final TypeAdapter<byte[]> BASE64 = new TypeAdapter<byte[]>() {
+        @Override
+        public void write(JsonWriter out, byte[] value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else if (out instanceof SinkJsonWriter) {
+                ((SinkJsonWriter) out).base64(value);
+            } else {
+                out.value(Base64.getEncoder().encodeToString(value));
+            }
+        }
+
+        @Override
+        public byte[] read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return Base64.getDecoder().decode(in.nextString());
+        }
+    };
+
+    private final Gson gson;
+    private final Object model;
+    private final MediaType contentType;
+    private long contentLength = -1;
+
+    /**
+     * The ApiClient's Gson, so that models are written with its adapters and settings, with
+     * the streaming byte[] adapter. Building a Gson is costly: keep it with the client.
+     */
+    public static Gson gson(ApiClient apiClient) {
+        return apiClient.gson.newBuilder().registerTypeAdapter(byte[].class, BASE64).create();
+    }
+
+    /** A JSON body; gson comes from {@link #gson(ApiClient)}. */
+    public StreamingRequestBody(Gson gson, Object model) {
+        this(gson, model, JSON);
+    }
+
+    public StreamingRequestBody(Gson gson, Object model, MediaType contentType) {
+        this.gson = gson;
+        this.model = model;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (contentLength < 0) {
+            CountingSink counter = new CountingSink();
+            BufferedSink sink = Okio.buffer(counter);
+            long base64 = write(sink, true);
+            sink.flush();
+            contentLength = counter.count + base64;
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        write(sink, false);
+    }
+
+    /** Writes the JSON; when counting, images are left out and the length they would take is returned. */
+    private long write(BufferedSink sink, boolean counting) throws IOException {
+        SinkJsonWriter writer = new SinkJsonWriter(sink, counting);
+        try {
+            gson.toJson(model, model.getClass(), writer);
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return writer.skipped;
+    }
+
+    /** Length of the base64 text for the given number of bytes, padding included. */
+    static long base64Length(long bytes) {
+        return 4 * ((bytes + 2) / 3);
+    }
+
+    /** JsonWriter that can put a base64 string into the sink without building it first. */
+    private static final class SinkJsonWriter extends JsonWriter {
+        private final BufferedSink sink;
+        private final boolean counting;
+        private long skipped;
+        private byte[] chunk;
+
+        SinkJsonWriter(BufferedSink sink, boolean counting) {
+            super(new SinkWriter(sink));
+            this.sink = sink;
+            this.counting = counting;
+        }
+
+        void base64(byte[] data) throws IOException {
+            // Lets JsonWriter place the separator and the opening quote, then bypasses it
+            jsonValue("\"");
+            ByteBuffer encoded;
+            if (counting) {
+                skipped += base64Length(data.length);
+            } else if ((encoded = FixtureRegistry.shared().base64View(data)) != null) {
+                while (encoded.hasRemaining()) {
+                    sink.write(encoded);
+                }
+            } else {
+                encode(data);
+            }
+            sink.writeByte('"');
+        }
+
+        private void encode(byte[] data) throws IOException {
+            if (chunk == null) {
+                chunk = new byte[CHUNK_CHARS];
+            }
+            int n = 0;
+            int whole = data.length - data.length % 3;
+            for (int i = 0; i < whole; i += 3) {
+                int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+                chunk[n++] = ALPHABET[bits >>> 18];
+                chunk[n++] = ALPHABET[(bits >>> 12) & 0x3F];
+                chunk[n++] = ALPHABET[(bits >>> 6) & 0x3F];
+                chunk[n++] = ALPHABET[bits & 0x3F];
+                if (n == CHUNK_CHARS) {
+                    sink.write(chunk, 0, n);
+                    n = 0;
+                }
+            }
+            int rest = data.length - whole;
+            if (rest > 0) {
+                int bits = (data[whole] & 0xFF) << 16 | (rest == 2 ? (data[whole + 1] & 0xFF) << 8 : 0);
+                chunk[n++] = ALPHABET[bits >>> 18];
+                chunk[n++] = ALPHABET[(bits >>> 12) & 0x3F];
+                chunk[n++] = rest == 2 ? ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+                chunk[n++] = '=';
+            }
+            sink.write(chunk, 0, n);
+        }
+    }
+
+    /** Unbuffered Writer into the sink's own buffer, so JSON text and image bytes stay in order. */
+    private static final class SinkWriter extends Writer {
+        private final BufferedSink sink;
+
+        SinkWriter(BufferedSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            sink.writeUtf8CodePoint(c);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            sink.writeUtf8(str, off, off + len);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            sink.writeUtf8(new String(cbuf, off, len));
+        }
+
+        @Override
+        public void flush() {
+            // The sink is flushed by OkHttp once the body is complete
+        }
+
+        @Override
+        public void close() {
+            // The sink belongs to OkHttp
+        }
+    }
+
+    private static final class CountingSink implements Sink {
+        long count;
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            count += byteCount;
+            source.skip(byteCount);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
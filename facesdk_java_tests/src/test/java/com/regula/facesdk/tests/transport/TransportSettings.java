@@ -0,0 +1,156 @@
+package com.regula.facesdk.tests.transport;
+
+import com.regula.facesdk.tests.metrics.FaceSdkMetrics;
+import com.regula.facesdk.tests.metrics.MeteredApiClient;
+import com.regula.facesdk.tests.perf.PerfReportExtension;
+import com.regula.facesdk.tests.standin.StandInServer;
+import com.regula.facesdk.tests.streaming.StreamingApiClient;
+import com.regula.facesdk.webclient.FaceSdk;
+import com.regula.facesdk.webclient.gen.ApiClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OkHttp settings for the FaceSdk clients built by the tests and harnesses. Defaults are
+ * OkHttp's own, so a run without any transport.* property behaves like FaceSdk(basePath).
+ *
+ * System properties (passed from TRANSPORT_* environment variables in build.gradle):
+ * transport.poolSize idle connections kept per client (5), transport.keepAlive idle
+ * connection lifetime in ms (300000), transport.h2c HTTP/2 with prior knowledge (false),
+ * transport.maxRequests and transport.maxRequestsPerHost dispatcher limits for async
+ * calls (64, 5), transport.connectTimeout / readTimeout / writeTimeout / callTimeout in
+ * ms (10000, 10000, 10000, 0 = none), transport.streamingBodies request bodies written
+ * straight to the connection by {@link StreamingApiClient} (false). A pool size of 0
+ * disables connection reuse.
+ */
+public final class TransportSettings {
+    private int poolSize = 5;
+    private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+    private boolean h2c;
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 5;
+    private long connectTimeoutMillis = 10_000;
+    private long readTimeoutMillis = 10_000;
+    private long writeTimeoutMillis = 10_000;
+    private long callTimeoutMillis;
+    private boolean streamingBodies;
+
+    public static TransportSettings fromSystemProperties() {
+        TransportSettings settings = new TransportSettings();
+        settings.poolSize = Integer.getInteger("transport.poolSize", settings.poolSize);
+        settings.keepAliveMillis = Long.getLong("transport.keepAlive", settings.keepAliveMillis);
+        settings.h2c = Boolean.getBoolean("transport.h2c");
+        settings.maxRequests = Integer.getInteger("transport.maxRequests", settings.maxRequests);
+        settings.maxRequestsPerHost = Integer.getInteger("transport.maxRequestsPerHost", settings.maxRequestsPerHost);
+        settings.connectTimeoutMillis = Long.getLong("transport.connectTimeout", settings.connectTimeoutMillis);
+        settings.readTimeoutMillis = Long.getLong("transport.readTimeout", settings.readTimeoutMillis);
+        settings.writeTimeoutMillis = Long.getLong("transport.writeTimeout", settings.writeTimeoutMillis);
+        settings.callTimeoutMillis = Long.getLong("transport.callTimeout", settings.callTimeoutMillis);
+        settings.streamingBodies = Boolean.getBoolean("transport.streamingBodies");
+        if (settings.h2c && StandInServer.isEnabled()) {
+            // The stand-in is built on the JDK HttpServer, which only speaks HTTP/1.1
+            System.err.println("transport.h2c is ignored when running against the stand-in server");
+            settings.h2c = false;
+        }
+        return settings;
+    }
+
+    public TransportSettings poolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    public TransportSettings keepAlive(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+        return this;
+    }
+
+    public TransportSettings h2c(boolean h2c) {
+        this.h2c = h2c;
+        return this;
+    }
+
+    public TransportSettings maxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+        return this;
+    }
+
+    public TransportSettings maxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return this;
+    }
+
+    public TransportSettings timeouts(long connectMillis, long readMillis, long writeMillis, long callMillis) {
+        this.connectTimeoutMillis = connectMillis;
+        this.readTimeoutMillis = readMillis;
+        this.writeTimeoutMillis = writeMillis;
+        this.callTimeoutMillis = callMillis;
+        return this;
+    }
+
+    public TransportSettings streamingBodies(boolean streamingBodies) {
+        this.streamingBodies = streamingBodies;
+        return this;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public OkHttpClient newHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(poolSize, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (h2c) {
+            builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        }
+        return builder.build();
+    }
+
+    public FaceSdk newFaceSdk(String basePath) {
+        return newFaceSdk(basePath, newHttpClient(), streamingBodies);
+    }
+
+    /** FaceSdk over an existing OkHttp client, for callers that need the client to shut it down or share it. */
+    public static FaceSdk newFaceSdk(String basePath, OkHttpClient httpClient) {
+        return newFaceSdk(basePath, httpClient, false);
+    }
+
+    /** Under {@link PerfReportExtension} the calls of the returned FaceSdk also go to the run's latency report. */
+    public static FaceSdk newFaceSdk(String basePath, OkHttpClient httpClient, boolean streamingBodies) {
+        FaceSdkMetrics perf = PerfReportExtension.runMetrics();
+        ApiClient apiClient = streamingBodies ? new StreamingApiClient() : perf != null ? new MeteredApiClient() : new ApiClient();
+        apiClient.setBasePath(basePath);
+        apiClient.setHttpClient(perf != null ? perf.instrument(httpClient) : httpClient);
+        return new FaceSdk(apiClient);
+    }
+
+    @Override
+    public String toString() {
+        return "pool " + poolSize + ", keep-alive " + keepAliveMillis + " ms, " + (h2c ? "h2c" : "HTTP/1.1")
+                + ", max requests " + maxRequests + " (" + maxRequestsPerHost + " per host)"
+                + ", timeouts connect " + connectTimeoutMillis + " read " + readTimeoutMillis
+                + " write " + writeTimeoutMillis + " call " + callTimeoutMillis + " ms"
+                + (streamingBodies ? ", streaming bodies" : "");
+    }
+}
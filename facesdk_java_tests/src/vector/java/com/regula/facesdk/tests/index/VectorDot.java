@@ -0,0 +1,45 @@
+package com.regula.facesdk.tests.index;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The Vector API half of {@link VectorMath}, in a source set of its own so that only this
+ * file is compiled with jdk.incubator.vector. No incubator type appears outside the method
+ * bodies: the test sources compile against this class without the module, and it does not
+ * link until {@link VectorMath#AVAILABLE} says the module is there.
+ */
+final class VectorDot {
+
+    private VectorDot() {
+    }
+
+    static float dot(ByteBuffer rows, int offset, float[] query) {
+        VectorSpecies<Float> species = FloatVector.SPECIES_PREFERRED;
+        int step = species.length();
+        int upper = species.loopBound(query.length);
+        // Two accumulators keep consecutive adds independent
+        FloatVector a = FloatVector.zero(species);
+        FloatVector b = FloatVector.zero(species);
+        int i = 0;
+        for (; i + step < upper; i += 2 * step) {
+            a = FloatVector.fromByteBuffer(species, rows, offset + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN)
+                    .mul(FloatVector.fromArray(species, query, i)).add(a);
+            b = FloatVector.fromByteBuffer(species, rows, offset + (i + step) * Float.BYTES, ByteOrder.LITTLE_ENDIAN)
+                    .mul(FloatVector.fromArray(species, query, i + step)).add(b);
+        }
+        for (; i < upper; i += step) {
+            a = FloatVector.fromByteBuffer(species, rows, offset + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN)
+                    .mul(FloatVector.fromArray(species, query, i)).add(a);
+        }
+        float dot = a.add(b).reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            dot += rows.getFloat(offset + i * Float.BYTES) * query[i];
+        }
+        return dot;
+    }
+}